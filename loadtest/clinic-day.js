@@ -0,0 +1,202 @@
+// Clinic-day traffic mix against data loaded by scripts/datagen/generate_clinic_data.py.
+// Replays a compressed working day (morning rush, lunch lull, evening rush) of doctor and patient
+// traffic, plus OTP logins and prescription PDF downloads, and reports throughput and
+// p50/p95/p99 per endpoint.
+//
+//   k6 run -e BASE_URL=http://localhost:8080 -e PEAK_RATE=60 -e DAY=10m loadtest/clinic-day.js
+//
+// Env: MANIFEST (default ../target/datagen/clinic-manifest.json, relative to this file),
+//      PEAK_RATE doctor-side requests/s at the rush peak, DAY length of the compressed day,
+//      P95_MS latency threshold per endpoint, SUMMARY output path for the JSON report.
+import http from 'k6/http';
+import { check } from 'k6';
+import { SharedArray } from 'k6/data';
+import exec from 'k6/execution';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const PEAK_RATE = parseInt(__ENV.PEAK_RATE || '40');
+const DAY_SECONDS = parseDuration(__ENV.DAY || '10m');
+const P95_MS = parseInt(__ENV.P95_MS || '1000');
+const MANIFEST = __ENV.MANIFEST || '../target/datagen/clinic-manifest.json';
+
+const manifest = JSON.parse(open(MANIFEST));
+const doctors = new SharedArray('doctors', () => manifest.doctors);
+const patients = new SharedArray('patients', () => manifest.patients);
+
+const ENDPOINTS = [
+  'doctorStats', 'visitsPage', 'doctorVisitList', 'createVisit', 'prescriptionPdf',
+  'patientDashboard', 'patientVisits', 'otpSend', 'otpVerify',
+];
+
+// Share of the day and relative load for each phase: 9-13 rush, 13-17 lull, 17-21 rush
+const DAY_SHAPE = [
+  [0.05, 0.3], [0.1, 1.0], [0.2, 0.9], [0.05, 0.3], [0.2, 0.15], [0.05, 0.6], [0.25, 1.0], [0.1, 0.2],
+];
+
+function stages(peak) {
+  return DAY_SHAPE.map(([share, load]) => ({
+    duration: `${Math.max(1, Math.round(DAY_SECONDS * share))}s`,
+    target: Math.max(1, Math.round(peak * load)),
+  }));
+}
+
+function rushScenario(fn, peak) {
+  return {
+    executor: 'ramping-arrival-rate',
+    exec: fn,
+    startRate: Math.max(1, Math.round(peak * 0.1)),
+    timeUnit: '1s',
+    preAllocatedVUs: Math.max(10, peak * 2),
+    maxVUs: Math.max(50, peak * 10),
+    stages: stages(peak),
+  };
+}
+
+const thresholds = { http_req_failed: ['rate<0.01'] };
+for (const endpoint of ENDPOINTS) {
+  // Thresholds on tagged sub-metrics are what make k6 report them per endpoint
+  thresholds[`http_req_duration{endpoint:${endpoint}}`] = [`p(95)<${P95_MS}`];
+  thresholds[`http_reqs{endpoint:${endpoint}}`] = ['count>=0'];
+}
+
+export const options = {
+  summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+  thresholds,
+  scenarios: {
+    doctors: rushScenario('doctorTraffic', PEAK_RATE),
+    patients: rushScenario('patientTraffic', Math.max(1, Math.round(PEAK_RATE * 0.4))),
+    logins: rushScenario('otpLogin', Math.max(1, Math.round(PEAK_RATE * 0.05))),
+  },
+};
+
+function parseDuration(value) {
+  const match = /^(\d+)([smh])$/.exec(value);
+  if (!match) return parseInt(value);
+  return parseInt(match[1]) * { s: 1, m: 60, h: 3600 }[match[2]];
+}
+
+function pick(list) {
+  return list[Math.floor(Math.random() * list.length)];
+}
+
+function params(endpoint, token) {
+  const headers = { 'Content-Type': 'application/json' };
+  if (token) headers.Authorization = `Bearer ${token}`;
+  return { headers, tags: { endpoint } };
+}
+
+function login(mobile, userType) {
+  const send = http.post(`${BASE_URL}/api/otp/send`,
+    JSON.stringify({ mobileNumber: mobile, purpose: 'LOGIN' }), params('otpSend'));
+  if (!check(send, { 'otp sent': (r) => r.status === 200 })) return null;
+
+  const verify = http.post(`${BASE_URL}/api/otp/verify`, JSON.stringify({
+    mobileNumber: mobile, otp: send.json('data'), purpose: 'LOGIN', userType,
+  }), params('otpVerify'));
+  if (!check(verify, { 'otp verified': (r) => r.status === 200 })) return null;
+  return verify.json('data.token');
+}
+
+export function setup() {
+  // A pool of logged-in doctors; patients log in per VU inside the test
+  const pool = [];
+  for (let i = 0; i < Math.min(doctors.length, 25); i++) {
+    const doctor = doctors[i];
+    const token = login(doctor.mobile, 'DOCTOR');
+    if (token) pool.push({ token, doctorId: doctor.doctorId, visitIds: doctor.visitIds, patientIds: doctor.patientIds });
+  }
+  if (pool.length === 0) throw new Error('No doctor could log in; is the manifest from this database?');
+  return { doctors: pool };
+}
+
+export function doctorTraffic(data) {
+  const doctor = data.doctors[exec.vu.idInTest % data.doctors.length];
+  const roll = Math.random();
+  let res;
+  if (roll < 0.25) {
+    res = http.get(`${BASE_URL}/api/doctor/stats`, params('doctorStats', doctor.token));
+  } else if (roll < 0.5) {
+    res = http.get(`${BASE_URL}/api/visits?page=1&size=20&sortBy=visitDate&doctorId=${doctor.doctorId}`,
+      params('visitsPage', doctor.token));
+  } else if (roll < 0.6) {
+    res = http.get(`${BASE_URL}/api/doctor/visits`, params('doctorVisitList', doctor.token));
+  } else if (roll < 0.85) {
+    res = http.post(`${BASE_URL}/api/visits`, JSON.stringify({
+      patientId: String(pick(doctor.patientIds)),
+      chiefComplaint: pick(['Fever with body ache since 2 days', 'Sore throat, cough and cold',
+        'Routine diabetes follow-up', 'Acidity and burning sensation after meals']),
+      clinicalNotes: 'BP 124/82, Pulse 80, Temp 99.1F',
+      medicines: [
+        { medicineName: 'Paracetamol 650', dosage: '1 tablet', frequency: '1-1-1', duration: '3 days' },
+        { medicineName: 'Cetirizine 10', dosage: '1 tablet', frequency: '0-0-1', duration: '5 days' },
+      ],
+      tests: [{ testName: 'Complete Blood Count' }],
+    }), params('createVisit', doctor.token));
+    check(res, { 'visit created': (r) => r.status === 201 });
+    return;
+  } else {
+    res = http.get(`${BASE_URL}/api/visits/${pick(doctor.visitIds)}/prescription/pdf`,
+      params('prescriptionPdf', doctor.token));
+  }
+  check(res, { 'status 200': (r) => r.status === 200 });
+}
+
+// Per-VU patient session; logs in on first use, like the app does after install
+let patientSession = null;
+
+export function patientTraffic() {
+  if (!patientSession) {
+    const patient = patients[exec.vu.idInTest % patients.length];
+    patientSession = { token: login(patient.mobile, 'PATIENT') };
+    if (!patientSession.token) {
+      patientSession = null;
+      return;
+    }
+  }
+  const res = Math.random() < 0.7
+    ? http.get(`${BASE_URL}/api/patient/dashboard`, params('patientDashboard', patientSession.token))
+    : http.get(`${BASE_URL}/api/patient/visits`, params('patientVisits', patientSession.token));
+  check(res, { 'status 200': (r) => r.status === 200 });
+}
+
+export function otpLogin() {
+  if (Math.random() < 0.5) {
+    login(pick(doctors).mobile, 'DOCTOR');
+  } else {
+    login(pick(patients).mobile, 'PATIENT');
+  }
+}
+
+export function handleSummary(data) {
+  const rows = [];
+  const seconds = data.state.testRunDurationMs / 1000;
+  for (const endpoint of ENDPOINTS) {
+    const duration = data.metrics[`http_req_duration{endpoint:${endpoint}}`];
+    const count = data.metrics[`http_reqs{endpoint:${endpoint}}`];
+    if (!duration || !count || count.values.count === 0) continue;
+    rows.push({
+      endpoint,
+      requests: count.values.count,
+      rps: count.values.count / seconds,
+      p50: duration.values['p(50)'],
+      p95: duration.values['p(95)'],
+      p99: duration.values['p(99)'],
+    });
+  }
+
+  const fmt = (n, w, d = 1) => n.toFixed(d).padStart(w);
+  let text = `\nClinic day: ${seconds.toFixed(0)}s, ${data.metrics.http_reqs.values.count} requests, ` +
+    `${fmt(data.metrics.http_reqs.values.rate, 0)} req/s, ` +
+    `${(data.metrics.http_req_failed.values.rate * 100).toFixed(2)}% failed\n\n`;
+  text += `${'endpoint'.padEnd(18)}${'requests'.padStart(10)}${'req/s'.padStart(9)}` +
+    `${'p50 ms'.padStart(10)}${'p95 ms'.padStart(10)}${'p99 ms'.padStart(10)}\n`;
+  for (const r of rows) {
+    text += `${r.endpoint.padEnd(18)}${String(r.requests).padStart(10)}${fmt(r.rps, 9)}` +
+      `${fmt(r.p50, 10)}${fmt(r.p95, 10)}${fmt(r.p99, 10)}\n`;
+  }
+
+  return {
+    stdout: text + '\n',
+    [__ENV.SUMMARY || 'target/clinic-day-summary.json']: JSON.stringify({ endpoints: rows, metrics: data.metrics }, null, 1),
+  };
+}
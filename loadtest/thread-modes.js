@@ -0,0 +1,87 @@
+// Platform vs. virtual thread comparison for createVisit and the list endpoints.
+// Run through scripts/bench/compare-thread-modes.sh, or directly:
+//   k6 run -e BASE_URL=http://localhost:8080 -e MODE=platform loadtest/thread-modes.js
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const RATE = parseInt(__ENV.RATE || '50');
+const DURATION = __ENV.DURATION || '2m';
+
+export const options = {
+  summaryTrendStats: ['avg', 'med', 'p(95)', 'p(99)', 'max'],
+  scenarios: {
+    create_visit: {
+      executor: 'constant-arrival-rate',
+      exec: 'createVisit',
+      rate: Math.max(1, Math.floor(RATE / 5)),
+      timeUnit: '1s',
+      duration: DURATION,
+      preAllocatedVUs: 50,
+      maxVUs: 400,
+    },
+    list_endpoints: {
+      executor: 'constant-arrival-rate',
+      exec: 'listEndpoints',
+      rate: RATE,
+      timeUnit: '1s',
+      duration: DURATION,
+      preAllocatedVUs: 100,
+      maxVUs: 800,
+    },
+  },
+};
+
+function json(token) {
+  const headers = { 'Content-Type': 'application/json' };
+  if (token) headers.Authorization = `Bearer ${token}`;
+  return { headers };
+}
+
+export function setup() {
+  const mobile = `+9197${Math.floor(10000000 + Math.random() * 89999999)}`;
+  const register = http.post(`${BASE_URL}/api/doctor/register`, JSON.stringify({
+    name: 'Load Test Doctor', mobileNumber: mobile, specialization: 'General Physician',
+    qualification: 'MBBS', experience: 8, clinicName: 'Load Clinic', clinicAddress: '1 MG Road',
+    city: 'Pune', state: 'MH', pincode: '411001', registrationNumber: 'MH-LOAD-1',
+  }), json());
+  const auth = register.json('data');
+
+  const patient = http.post(`${BASE_URL}/api/doctor/patients/add`, JSON.stringify({
+    fullName: 'Load Test Patient', gender: 'MALE', dateOfBirth: '1985-04-12',
+    mobileNumber: `+9196${Math.floor(10000000 + Math.random() * 89999999)}`,
+  }), json(auth.token)).json('data');
+
+  return { token: auth.token, doctorId: auth.userId, patientId: String(patient.id) };
+}
+
+export function createVisit(data) {
+  const res = http.post(`${BASE_URL}/api/visits`, JSON.stringify({
+    patientId: data.patientId,
+    chiefComplaint: 'Fever and body ache since 2 days',
+    clinicalNotes: 'Temp 101F, throat congested',
+    medicines: [
+      { medicineName: 'Paracetamol 650', dosage: '1 tablet', frequency: '1-1-1', duration: '3 days' },
+      { medicineName: 'Cetirizine 10', dosage: '1 tablet', frequency: '0-0-1', duration: '5 days' },
+    ],
+    tests: [{ testName: 'Complete Blood Count' }],
+  }), Object.assign(json(data.token), { tags: { endpoint: 'createVisit' } }));
+  check(res, { 'visit created': (r) => r.status === 201 });
+}
+
+export function listEndpoints(data) {
+  const params = json(data.token);
+  const pick = Math.random();
+  let res;
+  if (pick < 0.4) {
+    res = http.get(`${BASE_URL}/api/visits?page=1&size=20&doctorId=${data.doctorId}`,
+      Object.assign({}, params, { tags: { endpoint: 'visitsPage' } }));
+  } else if (pick < 0.7) {
+    res = http.get(`${BASE_URL}/api/visits/doctor/${data.doctorId}`,
+      Object.assign({}, params, { tags: { endpoint: 'visitsByDoctor' } }));
+  } else {
+    res = http.get(`${BASE_URL}/api/patients?page=1&size=20`,
+      Object.assign({}, params, { tags: { endpoint: 'patientsPage' } }));
+  }
+  check(res, { 'list ok': (r) => r.status === 200 });
+}
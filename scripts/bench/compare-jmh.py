@@ -0,0 +1,49 @@
+#!/usr/bin/env python3
+"""Compares two JMH JSON result files (see run-jmh.sh) benchmark by benchmark.
+
+Usage: scripts/bench/compare-jmh.py baseline.json candidate.json [--threshold 5]
+
+A change is flagged only when it exceeds both the threshold (percent) and the combined
+99.9% error margins of the two runs, so noise between runs is not reported as a regression.
+"""
+import argparse
+import json
+
+
+def load(path):
+    results = {}
+    for entry in json.load(open(path)):
+        params = ",".join(f"{k}={v}" for k, v in sorted((entry.get("params") or {}).items()))
+        name = entry["benchmark"].replace("com.bharatemr.benchmark.", "")
+        metric = entry["primaryMetric"]
+        results[f"{name}({params})" if params else name] = (
+            metric["score"], metric.get("scoreError") or 0.0, metric["scoreUnit"], entry["mode"])
+    return results
+
+
+def main():
+    parser = argparse.ArgumentParser()
+    parser.add_argument("baseline")
+    parser.add_argument("candidate")
+    parser.add_argument("--threshold", type=float, default=5.0)
+    args = parser.parse_args()
+
+    base, cand = load(args.baseline), load(args.candidate)
+    width = max((len(k) for k in base.keys() | cand.keys()), default=10)
+    print(f"{'benchmark':{width}}  {'baseline':>12}  {'candidate':>12}  {'unit':>8}  {'change':>8}")
+    for key in sorted(base.keys() | cand.keys()):
+        if key not in base or key not in cand:
+            print(f"{key:{width}}  {'only in ' + ('candidate' if key in cand else 'baseline'):>36}")
+            continue
+        b_score, b_err, unit, mode = base[key]
+        c_score, c_err, _, _ = cand[key]
+        change = (c_score - b_score) / b_score * 100 if b_score else 0.0
+        # throughput: higher is better; avgt/sample/ss: lower is better
+        better = change > 0 if mode == "thrpt" else change < 0
+        significant = abs(change) > args.threshold and abs(c_score - b_score) > (b_err + c_err)
+        flag = ("improved" if better else "REGRESSED") if significant else ""
+        print(f"{key:{width}}  {b_score:12.3f}  {c_score:12.3f}  {unit:>8}  {change:+7.1f}%  {flag}")
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,69 @@
+#!/usr/bin/env bash
+# Compares the JVM (AppCDS) and native images: time to first response, RSS and steady-state throughput.
+#
+# Usage: scripts/bench/compare-jvm-native.sh [duration-seconds] [concurrency]
+# Needs: docker, curl, hey (https://github.com/rakyll/hey)
+# Both images run with the in-memory H2 "dev" profile so no database is required.
+set -euo pipefail
+
+DURATION="${1:-30}"
+CONCURRENCY="${2:-20}"
+JVM_IMAGE="${JVM_IMAGE:-bharat-emr:jvm}"
+NATIVE_IMAGE="${NATIVE_IMAGE:-bharat-emr:native}"
+MEMORY="${MEMORY:-1g}"
+CPUS="${CPUS:-1}"
+PORT=18080
+
+cd "$(dirname "$0")/../.."
+
+if [[ "${SKIP_BUILD:-false}" != "true" ]]; then
+  docker build --target jvm -t "$JVM_IMAGE" .
+  docker build --target native -t "$NATIVE_IMAGE" .
+fi
+
+now_ms() { date +%s%3N; }
+
+register_doctor() {
+  curl -s -X POST "http://localhost:$PORT/api/doctor/register" \
+    -H "Content-Type: application/json" \
+    -d '{"name":"Bench Doctor","mobileNumber":"+919800000001","specialization":"General Physician",
+         "qualification":"MBBS","experience":5,"clinicName":"Bench Clinic","clinicAddress":"1 MG Road",
+         "city":"Pune","state":"MH","pincode":"411001","registrationNumber":"MH-0001"}' \
+    | sed -n 's/.*"token":"\([^"]*\)".*/\1/p'
+}
+
+run_one() {
+  local label="$1" image="$2" name="emr-bench-$1"
+  docker rm -f "$name" >/dev/null 2>&1 || true
+
+  local start
+  start=$(now_ms)
+  docker run -d --name "$name" --memory "$MEMORY" --cpus "$CPUS" -p "$PORT:8080" \
+    -e SPRING_PROFILES_ACTIVE=dev,faststart "$image" >/dev/null
+
+  # Any HTTP status (401/403 included) means the app is serving requests
+  until [[ "$(curl -s -o /dev/null -w '%{http_code}' "http://localhost:$PORT/api/visits" || true)" != "000" ]]; do
+    sleep 0.05
+  done
+  local first_response=$(( $(now_ms) - start ))
+  local idle_rss
+  idle_rss=$(docker stats --no-stream --format '{{.MemUsage}}' "$name" | cut -d/ -f1)
+
+  local token
+  token=$(register_doctor)
+  hey -z "${DURATION}s" -c "$CONCURRENCY" -H "Authorization: Bearer $token" \
+    "http://localhost:$PORT/api/doctor/stats" > "target/bench-$label.txt"
+  local rps p99
+  rps=$(awk '/Requests\/sec/ {print $2}' "target/bench-$label.txt")
+  p99=$(awk '/99% in/ {print $3}' "target/bench-$label.txt")
+  local load_rss
+  load_rss=$(docker stats --no-stream --format '{{.MemUsage}}' "$name" | cut -d/ -f1)
+
+  docker rm -f "$name" >/dev/null
+  printf "%-8s %18s %12s %12s %10s %10s\n" "$label" "${first_response}" "$idle_rss" "$load_rss" "$rps" "$p99"
+}
+
+mkdir -p target
+printf "%-8s %18s %12s %12s %10s %10s\n" "build" "first-response(ms)" "rss-idle" "rss-load" "req/s" "p99(s)"
+run_one jvm "$JVM_IMAGE"
+run_one native "$NATIVE_IMAGE"
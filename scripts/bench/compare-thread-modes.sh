@@ -0,0 +1,47 @@
+#!/usr/bin/env bash
+# Runs loadtest/thread-modes.js against the app in platform-thread and virtual-thread mode and
+# prints throughput and latency percentiles for each.
+#
+# Usage: scripts/bench/compare-thread-modes.sh [rate-per-second] [duration]
+# Needs: JDK 21+ (for the virtual mode), k6, a PostgreSQL from docker-compose (DB_* env vars),
+#        and a built jar (mvn -DskipTests package).
+set -euo pipefail
+
+RATE="${1:-50}"
+DURATION="${2:-2m}"
+PORT="${PORT:-8080}"
+JAR="${JAR:-target/bharat-emr-backend-1.0.0.jar}"
+JAVA_OPTS="${JAVA_OPTS:--Xmx512m -Djdk.tracePinnedThreads=short}"
+
+cd "$(dirname "$0")/../.."
+mkdir -p target
+
+run_mode() {
+  local mode="$1" virtual="$2"
+  java $JAVA_OPTS -jar "$JAR" --server.port="$PORT" --app.threads.virtual.enabled="$virtual" \
+    > "target/thread-mode-$mode.log" 2>&1 &
+  local pid=$!
+  until curl -s -o /dev/null "http://localhost:$PORT/api/visits"; do sleep 0.5; done
+
+  k6 run --quiet -e BASE_URL="http://localhost:$PORT" -e RATE="$RATE" -e DURATION="$DURATION" \
+    --summary-export "target/thread-mode-$mode.json" loadtest/thread-modes.js
+
+  kill "$pid"; wait "$pid" 2>/dev/null || true
+  if grep -q "pinned" "target/thread-mode-$mode.log"; then
+    echo "WARNING: pinned virtual threads reported, see target/thread-mode-$mode.log"
+  fi
+}
+
+run_mode platform false
+run_mode virtual true
+
+for mode in platform virtual; do
+  python3 - "$mode" <<'PY'
+import json, sys
+mode = sys.argv[1]
+m = json.load(open(f"target/thread-mode-{mode}.json"))["metrics"]
+d = m["http_req_duration"]
+print(f"{mode:9s} req/s={m['http_reqs']['rate']:8.1f}  p50={d['med']:7.1f}ms  p95={d['p(95)']:7.1f}ms  "
+      f"p99={d['p(99)']:7.1f}ms  failed={m['http_req_failed']['value'] * 100:.2f}%")
+PY
+done
@@ -0,0 +1,26 @@
+#!/usr/bin/env bash
+# Runs the JMH benchmarks and stores the result under the current commit, so runs from different
+# commits can be compared with compare-jmh.py.
+#
+# Usage: scripts/bench/run-jmh.sh [benchmark-regex] [extra JMH args...]
+#   scripts/bench/run-jmh.sh                          # everything
+#   scripts/bench/run-jmh.sh PrescriptionPdf          # one class
+#   scripts/bench/run-jmh.sh Jwt -f 1 -wi 1 -i 2      # quick smoke run
+# Results: $JMH_RESULTS_DIR (default benchmarks/results)/<commit>[-dirty].json
+set -euo pipefail
+
+cd "$(dirname "$0")/../.."
+FILTER="${1:-.*}"
+shift || true
+OUT_DIR="${JMH_RESULTS_DIR:-benchmarks/results}"
+
+COMMIT=$(git rev-parse --short HEAD)
+if ! git diff --quiet HEAD -- src pom.xml; then COMMIT="$COMMIT-dirty"; fi
+mkdir -p "$OUT_DIR"
+RESULT="$OUT_DIR/$COMMIT.json"
+
+mvn -B -q -Pbenchmark test-compile exec:exec \
+  -Djmh.args="$FILTER -rf json -rff $RESULT $*"
+
+echo "Results written to $RESULT"
+echo "Compare with: scripts/bench/compare-jmh.py $OUT_DIR/<baseline>.json $RESULT"
@@ -0,0 +1,373 @@
+#!/usr/bin/env python3
+"""EXPLAIN ANALYZE every repository query against a seeded PostgreSQL database.
+
+Each query method declared in src/main/java/com/bharatemr/repository has an entry in QUERIES with
+the SQL Hibernate issues for it. The script runs them all with representative parameters inside one
+transaction that is rolled back. It fails if:
+  * a declared repository method has no entry here, so new queries can't skip the check
+  * a plan sequentially scans a table with at least --min-rows rows, unless the entry allows it
+  * a plan doesn't use the index the entry expects
+
+  scripts/datagen/generate_clinic_data.py --dsn "$DATABASE_URL" --truncate
+  scripts/querycheck/explain_repository_queries.py --dsn "$DATABASE_URL"
+
+--generate loads a smaller dataset with the generator first. OTP rows and visit attachments are not part
+of the generated data, so they are seeded inside the rolled-back transaction. Parameters come from a typical
+(median-volume) doctor, since the busiest clinic legitimately reads a large share of the table.
+"""
+import argparse
+import hashlib
+import json
+import os
+import re
+import subprocess
+import sys
+
+ROOT = os.path.abspath(os.path.join(os.path.dirname(__file__), "..", ".."))
+REPOSITORY_DIR = os.path.join(ROOT, "src", "main", "java", "com", "bharatemr", "repository")
+
+VISIT_COLUMNS = "v.*, p.*, d.*"
+VISIT_JOINS = "visits v JOIN patients p ON p.id = v.patient_id JOIN doctors d ON d.id = v.doctor_id"
+FOLLOW_UP_JOINS = "follow_ups f JOIN patients p ON p.id = f.patient_id JOIN doctors d ON d.id = f.doctor_id"
+DOCTOR_VISITS_JOIN = "a doctor's visits join hundreds of patients or more; hashing patients beats a probe per visit"
+
+# "Repository.method": (sql, expected index or None, reason a sequential scan is acceptable or None)
+QUERIES = {
+    "DoctorRepository.findByMobileNumber": (
+        "SELECT * FROM doctors WHERE mobile_number = {doctor_mobile}", None, None),
+    "DoctorRepository.findByDoctorId": (
+        "SELECT * FROM doctors WHERE doctor_id = {doctor_code}", None, None),
+    "DoctorRepository.existsByMobileNumber": (
+        "SELECT id FROM doctors WHERE mobile_number = {doctor_mobile} LIMIT 1", None, None),
+    "DoctorRepository.existsByEmail": (
+        "SELECT id FROM doctors WHERE email = {doctor_email} LIMIT 1", None, None),
+    "DoctorRepository.countByCreatedAtAfter": (
+        "SELECT count(id) FROM doctors WHERE created_at > now() - interval '30 days'", None, None),
+    "DoctorRepository.countActiveDoctors": (
+        "SELECT count(id) FROM doctors WHERE is_active = true", None, None),
+    "DoctorRepository.findAllActiveAndNotBlocked": (
+        "SELECT * FROM doctors WHERE is_active = true AND is_blocked = false", None, None),
+
+    "FollowUpRepository.findByPatientIdOrderByScheduledDateDesc": (
+        f"SELECT f.*, p.*, d.* FROM {FOLLOW_UP_JOINS} WHERE f.patient_id = {{patient_id}} "
+        "ORDER BY f.scheduled_date DESC", "idx_followups_patient", None),
+    "FollowUpRepository.findByDoctorIdOrderByScheduledDateDesc": (
+        f"SELECT f.*, p.*, d.* FROM {FOLLOW_UP_JOINS} WHERE f.doctor_id = {{doctor_id}} "
+        "ORDER BY f.scheduled_date DESC", "idx_followups_doctor_status", None),
+    "FollowUpRepository.findByStatusOrderByScheduledDateAsc": (
+        f"SELECT f.*, p.*, d.* FROM {FOLLOW_UP_JOINS} WHERE f.status = 'SCHEDULED' "
+        "ORDER BY f.scheduled_date ASC", "idx_followups_status_date", None),
+    "FollowUpRepository.findFollowUpsByDoctorAndDateRange": (
+        f"SELECT f.*, p.*, d.* FROM {FOLLOW_UP_JOINS} WHERE f.doctor_id = {{doctor_id}} "
+        "AND f.scheduled_date BETWEEN current_date - 30 AND current_date + 30", "idx_followups_doctor_status", None),
+    "FollowUpRepository.countTodaysScheduledFollowUps": (
+        "SELECT count(id) FROM follow_ups WHERE scheduled_date = current_date AND status = 'SCHEDULED'",
+        "idx_followups_status_date", None),
+    "FollowUpRepository.countByDoctorIdAndStatus": (
+        "SELECT count(id) FROM follow_ups WHERE doctor_id = {doctor_id} AND status = 'SCHEDULED'",
+        "idx_followups_doctor_status", None),
+
+    "MedicineRepository.findByPrescriptionId": (
+        "SELECT * FROM prescription_medicines WHERE prescription_id = {prescription_id}",
+        "idx_medicines_prescription", None),
+    "MedicineRepository.streamUsageByDoctor": (
+        "SELECT m.medicine_name_id, d.doctor_id, count(m.id) FROM prescription_medicines m "
+        "JOIN prescriptions pr ON pr.id = m.prescription_id JOIN visits v ON v.id = pr.visit_id "
+        "JOIN doctors d ON d.id = v.doctor_id GROUP BY m.medicine_name_id, d.doctor_id", None,
+        "builds the typeahead index from the whole history once at startup"),
+    "TestRepository.findByPrescriptionId": (
+        "SELECT * FROM prescription_tests WHERE prescription_id = {prescription_id}",
+        "idx_tests_prescription", None),
+
+    "OtpRepository.findTopByMobileNumberAndPurposeOrderByCreatedAtDesc": (
+        "SELECT * FROM otp_verifications WHERE mobile_number = {otp_mobile} AND purpose = 'LOGIN' "
+        "ORDER BY created_at DESC LIMIT 1", "idx_otp_mobile", None),
+    "OtpRepository.findValidOtp": (
+        "SELECT * FROM otp_verifications WHERE mobile_number = {otp_mobile} AND otp = '123456' "
+        "AND purpose = 'LOGIN' AND is_verified = false AND expiry_time > now()", "idx_otp_active", None),
+    "OtpRepository.deleteExpiredOtps": (
+        "DELETE FROM otp_verifications WHERE expiry_time < now()", "idx_otp_expiry", None),
+
+    "PartitionArchiveRepository.existsByPartitionName": (
+        "SELECT id FROM partition_archives WHERE partition_name = 'visits_2020_01' LIMIT 1", None, None),
+    "PartitionArchiveRepository.findVisitArchivesForPatient": (
+        "SELECT a.* FROM partition_archives a JOIN partition_archive_patients ap ON ap.archive_id = a.id "
+        "WHERE a.table_name = 'visits' AND ap.patient_id = {patient_id} ORDER BY a.range_start DESC",
+        None, None),
+    "PartitionArchiveRepository.findAllArchivedBlobKeys": (
+        "SELECT b.blob_key FROM partition_archives a JOIN partition_archive_blobs b ON b.archive_id = a.id",
+        None, "the orphaned-PDF sweep reads every archived key"),
+
+    "PatientRepository.findByMobileNumber": (
+        "SELECT * FROM patients WHERE mobile_number = {patient_mobile}", "idx_patients_mobile", None),
+    "PatientRepository.findByPatientId": (
+        "SELECT * FROM patients WHERE patient_id = {patient_code}", None, None),
+    "PatientRepository.findByOnboardedByDoctorId": (
+        "SELECT * FROM patients WHERE onboarded_by_doctor_id = {doctor_id}", None, None),
+    "PatientRepository.existsByMobileNumber": (
+        "SELECT id FROM patients WHERE mobile_number = {patient_mobile} LIMIT 1", "idx_patients_mobile", None),
+    "PatientRepository.countByCreatedAtAfter": (
+        "SELECT count(id) FROM patients WHERE created_at > now() - interval '30 days'",
+        "idx_patients_created_at", None),
+    "PatientRepository.findAll": (
+        "SELECT p.*, d.* FROM patients p JOIN doctors d ON d.id = p.onboarded_by_doctor_id "
+        "ORDER BY p.created_at DESC LIMIT 20 OFFSET 20", "idx_patients_created_at", None),
+    "PatientRepository.countActivePatients": (
+        "SELECT count(id) FROM patients WHERE is_active = true", None,
+        "whole-table count for the admin dashboard"),
+    "PatientRepository.findActivePatientsByDoctor": (
+        "SELECT * FROM patients WHERE onboarded_by_doctor_id = {doctor_id} AND is_active = true",
+        "idx_patients_active_doctor", None),
+    "PatientRepository.countActivePatientsByDoctor": (
+        "SELECT count(id) FROM patients WHERE onboarded_by_doctor_id = {doctor_id} AND is_active = true",
+        "idx_patients_active_doctor", None),
+
+    "PrescriptionRepository.findByVisitId": (
+        "SELECT * FROM prescriptions WHERE visit_id = {visit_id}", None, None),
+    "PrescriptionRepository.existsByVisitId": (
+        "SELECT id FROM prescriptions WHERE visit_id = {visit_id} LIMIT 1", None, None),
+    "PrescriptionRepository.countByVisitDoctorId": (
+        "SELECT count(pr.id) FROM prescriptions pr JOIN visits v ON v.id = pr.visit_id "
+        "WHERE v.doctor_id = {doctor_id}", "idx_visits_doctor_date",
+        "a typical doctor owns ~5% of all prescriptions; hashing them beats a probe per visit"),
+    "PrescriptionRepository.findWithMedicinesByVisitIdIn": (
+        "SELECT DISTINCT pr.*, m.* FROM prescriptions pr LEFT JOIN prescription_medicines m "
+        "ON m.prescription_id = pr.id WHERE pr.visit_id IN ({visit_page})", None, None),
+    "PrescriptionRepository.findWithTestsByVisitIdIn": (
+        "SELECT DISTINCT pr.*, t.* FROM prescriptions pr LEFT JOIN prescription_tests t "
+        "ON t.prescription_id = pr.id WHERE pr.visit_id IN ({visit_page})", None, None),
+    "PrescriptionRepository.findVisitIdsByVisitIdIn": (
+        "SELECT visit_id FROM prescriptions WHERE visit_id IN ({visit_page})", "prescriptions_visit_id_key", None),
+    "PrescriptionRepository.updatePdf": (
+        "UPDATE prescriptions SET pdf_url = 'prescriptions/prescription_check.pdf', pdf_hash = repeat('0', 64) "
+        "WHERE id = {prescription_id}", "prescriptions_pkey", None),
+    "PrescriptionRepository.markPdfStale": (
+        "UPDATE prescriptions SET pdf_hash = NULL WHERE visit_id = {visit_id}", "prescriptions_visit_id_key", None),
+    "PrescriptionRepository.markPdfStaleForDoctor": (
+        "UPDATE prescriptions SET pdf_hash = NULL WHERE visit_id IN "
+        "(SELECT id FROM visits WHERE doctor_id = {doctor_id})", "idx_visits_doctor_date",
+        "only on a letterhead change; touches ~5% of all prescriptions"),
+    "PrescriptionRepository.markPdfStaleForPatient": (
+        "UPDATE prescriptions SET pdf_hash = NULL WHERE visit_id IN "
+        "(SELECT id FROM visits WHERE patient_id = {patient_id})", "idx_visits_patient_date", None),
+    "PrescriptionRepository.findAllPdfUrls": (
+        "SELECT pdf_url FROM prescriptions WHERE pdf_url IS NOT NULL", None,
+        "the orphaned-PDF sweep reads every stored PDF's key"),
+
+    "VisitRepository.findByPatientIdOrderByVisitDateDesc": (
+        f"SELECT {VISIT_COLUMNS} FROM {VISIT_JOINS} WHERE v.patient_id = {{patient_id}} "
+        "ORDER BY v.visit_date DESC", "idx_visits_patient_date", None),
+    "VisitRepository.findByDoctorIdOrderByVisitDateDesc": (
+        f"SELECT {VISIT_COLUMNS} FROM {VISIT_JOINS} WHERE v.doctor_id = {{doctor_id}} "
+        "ORDER BY v.visit_date DESC", "idx_visits_doctor_date", DOCTOR_VISITS_JOIN),
+    # Walking idx_visits_date newest first and stopping after the page is as good as the doctor index
+    "VisitRepository.findAll": (
+        f"SELECT {VISIT_COLUMNS} FROM {VISIT_JOINS} WHERE d.doctor_id = {{doctor_code}} "
+        "ORDER BY v.visit_date DESC LIMIT 20 OFFSET 20", None, None),
+    "VisitRepository.findVisitsByDoctorAndDateRange": (
+        f"SELECT {VISIT_COLUMNS} FROM {VISIT_JOINS} WHERE v.doctor_id = {{doctor_id}} "
+        "AND v.visit_date BETWEEN now() - interval '30 days' AND now()", "idx_visits_doctor_date",
+        DOCTOR_VISITS_JOIN),
+    "VisitRepository.countVisitsByDateRange": (
+        "SELECT count(id) FROM visits WHERE visit_date BETWEEN date_trunc('month', now()) AND now()", None,
+        "pruned to the current month's partition, which it reads whole"),
+    "VisitRepository.countByDoctorIdAndVisitDateBetween": (
+        "SELECT count(id) FROM visits WHERE doctor_id = {doctor_id} "
+        "AND visit_date BETWEEN date_trunc('month', now()) AND now()", "idx_visits_doctor_date", None),
+    "VisitRepository.findByPatientIdOrderByVisitDateDescIdDesc": (
+        f"SELECT {VISIT_COLUMNS} FROM {VISIT_JOINS} WHERE v.patient_id = {{patient_id}} "
+        "ORDER BY v.visit_date DESC, v.id DESC LIMIT 20", "idx_visits_patient_date", None),
+    "VisitRepository.findPatientVisitsBefore": (
+        f"SELECT {VISIT_COLUMNS} FROM {VISIT_JOINS} WHERE v.patient_id = {{patient_id}} "
+        "AND (v.visit_date < {keyset_date} OR (v.visit_date = {keyset_date} AND v.id < {keyset_id})) "
+        "ORDER BY v.visit_date DESC, v.id DESC LIMIT 20", "idx_visits_patient_date", None),
+    "VisitRepository.countByPatientId": (
+        "SELECT count(id) FROM visits WHERE patient_id = {patient_id}", "idx_visits_patient_date", None),
+    "VisitRepository.findFirstVisitDate": (
+        "SELECT min(visit_date) FROM visits WHERE patient_id = {patient_id}", "idx_visits_patient_date", None),
+    "VisitRepository.findLastVisitDate": (
+        "SELECT max(visit_date) FROM visits WHERE patient_id = {patient_id}", "idx_visits_patient_date", None),
+    "VisitRepository.findDoctorNamesByPatientId": (
+        "SELECT DISTINCT d.full_name FROM visits v JOIN doctors d ON d.id = v.doctor_id "
+        "WHERE v.patient_id = {patient_id}", "idx_visits_patient_date", None),
+
+    "VisitAttachmentRepository.findByVisitIdOrderByCreatedAtAsc": (
+        "SELECT * FROM visit_attachments WHERE visit_id = {visit_id} ORDER BY created_at ASC",
+        "idx_visit_attachments_visit", None),
+    "VisitAttachmentRepository.findByVisitIdInOrderByCreatedAtAsc": (
+        "SELECT * FROM visit_attachments WHERE visit_id IN ({visit_page}) ORDER BY created_at ASC",
+        "idx_visit_attachments_visit", None),
+    "VisitAttachmentRepository.findByIdAndVisitId": (
+        "SELECT * FROM visit_attachments WHERE id = 42 AND visit_id = {visit_id}", None, None),
+    "VisitAttachmentRepository.findTop100ByDerivedAtIsNullAndCreatedAtBeforeOrderByCreatedAtAsc": (
+        "SELECT * FROM visit_attachments WHERE derived_at IS NULL AND created_at < now() - interval '10 minutes' "
+        "ORDER BY created_at ASC LIMIT 100", "idx_visit_attachments_pending", None),
+    "VisitAttachmentRepository.updateDerivatives": (
+        "UPDATE visit_attachments SET thumbnail_key = 'uploads/check.thumb.jpg', "
+        "preview_key = 'uploads/check.preview.jpg', derived_at = now() WHERE sha256 = {attachment_sha256}",
+        "idx_visit_attachments_sha256", None),
+}
+
+# Looked up once; the median-volume doctor stands in for a typical clinic
+PARAMETERS_SQL = """
+WITH per_doctor AS (
+    SELECT doctor_id, count(*) AS visits FROM visits GROUP BY doctor_id
+), typical AS (
+    SELECT doctor_id FROM per_doctor ORDER BY visits
+    OFFSET (SELECT count(*) / 2 FROM per_doctor) LIMIT 1
+), patient AS (
+    SELECT v.patient_id FROM visits v JOIN typical t ON t.doctor_id = v.doctor_id
+    GROUP BY v.patient_id ORDER BY count(*) DESC LIMIT 1
+), page AS (
+    SELECT v.id FROM visits v JOIN typical t ON t.doctor_id = v.doctor_id ORDER BY v.visit_date DESC LIMIT 20
+), keyset AS (
+    SELECT v.id, v.visit_date FROM visits v JOIN patient ON patient.patient_id = v.patient_id
+    ORDER BY v.visit_date DESC, v.id DESC LIMIT 1
+)
+SELECT json_build_object(
+    'doctor_id', d.id, 'doctor_code', d.doctor_id, 'doctor_mobile', d.mobile_number,
+    'doctor_email', coalesce(d.email, ''),
+    'patient_id', p.id, 'patient_code', p.patient_id, 'patient_mobile', p.mobile_number,
+    'visit_id', (SELECT max(id) FROM page),
+    'visit_page', (SELECT json_agg(id) FROM page),
+    'prescription_id', (SELECT pr.id FROM prescriptions pr JOIN page ON page.id = pr.visit_id LIMIT 1),
+    'keyset_id', (SELECT id FROM keyset), 'keyset_date', (SELECT visit_date FROM keyset))
+FROM typical t JOIN doctors d ON d.id = t.doctor_id JOIN patient ON true JOIN patients p ON p.id = patient.patient_id;
+"""
+
+# Recent OTP traffic: codes live five minutes and two thirds of them end up verified
+SEED_OTPS_SQL = """
+INSERT INTO otp_verifications (mobile_number, otp, purpose, is_verified, expiry_time, created_at)
+SELECT '+917' || lpad((i % {otp_mobiles})::text, 9, '0'), lpad((i * 7919 % 1000000)::text, 6, '0'),
+       (ARRAY['LOGIN', 'LOGIN', 'REGISTRATION'])[1 + i % 3], i % 3 <> 0,
+       now() + interval '5 minutes' - (i % 300) * interval '1 second',
+       now() - (i % 300) * interval '1 second'
+FROM generate_series(1, {otp_rows}) AS i;
+ANALYZE otp_verifications;
+"""
+
+# A quarter of the visits carry a report, the rest of them derived long ago; the last day's are pending.
+# sha256 is two md5s, so the check can compute the hash of the visit it looks up.
+SEED_ATTACHMENTS_SQL = """
+INSERT INTO visit_attachments (visit_id, file_name, content_type, size_bytes, sha256, storage_key, created_at,
+                               derived_at)
+SELECT v.id, 'report.pdf', 'application/pdf', 250000, md5(v.id::text) || md5(v.id || 'x'),
+       'uploads/' || md5(v.id::text) || md5(v.id || 'x'), v.visit_date,
+       CASE WHEN v.visit_date < now() - interval '1 day' THEN v.visit_date + interval '1 minute' END
+FROM visits v WHERE v.id % 4 = 0 OR v.id = {visit_id};
+ANALYZE visit_attachments;
+"""
+
+# Nested projection interfaces declare getters, not queries
+NESTED_TYPE = re.compile(r"^\s+(?:public\s+)?(?:static\s+)?(?:interface|class)\s+\w+[^{]*\{[^{}]*\}", re.MULTILINE)
+
+METHOD = re.compile(r"^\s+(?:[\w.]+(?:<[^;{}()]*>)?\s+)+(\w+)\s*\(", re.MULTILINE)
+
+
+def psql(dsn, *args, stdin=None):
+    command = ["psql", "-X", "-q", "-v", "ON_ERROR_STOP=1"] + ([dsn] if dsn else []) + list(args)
+    return subprocess.run(command, check=True, input=stdin, text=True, capture_output=True).stdout
+
+
+def literal(value):
+    if isinstance(value, list):
+        return ", ".join(literal(v) for v in value)
+    if isinstance(value, (int, float)):
+        return str(value)
+    return "'" + str(value).replace("'", "''") + "'"
+
+
+def declared_methods():
+    methods = set()
+    for name in sorted(os.listdir(REPOSITORY_DIR)):
+        if not name.endswith(".java"):
+            continue
+        with open(os.path.join(REPOSITORY_DIR, name)) as f:
+            source = re.sub(r"@\w+(\([^)]*\))?", "", f.read())
+        body = NESTED_TYPE.sub("", source[source.index("{") + 1:])
+        methods.update(f"{name[:-5]}.{m}" for m in METHOD.findall(body))
+    return methods
+
+
+def walk(plan):
+    yield plan
+    for child in plan.get("Plans", []):
+        yield from walk(child)
+
+
+def check(name, plan, row_counts, parent_indexes, min_rows, expected_index, seq_scan_reason):
+    nodes = list(walk(plan["Plan"]))
+    problems = []
+    for node in nodes:
+        relation = node.get("Relation Name")
+        if node["Node Type"] == "Seq Scan" and row_counts.get(relation, 0) >= min_rows and not seq_scan_reason:
+            problems.append(f"Seq Scan on {relation} ({row_counts[relation]:,} rows)")
+    # On partitioned tables the plan names each partition's copy of the index
+    used = {parent_indexes.get(node["Index Name"], node["Index Name"]) for node in nodes if "Index Name" in node}
+    if expected_index and expected_index not in used:
+        used = sorted(used) or ["none"]
+        problems.append(f"expected {expected_index}, used {', '.join(used)}")
+    return problems
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument("--dsn", default=os.environ.get("DATABASE_URL"), help="libpq connection string")
+    parser.add_argument("--min-rows", type=int, default=5000,
+                        help="sequential scans on tables smaller than this are fine (default 5000)")
+    parser.add_argument("--otp-rows", type=int, default=50000, help="OTP rows seeded for the check")
+    parser.add_argument("--generate", action="store_true",
+                        help="load 20 doctors / 20k patients / 200k visits with the data generator first")
+    parser.add_argument("--verbose", action="store_true", help="print every plan")
+    args = parser.parse_args()
+
+    missing = sorted(declared_methods() - QUERIES.keys())
+    if missing:
+        sys.exit("No EXPLAIN entry for: " + ", ".join(missing))
+
+    if args.generate:
+        subprocess.run([sys.executable, os.path.join(ROOT, "scripts", "datagen", "generate_clinic_data.py"),
+                        "--doctors", "20", "--patients", "20000", "--visits", "200000", "--truncate"]
+                       + (["--dsn", args.dsn] if args.dsn else []), check=True)
+
+    parameters = json.loads(psql(args.dsn, "-tAc", PARAMETERS_SQL))
+    if not parameters:
+        sys.exit("No visits found; load data with scripts/datagen/generate_clinic_data.py first")
+    parameters["otp_mobile"] = "+917000000042"
+    visit = str(parameters["visit_id"])
+    parameters["attachment_sha256"] = "".join(hashlib.md5(text.encode()).hexdigest() for text in (visit, visit + "x"))
+    bound = {key: literal(value) for key, value in parameters.items()}
+
+    script = ["BEGIN;", SEED_OTPS_SQL.format(otp_rows=args.otp_rows, otp_mobiles=max(1, args.otp_rows // 5)),
+              SEED_ATTACHMENTS_SQL.format(visit_id=bound["visit_id"])]
+    script.append("SELECT json_object_agg(relname, reltuples::bigint) FROM pg_class "
+                  "WHERE relkind IN ('r', 'p') AND relnamespace = 'public'::regnamespace;")
+    script.append("SELECT coalesce(json_object_agg(c.relname, p.relname), '{}') FROM pg_inherits i "
+                  "JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent "
+                  "WHERE c.relkind = 'i';")
+    for name, (sql, _, _) in QUERIES.items():
+        script.append(f"\\echo @@{name}")
+        script.append(f"EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) {sql.format(**bound)};")
+    script.append("ROLLBACK;")
+    output = psql(args.dsn, "-tA", stdin="\n".join(script) + "\n")
+
+    sections = output.split("@@")
+    row_counts, parent_indexes = (json.loads(line) for line in sections[0].strip().splitlines()[-2:])
+    failures = 0
+    print(f"{'query':70s} {'ms':>9s}  result")
+    for section in sections[1:]:
+        name, _, body = section.partition("\n")
+        plan = json.loads(body)[0]
+        _, expected_index, seq_scan_reason = QUERIES[name]
+        problems = check(name, plan, row_counts, parent_indexes, args.min_rows, expected_index, seq_scan_reason)
+        failures += bool(problems)
+        result = "; ".join(problems) if problems else ("ok (" + seq_scan_reason + ")" if seq_scan_reason else "ok")
+        print(f"{name:70s} {plan['Execution Time']:9.2f}  {result}")
+        if args.verbose or problems:
+            print(json.dumps(plan["Plan"], indent=1))
+    if failures:
+        sys.exit(f"{failures} of {len(QUERIES)} queries are not using the expected indexes")
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,29 @@
+#!/usr/bin/env bash
+# Moves one doctor's visits, prescriptions and follow-ups to another shard while the app keeps serving.
+# The doctor's writes answer 503 (Retry-After) only during the final copy.
+#
+# Usage: ADMIN_TOKEN=... scripts/shards/move-doctor.sh <doctorId> <targetShard>
+#        ADMIN_TOKEN=... scripts/shards/move-doctor.sh --status [doctorId]
+set -euo pipefail
+
+BASE_URL="${BASE_URL:-http://localhost:8080}"
+: "${ADMIN_TOKEN:?set ADMIN_TOKEN to an admin JWT}"
+AUTH="Authorization: Bearer $ADMIN_TOKEN"
+
+if [ "${1:-}" = "--status" ]; then
+  if [ -n "${2:-}" ]; then
+    curl -sf -H "$AUTH" "$BASE_URL/api/admin/shards/doctors/$2"
+  else
+    curl -sf -H "$AUTH" "$BASE_URL/api/admin/shards"
+  fi
+  echo
+  exit 0
+fi
+
+if [ $# -ne 2 ]; then
+  echo "Usage: $0 <doctorId> <targetShard> | --status [doctorId]" >&2
+  exit 2
+fi
+
+curl -sf --max-time 3600 -X POST -H "$AUTH" "$BASE_URL/api/admin/shards/doctors/$1/move?target=$2"
+echo
@@ -0,0 +1,259 @@
+package com.bharatemr.benchmark;
+
+import com.bharatemr.dto.AttachmentDto;
+import com.bharatemr.dto.MedicineDto;
+import com.bharatemr.dto.PaginatedResponse;
+import com.bharatemr.dto.PatientDto;
+import com.bharatemr.dto.TestDto;
+import com.bharatemr.dto.VisitDto;
+import com.bharatemr.model.Doctor;
+import com.bharatemr.model.Medicine;
+import com.bharatemr.model.Patient;
+import com.bharatemr.model.Prescription;
+import com.bharatemr.model.Test;
+import com.bharatemr.model.Visit;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deterministic payloads shaped like real API responses, shared by the benchmarks.
+ */
+public final class BenchmarkFixtures {
+
+    private static final String[] NAMES = {
+            "Aarav Sharma", "Priya Iyer", "Rohan Gupta", "Ananya Reddy", "Vikram Singh",
+            "Kavya Nair", "Arjun Mehta", "Sneha Patil", "Rahul Verma", "Meera Joshi"
+    };
+
+    private static final String[] COMPLAINTS = {
+            "Fever and body ache since 3 days", "Dry cough with mild breathlessness",
+            "Acidity and burning sensation after meals", "Joint pain in both knees",
+            "Seasonal allergic rhinitis", "Headache with blurred vision"
+    };
+
+    private static final String[] MEDICINES = {
+            "Paracetamol 650", "Azithromycin 500", "Pantoprazole 40", "Cetirizine 10",
+            "Amoxicillin 500", "Montelukast 10", "Vitamin D3 60K"
+    };
+
+    private static final LocalDateTime BASE_TIME = LocalDateTime.of(2024, 1, 15, 10, 30);
+
+    private BenchmarkFixtures() {
+    }
+
+    public static List<VisitDto> visits(int count, int medicinesPerVisit) {
+        List<VisitDto> visits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            visits.add(VisitDto.builder()
+                    .id((long) i + 1)
+                    .patientId("PT" + (100000 + i))
+                    .doctorId(7L)
+                    .patientName(NAMES[i % NAMES.length])
+                    .doctorName("Dr. Sunita Rao")
+                    .visitDate(BASE_TIME.minusDays(i))
+                    .chiefComplaint(COMPLAINTS[i % COMPLAINTS.length])
+                    .presentIllness("Symptoms started gradually, no history of travel.")
+                    .clinicalNotes("BP 120/80, Pulse 78, SpO2 98%. Chest clear.")
+                    .medicines(medicines(medicinesPerVisit))
+                    .tests(tests(2))
+                    .prescriptionPdfUrl("./prescriptions/prescription_" + (i + 1) + ".pdf")
+                    .createdAt(BASE_TIME.minusDays(i))
+                    .build());
+        }
+        return visits;
+    }
+
+    public static List<MedicineDto> medicines(int count) {
+        List<MedicineDto> medicines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            medicines.add(MedicineDto.builder()
+                    .id((long) i + 1)
+                    .medicineName(MEDICINES[i % MEDICINES.length])
+                    .dosage("1 tablet")
+                    .frequency(i % 2 == 0 ? "1-0-1" : "0-0-1")
+                    .duration("5 days")
+                    .instructions("After food")
+                    .build());
+        }
+        return medicines;
+    }
+
+    public static List<TestDto> tests(int count) {
+        List<TestDto> tests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tests.add(TestDto.builder()
+                    .id((long) i + 1)
+                    .testName(i % 2 == 0 ? "Complete Blood Count" : "HbA1c")
+                    .instructions("Fasting sample")
+                    .build());
+        }
+        return tests;
+    }
+
+    public static PaginatedResponse<PatientDto> patientPage(int size) {
+        List<PatientDto> patients = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            patients.add(PatientDto.builder()
+                    .id((long) i + 1)
+                    .patientId("PT" + (100000 + i))
+                    .fullName(NAMES[i % NAMES.length])
+                    .gender(i % 2 == 0 ? "MALE" : "FEMALE")
+                    .age(20 + i % 50)
+                    .dateOfBirth(LocalDate.of(1970 + i % 50, 1 + i % 12, 1 + i % 28))
+                    .mobileNumber("+9198765" + String.format("%05d", i))
+                    .email("patient" + i + "@example.com")
+                    .address("12, MG Road, Bengaluru, Karnataka - 560001")
+                    .onboardedByDoctorId(7L)
+                    .onboardedByDoctorName("Dr. Sunita Rao")
+                    .onboardedByDoctorId_str("DRSUNI1234")
+                    .isActive(true)
+                    .preferredTheme("modern")
+                    .createdAt(BASE_TIME.minusDays(i))
+                    .build());
+        }
+
+        Map<String, Object> filters = new HashMap<>();
+        filters.put("search", null);
+        filters.put("gender", null);
+        filters.put("doctorId", "DRSUNI1234");
+        filters.put("isActive", true);
+
+        return PaginatedResponse.<PatientDto>builder()
+                .data(patients)
+                .page(1)
+                .size(size)
+                .totalElements(5000)
+                .totalPages(5000 / size)
+                .sortBy("createdAt")
+                .sortDir("desc")
+                .filters(filters)
+                .build();
+    }
+
+    public static Map<String, Object> adminDashboard() {
+        Map<String, Object> dashboard = new HashMap<>();
+        dashboard.put("totalDoctors", 100L);
+        dashboard.put("activeDoctors", 96L);
+        dashboard.put("totalPatients", 50000L);
+        dashboard.put("activePatients", 48210L);
+        dashboard.put("totalVisits", 1000000L);
+        dashboard.put("todaysVisits", 1830L);
+        dashboard.put("todaysFollowUps", 412L);
+        dashboard.put("newDoctorsLast7Days", 3L);
+        dashboard.put("newPatientsLast7Days", 640L);
+        return dashboard;
+    }
+
+    public static Map<String, Object> patientDashboard() {
+        Map<String, Object> dashboard = new HashMap<>();
+        dashboard.put("patientInfo", patientPage(1).getData().get(0));
+        dashboard.put("totalVisits", 42);
+        dashboard.put("lastVisitDate", BASE_TIME);
+        dashboard.put("onboardedByDoctor", "Dr. Sunita Rao");
+        List<Map<String, Object>> recentVisits = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Map<String, Object> visitInfo = new HashMap<>();
+            visitInfo.put("id", (long) i + 1);
+            visitInfo.put("date", BASE_TIME.minusDays(i * 7L));
+            visitInfo.put("doctorName", "Dr. Sunita Rao");
+            visitInfo.put("chiefComplaint", COMPLAINTS[i % COMPLAINTS.length]);
+            recentVisits.add(visitInfo);
+        }
+        dashboard.put("recentVisits", recentVisits);
+        return dashboard;
+    }
+
+    public static Doctor doctor() {
+        return Doctor.builder()
+                .id(7L)
+                .doctorId("DRSUNI1234")
+                .fullName("Dr. Sunita Rao")
+                .mobileNumber("+919812345678")
+                .specialization("General Physician")
+                .qualification("MBBS, MD")
+                .yearsOfExperience(14)
+                .clinicName("Rao Family Clinic")
+                .clinicAddress("12, MG Road, Bengaluru, Karnataka - 560001")
+                .medicalRegistrationNumber("KMC-45821")
+                .createdAt(BASE_TIME.minusYears(2))
+                .build();
+    }
+
+    public static Visit visitEntity() {
+        Doctor doctor = doctor();
+        Patient patient = Patient.builder()
+                .id(11L)
+                .patientId("PT100000")
+                .fullName(NAMES[0])
+                .gender("MALE")
+                .age(38)
+                .dateOfBirth(LocalDate.of(1986, 4, 12))
+                .mobileNumber("+919876500000")
+                .onboardedByDoctor(doctor)
+                .createdAt(BASE_TIME.minusYears(1))
+                .build();
+        return Visit.builder()
+                .id(1L)
+                .patient(patient)
+                .doctor(doctor)
+                .visitDate(BASE_TIME)
+                .chiefComplaint(COMPLAINTS[0])
+                .presentIllness("Symptoms started gradually, no history of travel.")
+                .clinicalNotes("BP 120/80, Pulse 78, SpO2 98%. Chest clear.")
+                .createdAt(BASE_TIME)
+                .build();
+    }
+
+    /** A prescription with {@code lines} medicines and two tests. */
+    public static Prescription prescription(Visit visit, int lines) {
+        Prescription prescription = Prescription.builder().id(1L).visit(visit).createdAt(BASE_TIME).build();
+        for (int i = 0; i < lines; i++) {
+            prescription.addMedicine(Medicine.builder()
+                    .id((long) i + 1)
+                    .medicineName(MEDICINES[i % MEDICINES.length])
+                    .dosage("1 tablet")
+                    .frequency(i % 2 == 0 ? "1-0-1" : "0-0-1")
+                    .duration("5 days")
+                    .instructions("After food")
+                    .createdAt(BASE_TIME)
+                    .build());
+        }
+        for (int i = 0; i < 2; i++) {
+            prescription.addTest(Test.builder()
+                    .id((long) i + 1)
+                    .testName(i % 2 == 0 ? "Complete Blood Count" : "HbA1c")
+                    .instructions("Fasting sample")
+                    .createdAt(BASE_TIME)
+                    .build());
+        }
+        return prescription;
+    }
+
+    /** Attachments of the visit as VisitAttachmentService hands them over, keyed by visit id. */
+    public static Map<Long, List<AttachmentDto>> attachments(Visit visit, int count) {
+        List<AttachmentDto> attachments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = i + 1;
+            String base = "/api/visits/" + visit.getId() + "/attachments/" + id;
+            attachments.add(AttachmentDto.builder()
+                    .id(id)
+                    .visitId(visit.getId())
+                    .fileName("report-" + id + ".pdf")
+                    .contentType("application/pdf")
+                    .size(850_000L)
+                    .sha256(String.format("%064x", id))
+                    .createdAt(BASE_TIME)
+                    .thumbnailUrl(base + "/thumbnail")
+                    .previewUrl(base + "/preview")
+                    .build());
+        }
+        Map<Long, List<AttachmentDto>> byVisit = new HashMap<>();
+        byVisit.put(visit.getId(), attachments);
+        return byVisit;
+    }
+}
@@ -0,0 +1,82 @@
+package com.bharatemr.benchmark;
+
+import com.bharatemr.dto.MedicineSuggestionDto;
+import com.bharatemr.service.MedicineAutocompleteService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MedicineAutocompleteService#suggest} over a synthetic history: {@code names} distinct
+ * medicines spread over 500 doctors with a skewed (a few very common) usage. Short prefixes match
+ * thousands of names and are the worst case; the index is filled through {@code record}, no database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class MedicineAutocompleteBenchmark {
+
+    private static final String[] SYLLABLES = {
+            "pa", "ra", "ce", "ta", "mol", "a", "mox", "ci", "cil", "lin", "azi", "thro", "my", "cin", "met",
+            "for", "min", "pan", "to", "pra", "zole", "cet", "iri", "zine", "dol", "o", "flox", "pro", "le", "vo"
+    };
+
+    private static final int[] STRENGTHS = { 5, 10, 20, 40, 50, 100, 250, 500, 650 };
+
+    private static final int DOCTORS = 500;
+
+    @Param({ "20000", "100000" })
+    private int names;
+
+    @Param({ "pa", "para", "ciflox 5" })
+    private String prefix;
+
+    // DR7 has a history, so its own matches usually fill the list; DRNEW has none and needs the full scan
+    @Param({ "DR7", "DRNEW" })
+    private String doctor;
+
+    private MedicineAutocompleteService service;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = new MedicineAutocompleteService();
+        ReflectionTestUtils.setField(service, "minPrefix", 2);
+        ReflectionTestUtils.setField(service, "maxResults", 10);
+
+        Random random = new Random(42);
+        for (int i = 0; i < names; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int s = 2 + random.nextInt(3); s > 0; s--) {
+                name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            name.append(' ').append(STRENGTHS[random.nextInt(STRENGTHS.length)]);
+            // Most names are rare; about one in fifty is prescribed by many doctors
+            int prescribers = random.nextInt(50) == 0 ? 1 + random.nextInt(DOCTORS) : 1 + random.nextInt(3);
+            for (int d = 0; d < prescribers; d++) {
+                service.record("DR" + random.nextInt(DOCTORS), List.of(name.toString()));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<MedicineSuggestionDto> suggest() {
+        return service.suggest(doctor, prefix, 10);
+    }
+}
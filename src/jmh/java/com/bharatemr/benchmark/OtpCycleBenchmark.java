@@ -0,0 +1,100 @@
+package com.bharatemr.benchmark;
+
+import com.bharatemr.enums.OtpPurpose;
+import com.bharatemr.model.OtpVerification;
+import com.bharatemr.repository.OtpRepository;
+import com.bharatemr.service.NotificationService;
+import com.bharatemr.service.OtpService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@link OtpService} generate-and-send followed by verify. The repository is an in-memory map
+ * and the SMS sender a no-op mock, so this measures the service's own work, not the database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms512m", "-Xmx512m" })
+public class OtpCycleBenchmark {
+
+    private static final String MOBILE = "+919812345678";
+
+    private OtpService otpService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        otpService = new OtpService();
+        ReflectionTestUtils.setField(otpService, "otpRepository", inMemoryRepository());
+        ReflectionTestUtils.setField(otpService, "notificationService", Mockito.mock(NotificationService.class));
+        ReflectionTestUtils.setField(otpService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(otpService, "otpExpiration", 300000L);
+        ReflectionTestUtils.setField(otpService, "otpLength", 6);
+    }
+
+    @Benchmark
+    public boolean generateAndVerify() {
+        String otp = otpService.generateAndSendOtp(MOBILE, OtpPurpose.LOGIN);
+        return otpService.verifyOtp(MOBILE, otp, OtpPurpose.LOGIN);
+    }
+
+    private static OtpRepository inMemoryRepository() {
+        Map<String, OtpVerification> store = new HashMap<>();
+        return (OtpRepository) Proxy.newProxyInstance(OtpRepository.class.getClassLoader(),
+                new Class<?>[] { OtpRepository.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "save": {
+                            // Verified OTPs are dropped so the map stays small over millions of cycles
+                            OtpVerification otp = (OtpVerification) args[0];
+                            String key = key(otp.getMobileNumber(), otp.getOtp(), otp.getPurpose());
+                            if (otp.getIsVerified()) {
+                                store.remove(key);
+                            } else {
+                                store.put(key, otp);
+                            }
+                            return otp;
+                        }
+                        case "findValidOtp": {
+                            OtpVerification otp = store.get(key((String) args[0], (String) args[1],
+                                    (OtpPurpose) args[2]));
+                            LocalDateTime now = (LocalDateTime) args[3];
+                            return Optional.ofNullable(otp)
+                                    .filter(o -> !o.getIsVerified() && o.getExpiryTime().isAfter(now));
+                        }
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "InMemoryOtpRepository";
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static String key(String mobileNumber, String otp, OtpPurpose purpose) {
+        return mobileNumber + '|' + purpose + '|' + otp;
+    }
+}
@@ -0,0 +1,91 @@
+package com.bharatemr.benchmark;
+
+import com.bharatemr.cache.CacheInvalidationRegistry;
+import com.bharatemr.model.Prescription;
+import com.bharatemr.model.Visit;
+import com.bharatemr.service.LetterheadTemplateCache;
+import com.bharatemr.service.PdfGeneratorService;
+import com.bharatemr.storage.LocalBlobStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PdfGeneratorService#generatePrescriptionPdf} for short, typical and long prescriptions,
+ * including the write to the prescription directory (a temp dir, cleared after each iteration).
+ * {@code letterhead} compares laying out the doctor's header and footer on every render with
+ * stamping the {@link LetterheadTemplateCache} templates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = { "-Xms512m", "-Xmx512m" })
+public class PrescriptionPdfBenchmark {
+
+    @Param({ "5", "20", "50" })
+    public int lines;
+
+    @Param({ "inline", "cached" })
+    public String letterhead;
+
+    private PdfGeneratorService pdfGeneratorService;
+    private Visit visit;
+    private Prescription prescription;
+    private Path outputDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        outputDir = Files.createTempDirectory("jmh-prescriptions");
+        pdfGeneratorService = new PdfGeneratorService();
+        ReflectionTestUtils.setField(pdfGeneratorService, "blobStore", new LocalBlobStore(outputDir));
+        ReflectionTestUtils.setField(pdfGeneratorService, "meterRegistry", new SimpleMeterRegistry());
+
+        LetterheadTemplateCache letterheadTemplateCache = new LetterheadTemplateCache();
+        ReflectionTestUtils.setField(letterheadTemplateCache, "cacheInvalidationRegistry", new CacheInvalidationRegistry());
+        ReflectionTestUtils.setField(letterheadTemplateCache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(letterheadTemplateCache, "enabled", "cached".equals(letterhead));
+        ReflectionTestUtils.setField(letterheadTemplateCache, "maxSize", 16);
+        letterheadTemplateCache.init();
+        ReflectionTestUtils.setField(pdfGeneratorService, "letterheadTemplateCache", letterheadTemplateCache);
+
+        visit = BenchmarkFixtures.visitEntity();
+        prescription = BenchmarkFixtures.prescription(visit, lines);
+    }
+
+    @Benchmark
+    public String generatePrescriptionPdf() throws IOException {
+        return pdfGeneratorService.generatePrescriptionPdf(visit, prescription,
+                "prescriptions/prescription_" + visit.getId() + ".pdf");
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearOutput() throws IOException {
+        FileSystemUtils.deleteRecursively(outputDir);
+        Files.createDirectories(outputDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(outputDir);
+    }
+}
@@ -0,0 +1,89 @@
+package com.bharatemr.benchmark;
+
+import com.bharatemr.dto.ApiResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialization cost and payload size of the mobile-facing responses in JSON, CBOR and Smile.
+ * Sizes (raw and gzipped, as sent with server.compression) are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseEncodingBenchmark {
+
+    @Param({ "json", "cbor", "smile" })
+    public String format;
+
+    @Param({ "visits", "patientPage", "adminDashboard", "patientDashboard" })
+    public String payload;
+
+    private ObjectMapper mapper;
+    private ApiResponse<?> response;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mapper = mapperFor(format);
+        response = ApiResponse.success(payloads().get(payload));
+
+        byte[] encoded = mapper.writeValueAsBytes(response);
+        System.out.printf("%n[size] %s/%s: %d bytes raw, %d bytes gzip%n",
+                payload, format, encoded.length, gzip(encoded).length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return mapper.writeValueAsBytes(response);
+    }
+
+    static ObjectMapper mapperFor(String format) {
+        switch (format) {
+            case "cbor":
+                return Jackson2ObjectMapperBuilder.cbor().build();
+            case "smile":
+                return Jackson2ObjectMapperBuilder.smile().build();
+            default:
+                return Jackson2ObjectMapperBuilder.json().build();
+        }
+    }
+
+    private static Map<String, Object> payloads() {
+        Map<String, Object> payloads = new HashMap<>();
+        payloads.put("visits", BenchmarkFixtures.visits(50, 4));
+        payloads.put("patientPage", BenchmarkFixtures.patientPage(20));
+        payloads.put("adminDashboard", BenchmarkFixtures.adminDashboard());
+        payloads.put("patientDashboard", BenchmarkFixtures.patientDashboard());
+        return payloads;
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,61 @@
+package com.bharatemr.benchmark;
+
+import com.bharatemr.config.AppConfig;
+import com.bharatemr.dto.AttachmentDto;
+import com.bharatemr.dto.VisitDto;
+import com.bharatemr.model.Prescription;
+import com.bharatemr.model.Visit;
+import com.bharatemr.service.VisitMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link VisitMapper#toDto}, the per-visit mapping VisitService runs for every visit it returns
+ * (visit, each medicine and test, attachment links), with the application's ModelMapper
+ * configuration. Repository lookups are not part of this measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms512m", "-Xmx512m" })
+public class VisitMappingBenchmark {
+
+    @Param({ "2", "5", "20" })
+    public int lines;
+
+    private VisitMapper visitMapper;
+    private Visit visit;
+    private Prescription prescription;
+    private Map<Long, List<AttachmentDto>> attachments;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        visitMapper = new VisitMapper();
+        ReflectionTestUtils.setField(visitMapper, "modelMapper", new AppConfig().modelMapper());
+        visit = BenchmarkFixtures.visitEntity();
+        prescription = BenchmarkFixtures.prescription(visit, lines);
+        attachments = BenchmarkFixtures.attachments(visit, 2);
+    }
+
+    @Benchmark
+    public VisitDto convertToDto() {
+        return visitMapper.toDto(visit, prescription, attachments);
+    }
+}
@@ -2,6 +2,7 @@ package com.bharatemr;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
@@ -12,7 +13,10 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 @EnableScheduling
 public class BharatEmrApplication {
     public static void main(String[] args) {
-        SpringApplication.run(BharatEmrApplication.class, args);
+        SpringApplication application = new SpringApplication(BharatEmrApplication.class);
+        // Records startup phases so StartupTimingReporter can log where boot time goes
+        application.setApplicationStartup(new BufferingApplicationStartup(4096));
+        application.run(args);
         System.out.println("\n===========================================");
         System.out.println("Bharat EMR Backend Started Successfully!");
         System.out.println("API Documentation: http://localhost:8080/swagger-ui.html");
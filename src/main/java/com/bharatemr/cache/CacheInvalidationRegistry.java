@@ -0,0 +1,51 @@
+package com.bharatemr.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * In-process caches subscribe here to the entity types they hold. Changes reach them from this node's
+ * own commits through {@link InvalidationBus} and from other nodes through {@link PgNotifyInvalidationListener}.
+ */
+@Component
+@Slf4j
+public class CacheInvalidationRegistry {
+
+    private final Map<String, List<InvalidationListener>> listeners = new ConcurrentHashMap<>();
+
+    public void subscribe(String type, InvalidationListener listener) {
+        listeners.computeIfAbsent(type, key -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    public void dispatch(Collection<EntityChange> changes) {
+        changes.stream()
+                .collect(Collectors.groupingBy(EntityChange::getType))
+                .forEach((type, ofType) -> forEach(type, listener -> listener.invalidate(ofType)));
+    }
+
+    public void invalidateAll(String type) {
+        forEach(type, InvalidationListener::invalidateAll);
+    }
+
+    public void invalidateEverything() {
+        listeners.keySet().forEach(this::invalidateAll);
+    }
+
+    private void forEach(String type, Consumer<InvalidationListener> action) {
+        for (InvalidationListener listener : listeners.getOrDefault(type, List.of())) {
+            try {
+                action.accept(listener);
+            } catch (Exception e) {
+                log.error("Cache invalidation for {} failed: {}", type, e.getMessage(), e);
+            }
+        }
+    }
+}
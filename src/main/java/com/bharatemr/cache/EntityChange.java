@@ -0,0 +1,32 @@
+package com.bharatemr.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One changed entity as carried by the invalidation bus. The version only ever grows for a given
+ * entity (its updated_at in millis, else the commit time), so a cache can ignore stale events.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EntityChange {
+
+    public static final String DOCTOR = "doctor";
+    public static final String PATIENT = "patient";
+    // Keyed by the doctor's internal id; raised by visit and follow-up writes
+    public static final String DOCTOR_STATS = "doctor_stats";
+    // Keyed by the doctor's code (DR...), see ShardDirectory
+    public static final String SHARD_DIRECTORY = "shard_directory";
+
+    private String type;
+
+    private String id;
+
+    private long version;
+
+    public String key() {
+        return type + ':' + id;
+    }
+}
@@ -0,0 +1,46 @@
+package com.bharatemr.cache;
+
+import com.bharatemr.model.Doctor;
+import com.bharatemr.model.FollowUp;
+import com.bharatemr.model.Patient;
+import com.bharatemr.model.Visit;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Entity listener that turns doctor, patient, visit and follow-up writes into {@link InvalidationBus}
+ * events. Visits and follow-ups change their doctor's dashboard numbers rather than a cached entity.
+ */
+public class EntityChangeListener {
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void changed(Object entity) {
+        if (entity instanceof Doctor) {
+            Doctor doctor = (Doctor) entity;
+            invalidationBus.publish(EntityChange.DOCTOR, doctor.getId(), version(doctor.getUpdatedAt()));
+        } else if (entity instanceof Patient) {
+            Patient patient = (Patient) entity;
+            invalidationBus.publish(EntityChange.PATIENT, patient.getId(), version(patient.getUpdatedAt()));
+        } else if (entity instanceof Visit) {
+            Visit visit = (Visit) entity;
+            invalidationBus.publish(EntityChange.DOCTOR_STATS, visit.getDoctor().getId(), version(visit.getUpdatedAt()));
+        } else if (entity instanceof FollowUp) {
+            FollowUp followUp = (FollowUp) entity;
+            invalidationBus.publish(EntityChange.DOCTOR_STATS, followUp.getDoctor().getId(), version(followUp.getUpdatedAt()));
+        }
+    }
+
+    private static long version(LocalDateTime updatedAt) {
+        return updatedAt != null ? updatedAt.toInstant(ZoneOffset.UTC).toEpochMilli() : System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,147 @@
+package com.bharatemr.cache;
+
+import com.bharatemr.sharding.ShardDataSources;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Publishes entity changes once their transaction commits: straight to this node's caches, and with
+ * app.cache.invalidation.notify-enabled to every other node through pg_notify on the primary.
+ * Changes to the same entity within one transaction collapse into one event.
+ */
+@Component
+@Slf4j
+public class InvalidationBus {
+
+    // NOTIFY payloads must stay under 8000 bytes
+    private static final int MAX_PAYLOAD_BYTES = 7500;
+
+    static final String NODE_ID = UUID.randomUUID().toString();
+
+    @Autowired
+    private CacheInvalidationRegistry cacheInvalidationRegistry;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ObjectProvider<ShardDataSources> shardDataSources;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.cache.invalidation.notify-enabled:false}")
+    private boolean notifyEnabled;
+
+    @Value("${app.cache.invalidation.channel:cache_invalidation}")
+    private String channel;
+
+    public void publish(String type, Object id, long version) {
+        EntityChange change = new EntityChange(type, String.valueOf(id), version);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            send(List.of(change));
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, EntityChange> pending = (Map<String, EntityChange>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Map<String, EntityChange> changes = new LinkedHashMap<>();
+            TransactionSynchronizationManager.bindResource(this, changes);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(InvalidationBus.this);
+                    if (status == STATUS_COMMITTED) {
+                        send(changes.values());
+                    }
+                }
+            });
+            pending = changes;
+        }
+        pending.merge(change.key(), change, (a, b) -> a.getVersion() >= b.getVersion() ? a : b);
+    }
+
+    private void send(Collection<EntityChange> changes) {
+        cacheInvalidationRegistry.dispatch(changes);
+        meterRegistry.counter("cache.invalidation.published").increment(changes.size());
+        if (!notifyEnabled) {
+            return;
+        }
+
+        // A connection of its own: after commit a JdbcTemplate would still join the finished transaction
+        try (Connection connection = notifyDataSource().getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            for (String payload : payloads(changes)) {
+                statement.setString(1, channel);
+                statement.setString(2, payload);
+                statement.execute();
+            }
+        } catch (Exception e) {
+            // Other nodes keep stale entries until their TTL or next reconnect flush
+            log.error("Failed to publish {} cache invalidations: {}", changes.size(), e.getMessage());
+        }
+    }
+
+    private List<String> payloads(Collection<EntityChange> changes) throws JsonProcessingException {
+        List<String> payloads = new ArrayList<>();
+        List<EntityChange> batch = new ArrayList<>();
+        for (EntityChange change : changes) {
+            batch.add(change);
+            if (batch.size() > 1 && json(batch).getBytes(StandardCharsets.UTF_8).length > MAX_PAYLOAD_BYTES) {
+                batch.remove(batch.size() - 1);
+                payloads.add(json(batch));
+                batch = new ArrayList<>(List.of(change));
+            }
+        }
+        if (!batch.isEmpty()) {
+            payloads.add(json(batch));
+        }
+        return payloads;
+    }
+
+    private String json(List<EntityChange> changes) throws JsonProcessingException {
+        return objectMapper.writeValueAsString(new Notification(NODE_ID, changes));
+    }
+
+    // Listeners are on the primary, which with sharding is not necessarily where the change was written
+    private DataSource notifyDataSource() {
+        ShardDataSources shards = shardDataSources.getIfAvailable();
+        return shards == null ? dataSource : shards.getDataSources().get(shards.getPrimary());
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Notification {
+
+        private String node;
+
+        private List<EntityChange> changes;
+    }
+}
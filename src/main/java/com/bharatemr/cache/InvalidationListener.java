@@ -0,0 +1,15 @@
+package com.bharatemr.cache;
+
+import java.util.Collection;
+
+/**
+ * A cache subscribed through {@link CacheInvalidationRegistry} to one entity type. Called from the
+ * listener thread, with bursts already coalesced; implementations must be thread-safe and quick.
+ */
+public interface InvalidationListener {
+
+    void invalidate(Collection<EntityChange> changes);
+
+    // After a missed notification (reconnect) or a burst too big to apply entry by entry
+    void invalidateAll();
+}
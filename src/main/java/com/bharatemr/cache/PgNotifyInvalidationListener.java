@@ -0,0 +1,199 @@
+package com.bharatemr.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * LISTENs for invalidations published by other nodes on a dedicated connection to the primary (outside
+ * the Hikari pool, since it is held for the life of the node). Events arriving within the coalesce
+ * window are merged per entity before caches see them, and a type with more distinct entities than
+ * flush-all-threshold is flushed whole. Notifications sent while the connection was down are lost, so
+ * every cache is flushed after a reconnect.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "app.cache.invalidation.notify-enabled", havingValue = "true")
+public class PgNotifyInvalidationListener {
+
+    private static final Pattern CHANNEL = Pattern.compile("[a-z_][a-z0-9_]*");
+
+    private static final long KEEPALIVE_MILLIS = 30_000;
+
+    @Autowired
+    private CacheInvalidationRegistry cacheInvalidationRegistry;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.cache.invalidation.channel:cache_invalidation}")
+    private String channel;
+
+    @Value("${app.cache.invalidation.coalesce-window:100ms}")
+    private Duration coalesceWindow;
+
+    @Value("${app.cache.invalidation.flush-all-threshold:500}")
+    private int flushAllThreshold;
+
+    private final Map<String, EntityChange> pending = new LinkedHashMap<>();
+
+    private volatile boolean running;
+
+    private volatile Connection connection;
+
+    private Thread thread;
+
+    @PostConstruct
+    public void start() {
+        if (!CHANNEL.matcher(channel).matches()) {
+            throw new IllegalStateException("Invalid app.cache.invalidation.channel: " + channel);
+        }
+        running = true;
+        thread = new Thread(this::run, "cache-invalidation-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        closeQuietly(connection);
+        thread.interrupt();
+    }
+
+    private void run() {
+        boolean connectedBefore = false;
+        long backoff = 1000;
+        while (running) {
+            try (Connection listening = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                connection = listening;
+                try (Statement statement = listening.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                if (connectedBefore) {
+                    log.info("Cache invalidation listener reconnected, flushing all caches");
+                    meterRegistry.counter("cache.invalidation.reconnects").increment();
+                    pending.clear();
+                    cacheInvalidationRegistry.invalidateEverything();
+                }
+                connectedBefore = true;
+                backoff = 1000;
+                listen(listening);
+            } catch (SQLException e) {
+                if (running) {
+                    log.warn("Cache invalidation listener lost its connection: {}", e.getMessage());
+                }
+            }
+
+            if (running) {
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(backoff * 2, 30_000);
+            }
+        }
+    }
+
+    private void listen(Connection listening) throws SQLException {
+        PGConnection pgConnection = listening.unwrap(PGConnection.class);
+        long windowEnds = 0;
+        long lastKeepalive = System.currentTimeMillis();
+        while (running) {
+            long now = System.currentTimeMillis();
+            int wait = pending.isEmpty() ? 1000 : (int) Math.max(1, windowEnds - now);
+            PGNotification[] notifications = pgConnection.getNotifications(wait);
+            if (notifications != null) {
+                for (PGNotification notification : notifications) {
+                    if (pending.isEmpty()) {
+                        windowEnds = System.currentTimeMillis() + coalesceWindow.toMillis();
+                    }
+                    receive(notification.getParameter());
+                }
+            }
+
+            now = System.currentTimeMillis();
+            if (!pending.isEmpty() && now >= windowEnds) {
+                flush();
+            }
+            // getNotifications does not notice a silently dropped connection
+            if (now - lastKeepalive >= KEEPALIVE_MILLIS) {
+                try (Statement statement = listening.createStatement()) {
+                    statement.execute("SELECT 1");
+                }
+                lastKeepalive = now;
+            }
+        }
+    }
+
+    private void receive(String payload) {
+        try {
+            InvalidationBus.Notification notification = objectMapper.readValue(payload, InvalidationBus.Notification.class);
+            // This node's own changes were applied locally at commit
+            if (InvalidationBus.NODE_ID.equals(notification.getNode())) {
+                return;
+            }
+            meterRegistry.counter("cache.invalidation.received").increment(notification.getChanges().size());
+            for (EntityChange change : notification.getChanges()) {
+                pending.merge(change.key(), change, (a, b) -> a.getVersion() >= b.getVersion() ? a : b);
+            }
+        } catch (Exception e) {
+            log.warn("Ignoring malformed cache invalidation: {}", e.getMessage());
+        }
+    }
+
+    private void flush() {
+        Map<String, List<EntityChange>> byType = new LinkedHashMap<>();
+        pending.values().forEach(change -> byType.computeIfAbsent(change.getType(), type -> new ArrayList<>()).add(change));
+        pending.clear();
+
+        byType.forEach((type, changes) -> {
+            if (changes.size() > flushAllThreshold) {
+                meterRegistry.counter("cache.invalidation.flushes", "type", type).increment();
+                cacheInvalidationRegistry.invalidateAll(type);
+            } else {
+                cacheInvalidationRegistry.dispatch(changes);
+            }
+        });
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // shutting down
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.bharatemr.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent identical reads share one computation: the first caller for a group and key runs
+ * the work in a read-only transaction, later callers wait for its result instead of opening their own
+ * transaction. With app.single-flight.groups.&lt;group&gt;.micro-ttl the result is also reused for that
+ * long, unless an {@link InvalidationBus} change registered through {@link #evictOn} drops it first.
+ * Results are shared between callers, so they must not be modified. Work that scatter-gathers over
+ * shards goes through {@link #executeAcrossShards}, which opens no transaction of its own.
+ */
+@Component
+public class SingleFlight {
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CacheInvalidationRegistry cacheInvalidationRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${app.single-flight.enabled:true}")
+    private boolean enabled;
+
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+
+    private final Map<String, GroupStats> stats = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> microTtls = new ConcurrentHashMap<>();
+
+    public <T> T execute(String group, Object key, Supplier<T> work) {
+        return execute(group, key, work, this::readOnly);
+    }
+
+    // ShardTemplate gives each shard its own transaction and refuses to run inside another one
+    public <T> T executeAcrossShards(String group, Object key, Supplier<T> work) {
+        return execute(group, key, work, Supplier::get);
+    }
+
+    private <T> T execute(String group, Object key, Supplier<T> work, Function<Supplier<T>, T> runner) {
+        if (!enabled) {
+            return runner.apply(work);
+        }
+
+        GroupStats groupStats = stats.computeIfAbsent(group, this::register);
+        String flightKey = group + ':' + key;
+        while (true) {
+            Flight existing = flights.get(flightKey);
+            if (existing != null) {
+                if (!existing.future.isDone()) {
+                    groupStats.joined.incrementAndGet();
+                    return existing.await();
+                }
+                if (System.currentTimeMillis() < existing.expiresAt) {
+                    groupStats.reused.incrementAndGet();
+                    return existing.await();
+                }
+                flights.remove(flightKey, existing);
+            }
+
+            Flight flight = new Flight();
+            if (flights.putIfAbsent(flightKey, flight) != null) {
+                continue;
+            }
+            groupStats.executed.incrementAndGet();
+            try {
+                T result = runner.apply(work);
+                flight.expiresAt = System.currentTimeMillis() + microTtl(group);
+                flight.future.complete(result);
+                return result;
+            } catch (RuntimeException | Error e) {
+                flight.future.completeExceptionally(e);
+                throw e;
+            } finally {
+                if (microTtl(group) <= 0 || flight.future.isCompletedExceptionally()) {
+                    flights.remove(flightKey, flight);
+                }
+            }
+        }
+    }
+
+    // Drops the group's in-flight and reusable results whenever one of these entity types changes
+    public void evictOn(String group, String... entityTypes) {
+        InvalidationListener listener = new InvalidationListener() {
+            @Override
+            public void invalidate(Collection<EntityChange> changes) {
+                invalidateAll();
+            }
+
+            @Override
+            public void invalidateAll() {
+                flights.keySet().removeIf(flightKey -> flightKey.startsWith(group + ':'));
+            }
+        };
+        for (String entityType : entityTypes) {
+            cacheInvalidationRegistry.subscribe(entityType, listener);
+        }
+    }
+
+    private <T> T readOnly(Supplier<T> work) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        return transaction.execute(status -> work.get());
+    }
+
+    private long microTtl(String group) {
+        return microTtls.computeIfAbsent(group, name -> environment.getProperty(
+                "app.single-flight.groups." + name + ".micro-ttl", Duration.class, Duration.ZERO).toMillis());
+    }
+
+    private GroupStats register(String group) {
+        GroupStats groupStats = new GroupStats();
+        FunctionCounter.builder("single.flight.calls", groupStats.executed, AtomicLong::get)
+                .description("Calls that ran the computation").tags("group", group, "outcome", "executed")
+                .register(meterRegistry);
+        FunctionCounter.builder("single.flight.calls", groupStats.joined, AtomicLong::get)
+                .description("Calls that waited for an in-flight computation").tags("group", group, "outcome", "joined")
+                .register(meterRegistry);
+        FunctionCounter.builder("single.flight.calls", groupStats.reused, AtomicLong::get)
+                .description("Calls served from the micro-TTL").tags("group", group, "outcome", "reused")
+                .register(meterRegistry);
+        Gauge.builder("single.flight.coalescing.ratio", groupStats, GroupStats::ratio)
+                .description("Share of calls that did not run the computation themselves").tag("group", group)
+                .register(meterRegistry);
+        return groupStats;
+    }
+
+    private static class Flight {
+
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        volatile long expiresAt;
+
+        @SuppressWarnings("unchecked")
+        <T> T await() {
+            try {
+                return (T) future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+
+    private static class GroupStats {
+
+        final AtomicLong executed = new AtomicLong();
+
+        final AtomicLong joined = new AtomicLong();
+
+        final AtomicLong reused = new AtomicLong();
+
+        double ratio() {
+            long coalesced = joined.get() + reused.get();
+            long total = coalesced + executed.get();
+            return total == 0 ? 0 : (double) coalesced / total;
+        }
+    }
+}
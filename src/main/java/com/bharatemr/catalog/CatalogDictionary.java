@@ -0,0 +1,151 @@
+package com.bharatemr.catalog;
+
+import com.bharatemr.enums.CatalogKind;
+import com.bharatemr.sharding.ReferenceReplicator;
+import com.bharatemr.sharding.ShardDataSources;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Two-way map between catalog terms and their ids, held in memory. The whole catalog is read once, on
+ * first use: it holds distinct names, not prescription lines, and its rows never change, so entries
+ * never go stale. A term seen for the first time is added on the primary and committed on a connection
+ * of its own, so its id survives a rollback of the caller; with sharding it is copied to every shard
+ * before the caller's insert needs it.
+ */
+@Component
+@Slf4j
+public class CatalogDictionary {
+
+    private static final String FIND_SQL = "SELECT id FROM catalog_terms WHERE kind = ? AND term = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectProvider<ShardDataSources> shardDataSources;
+
+    @Autowired
+    private ObjectProvider<ReferenceReplicator> referenceReplicator;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<Integer, String> terms = new ConcurrentHashMap<>();
+
+    private final Map<CatalogKind, Map<String, Integer>> ids = new EnumMap<>(CatalogKind.class);
+
+    private volatile boolean loaded;
+
+    @PostConstruct
+    void init() {
+        for (CatalogKind kind : CatalogKind.values()) {
+            ids.put(kind, new ConcurrentHashMap<>());
+        }
+        Gauge.builder("catalog.terms", terms, Map::size).register(meterRegistry);
+    }
+
+    // So the first visit list after startup does not pay for the load
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        ensureLoaded();
+    }
+
+    public Integer idOf(CatalogKind kind, String term) {
+        if (term == null) {
+            return null;
+        }
+        ensureLoaded();
+        Integer id = ids.get(kind).get(term);
+        return id != null ? id : add(kind, term);
+    }
+
+    public String termOf(Integer id) {
+        if (id == null) {
+            return null;
+        }
+        ensureLoaded();
+        String term = terms.get(id);
+        if (term == null) {
+            // Added through another node since this one loaded the catalog
+            term = primary().query("SELECT kind, term FROM catalog_terms WHERE id = ?",
+                    rs -> rs.next() ? remember(id, CatalogKind.valueOf(rs.getString(1)), rs.getString(2)) : null, id);
+            if (term == null) {
+                throw new IllegalStateException("Unknown catalog term " + id);
+            }
+        }
+        return term;
+    }
+
+    private Integer add(CatalogKind kind, String term) {
+        ShardDataSources shards = shardDataSources.getIfAvailable();
+        Integer id;
+        if (shards != null) {
+            id = insert(shards.jdbc(shards.getPrimary()), kind, term);
+            referenceReplicator.getObject().replicate("catalog_terms", id.longValue(), shards.getPrimary());
+        } else {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            id = transaction.execute(status -> insert(jdbcTemplate, kind, term));
+        }
+        remember(id, kind, term);
+        meterRegistry.counter("catalog.terms.added", "kind", kind.name()).increment();
+        return id;
+    }
+
+    // Another node may add the same term at the same moment; both end up with the one row
+    private static Integer insert(JdbcTemplate jdbc, CatalogKind kind, String term) {
+        jdbc.update("INSERT INTO catalog_terms (kind, term, created_at) VALUES (?, ?, ?) ON CONFLICT DO NOTHING",
+                kind.name(), term, LocalDateTime.now());
+        return jdbc.queryForObject(FIND_SQL, Integer.class, kind.name(), term);
+    }
+
+    private String remember(Integer id, CatalogKind kind, String term) {
+        terms.put(id, term);
+        ids.get(kind).put(term, id);
+        return term;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (!loaded) {
+                long started = System.nanoTime();
+                primary().query("SELECT id, kind, term FROM catalog_terms", (RowCallbackHandler) rs ->
+                        remember(rs.getInt(1), CatalogKind.valueOf(rs.getString(2)), rs.getString(3)));
+                loaded = true;
+                log.info("Catalog: {} terms loaded in {} ms", terms.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            }
+        }
+    }
+
+    // Every shard holds the same catalog; the primary is where terms are added, so it is never behind
+    private JdbcTemplate primary() {
+        ShardDataSources shards = shardDataSources.getIfAvailable();
+        return shards != null ? shards.jdbc(shards.getPrimary()) : jdbcTemplate;
+    }
+}
@@ -0,0 +1,64 @@
+package com.bharatemr.catalog;
+
+import com.bharatemr.enums.CatalogKind;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.AttributeConverter;
+
+/**
+ * Stores a prescription line's name, dosage, frequency or duration as a catalog id, while the entity
+ * keeps the string, so services and DTOs never see ids. Hibernate creates converters through Spring,
+ * which injects the dictionary. JPA converters take no arguments, hence one subclass per kind.
+ */
+public abstract class CatalogTermConverter implements AttributeConverter<String, Integer> {
+
+    @Autowired
+    private ObjectProvider<CatalogDictionary> dictionary;
+
+    private final CatalogKind kind;
+
+    protected CatalogTermConverter(CatalogKind kind) {
+        this.kind = kind;
+    }
+
+    @Override
+    public Integer convertToDatabaseColumn(String term) {
+        return term == null ? null : dictionary.getObject().idOf(kind, term);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer id) {
+        return id == null ? null : dictionary.getObject().termOf(id);
+    }
+
+    public static class MedicineName extends CatalogTermConverter {
+        public MedicineName() {
+            super(CatalogKind.MEDICINE);
+        }
+    }
+
+    public static class Dosage extends CatalogTermConverter {
+        public Dosage() {
+            super(CatalogKind.DOSAGE);
+        }
+    }
+
+    public static class Frequency extends CatalogTermConverter {
+        public Frequency() {
+            super(CatalogKind.FREQUENCY);
+        }
+    }
+
+    public static class Duration extends CatalogTermConverter {
+        public Duration() {
+            super(CatalogKind.DURATION);
+        }
+    }
+
+    public static class TestName extends CatalogTermConverter {
+        public TestName() {
+            super(CatalogKind.TEST);
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.bharatemr.config;
 
+import com.bharatemr.util.VirtualThreads;
+import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
 import org.modelmapper.convention.MatchingStrategies;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -11,8 +14,30 @@ import java.util.concurrent.Executor;
 
 @Configuration
 @EnableAsync
+@Slf4j
 public class AppConfig {
     
+    @Value("${app.threads.virtual.enabled:false}")
+    private boolean virtualThreadsEnabled;
+    
+    @Value("${app.threads.virtual.async-concurrency-limit:100}")
+    private int virtualAsyncConcurrencyLimit;
+    
+    @Value("${app.pdf.render.threads:0}")
+    private int pdfRenderThreads;
+    
+    @Value("${app.pdf.render.queue-capacity:16}")
+    private int pdfRenderQueueCapacity;
+    
+    @Value("${app.pdf.batch.max-concurrent-jobs:2}")
+    private int pdfBatchMaxJobs;
+    
+    @Value("${app.upload.derivatives.threads:2}")
+    private int derivationThreads;
+    
+    @Value("${app.upload.derivatives.queue-capacity:100}")
+    private int derivationQueueCapacity;
+    
     @Bean
     public ModelMapper modelMapper() {
         ModelMapper modelMapper = new ModelMapper();
@@ -24,6 +49,12 @@ public class AppConfig {
     
     @Bean(name = "taskExecutor")
     public Executor taskExecutor() {
+        if (virtualThreadsEnabled && VirtualThreads.isSupported()) {
+            // The limit only caps concurrent calls into Twilio/WhatsApp
+            log.info("@Async tasks on virtual threads (concurrency limit {})", virtualAsyncConcurrencyLimit);
+            return VirtualThreads.boundedExecutor("async-vt-", virtualAsyncConcurrencyLimit);
+        }
+        
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(5);
         executor.setMaxPoolSize(10);
@@ -32,4 +63,45 @@ public class AppConfig {
         executor.initialize();
         return executor;
     }
-}
\ No newline at end of file
+    
+    // PDF rendering is CPU-bound, so it gets its own small pool (one thread per core unless configured)
+    // and a short queue; a full queue rejects instead of tying up request threads
+    @Bean(name = "pdfRenderExecutor")
+    public ThreadPoolTaskExecutor pdfRenderExecutor() {
+        int threads = pdfRenderThreads > 0 ? pdfRenderThreads : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(pdfRenderQueueCapacity);
+        executor.setThreadNamePrefix("pdf-");
+        executor.initialize();
+        log.info("PDF rendering on {} thread(s), queue capacity {}", threads, pdfRenderQueueCapacity);
+        return executor;
+    }
+    
+    // One thread per running batch job; it only feeds the render pool, and a further job is rejected
+    @Bean(name = "pdfBatchExecutor")
+    public ThreadPoolTaskExecutor pdfBatchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(pdfBatchMaxJobs);
+        executor.setMaxPoolSize(pdfBatchMaxJobs);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("pdf-batch-");
+        executor.initialize();
+        return executor;
+    }
+    
+    // Thumbnails and previews are background work: a few low-priority threads, so decoding a large scan
+    // never competes with requests; work turned away by a full queue is picked up by the retry sweep
+    @Bean(name = "attachmentDerivationExecutor")
+    public ThreadPoolTaskExecutor attachmentDerivationExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(derivationThreads);
+        executor.setMaxPoolSize(derivationThreads);
+        executor.setQueueCapacity(derivationQueueCapacity);
+        executor.setThreadPriority(Thread.MIN_PRIORITY);
+        executor.setThreadNamePrefix("derive-");
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,110 @@
+package com.bharatemr.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Skips Flyway's validate/migrate pass when every versioned script on the classpath is already
+ * applied with the same checksum. Any mismatch, pending script or failed entry falls back to a
+ * regular {@link Flyway#migrate()}, which validates as usual.
+ */
+@Slf4j
+public class ChecksumFlywayMigrationStrategy implements FlywayMigrationStrategy {
+
+    private static final Pattern VERSIONED_SCRIPT = Pattern.compile("V([0-9._]+)__.*\\.sql");
+
+    @Override
+    public void migrate(Flyway flyway) {
+        long start = System.currentTimeMillis();
+        try {
+            if (schemaMatches(flyway)) {
+                log.info("Fast start: schema checksums match, Flyway validation skipped ({} ms)",
+                        System.currentTimeMillis() - start);
+                return;
+            }
+        } catch (Exception e) {
+            log.warn("Fast start: schema checksum check failed, running full migration: {}", e.getMessage());
+        }
+        flyway.migrate();
+        log.info("Fast start: Flyway migration completed in {} ms", System.currentTimeMillis() - start);
+    }
+
+    private boolean schemaMatches(Flyway flyway) throws IOException {
+        Map<String, Integer> local = localChecksums(flyway);
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(flyway.getConfiguration().getDataSource());
+        String table = flyway.getConfiguration().getTable();
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT version, checksum, success FROM " + table + " WHERE version IS NOT NULL");
+
+        Map<String, Integer> applied = new HashMap<>();
+        for (Map<String, Object> row : rows) {
+            if (!Boolean.TRUE.equals(row.get("success"))) {
+                return false;
+            }
+            Object checksum = row.get("checksum");
+            applied.put(normalizeVersion(String.valueOf(row.get("version"))),
+                    checksum == null ? null : ((Number) checksum).intValue());
+        }
+
+        for (Map.Entry<String, Integer> entry : local.entrySet()) {
+            if (!applied.containsKey(entry.getKey()) || !entry.getValue().equals(applied.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return !local.isEmpty();
+    }
+
+    private Map<String, Integer> localChecksums(Flyway flyway) throws IOException {
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        Map<String, Integer> checksums = new HashMap<>();
+        for (org.flywaydb.core.api.Location location : flyway.getConfiguration().getLocations()) {
+            if (!location.isClassPath()) {
+                throw new IOException("Unsupported migration location: " + location);
+            }
+            for (Resource resource : resolver.getResources("classpath*:" + location.getRootPath() + "/**/*.sql")) {
+                Matcher matcher = VERSIONED_SCRIPT.matcher(resource.getFilename());
+                if (matcher.matches()) {
+                    checksums.put(normalizeVersion(matcher.group(1)), checksum(resource));
+                }
+            }
+        }
+        return checksums;
+    }
+
+    // Same algorithm as Flyway's ChecksumCalculator: CRC32 over the UTF-8 bytes of each line, BOM stripped
+    private int checksum(Resource resource) throws IOException {
+        CRC32 crc32 = new CRC32();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8), 4096)) {
+            String line = reader.readLine();
+            if (line != null && line.startsWith("\uFEFF")) {
+                line = line.substring(1);
+            }
+            while (line != null) {
+                crc32.update(line.getBytes(StandardCharsets.UTF_8));
+                line = reader.readLine();
+            }
+        }
+        return (int) crc32.getValue();
+    }
+
+    private String normalizeVersion(String version) {
+        return version.replace('_', '.');
+    }
+}
@@ -0,0 +1,103 @@
+package com.bharatemr.config;
+
+import com.bharatemr.dto.DoctorDto;
+import com.bharatemr.dto.FollowUpDto;
+import com.bharatemr.dto.MedicineDto;
+import com.bharatemr.dto.PatientDto;
+import com.bharatemr.dto.TestDto;
+import com.bharatemr.dto.VisitDto;
+import com.bharatemr.model.Doctor;
+import com.bharatemr.model.FollowUp;
+import com.bharatemr.model.Medicine;
+import com.bharatemr.model.Patient;
+import com.bharatemr.model.Test;
+import com.bharatemr.model.Visit;
+import lombok.extern.slf4j.Slf4j;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Settings for the "faststart" profile used on scale-to-zero machines, where the first request
+ * after idle waits for the whole JVM and context startup.
+ */
+@Configuration
+@Profile("faststart")
+@Slf4j
+public class FastStartConfig {
+
+    private static final List<String> DEFAULT_LAZY_BEANS = Arrays.asList(
+            "org.springdoc.",
+            "com.bharatemr.config.SwaggerConfig",
+            "com.bharatemr.service.PdfGeneratorService");
+
+    @Autowired
+    private ModelMapper modelMapper;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    // Defers creation of beans that are not needed to serve clinical API calls
+    @Bean
+    public static BeanFactoryPostProcessor lazyNonCriticalBeans(Environment environment) {
+        List<String> prefixes = Binder.get(environment)
+                .bind("app.startup.lazy-beans", String[].class)
+                .map(Arrays::asList)
+                .orElse(DEFAULT_LAZY_BEANS);
+
+        return beanFactory -> {
+            int count = 0;
+            for (String name : beanFactory.getBeanDefinitionNames()) {
+                BeanDefinition definition = beanFactory.getBeanDefinition(name);
+                String className = definition.getBeanClassName() != null
+                        ? definition.getBeanClassName()
+                        : definition.getFactoryBeanName() != null
+                                ? beanFactory.getBeanDefinition(definition.getFactoryBeanName()).getBeanClassName()
+                                : null;
+                if (className != null && prefixes.stream().anyMatch(className::startsWith)) {
+                    definition.setLazyInit(true);
+                    count++;
+                }
+            }
+            log.info("Fast start: {} non-critical beans marked lazy", count);
+        };
+    }
+
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy() {
+        return new ChecksumFlywayMigrationStrategy();
+    }
+
+    // Builds the ModelMapper type maps in the background so the first API call does not pay for them
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpModelMapper() {
+        taskExecutor.execute(() -> {
+            long start = System.currentTimeMillis();
+            modelMapper.typeMap(Visit.class, VisitDto.class);
+            modelMapper.typeMap(Medicine.class, MedicineDto.class);
+            modelMapper.typeMap(MedicineDto.class, Medicine.class);
+            modelMapper.typeMap(Test.class, TestDto.class);
+            modelMapper.typeMap(TestDto.class, Test.class);
+            modelMapper.typeMap(Patient.class, PatientDto.class);
+            modelMapper.typeMap(PatientDto.class, Patient.class);
+            modelMapper.typeMap(Doctor.class, DoctorDto.class);
+            modelMapper.typeMap(FollowUp.class, FollowUpDto.class);
+            log.info("Fast start: ModelMapper type maps ready in {} ms", System.currentTimeMillis() - start);
+        });
+    }
+}
@@ -44,7 +44,12 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                         "/v3/api-docs/**",
                         "/api-docs/**",
                         "/swagger-resources/**",
-                        "/webjars/**")
+                        "/webjars/**",
+                        "/livez",
+                        "/readyz",
+                        "/actuator/health/**",
+                        "/actuator/info",
+                        "/actuator/prometheus")
                 .permitAll()
                 .antMatchers("/api/doctor/**").hasAnyRole("DOCTOR", "ADMIN")
                 .antMatchers("/api/patient/**").hasAnyRole("PATIENT", "DOCTOR", "ADMIN")
@@ -0,0 +1,80 @@
+package com.bharatemr.config;
+
+import com.bharatemr.sharding.ShardDataSources;
+import com.bharatemr.sharding.ShardRoutingDataSource;
+import com.bharatemr.sharding.ShardingProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Splits clinical data (visits, prescriptions, medicines, tests, follow-ups) across databases by doctor.
+ * The spring.datasource database stays the primary: it holds the global tables and the shard directory,
+ * and every doctor that has no directory entry. Off unless app.sharding.enabled is set (profile "sharded").
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+@EnableConfigurationProperties(ShardingProperties.class)
+@Slf4j
+public class ShardingConfig {
+
+    public static final int MAX_SHARDS = 64;
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryShardDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ShardDataSources shardDataSources(HikariDataSource primaryShardDataSource, ShardingProperties sharding) {
+        Map<String, DataSource> dataSources = new LinkedHashMap<>();
+        Map<String, Integer> indexes = new HashMap<>();
+        dataSources.put(sharding.getPrimary(), primaryShardDataSource);
+        indexes.put(sharding.getPrimary(), 0);
+
+        sharding.getShards().entrySet().stream()
+                .sorted(Comparator.comparingInt(entry -> entry.getValue().getIndex()))
+                .forEach(entry -> {
+                    String name = entry.getKey();
+                    ShardingProperties.Shard shard = entry.getValue();
+                    if (shard.getIndex() < 1 || shard.getIndex() >= MAX_SHARDS || indexes.containsValue(shard.getIndex())) {
+                        throw new IllegalStateException("Shard " + name + " needs a unique index between 1 and "
+                                + (MAX_SHARDS - 1) + ", got " + shard.getIndex());
+                    }
+                    HikariDataSource dataSource = new HikariDataSource();
+                    dataSource.setPoolName("shard-" + name);
+                    dataSource.setJdbcUrl(shard.getUrl());
+                    dataSource.setUsername(shard.getUsername());
+                    dataSource.setPassword(shard.getPassword());
+                    dataSource.setMaximumPoolSize(shard.getMaximumPoolSize());
+                    dataSources.put(name, dataSource);
+                    indexes.put(name, shard.getIndex());
+                });
+
+        log.info("Sharding enabled: {}", indexes);
+        return new ShardDataSources(sharding.getPrimary(), dataSources, indexes);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardDataSources shardDataSources) {
+        ShardRoutingDataSource routing = new ShardRoutingDataSource();
+        routing.setTargetDataSources(new HashMap<>(shardDataSources.getDataSources()));
+        routing.setDefaultTargetDataSource(shardDataSources.getDataSources().get(shardDataSources.getPrimary()));
+        routing.setLenientFallback(false);
+        return routing;
+    }
+}
@@ -0,0 +1,107 @@
+package com.bharatemr.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Logs where startup time went (JVM, context phases, slowest beans) and the time from JVM start
+ * to the first completed HTTP response, which is what a cold scale-to-zero request waits for.
+ */
+@Component
+@Slf4j
+public class StartupTimingReporter extends OncePerRequestFilter {
+
+    @Value("${app.startup.report-top-steps:10}")
+    private int topSteps;
+
+    @Value("${app.startup.exit-after-ready:false}")
+    private boolean exitAfterReady;
+
+    private final AtomicBoolean firstResponseLogged = new AtomicBoolean(false);
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady(ApplicationReadyEvent event) {
+        long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+        long sinceJvmStart = System.currentTimeMillis() - jvmStart;
+        Duration timeTaken = event.getTimeTaken();
+        log.info("Startup: ready {} ms after JVM start (JVM bootstrap {} ms, application startup {} ms)",
+                sinceJvmStart,
+                timeTaken != null ? sinceJvmStart - timeTaken.toMillis() : "?",
+                timeTaken != null ? timeTaken.toMillis() : "?");
+
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        ApplicationStartup startup = context.getApplicationStartup();
+        if (startup instanceof BufferingApplicationStartup) {
+            logSlowestSteps(((BufferingApplicationStartup) startup).getBufferedTimeline());
+        }
+
+        // Used by the Dockerfile training run that records the class-data-sharing archive
+        if (exitAfterReady) {
+            log.info("Startup: exit-after-ready set, shutting down");
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (firstResponseLogged.compareAndSet(false, true)) {
+                long sinceJvmStart = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+                log.info("Startup: first response ({} {}) completed {} ms after JVM start",
+                        request.getMethod(), request.getRequestURI(), sinceJvmStart);
+            }
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return firstResponseLogged.get();
+    }
+
+    private void logSlowestSteps(StartupTimeline timeline) {
+        Map<String, Long> byStep = new HashMap<>();
+        for (StartupTimeline.TimelineEvent timelineEvent : timeline.getEvents()) {
+            StartupStep step = timelineEvent.getStartupStep();
+            String name = step.getName();
+            for (StartupStep.Tag tag : step.getTags()) {
+                if ("beanName".equals(tag.getKey())) {
+                    name = name + " " + tag.getValue();
+                }
+            }
+            byStep.merge(name, timelineEvent.getDuration().toMillis(), Long::sum);
+        }
+
+        String slowest = byStep.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(topSteps)
+                .map(e -> String.format("%n  %6d ms  %s", e.getValue(), e.getKey()))
+                .collect(Collectors.joining());
+        log.info("Startup: slowest phases (nested steps include their children):{}", slowest);
+    }
+}
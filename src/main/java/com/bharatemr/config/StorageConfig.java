@@ -0,0 +1,105 @@
+package com.bharatemr.config;
+
+import com.bharatemr.storage.BlobStore;
+import com.bharatemr.storage.BlobUrlSigner;
+import com.bharatemr.storage.LocalBlobStore;
+import com.bharatemr.storage.S3BlobStore;
+import com.bharatemr.storage.SignedBlobFilter;
+import com.bharatemr.storage.StorageProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Clock;
+
+/**
+ * Picks where prescription PDFs and uploads are kept: app.storage.type=local (a directory, the
+ * default) or s3 (AWS S3 or an S3-compatible service such as MinIO). Also signs the expiring links
+ * under /signed/ that let patients fetch their prescription without logging in.
+ */
+@Configuration
+@EnableConfigurationProperties(StorageProperties.class)
+@Slf4j
+public class StorageConfig {
+
+    static final String SIGNED_URL_KEY_PURPOSE = "bharatemr/signed-blob-url/v1";
+
+    @Bean
+    public BlobStore blobStore(StorageProperties storage) {
+        switch (storage.getType()) {
+            case "local":
+                log.info("Blob storage: local directory {}", storage.getLocal().getRoot());
+                return new LocalBlobStore(Paths.get(storage.getLocal().getRoot()));
+            case "s3":
+                StorageProperties.S3 s3 = storage.getS3();
+                if (!StringUtils.hasText(s3.getBucket())) {
+                    throw new IllegalStateException("app.storage.s3.bucket is required with app.storage.type=s3");
+                }
+                if (s3.getPartSize().toMegabytes() < 5) {
+                    throw new IllegalStateException("app.storage.s3.part-size must be at least 5MB");
+                }
+                log.info("Blob storage: bucket {} at {}", s3.getBucket(),
+                        StringUtils.hasText(s3.getEndpoint()) ? s3.getEndpoint() : "AWS " + s3.getRegion());
+                return new S3BlobStore(s3Client(s3), s3.getBucket(), (int) s3.getPartSize().toBytes());
+            default:
+                throw new IllegalStateException("Unknown app.storage.type: " + storage.getType());
+        }
+    }
+
+    // Without a secret of its own, the signing key is derived from the JWT secret rather than being it
+    @Bean
+    public BlobUrlSigner blobUrlSigner(StorageProperties storage, @Value("${app.jwt.secret}") String jwtSecret) {
+        StorageProperties.SignedUrl signedUrl = storage.getSignedUrl();
+        byte[] key = StringUtils.hasText(signedUrl.getSecret())
+                ? signedUrl.getSecret().getBytes(StandardCharsets.UTF_8)
+                : BlobUrlSigner.deriveKey(jwtSecret, SIGNED_URL_KEY_PURPOSE);
+        return new BlobUrlSigner(key, signedUrl.getTtl(), signedUrl.getBaseUrl(), Clock.systemUTC());
+    }
+
+    // Ahead of the Spring Security chain: a signed link is its own authorization
+    @Bean
+    public FilterRegistrationBean<SignedBlobFilter> signedBlobFilterRegistration(BlobUrlSigner blobUrlSigner,
+            BlobStore blobStore, MeterRegistry meterRegistry) {
+        FilterRegistrationBean<SignedBlobFilter> registration = new FilterRegistrationBean<>(
+                new SignedBlobFilter(blobUrlSigner, blobStore, meterRegistry));
+        registration.addUrlPatterns(BlobUrlSigner.PATH + "*");
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 20);
+        return registration;
+    }
+
+    private S3Client s3Client(StorageProperties.S3 s3) {
+        S3ClientBuilder builder = S3Client.builder()
+                .httpClientBuilder(UrlConnectionHttpClient.builder())
+                .region(Region.of(s3.getRegion()))
+                .serviceConfiguration(S3Configuration.builder()
+                        .pathStyleAccessEnabled(s3.isPathStyleAccess())
+                        .build());
+        if (StringUtils.hasText(s3.getEndpoint())) {
+            builder.endpointOverride(URI.create(s3.getEndpoint()));
+        }
+        if (StringUtils.hasText(s3.getAccessKey())) {
+            builder.credentialsProvider(StaticCredentialsProvider.create(
+                    AwsBasicCredentials.create(s3.getAccessKey(), s3.getSecretKey())));
+        } else {
+            builder.credentialsProvider(DefaultCredentialsProvider.create());
+        }
+        return builder.build();
+    }
+}
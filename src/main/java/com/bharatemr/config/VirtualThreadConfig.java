@@ -0,0 +1,34 @@
+package com.bharatemr.config;
+
+import com.bharatemr.util.VirtualThreads;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+/**
+ * Runs Tomcat request handling on virtual threads when app.threads.virtual.enabled=true and the
+ * JVM supports them (JDK 21+). The @Async executor is switched in {@link AppConfig#taskExecutor()}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.threads.virtual.enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        if (!VirtualThreads.isSupported()) {
+            log.warn("Virtual threads requested but Java {} does not support them; Tomcat keeps its platform thread pool",
+                    Runtime.version());
+            return protocolHandler -> {
+            };
+        }
+
+        log.info("Tomcat request handling on virtual threads");
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor();
+        executor.setThreadFactory(VirtualThreads.factory("http-vt-"));
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+}
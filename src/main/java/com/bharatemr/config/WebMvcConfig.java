@@ -1,22 +1,29 @@
 package com.bharatemr.config;
 
+import com.bharatemr.sharding.ShardRoutingInterceptor;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @Configuration
 public class WebMvcConfig implements WebMvcConfigurer {
     
+    @Autowired
+    private ObjectProvider<ShardRoutingInterceptor> shardRoutingInterceptor;
+    
+    // Only present with app.sharding.enabled
     @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        // Serve prescription PDFs
-        registry.addResourceHandler("/prescriptions/**")
-                .addResourceLocations("file:./prescriptions/");
-        
-        // Serve uploaded files
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:./uploads/");
+    public void addInterceptors(InterceptorRegistry registry) {
+        shardRoutingInterceptor.ifAvailable(registry::addInterceptor);
     }
     
     @Override
@@ -25,4 +32,16 @@ public class WebMvcConfig implements WebMvcConfigurer {
         registry.addRedirectViewController("/", "/swagger-ui.html");
         registry.addRedirectViewController("/api", "/swagger-ui.html");
     }
-}
\ No newline at end of file
+    
+    // Binary encodings negotiated via the Accept header (application/cbor, application/x-jackson-smile).
+    // Built from Boot's builder so they share the spring.jackson.* settings of the JSON converter.
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+    
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
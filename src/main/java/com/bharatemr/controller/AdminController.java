@@ -1,17 +1,22 @@
 package com.bharatemr.controller;
 
+import com.bharatemr.cache.EntityChange;
+import com.bharatemr.cache.SingleFlight;
 import com.bharatemr.dto.ApiResponse;
 import com.bharatemr.dto.DoctorDto;
 import com.bharatemr.dto.PatientDto;
 import com.bharatemr.service.DoctorService;
 import com.bharatemr.service.PatientService;
 import com.bharatemr.repository.*;
+import com.bharatemr.metrics.ExpectedQueries;
+import com.bharatemr.sharding.ShardTemplate;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import javax.annotation.PostConstruct;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
@@ -42,10 +47,29 @@ public class AdminController {
     @Autowired
     private FollowUpRepository followUpRepository;
     
+    @Autowired
+    private ShardTemplate shardTemplate;
+    
+    @Autowired
+    private SingleFlight singleFlight;
+    
+    @PostConstruct
+    public void registerFlights() {
+        singleFlight.evictOn("admin-dashboard", EntityChange.DOCTOR, EntityChange.PATIENT, EntityChange.DOCTOR_STATS);
+    }
+    
     @GetMapping("/dashboard")
+    @ExpectedQueries(9)
     public ResponseEntity<ApiResponse<Map<String, Object>>> getDashboard() {
         log.info("Fetching admin dashboard statistics");
         
+        // Devices opening at once share one set of count queries
+        Map<String, Object> dashboard = singleFlight.executeAcrossShards("admin-dashboard", "all", this::buildDashboard);
+        
+        return ResponseEntity.ok(ApiResponse.success(dashboard));
+    }
+    
+    private Map<String, Object> buildDashboard() {
         Map<String, Object> dashboard = new HashMap<>();
         
         // Total counts
@@ -53,32 +77,30 @@ public class AdminController {
         dashboard.put("activeDoctors", doctorService.getActiveDoctorsCount());
         dashboard.put("totalPatients", patientRepository.count());
         dashboard.put("activePatients", patientService.getActivePatientsCount());
-        dashboard.put("totalVisits", visitRepository.count());
+        // Clinical counts are summed over all shards
+        dashboard.put("totalVisits", shardTemplate.sum(visitRepository::count));
         
         // Today's statistics
         LocalDateTime startOfDay = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0);
         LocalDateTime endOfDay = LocalDateTime.now().withHour(23).withMinute(59).withSecond(59);
         
-        long todaysVisits = visitRepository.countVisitsByDateRange(startOfDay, endOfDay);
+        long todaysVisits = shardTemplate.sum(() -> visitRepository.countVisitsByDateRange(startOfDay, endOfDay));
         dashboard.put("todaysVisits", todaysVisits);
-        dashboard.put("todaysFollowUps", followUpRepository.countTodaysScheduledFollowUps());
+        dashboard.put("todaysFollowUps", shardTemplate.sum(followUpRepository::countTodaysScheduledFollowUps));
         
         // Recent registrations
         LocalDateTime last7Days = LocalDateTime.now().minusDays(7);
-        long newDoctorsLast7Days = doctorRepository.findAll().stream()
-                .filter(d -> d.getCreatedAt().isAfter(last7Days))
-                .count();
-        long newPatientsLast7Days = patientRepository.findAll().stream()
-                .filter(p -> p.getCreatedAt().isAfter(last7Days))
-                .count();
+        long newDoctorsLast7Days = doctorRepository.countByCreatedAtAfter(last7Days);
+        long newPatientsLast7Days = patientRepository.countByCreatedAtAfter(last7Days);
         
         dashboard.put("newDoctorsLast7Days", newDoctorsLast7Days);
         dashboard.put("newPatientsLast7Days", newPatientsLast7Days);
         
-        return ResponseEntity.ok(ApiResponse.success(dashboard));
+        return dashboard;
     }
     
     @GetMapping("/doctors")
+    @ExpectedQueries(1)
     public ResponseEntity<ApiResponse<List<DoctorDto>>> getAllDoctors() {
         log.info("Admin fetching all doctors");
         
@@ -88,6 +110,7 @@ public class AdminController {
     }
     
     @GetMapping("/patients")
+    @ExpectedQueries(1)
     public ResponseEntity<ApiResponse<List<PatientDto>>> getAllPatients() {
         log.info("Admin fetching all patients");
         
@@ -131,6 +154,7 @@ public class AdminController {
     }
     
     @GetMapping("/statistics/monthly")
+    @ExpectedQueries(1)
     public ResponseEntity<ApiResponse<Map<String, Object>>> getMonthlyStatistics() {
         log.info("Fetching monthly statistics");
         
@@ -139,7 +163,7 @@ public class AdminController {
         LocalDateTime startOfMonth = LocalDateTime.now().withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0);
         LocalDateTime now = LocalDateTime.now();
         
-        long monthlyVisits = visitRepository.countVisitsByDateRange(startOfMonth, now);
+        long monthlyVisits = shardTemplate.sum(() -> visitRepository.countVisitsByDateRange(startOfMonth, now));
         stats.put("monthlyVisits", monthlyVisits);
         
         // Add more monthly statistics as needed
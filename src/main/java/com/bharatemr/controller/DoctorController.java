@@ -13,6 +13,8 @@ import javax.validation.Valid;
 import java.util.List;
 import java.util.Map;
 import com.bharatemr.util.*;
+import com.bharatemr.metrics.ExpectedQueries;
+import com.bharatemr.sharding.DoctorShard;
 
 @RestController
 @RequestMapping("/api/doctor")
@@ -48,6 +50,8 @@ public class DoctorController {
     }
 
     @GetMapping("/stats")
+    @DoctorShard
+    @ExpectedQueries(5)
     @PreAuthorize("hasRole('DOCTOR')")
     public ResponseEntity<ApiResponse<Map<String, Object>>> getDoctorStats() {
         String doctorId = SecurityUtils.getCurrentUserId();
@@ -57,6 +61,7 @@ public class DoctorController {
     }
 
     @GetMapping("/patients/recent")
+    @ExpectedQueries(2)
     @PreAuthorize("hasRole('DOCTOR')")
     public ResponseEntity<ApiResponse<List<PatientDto>>> getRecentPatients() {
         String doctorId = SecurityUtils.getCurrentUserId();
@@ -121,6 +126,7 @@ public class DoctorController {
     }
 
     @GetMapping("/patients")
+    @ExpectedQueries(2)
     @PreAuthorize("hasAnyRole('DOCTOR', 'ADMIN')")
     public ResponseEntity<ApiResponse<List<PatientDto>>> getDoctorPatients() {
         String doctorId = SecurityUtils.getCurrentUserId();
@@ -138,6 +144,8 @@ public class DoctorController {
     private com.bharatemr.service.VisitService visitService;
 
     @GetMapping("/followups")
+    @DoctorShard
+    @ExpectedQueries(2)
     @PreAuthorize("hasRole('DOCTOR')")
     public ResponseEntity<ApiResponse<List<FollowUpDto>>> getMyFollowUps() {
         String doctorId = SecurityUtils.getCurrentUserId();
@@ -147,6 +155,8 @@ public class DoctorController {
     }
 
     @GetMapping("/visits")
+    @DoctorShard
+    @ExpectedQueries(5)
     @PreAuthorize("hasRole('DOCTOR')")
     public ResponseEntity<ApiResponse<List<VisitDto>>> getMyVisits() {
         String doctorId = SecurityUtils.getCurrentUserId();
@@ -156,6 +166,7 @@ public class DoctorController {
     }
 
     @PutMapping("/followups/{id}/status")
+    @DoctorShard
     @PreAuthorize("hasRole('DOCTOR')")
     public ResponseEntity<ApiResponse<FollowUpDto>> updateFollowUpStatus(
             @PathVariable Long id,
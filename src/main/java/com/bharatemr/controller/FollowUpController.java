@@ -3,6 +3,8 @@ package com.bharatemr.controller;
 import com.bharatemr.dto.ApiResponse;
 import com.bharatemr.dto.FollowUpDto;
 import com.bharatemr.service.FollowUpService;
+import com.bharatemr.metrics.ExpectedQueries;
+import com.bharatemr.sharding.DoctorShard;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -23,6 +25,7 @@ public class FollowUpController {
     private FollowUpService followUpService;
     
     @PostMapping("/visit/{visitId}")
+    @DoctorShard
     @PreAuthorize("hasRole('DOCTOR')")
     public ResponseEntity<ApiResponse<FollowUpDto>> scheduleFollowUp(
             @PathVariable Long visitId,
@@ -36,6 +39,7 @@ public class FollowUpController {
     }
     
     @GetMapping("/{id}")
+    @DoctorShard
     @PreAuthorize("hasAnyRole('DOCTOR', 'PATIENT', 'ADMIN')")
     public ResponseEntity<ApiResponse<FollowUpDto>> getFollowUpById(
             @PathVariable Long id) {
@@ -47,6 +51,7 @@ public class FollowUpController {
     }
     
     @PutMapping("/{id}")
+    @DoctorShard
     @PreAuthorize("hasRole('DOCTOR')")
     public ResponseEntity<ApiResponse<FollowUpDto>> updateFollowUp(
             @PathVariable Long id,
@@ -59,6 +64,7 @@ public class FollowUpController {
     }
     
     @DeleteMapping("/{id}")
+    @DoctorShard
     @PreAuthorize("hasRole('DOCTOR')")
     public ResponseEntity<ApiResponse<Void>> cancelFollowUp(
             @PathVariable Long id) {
@@ -70,6 +76,7 @@ public class FollowUpController {
     }
     
     @PostMapping("/{id}/complete")
+    @DoctorShard
     @PreAuthorize("hasRole('DOCTOR')")
     public ResponseEntity<ApiResponse<Void>> completeFollowUp(
             @PathVariable Long id) {
@@ -81,6 +88,8 @@ public class FollowUpController {
     }
     
     @GetMapping("/doctor/{doctorId}")
+    @DoctorShard("doctorId")
+    @ExpectedQueries(2)
     @PreAuthorize("hasAnyRole('DOCTOR', 'ADMIN')")
     public ResponseEntity<ApiResponse<List<FollowUpDto>>> getFollowUpsByDoctor(
             @PathVariable String doctorId) {
@@ -92,6 +101,7 @@ public class FollowUpController {
     }
     
     @GetMapping("/patient/{patientId}")
+    @ExpectedQueries(2)
     @PreAuthorize("hasAnyRole('DOCTOR', 'PATIENT', 'ADMIN')")
     public ResponseEntity<ApiResponse<List<FollowUpDto>>> getFollowUpsByPatient(
             @PathVariable String patientId) {
@@ -103,6 +113,7 @@ public class FollowUpController {
     }
     
     @GetMapping("/today")
+    @ExpectedQueries(1)
     @PreAuthorize("hasAnyRole('DOCTOR', 'ADMIN')")
     public ResponseEntity<ApiResponse<List<FollowUpDto>>> getTodaysFollowUps() {
         log.info("Fetching today's follow-ups");
@@ -0,0 +1,37 @@
+package com.bharatemr.controller;
+
+import com.bharatemr.dto.ApiResponse;
+import com.bharatemr.dto.MedicineSuggestionDto;
+import com.bharatemr.metrics.ExpectedQueries;
+import com.bharatemr.service.MedicineAutocompleteService;
+import com.bharatemr.util.SecurityUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/medicines")
+@CrossOrigin(origins = "*")
+@Slf4j
+public class MedicineController {
+
+    @Autowired
+    private MedicineAutocompleteService medicineAutocompleteService;
+
+    // Answered from memory on every keystroke: the logged-in doctor's own medicines first, then everyone's
+    @GetMapping("/suggestions")
+    @ExpectedQueries(0)
+    @PreAuthorize("hasRole('DOCTOR')")
+    public ResponseEntity<ApiResponse<List<MedicineSuggestionDto>>> suggest(
+            @RequestParam("q") String query,
+            @RequestParam(defaultValue = "10") int limit) {
+        List<MedicineSuggestionDto> suggestions = medicineAutocompleteService.suggest(
+                SecurityUtils.getCurrentUserId(), query, limit);
+
+        return ResponseEntity.ok(ApiResponse.success(suggestions));
+    }
+}
@@ -4,6 +4,7 @@ import com.bharatemr.dto.*;
 import com.bharatemr.service.PatientService;
 import com.bharatemr.service.FollowUpService;
 import com.bharatemr.util.SecurityUtils;
+import com.bharatemr.metrics.ExpectedQueries;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -40,6 +41,7 @@ public class PatientController {
     }
 
     @GetMapping("/dashboard")
+    @ExpectedQueries(3)
     @PreAuthorize("hasRole('PATIENT')")
     public ResponseEntity<ApiResponse<Map<String, Object>>> getPatientDashboard() {
         String patientId = SecurityUtils.getCurrentUserId();
@@ -50,6 +52,7 @@ public class PatientController {
     }
 
     @GetMapping("/visits")
+    @ExpectedQueries(2)
     @PreAuthorize("hasRole('PATIENT')")
     public ResponseEntity<ApiResponse<List<VisitDto>>> getPatientVisits() {
         String patientId = SecurityUtils.getCurrentUserId();
@@ -60,6 +63,7 @@ public class PatientController {
     }
 
     @GetMapping("/followups/upcoming")
+    @ExpectedQueries(2)
     @PreAuthorize("hasRole('PATIENT')")
     public ResponseEntity<ApiResponse<List<FollowUpDto>>> getUpcomingFollowUps() {
         String patientId = SecurityUtils.getCurrentUserId();
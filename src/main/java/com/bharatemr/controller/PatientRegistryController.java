@@ -6,6 +6,7 @@ import com.bharatemr.dto.PatientDto;
 import com.bharatemr.dto.DoctorDto;
 import com.bharatemr.service.PatientService;
 import com.bharatemr.service.DoctorService;
+import com.bharatemr.metrics.ExpectedQueries;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -29,6 +30,7 @@ public class PatientRegistryController {
     private DoctorService doctorService;
 
     @GetMapping
+    @ExpectedQueries(2)
     @PreAuthorize("hasAnyRole('DOCTOR', 'ADMIN')")
     public ResponseEntity<ApiResponse<PaginatedResponse<PatientDto>>> getPatients(
             @RequestParam(defaultValue = "1") int page,
@@ -54,6 +56,7 @@ public class PatientRegistryController {
     }
 
     @GetMapping("/doctors")
+    @ExpectedQueries(1)
     @PreAuthorize("hasAnyRole('DOCTOR', 'ADMIN')")
     public ResponseEntity<ApiResponse<List<DoctorDto>>> getAllDoctors() {
         return ResponseEntity.ok(ApiResponse.success(doctorService.getAllDoctors()));
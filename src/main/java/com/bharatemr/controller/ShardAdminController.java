@@ -0,0 +1,50 @@
+package com.bharatemr.controller;
+
+import com.bharatemr.dto.ApiResponse;
+import com.bharatemr.sharding.ShardDirectory;
+import com.bharatemr.sharding.ShardMoveService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/shards")
+@CrossOrigin(origins = "*")
+@PreAuthorize("hasRole('ADMIN')")
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+@Slf4j
+public class ShardAdminController {
+    
+    @Autowired
+    private ShardDirectory shardDirectory;
+    
+    @Autowired
+    private ShardMoveService shardMoveService;
+    
+    @GetMapping
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getShards() {
+        return ResponseEntity.ok(ApiResponse.success(shardDirectory.summary()));
+    }
+    
+    @GetMapping("/doctors/{doctorId}")
+    public ResponseEntity<ApiResponse<ShardDirectory.Entry>> getDoctorShard(@PathVariable String doctorId) {
+        return ResponseEntity.ok(ApiResponse.success(shardDirectory.load(doctorId)));
+    }
+    
+    // Blocks until the move finishes; the doctor's writes are refused only during the final copy
+    @PostMapping("/doctors/{doctorId}/move")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> moveDoctor(
+            @PathVariable String doctorId,
+            @RequestParam String target) {
+        log.info("Admin moving doctor {} to shard {}", doctorId, target);
+        
+        Map<String, Object> result = shardMoveService.move(doctorId, target);
+        
+        return ResponseEntity.ok(ApiResponse.success("Shard move finished", result));
+    }
+}
@@ -0,0 +1,42 @@
+package com.bharatemr.controller;
+
+import com.bharatemr.exception.ResourceNotFoundException;
+import com.bharatemr.storage.BlobStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+
+/**
+ * Serves stored prescription PDFs at /prescriptions/**, streamed from whichever blob store is configured.
+ * The request path, less its leading '/', is the key. Uploads are only served per visit, by
+ * VisitAttachmentController.
+ */
+@RestController
+@Slf4j
+public class StoredFileController {
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @GetMapping("/prescriptions/**")
+    public ResponseEntity<Resource> getFile(HttpServletRequest request) throws IOException {
+        String key = request.getRequestURI().substring(request.getContextPath().length() + 1);
+        try {
+            return ResponseEntity.ok()
+                    .contentType(MediaTypeFactory.getMediaType(key).orElse(MediaType.APPLICATION_OCTET_STREAM))
+                    .body(new InputStreamResource(blobStore.open(key)));
+        } catch (NoSuchFileException | IllegalArgumentException e) {
+            throw new ResourceNotFoundException("File not found");
+        }
+    }
+}
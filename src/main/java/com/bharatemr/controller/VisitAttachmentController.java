@@ -0,0 +1,137 @@
+package com.bharatemr.controller;
+
+import com.bharatemr.dto.ApiResponse;
+import com.bharatemr.dto.AttachmentDto;
+import com.bharatemr.dto.UploadSessionDto;
+import com.bharatemr.service.VisitAttachmentService;
+import com.bharatemr.sharding.DoctorShard;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.Valid;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lab reports and scans attached to a visit, uploaded in resumable chunks:
+ * start a session, PUT each chunk as a raw body, check which chunks arrived, then complete.
+ */
+@RestController
+@RequestMapping("/api/visits/{visitId}/attachments")
+@CrossOrigin(origins = "*")
+@Slf4j
+public class VisitAttachmentController {
+
+    @Autowired
+    private VisitAttachmentService visitAttachmentService;
+
+    @PostMapping("/uploads")
+    @DoctorShard
+    @PreAuthorize("hasRole('DOCTOR')")
+    public ResponseEntity<ApiResponse<UploadSessionDto>> startUpload(
+            @PathVariable Long visitId,
+            @Valid @RequestBody UploadSessionDto request) {
+        UploadSessionDto session = visitAttachmentService.startUpload(visitId, request);
+
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(ApiResponse.success("Upload started", session));
+    }
+
+    // Lists the chunks received so far; a client resuming after a dropped connection sends only the rest
+    @GetMapping("/uploads/{uploadId}")
+    @DoctorShard
+    @PreAuthorize("hasRole('DOCTOR')")
+    public ResponseEntity<ApiResponse<UploadSessionDto>> getUpload(
+            @PathVariable Long visitId,
+            @PathVariable String uploadId) {
+        return ResponseEntity.ok(ApiResponse.success(visitAttachmentService.getUpload(visitId, uploadId)));
+    }
+
+    // The body is read as a raw stream, so a chunk is never buffered whole
+    @PutMapping(value = "/uploads/{uploadId}/chunks/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @DoctorShard
+    @PreAuthorize("hasRole('DOCTOR')")
+    public ResponseEntity<ApiResponse<Void>> putChunk(
+            @PathVariable Long visitId,
+            @PathVariable String uploadId,
+            @PathVariable int index,
+            @RequestHeader(value = "X-Chunk-SHA256", required = false) String sha256,
+            HttpServletRequest request) throws IOException {
+        visitAttachmentService.putChunk(visitId, uploadId, index, sha256, request.getInputStream());
+
+        return ResponseEntity.ok(ApiResponse.success("Chunk " + index + " stored", null));
+    }
+
+    @PostMapping("/uploads/{uploadId}/complete")
+    @DoctorShard
+    @PreAuthorize("hasRole('DOCTOR')")
+    public ResponseEntity<ApiResponse<AttachmentDto>> completeUpload(
+            @PathVariable Long visitId,
+            @PathVariable String uploadId) {
+        AttachmentDto attachment = visitAttachmentService.completeUpload(visitId, uploadId);
+
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(ApiResponse.success("Attachment uploaded", attachment));
+    }
+
+    @GetMapping
+    @DoctorShard
+    @PreAuthorize("hasAnyRole('DOCTOR', 'PATIENT', 'ADMIN')")
+    public ResponseEntity<ApiResponse<List<AttachmentDto>>> getAttachments(@PathVariable Long visitId) {
+        return ResponseEntity.ok(ApiResponse.success(visitAttachmentService.getAttachments(visitId)));
+    }
+
+    @GetMapping("/{attachmentId}")
+    @DoctorShard
+    @PreAuthorize("hasAnyRole('DOCTOR', 'PATIENT', 'ADMIN')")
+    public ResponseEntity<Resource> downloadAttachment(
+            @PathVariable Long visitId,
+            @PathVariable Long attachmentId) throws IOException {
+        AttachmentDto attachment = visitAttachmentService.getAttachment(visitId, attachmentId);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(attachment.getContentType()))
+                .contentLength(attachment.getSize())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(attachment.getFileName()).build().toString())
+                .body(new InputStreamResource(visitAttachmentService.openAttachment(attachment)));
+    }
+
+    @GetMapping("/{attachmentId}/thumbnail")
+    @DoctorShard
+    @PreAuthorize("hasAnyRole('DOCTOR', 'PATIENT', 'ADMIN')")
+    public ResponseEntity<Resource> downloadThumbnail(
+            @PathVariable Long visitId,
+            @PathVariable Long attachmentId) throws IOException {
+        return derivative(visitAttachmentService.getThumbnailKey(visitId, attachmentId));
+    }
+
+    @GetMapping("/{attachmentId}/preview")
+    @DoctorShard
+    @PreAuthorize("hasAnyRole('DOCTOR', 'PATIENT', 'ADMIN')")
+    public ResponseEntity<Resource> downloadPreview(
+            @PathVariable Long visitId,
+            @PathVariable Long attachmentId) throws IOException {
+        return derivative(visitAttachmentService.getPreviewKey(visitId, attachmentId));
+    }
+
+    // Derivatives are JPEGs stored under the content's SHA-256 and never change, so clients may cache them for long
+    private ResponseEntity<Resource> derivative(String key) throws IOException {
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_JPEG)
+                .cacheControl(CacheControl.maxAge(30, TimeUnit.DAYS).cachePrivate())
+                .body(new InputStreamResource(visitAttachmentService.openDerivative(key)));
+    }
+}
@@ -2,11 +2,17 @@ package com.bharatemr.controller;
 
 import com.bharatemr.dto.ApiResponse;
 import com.bharatemr.dto.VisitDto;
+import com.bharatemr.exception.PdfRenderUnavailableException;
+import com.bharatemr.service.PatientHistoryBookletService;
+import com.bharatemr.service.PrescriptionBatchService;
 import com.bharatemr.service.PrescriptionService;
 import com.bharatemr.service.VisitService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -15,10 +21,17 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import com.bharatemr.dto.PaginatedResponse;
+import com.bharatemr.metrics.ExpectedQueries;
+import com.bharatemr.sharding.DoctorShard;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/visits")
@@ -32,7 +45,14 @@ public class VisitController {
     @Autowired
     private PrescriptionService prescriptionService;
 
+    @Autowired
+    private PrescriptionBatchService prescriptionBatchService;
+
+    @Autowired
+    private PatientHistoryBookletService patientHistoryBookletService;
+
     @PostMapping
+    @DoctorShard
     @PreAuthorize("hasRole('DOCTOR')")
     public ResponseEntity<ApiResponse<VisitDto>> createVisit(
             @Valid @RequestBody VisitDto visitDto,
@@ -50,6 +70,7 @@ public class VisitController {
     }
 
     @GetMapping("/{visitId}")
+    @DoctorShard
     @PreAuthorize("hasAnyRole('DOCTOR', 'PATIENT', 'ADMIN')")
     public ResponseEntity<ApiResponse<VisitDto>> getVisitById(
             @PathVariable Long visitId) {
@@ -61,6 +82,7 @@ public class VisitController {
     }
 
     @PutMapping("/{visitId}")
+    @DoctorShard
     @PreAuthorize("hasRole('DOCTOR')")
     public ResponseEntity<ApiResponse<VisitDto>> updateVisit(
             @PathVariable Long visitId,
@@ -73,6 +95,8 @@ public class VisitController {
     }
 
     @GetMapping("/doctor/{doctorId}")
+    @DoctorShard("doctorId")
+    @ExpectedQueries(5)
     @PreAuthorize("hasAnyRole('DOCTOR', 'ADMIN')")
     public ResponseEntity<ApiResponse<List<VisitDto>>> getVisitsByDoctor(
             @PathVariable String doctorId) {
@@ -84,17 +108,37 @@ public class VisitController {
     }
 
     @GetMapping("/patient/{patientId}")
+    @ExpectedQueries(6)
     @PreAuthorize("hasAnyRole('DOCTOR', 'PATIENT', 'ADMIN')")
     public ResponseEntity<ApiResponse<List<VisitDto>>> getVisitsByPatient(
-            @PathVariable String patientId) {
-        log.info("Fetching visits for patient: {}", patientId);
+            @PathVariable String patientId,
+            @RequestParam(defaultValue = "false") boolean includeArchived) {
+        log.info("Fetching visits for patient: {} (archived: {})", patientId, includeArchived);
 
-        List<VisitDto> visits = visitService.getVisitsByPatient(patientId);
+        List<VisitDto> visits = visitService.getVisitsByPatient(patientId, includeArchived);
 
         return ResponseEntity.ok(ApiResponse.success(visits));
     }
 
+    // Streamed as it renders: the cover first, then the visits a chunk at a time
+    @GetMapping("/patient/{patientId}/booklet")
+    @PreAuthorize("hasAnyRole('DOCTOR', 'PATIENT', 'ADMIN')")
+    public void downloadHistoryBooklet(
+            @PathVariable String patientId,
+            @RequestParam(defaultValue = "false") boolean includeArchived,
+            HttpServletResponse response) throws IOException {
+        PatientHistoryBookletService.Booklet booklet = patientHistoryBookletService.prepare(patientId, includeArchived);
+        log.info("Streaming history booklet for patient: {} (archived: {})", patientId, includeArchived);
+
+        response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("history_" + patientId + ".pdf").build().toString());
+        patientHistoryBookletService.write(booklet, response.getOutputStream());
+    }
+
     @GetMapping("/doctor/{doctorId}/date-range")
+    @DoctorShard("doctorId")
+    @ExpectedQueries(5)
     @PreAuthorize("hasAnyRole('DOCTOR', 'ADMIN')")
     public ResponseEntity<ApiResponse<List<VisitDto>>> getVisitsByDateRange(
             @PathVariable String doctorId,
@@ -107,40 +151,100 @@ public class VisitController {
         return ResponseEntity.ok(ApiResponse.success(visits));
     }
 
+    // Rendering runs on the PDF executor; the request thread is released while it waits
     @GetMapping("/{visitId}/prescription/pdf")
+    @DoctorShard
     @PreAuthorize("hasAnyRole('DOCTOR', 'PATIENT', 'ADMIN')")
-    public ResponseEntity<byte[]> downloadPrescriptionPdf(
+    public CompletableFuture<ResponseEntity<Resource>> downloadPrescriptionPdf(
             @PathVariable Long visitId) {
         log.info("Downloading prescription PDF for visit: {}", visitId);
 
         try {
-            byte[] pdfContent = prescriptionService.downloadPrescriptionPdf(visitId);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("attachment", "prescription_" + visitId + ".pdf");
-
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(pdfContent);
+            return prescriptionService.downloadPrescriptionPdf(visitId)
+                    .thenApply(pdf -> {
+                        HttpHeaders headers = new HttpHeaders();
+                        headers.setContentType(MediaType.APPLICATION_PDF);
+                        headers.setContentDispositionFormData("attachment", "prescription_" + visitId + ".pdf");
+
+                        return ResponseEntity.ok()
+                                .headers(headers)
+                                .<Resource>body(new InputStreamResource(pdf));
+                    })
+                    .exceptionally(this::pdfDownloadFailed);
         } catch (Exception e) {
-            log.error("Error downloading prescription PDF", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            return CompletableFuture.completedFuture(pdfDownloadFailed(e));
         }
     }
 
+    // Returns a signed, expiring link to the PDF that works without a token
     @PostMapping("/{visitId}/prescription/generate-pdf")
+    @DoctorShard
     @PreAuthorize("hasRole('DOCTOR')")
-    public ResponseEntity<ApiResponse<String>> generatePrescriptionPdf(
+    public CompletableFuture<ResponseEntity<ApiResponse<String>>> generatePrescriptionPdf(
             @PathVariable Long visitId) {
         log.info("Generating prescription PDF for visit: {}", visitId);
 
-        String pdfUrl = prescriptionService.generatePrescriptionPdf(visitId);
+        return prescriptionService.generatePrescriptionPdf(visitId)
+                .thenApply(pdfUrl -> ResponseEntity.ok(ApiResponse.success("PDF generated successfully",
+                        prescriptionService.signedPdfUrl(pdfUrl))));
+    }
+
+    // Starts rendering in the background; poll the returned jobId for progress, then download
+    @PostMapping("/doctor/{doctorId}/prescription/batch")
+    @DoctorShard("doctorId")
+    @PreAuthorize("hasAnyRole('DOCTOR', 'ADMIN')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> startPrescriptionBatch(
+            @PathVariable String doctorId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+        log.info("Starting prescription batch for doctor: {} from {} to {}", doctorId, startDate, endDate);
+
+        Map<String, Object> job = prescriptionBatchService.start(doctorId, startDate, endDate);
 
-        return ResponseEntity.ok(ApiResponse.success("PDF generated successfully", pdfUrl));
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(ApiResponse.success("Prescription batch started", job));
+    }
+
+    @GetMapping("/prescription/batch/{jobId}")
+    @PreAuthorize("hasAnyRole('DOCTOR', 'ADMIN')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getPrescriptionBatch(@PathVariable String jobId) {
+        return ResponseEntity.ok(ApiResponse.success(prescriptionBatchService.getStatus(jobId)));
+    }
+
+    // Streamed straight from the blob store: format=pdf merges them, format=zip bundles them
+    @GetMapping("/prescription/batch/{jobId}/download")
+    @PreAuthorize("hasAnyRole('DOCTOR', 'ADMIN')")
+    public void downloadPrescriptionBatch(
+            @PathVariable String jobId,
+            @RequestParam(defaultValue = "pdf") String format,
+            HttpServletResponse response) throws IOException {
+        boolean zip = "zip".equalsIgnoreCase(format);
+        List<String> files = prescriptionBatchService.finishedFiles(jobId);
+        log.info("Downloading prescription batch {} as {}", jobId, zip ? "zip" : "pdf");
+
+        response.setContentType(zip ? "application/zip" : MediaType.APPLICATION_PDF_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("prescriptions_" + jobId + (zip ? ".zip" : ".pdf")).build().toString());
+        if (zip) {
+            prescriptionBatchService.writeZip(files, response.getOutputStream());
+        } else {
+            prescriptionBatchService.writeMergedPdf(files, response.getOutputStream());
+        }
+    }
+
+    // A full render queue is reported as 503 + Retry-After; anything else stays a bare 500
+    private ResponseEntity<Resource> pdfDownloadFailed(Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        if (cause instanceof PdfRenderUnavailableException) {
+            throw (PdfRenderUnavailableException) cause;
+        }
+        log.error("Error downloading prescription PDF", cause);
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
     }
 
     @GetMapping
+    @DoctorShard("doctorId")
+    @ExpectedQueries(5)
     @PreAuthorize("hasAnyRole('DOCTOR', 'ADMIN')")
     public ResponseEntity<ApiResponse<PaginatedResponse<VisitDto>>> getVisits(
             @RequestParam(defaultValue = "1") int page,
@@ -0,0 +1,27 @@
+package com.bharatemr.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttachmentDto {
+    
+    private Long id;
+    private Long visitId;
+    private String fileName;
+    private String contentType;
+    private Long size;
+    private String sha256;
+    private LocalDateTime createdAt;
+    
+    // JPEGs, null until the background derivation has run; a PDF without an embedded scan has neither
+    private String thumbnailUrl;
+    private String previewUrl;
+}
@@ -0,0 +1,19 @@
+package com.bharatemr.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MedicineSuggestionDto {
+    
+    private String name;
+    
+    // Times the requesting doctor prescribed it, and times it was prescribed by anyone
+    private long doctorUses;
+    private long totalUses;
+}
@@ -0,0 +1,39 @@
+package com.bharatemr.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// A prescription batch as stored in the blob store, so any node can report on it or finish it
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PrescriptionBatchDto {
+
+    private String jobId;
+    private String doctorId;
+    private String shard;
+    private List<Item> items;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+
+        private Long visitId;
+        private int attempts;
+        private String pdfUrl;
+        private String error;
+
+        public Item(Long visitId) {
+            this.visitId = visitId;
+        }
+    }
+}
@@ -45,6 +45,7 @@ public class VisitDto {
     private List<TestDto> tests;
     
     private FollowUpDto followUp;
+    private List<AttachmentDto> attachments;
     private String prescriptionPdfUrl;
     private LocalDateTime createdAt;
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.bharatemr.enums;
+
+public enum CatalogKind {
+    MEDICINE,
+    DOSAGE,
+    FREQUENCY,
+    DURATION,
+    TEST
+}
@@ -0,0 +1,7 @@
+package com.bharatemr.exception;
+
+public class ArchiveIntegrityException extends RuntimeException {
+    public ArchiveIntegrityException(String message) {
+        super(message);
+    }
+}
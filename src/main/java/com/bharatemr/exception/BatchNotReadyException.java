@@ -0,0 +1,7 @@
+package com.bharatemr.exception;
+
+public class BatchNotReadyException extends RuntimeException {
+    public BatchNotReadyException(String message) {
+        super(message);
+    }
+}
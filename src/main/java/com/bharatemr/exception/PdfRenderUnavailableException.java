@@ -0,0 +1,7 @@
+package com.bharatemr.exception;
+
+public class PdfRenderUnavailableException extends RuntimeException {
+    public PdfRenderUnavailableException(String message) {
+        super(message);
+    }
+}
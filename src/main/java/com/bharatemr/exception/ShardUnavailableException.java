@@ -0,0 +1,7 @@
+package com.bharatemr.exception;
+
+public class ShardUnavailableException extends RuntimeException {
+    public ShardUnavailableException(String message) {
+        super(message);
+    }
+}
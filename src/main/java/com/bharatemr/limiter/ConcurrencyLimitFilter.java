@@ -0,0 +1,150 @@
+package com.bharatemr.limiter;
+
+import com.bharatemr.dto.ApiResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Sheds load per {@link EndpointClass} before any work is done: when a class is at its adaptive
+ * limit the request gets an immediate 503 with Retry-After instead of queueing for a Tomcat thread
+ * and a database connection behind slower classes. Runs ahead of Spring Security, so shed requests
+ * never parse a JWT. Registered by ConcurrencyLimitConfig when app.concurrency-limit.enabled is set.
+ */
+@Slf4j
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private ConcurrencyLimitProperties properties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<EndpointClass, AimdLimiter> limiters = new EnumMap<>(EndpointClass.class);
+
+    @PostConstruct
+    public void createLimiters() {
+        for (EndpointClass endpointClass : EndpointClass.values()) {
+            ConcurrencyLimitProperties.Limit config = properties.getClasses()
+                    .getOrDefault(endpointClass, new ConcurrencyLimitProperties.Limit());
+            AimdLimiter limiter = new AimdLimiter(config);
+            limiters.put(endpointClass, limiter);
+
+            String tag = endpointClass.name().toLowerCase();
+            Gauge.builder("http.server.concurrency.limit", limiter, AimdLimiter::getLimit)
+                    .description("Current adaptive concurrency limit")
+                    .tag("class", tag)
+                    .register(meterRegistry);
+            Gauge.builder("http.server.concurrency.in.flight", limiter, AimdLimiter::getInFlight)
+                    .description("Requests currently admitted")
+                    .tag("class", tag)
+                    .register(meterRegistry);
+            FunctionCounter.builder("http.server.concurrency.rejected", limiter, AimdLimiter::getRejected)
+                    .description("Requests shed with 503 because the limit was reached")
+                    .tag("class", tag)
+                    .register(meterRegistry);
+            log.info("Concurrency limit for {}: {} (min {}, max {}, slow above {})", tag,
+                    limiter.getLimit(), config.getMinLimit(), config.getMaxLimit(), config.getLatencyThreshold());
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        EndpointClass endpointClass = EndpointClass.of(request.getMethod(), request.getRequestURI());
+        if (endpointClass == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        AimdLimiter limiter = limiters.get(endpointClass);
+        if (!limiter.tryAcquire()) {
+            reject(response, endpointClass);
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            if (!failed && request.isAsyncStarted()) {
+                // Streamed responses hold their slot until the async part completes
+                request.getAsyncContext().addListener(new ReleaseOnComplete(limiter, start));
+            } else {
+                limiter.release(System.nanoTime() - start, failed);
+            }
+        }
+    }
+
+    private void reject(HttpServletResponse response, EndpointClass endpointClass) throws IOException {
+        long retryAfter = Math.max(1, properties.getRetryAfter().getSeconds());
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+                ApiResponse.error("Server is busy (" + endpointClass.name().toLowerCase() + "), please retry"));
+    }
+
+    private static class ReleaseOnComplete implements AsyncListener {
+
+        private final AimdLimiter limiter;
+
+        private final long start;
+
+        private boolean released;
+
+        ReleaseOnComplete(AimdLimiter limiter, long start) {
+            this.limiter = limiter;
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release(false);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release(true);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release(true);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+
+        private synchronized void release(boolean failed) {
+            if (!released) {
+                released = true;
+                limiter.release(System.nanoTime() - start, failed);
+            }
+        }
+    }
+}
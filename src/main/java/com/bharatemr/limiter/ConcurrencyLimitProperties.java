@@ -0,0 +1,36 @@
+package com.bharatemr.limiter;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "app.concurrency-limit")
+public class ConcurrencyLimitProperties {
+
+    private boolean enabled;
+
+    /** Sent as Retry-After on shed requests. */
+    private Duration retryAfter = Duration.ofSeconds(1);
+
+    private Map<EndpointClass, Limit> classes = new EnumMap<>(EndpointClass.class);
+
+    @Data
+    public static class Limit {
+
+        private int initialLimit = 20;
+
+        private int minLimit = 2;
+
+        private int maxLimit = 100;
+
+        /** Requests slower than this (or failing with an exception) shrink the limit. */
+        private Duration latencyThreshold = Duration.ofMillis(500);
+
+        /** Multiplier applied to the limit on a slow request. */
+        private double backoffRatio = 0.9;
+    }
+}
@@ -0,0 +1,47 @@
+package com.bharatemr.limiter;
+
+/**
+ * Groups of endpoints that get their own concurrency limit, so a backlog in one group
+ * (say, PDF renders) cannot hold the threads and connections another group needs.
+ */
+public enum EndpointClass {
+
+    /** OTP send/verify, login and registration */
+    AUTH,
+
+    /** Anything that changes clinical data */
+    CLINICAL_WRITE,
+
+    /** Single-record and paged clinical reads */
+    CLINICAL_READ,
+
+    /** PDF renders, history booklets, full visit dumps and admin statistics */
+    REPORT,
+
+    /** Visit attachment uploads and downloads, paced by the client's network rather than the server */
+    TRANSFER;
+
+    /**
+     * @return the class for an /api request, or null for paths that are never limited
+     * (health probes, Swagger, static files)
+     */
+    public static EndpointClass of(String method, String uri) {
+        if (!uri.startsWith("/api/")) {
+            return null;
+        }
+        if (uri.startsWith("/api/otp/") || uri.startsWith("/api/auth/")
+                || uri.equals("/api/doctor/login") || uri.equals("/api/doctor/register")
+                || uri.equals("/api/patient/login")) {
+            return AUTH;
+        }
+        if (uri.contains("/attachments")) {
+            return TRANSFER;
+        }
+        if (uri.contains("/prescription/") || uri.endsWith("/booklet") || uri.startsWith("/api/admin/statistics/")
+                || uri.equals("/api/admin/dashboard")
+                || (uri.startsWith("/api/visits/doctor/") && "GET".equals(method))) {
+            return REPORT;
+        }
+        return "GET".equals(method) || "HEAD".equals(method) ? CLINICAL_READ : CLINICAL_WRITE;
+    }
+}
@@ -0,0 +1,20 @@
+package com.bharatemr.metrics;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Upper bound on the SQL statements a handler may issue against one database, independent of how many
+ * rows it returns. Checked by the list endpoint query count tests, together with the count staying the
+ * same when the data doubles; an endpoint over budget has an N+1 or a needless lookup somewhere.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ExpectedQueries {
+
+    int value();
+}
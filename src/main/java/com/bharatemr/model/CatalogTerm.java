@@ -0,0 +1,39 @@
+package com.bharatemr.model;
+
+import com.bharatemr.enums.CatalogKind;
+import lombok.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * One distinct medicine name, dosage, frequency, duration or test name. Prescription lines store the
+ * id; {@link com.bharatemr.catalog.CatalogDictionary} maps it back. Rows are never changed or deleted.
+ */
+@Entity
+@Table(name = "catalog_terms", uniqueConstraints = @UniqueConstraint(columnNames = { "kind", "term" }))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@EntityListeners(AuditingEntityListener.class)
+public class CatalogTerm {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "kind", nullable = false, length = 20)
+    private CatalogKind kind;
+    
+    @Column(name = "term", nullable = false)
+    private String term;
+    
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -1,5 +1,7 @@
 package com.bharatemr.model;
 
+import com.bharatemr.cache.EntityChangeListener;
+import com.bharatemr.sharding.ReferenceReplicationListener;
 import lombok.*;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
@@ -15,7 +17,7 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, ReferenceReplicationListener.class, EntityChangeListener.class})
 public class Doctor {
 
     @Id
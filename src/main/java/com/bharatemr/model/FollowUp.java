@@ -1,5 +1,6 @@
 package com.bharatemr.model;
 
+import com.bharatemr.cache.EntityChangeListener;
 import com.bharatemr.enums.FollowUpStatus;
 import lombok.*;
 import org.springframework.data.annotation.CreatedDate;
@@ -18,7 +19,7 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, EntityChangeListener.class})
 public class FollowUp {
     
     @Id
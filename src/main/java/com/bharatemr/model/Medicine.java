@@ -1,5 +1,6 @@
 package com.bharatemr.model;
 
+import com.bharatemr.catalog.CatalogTermConverter;
 import lombok.*;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -25,16 +26,21 @@ public class Medicine {
     @JoinColumn(name = "prescription_id", nullable = false)
     private Prescription prescription;
     
-    @Column(name = "medicine_name", nullable = false)
+    // Name, dosage, frequency and duration are stored as catalog_terms ids
+    @Convert(converter = CatalogTermConverter.MedicineName.class)
+    @Column(name = "medicine_name_id", nullable = false)
     private String medicineName;
     
-    @Column(name = "dosage", nullable = false, length = 100)
+    @Convert(converter = CatalogTermConverter.Dosage.class)
+    @Column(name = "dosage_id", nullable = false)
     private String dosage;
     
-    @Column(name = "frequency", nullable = false, length = 100)
+    @Convert(converter = CatalogTermConverter.Frequency.class)
+    @Column(name = "frequency_id", nullable = false)
     private String frequency;
     
-    @Column(name = "duration", nullable = false, length = 100)
+    @Convert(converter = CatalogTermConverter.Duration.class)
+    @Column(name = "duration_id", nullable = false)
     private String duration;
     
     @Column(name = "instructions", columnDefinition = "TEXT")
@@ -0,0 +1,66 @@
+package com.bharatemr.model;
+
+import lombok.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+@Entity
+@Table(name = "partition_archives")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@EntityListeners(AuditingEntityListener.class)
+public class PartitionArchive {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "table_name", nullable = false, length = 100)
+    private String tableName;
+    
+    @Column(name = "partition_name", nullable = false, unique = true, length = 100)
+    private String partitionName;
+    
+    @Column(name = "range_start", nullable = false)
+    private LocalDate rangeStart;
+    
+    @Column(name = "range_end", nullable = false)
+    private LocalDate rangeEnd;
+    
+    // Blob key of the gzipped archive
+    @Column(name = "file_path", nullable = false, length = 500)
+    private String filePath;
+    
+    @Column(name = "sha256", nullable = false, length = 64)
+    private String sha256;
+    
+    @Column(name = "row_count", nullable = false)
+    private Long rowCount;
+    
+    // Written in bulk by PartitionArchiveService; mapped so lookups can join on it
+    @ElementCollection
+    @CollectionTable(name = "partition_archive_patients", joinColumns = @JoinColumn(name = "archive_id"))
+    @Column(name = "patient_id", nullable = false)
+    @Builder.Default
+    private Set<Long> patientIds = new HashSet<>();
+    
+    // Prescription PDFs and attachment files the archived visits point at; written in bulk like patientIds
+    @ElementCollection
+    @CollectionTable(name = "partition_archive_blobs", joinColumns = @JoinColumn(name = "archive_id"))
+    @Column(name = "blob_key", nullable = false, length = 500)
+    @Builder.Default
+    private Set<String> blobKeys = new HashSet<>();
+    
+    @CreatedDate
+    @Column(name = "archived_at", updatable = false)
+    private LocalDateTime archivedAt;
+}
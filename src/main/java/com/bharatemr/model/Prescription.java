@@ -28,16 +28,22 @@ public class Prescription {
     private Visit visit;
     
     @OneToMany(mappedBy = "prescription", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("id")
     @Builder.Default
     private List<Medicine> medicines = new ArrayList<>();
     
     @OneToMany(mappedBy = "prescription", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("id")
     @Builder.Default
     private List<Test> tests = new ArrayList<>();
     
     @Column(name = "pdf_url", length = 500)
     private String pdfUrl;
     
+    // Null when the PDF at pdfUrl may no longer match the visit
+    @Column(name = "pdf_hash", length = 64)
+    private String pdfHash;
+    
     @CreatedDate
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -1,5 +1,6 @@
 package com.bharatemr.model;
 
+import com.bharatemr.catalog.CatalogTermConverter;
 import lombok.*;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -25,7 +26,8 @@ public class Test {
     @JoinColumn(name = "prescription_id", nullable = false)
     private Prescription prescription;
     
-    @Column(name = "test_name", nullable = false)
+    @Convert(converter = CatalogTermConverter.TestName.class)
+    @Column(name = "test_name_id", nullable = false)
     private String testName;
     
     @Column(name = "test_type", length = 100)
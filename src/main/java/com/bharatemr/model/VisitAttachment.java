@@ -0,0 +1,57 @@
+package com.bharatemr.model;
+
+import lombok.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "visit_attachments")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@EntityListeners(AuditingEntityListener.class)
+public class VisitAttachment {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "visit_id", nullable = false)
+    private Visit visit;
+    
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+    
+    @Column(name = "content_type", nullable = false, length = 100)
+    private String contentType;
+    
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+    
+    @Column(name = "sha256", nullable = false, length = 64)
+    private String sha256;
+    
+    // Shared by every attachment with the same content
+    @Column(name = "storage_key", nullable = false, length = 500)
+    private String storageKey;
+    
+    // Derived in the background (AttachmentDerivativeService); null until ready, or if nothing could be derived
+    @Column(name = "thumbnail_key", length = 500)
+    private String thumbnailKey;
+    
+    @Column(name = "preview_key", length = 500)
+    private String previewKey;
+    
+    @Column(name = "derived_at")
+    private LocalDateTime derivedAt;
+    
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
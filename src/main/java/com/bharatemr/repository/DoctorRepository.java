@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
@@ -17,6 +18,8 @@ public interface DoctorRepository extends JpaRepository<Doctor, Long> {
     boolean existsByMobileNumber(String mobileNumber);
     
     boolean existsByEmail(String email);
+
+    long countByCreatedAtAfter(LocalDateTime createdAt);
     
     @Query("SELECT COUNT(d) FROM Doctor d WHERE d.isActive = true")
     long countActiveDoctors();
@@ -2,6 +2,7 @@ package com.bharatemr.repository;
 
 import com.bharatemr.enums.FollowUpStatus;
 import com.bharatemr.model.FollowUp;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -13,10 +14,13 @@ import java.util.List;
 @Repository
 public interface FollowUpRepository extends JpaRepository<FollowUp, Long> {
 
+    @EntityGraph(attributePaths = { "patient", "doctor" })
     List<FollowUp> findByPatientIdOrderByScheduledDateDesc(Long patientId);
 
+    @EntityGraph(attributePaths = { "patient", "doctor" })
     List<FollowUp> findByDoctorIdOrderByScheduledDateDesc(Long doctorId);
 
+    @EntityGraph(attributePaths = { "patient", "doctor" })
     List<FollowUp> findByStatusOrderByScheduledDateAsc(FollowUpStatus status);
 
     @Query("SELECT f FROM FollowUp f WHERE f.doctor.id = :doctorId AND f.scheduledDate BETWEEN :startDate AND :endDate")
@@ -25,7 +29,7 @@ public interface FollowUpRepository extends JpaRepository<FollowUp, Long> {
             @Param("startDate") LocalDateTime startDate,
             @Param("endDate") LocalDateTime endDate);
 
-    @Query("SELECT COUNT(f) FROM FollowUp f WHERE DATE(f.scheduledDate) = CURRENT_DATE AND f.status = 'SCHEDULED'")
+    @Query("SELECT COUNT(f) FROM FollowUp f WHERE f.scheduledDate = CURRENT_DATE AND f.status = 'SCHEDULED'")
     long countTodaysScheduledFollowUps();
 
     long countByDoctorIdAndStatus(Long doctorId, FollowUpStatus status);
@@ -2,12 +2,31 @@ package com.bharatemr.repository;
 
 import com.bharatemr.model.Medicine;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface MedicineRepository extends JpaRepository<Medicine, Long> {
     
     List<Medicine> findByPrescriptionId(Long prescriptionId);
-}
\ No newline at end of file
+    
+    // One row per spelling and doctor, streamed so the whole history is never held as entities
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT m.medicineName AS name, d.doctorId AS doctorId, COUNT(m) AS uses FROM Medicine m " +
+           "JOIN m.prescription p JOIN p.visit v JOIN v.doctor d GROUP BY m.medicineName, d.doctorId")
+    Stream<MedicineUsage> streamUsageByDoctor();
+    
+    interface MedicineUsage {
+        
+        String getName();
+        
+        String getDoctorId();
+        
+        Long getUses();
+    }
+}
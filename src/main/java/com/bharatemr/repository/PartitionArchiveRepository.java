@@ -0,0 +1,22 @@
+package com.bharatemr.repository;
+
+import com.bharatemr.model.PartitionArchive;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PartitionArchiveRepository extends JpaRepository<PartitionArchive, Long> {
+    
+    boolean existsByPartitionName(String partitionName);
+    
+    @Query("SELECT a FROM PartitionArchive a JOIN a.patientIds p " +
+           "WHERE a.tableName = 'visits' AND p = :patientId ORDER BY a.rangeStart DESC")
+    List<PartitionArchive> findVisitArchivesForPatient(@Param("patientId") Long patientId);
+    
+    @Query("SELECT k FROM PartitionArchive a JOIN a.blobKeys k")
+    List<String> findAllArchivedBlobKeys();
+}
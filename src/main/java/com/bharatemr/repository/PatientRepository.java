@@ -1,12 +1,17 @@
 package com.bharatemr.repository;
 
 import com.bharatemr.model.Patient;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,6 +26,11 @@ public interface PatientRepository extends JpaRepository<Patient, Long>, JpaSpec
 
     boolean existsByMobileNumber(String mobileNumber);
 
+    long countByCreatedAtAfter(LocalDateTime createdAt);
+
+    @EntityGraph(attributePaths = "onboardedByDoctor")
+    Page<Patient> findAll(Specification<Patient> spec, Pageable pageable);
+
     @Query("SELECT COUNT(p) FROM Patient p WHERE p.isActive = true")
     long countActivePatients();
 
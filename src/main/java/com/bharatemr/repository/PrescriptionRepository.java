@@ -2,8 +2,14 @@ package com.bharatemr.repository;
 
 import com.bharatemr.model.Prescription;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -14,4 +20,39 @@ public interface PrescriptionRepository extends JpaRepository<Prescription, Long
     boolean existsByVisitId(Long visitId);
 
     long countByVisitDoctorId(Long doctorId);
-}
\ No newline at end of file
+
+    @Query("SELECT p.visit.id FROM Prescription p WHERE p.visit.id IN :visitIds")
+    List<Long> findVisitIdsByVisitIdIn(@Param("visitIds") Collection<Long> visitIds);
+
+    // medicines and tests are both bags, so they are fetched in two passes over the same prescriptions
+    @Query("SELECT DISTINCT p FROM Prescription p LEFT JOIN FETCH p.medicines WHERE p.visit.id IN :visitIds")
+    List<Prescription> findWithMedicinesByVisitIdIn(@Param("visitIds") Collection<Long> visitIds);
+
+    @Query("SELECT DISTINCT p FROM Prescription p LEFT JOIN FETCH p.tests WHERE p.visit.id IN :visitIds")
+    List<Prescription> findWithTestsByVisitIdIn(@Param("visitIds") Collection<Long> visitIds);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Prescription p SET p.pdfUrl = :pdfUrl, p.pdfHash = :pdfHash WHERE p.id = :id")
+    int updatePdf(@Param("id") Long id, @Param("pdfUrl") String pdfUrl, @Param("pdfHash") String pdfHash);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Prescription p SET p.pdfHash = NULL WHERE p.visit.id = :visitId")
+    int markPdfStale(@Param("visitId") Long visitId);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Prescription p SET p.pdfHash = NULL WHERE p.visit.id IN " +
+           "(SELECT v.id FROM Visit v WHERE v.doctor.id = :doctorId)")
+    int markPdfStaleForDoctor(@Param("doctorId") Long doctorId);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Prescription p SET p.pdfHash = NULL WHERE p.visit.id IN " +
+           "(SELECT v.id FROM Visit v WHERE v.patient.id = :patientId)")
+    int markPdfStaleForPatient(@Param("patientId") Long patientId);
+
+    @Query("SELECT p.pdfUrl FROM Prescription p WHERE p.pdfUrl IS NOT NULL")
+    List<String> findAllPdfUrls();
+}
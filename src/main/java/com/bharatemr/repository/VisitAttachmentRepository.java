@@ -0,0 +1,35 @@
+package com.bharatemr.repository;
+
+import com.bharatemr.model.VisitAttachment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface VisitAttachmentRepository extends JpaRepository<VisitAttachment, Long> {
+
+    List<VisitAttachment> findByVisitIdOrderByCreatedAtAsc(Long visitId);
+
+    List<VisitAttachment> findByVisitIdInOrderByCreatedAtAsc(Collection<Long> visitIds);
+
+    Optional<VisitAttachment> findByIdAndVisitId(Long id, Long visitId);
+
+    // Attachments whose derivation never ran, e.g. because the pool was full or the node went down
+    List<VisitAttachment> findTop100ByDerivedAtIsNullAndCreatedAtBeforeOrderByCreatedAtAsc(LocalDateTime before);
+
+    // Derivatives belong to the content, so every attachment sharing it is updated at once
+    @Modifying
+    @Transactional
+    @Query("UPDATE VisitAttachment a SET a.thumbnailKey = :thumbnailKey, a.previewKey = :previewKey, " +
+           "a.derivedAt = :derivedAt WHERE a.sha256 = :sha256")
+    int updateDerivatives(@Param("sha256") String sha256, @Param("thumbnailKey") String thumbnailKey,
+                          @Param("previewKey") String previewKey, @Param("derivedAt") LocalDateTime derivedAt);
+}
@@ -1,6 +1,10 @@
 package com.bharatemr.repository;
 
 import com.bharatemr.model.Visit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -14,10 +18,16 @@ import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 @Repository
 public interface VisitRepository extends JpaRepository<Visit, Long>, JpaSpecificationExecutor<Visit> {
 
+        @EntityGraph(attributePaths = { "patient", "doctor" })
         List<Visit> findByPatientIdOrderByVisitDateDesc(Long patientId);
 
+        @EntityGraph(attributePaths = { "patient", "doctor" })
         List<Visit> findByDoctorIdOrderByVisitDateDesc(Long doctorId);
 
+        @EntityGraph(attributePaths = { "patient", "doctor" })
+        Page<Visit> findAll(Specification<Visit> spec, Pageable pageable);
+
+        @EntityGraph(attributePaths = { "patient", "doctor" })
         @Query("SELECT v FROM Visit v WHERE v.doctor.id = :doctorId AND v.visitDate BETWEEN :startDate AND :endDate")
         List<Visit> findVisitsByDoctorAndDateRange(
                         @Param("doctorId") Long doctorId,
@@ -30,4 +40,28 @@ public interface VisitRepository extends JpaRepository<Visit, Long>, JpaSpecific
                         @Param("endDate") LocalDateTime endDate);
 
         long countByDoctorIdAndVisitDateBetween(Long doctorId, LocalDateTime startDate, LocalDateTime endDate);
+
+        // Keyset pages of a patient's history, newest first: the first page, then everything after a visit
+        @EntityGraph(attributePaths = { "patient", "doctor" })
+        List<Visit> findByPatientIdOrderByVisitDateDescIdDesc(Long patientId, Pageable pageable);
+
+        @EntityGraph(attributePaths = { "patient", "doctor" })
+        @Query("SELECT v FROM Visit v WHERE v.patient.id = :patientId AND (v.visitDate < :visitDate " +
+                        "OR (v.visitDate = :visitDate AND v.id < :visitId)) ORDER BY v.visitDate DESC, v.id DESC")
+        List<Visit> findPatientVisitsBefore(
+                        @Param("patientId") Long patientId,
+                        @Param("visitDate") LocalDateTime visitDate,
+                        @Param("visitId") Long visitId,
+                        Pageable pageable);
+
+        long countByPatientId(Long patientId);
+
+        @Query("SELECT MIN(v.visitDate) FROM Visit v WHERE v.patient.id = :patientId")
+        LocalDateTime findFirstVisitDate(@Param("patientId") Long patientId);
+
+        @Query("SELECT MAX(v.visitDate) FROM Visit v WHERE v.patient.id = :patientId")
+        LocalDateTime findLastVisitDate(@Param("patientId") Long patientId);
+
+        @Query("SELECT DISTINCT v.doctor.fullName FROM Visit v WHERE v.patient.id = :patientId")
+        List<String> findDoctorNamesByPatientId(@Param("patientId") Long patientId);
 }
\ No newline at end of file
@@ -0,0 +1,302 @@
+package com.bharatemr.service;
+
+import com.bharatemr.repository.VisitAttachmentRepository;
+import com.bharatemr.sharding.ShardContext;
+import com.bharatemr.sharding.ShardTemplate;
+import com.bharatemr.storage.BlobStore;
+import com.itextpdf.kernel.pdf.PdfArray;
+import com.itextpdf.kernel.pdf.PdfDictionary;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfNumber;
+import com.itextpdf.kernel.pdf.PdfObject;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfStream;
+import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small derivatives of an attachment, so list views load kilobytes instead of the full scan or report:
+ * a JPEG thumbnail and a screen-sized JPEG preview. They are stored next to the content
+ * ({@code uploads/<sha256>.thumb.jpg}) and, like the content, made once per SHA-256. Work runs on a
+ * small low-priority pool after the upload completes.
+ */
+@Service
+@Slf4j
+public class AttachmentDerivativeService {
+
+    static final String THUMBNAIL_SUFFIX = ".thumb.jpg";
+
+    static final String PREVIEW_SUFFIX = ".preview.jpg";
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private VisitAttachmentRepository visitAttachmentRepository;
+
+    @Autowired
+    private ShardTemplate shardTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("attachmentDerivationExecutor")
+    private ThreadPoolTaskExecutor derivationExecutor;
+
+    @Value("${app.upload.derivatives.thumbnail-size:256}")
+    private int thumbnailSize;
+
+    @Value("${app.upload.derivatives.preview-size:1280}")
+    private int previewSize;
+
+    @Value("${app.upload.derivatives.jpeg-quality:0.8}")
+    private float jpegQuality;
+
+    @Value("${app.upload.derivatives.max-decoded-pixels:16000000}")
+    private long maxDecodedPixels;
+
+    // Content queued or being derived on this node, so the sweep does not queue it a second time
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Queues derivation for the content and returns at once. When the pool is full the attachment
+     * is left as it is; {@link #deriveMissing()} picks it up later.
+     */
+    public void deriveLater(String sha256, String contentType) {
+        if (!inFlight.add(sha256)) {
+            return;
+        }
+        String shard = ShardContext.get();
+        try {
+            derivationExecutor.execute(() -> {
+                ShardContext.set(shard);
+                try {
+                    derive(sha256, contentType);
+                } finally {
+                    inFlight.remove(sha256);
+                    ShardContext.clear();
+                }
+            });
+        } catch (TaskRejectedException e) {
+            inFlight.remove(sha256);
+            meterRegistry.counter("uploads.derivatives", "result", "deferred").increment();
+            log.debug("Derivation queue full, {} left to the sweep", sha256);
+        }
+    }
+
+    @Scheduled(fixedDelay = 600000) // Every 10 minutes
+    public void deriveMissing() {
+        LocalDateTime before = LocalDateTime.now().minusMinutes(5);
+        shardTemplate.forEachShard(() -> {
+            Map<String, String> pending = new LinkedHashMap<>();
+            visitAttachmentRepository.findTop100ByDerivedAtIsNullAndCreatedAtBeforeOrderByCreatedAtAsc(before)
+                    .forEach(attachment -> pending.putIfAbsent(attachment.getSha256(), attachment.getContentType()));
+            pending.forEach(this::deriveLater);
+        });
+    }
+
+    // Records the outcome even when nothing could be derived, so a file that cannot be decoded is not retried
+    private void derive(String sha256, String contentType) {
+        long started = System.nanoTime();
+        String content = VisitAttachmentService.CONTENT_PREFIX + sha256;
+        String thumbnailKey = content + THUMBNAIL_SUFFIX;
+        String previewKey = content + PREVIEW_SUFFIX;
+
+        String result;
+        boolean derived;
+        try {
+            // The preview is written last, so once it exists the derivation as a whole is done
+            if (blobStore.exists(previewKey)) {
+                derived = true;
+                result = "reused";
+            } else {
+                BufferedImage image = contentType.startsWith("image/") ? decodeImage(content) : decodePdf(content);
+                derived = image != null;
+                if (derived) {
+                    BufferedImage preview = scale(image, previewSize);
+                    putJpeg(thumbnailKey, scale(preview, thumbnailSize));
+                    putJpeg(previewKey, preview);
+                }
+                result = derived ? "derived" : "none";
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not derive thumbnail/preview for {}: {}", content, e.toString());
+            derived = false;
+            result = "failed";
+        }
+
+        visitAttachmentRepository.updateDerivatives(sha256, derived ? thumbnailKey : null,
+                derived ? previewKey : null, LocalDateTime.now());
+        meterRegistry.counter("uploads.derivatives", "result", result).increment();
+        meterRegistry.timer("uploads.derivatives.time").record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    private BufferedImage decodeImage(String content) throws IOException {
+        try (InputStream in = blobStore.open(content)) {
+            BufferedImage image = readSubsampled(in);
+            if (image == null) {
+                throw new IOException("No image reader for " + content);
+            }
+            return image;
+        }
+    }
+
+    /**
+     * iText cannot rasterise a page, so both derivatives come from the first page's largest embedded
+     * image, which for a scanned report is the scan itself; a PDF of plain text gets neither.
+     */
+    private BufferedImage decodePdf(String content) throws IOException {
+        try (InputStream in = blobStore.open(content);
+             PdfDocument source = new PdfDocument(new PdfReader(in))) {
+            PdfStream scan = largestImage(source.getFirstPage().getResources().getResource(PdfName.XObject));
+            return scan == null ? null : decodeEmbedded(scan);
+        }
+    }
+
+    // A JPEG scan is stored in the PDF as a JPEG file, so its raw bytes are read subsampled like an
+    // uploaded photo. Anything else is decoded by iText at full size, which is refused for huge images.
+    private BufferedImage decodeEmbedded(PdfStream image) throws IOException {
+        if (PdfName.DCTDecode.equals(soleFilter(image))) {
+            return readSubsampled(new ByteArrayInputStream(image.getBytes(false)));
+        }
+        long pixels = area(image);
+        if (pixels > maxDecodedPixels) {
+            log.debug("Embedded image of {} pixels is too large to decode whole, no thumbnail", pixels);
+            return null;
+        }
+        return new PdfImageXObject(image).getBufferedImage();
+    }
+
+    private static PdfObject soleFilter(PdfStream stream) {
+        PdfObject filter = stream.get(PdfName.Filter);
+        if (filter instanceof PdfArray && ((PdfArray) filter).size() == 1) {
+            return ((PdfArray) filter).get(0);
+        }
+        return filter;
+    }
+
+    private static PdfStream largestImage(PdfDictionary xObjects) {
+        if (xObjects == null) {
+            return null;
+        }
+        PdfStream largest = null;
+        long largestArea = 0;
+        for (PdfName name : xObjects.keySet()) {
+            PdfStream stream = xObjects.getAsStream(name);
+            if (stream == null || !PdfName.Image.equals(stream.getAsName(PdfName.Subtype))) {
+                continue;
+            }
+            long area = area(stream);
+            if (area > largestArea) {
+                largest = stream;
+                largestArea = area;
+            }
+        }
+        return largest;
+    }
+
+    private static long area(PdfStream image) {
+        PdfNumber width = image.getAsNumber(PdfName.Width);
+        PdfNumber height = image.getAsNumber(PdfName.Height);
+        return width == null || height == null ? 0 : (long) width.intValue() * height.intValue();
+    }
+
+    // Decodes only every n-th pixel of a large scan, so a 12MP photo never has to be held at full size
+    private BufferedImage readSubsampled(InputStream in) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int step = Math.max(1, Math.max(reader.getWidth(0), reader.getHeight(0)) / previewSize);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private void putJpeg(String key, BufferedImage image) throws IOException {
+        blobStore.put(key, "image/jpeg", out -> {
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+                writer.setOutput(output);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+        });
+    }
+
+    // Halves until close to the target, then one bilinear step; a single large step would alias badly
+    private static BufferedImage scale(BufferedImage image, int maxSide) {
+        int longest = Math.max(image.getWidth(), image.getHeight());
+        double target = Math.min(1.0, (double) maxSide / longest);
+        BufferedImage current = image;
+        double remaining = target;
+        do {
+            double step = Math.max(remaining, 0.5);
+            current = resize(current, step);
+            remaining /= step;
+        } while (remaining < 0.999);
+        return current;
+    }
+
+    // Always redraws onto an opaque RGB canvas: JPEG has no alpha, and PNG transparency becomes white
+    private static BufferedImage resize(BufferedImage image, double ratio) {
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = resized.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return resized;
+    }
+}
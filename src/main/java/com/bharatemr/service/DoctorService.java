@@ -1,5 +1,7 @@
 package com.bharatemr.service;
 
+import com.bharatemr.cache.EntityChange;
+import com.bharatemr.cache.SingleFlight;
 import com.bharatemr.dto.AuthResponseDto;
 import com.bharatemr.dto.DoctorDto;
 import com.bharatemr.dto.DoctorRegistrationDto;
@@ -22,6 +24,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -34,6 +37,10 @@ import java.util.stream.Collectors;
 @Slf4j
 public class DoctorService {
 
+    private static final String ALL_DOCTORS_FLIGHT = "all-doctors";
+
+    private static final String DOCTOR_STATS_FLIGHT = "doctor-stats";
+
     @Autowired
     private DoctorRepository doctorRepository;
 
@@ -58,6 +65,18 @@ public class DoctorService {
     @Autowired
     private PrescriptionRepository prescriptionRepository;
 
+    @Autowired
+    private PrescriptionService prescriptionService;
+
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @PostConstruct
+    public void registerFlights() {
+        singleFlight.evictOn(ALL_DOCTORS_FLIGHT, EntityChange.DOCTOR);
+        singleFlight.evictOn(DOCTOR_STATS_FLIGHT, EntityChange.DOCTOR_STATS, EntityChange.PATIENT);
+    }
+
     @Transactional
     public AuthResponseDto registerDoctor(DoctorRegistrationDto dto) {
         // Verify OTP first
@@ -177,6 +196,7 @@ public class DoctorService {
     public DoctorDto updateDoctorProfile(String doctorId, DoctorDto dto) {
         Doctor doctor = doctorRepository.findByDoctorId(doctorId)
                 .orElseThrow(() -> new ResourceNotFoundException("Doctor not found"));
+        String letterhead = letterhead(doctor);
 
         // Update allowed fields
         if (dto.getEmail() != null)
@@ -197,6 +217,9 @@ public class DoctorService {
             doctor.setPreferredTheme(dto.getPreferredTheme());
 
         Doctor updated = doctorRepository.save(doctor);
+        if (!letterhead.equals(letterhead(updated))) {
+            prescriptionService.markPdfStaleForDoctor(updated.getId());
+        }
 
         log.info("Doctor profile updated: {}", doctorId);
 
@@ -246,15 +269,24 @@ public class DoctorService {
                 .collect(Collectors.toList());
     }
 
-    @Transactional(readOnly = true)
+    // Concurrent callers share one query; see SingleFlight
     public List<DoctorDto> getAllDoctors() {
-        return doctorRepository.findAll().stream()
+        return singleFlight.execute(ALL_DOCTORS_FLIGHT, "all", () -> doctorRepository.findAll().stream()
                 .map(doctor -> modelMapper.map(doctor, DoctorDto.class))
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
     }
 
-    @Transactional(readOnly = true)
     public Map<String, Object> getDoctorDashboardStats(String doctorId) {
+        return singleFlight.execute(DOCTOR_STATS_FLIGHT, doctorId, () -> computeDoctorDashboardStats(doctorId));
+    }
+
+    // Doctor fields printed on every prescription PDF
+    private static String letterhead(Doctor doctor) {
+        return String.join("|", String.valueOf(doctor.getClinicName()), String.valueOf(doctor.getClinicAddress()),
+                String.valueOf(doctor.getQualification()), String.valueOf(doctor.getSpecialization()));
+    }
+
+    private Map<String, Object> computeDoctorDashboardStats(String doctorId) {
         Doctor doctor = doctorRepository.findByDoctorId(doctorId)
                 .orElseThrow(() -> new ResourceNotFoundException("Doctor not found"));
 
@@ -11,6 +11,7 @@ import com.bharatemr.repository.DoctorRepository;
 import com.bharatemr.repository.FollowUpRepository;
 import com.bharatemr.repository.PatientRepository;
 import com.bharatemr.repository.VisitRepository;
+import com.bharatemr.sharding.ShardTemplate;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,6 +22,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -43,6 +45,9 @@ public class FollowUpService {
     @Autowired
     private NotificationService notificationService;
 
+    @Autowired
+    private ShardTemplate shardTemplate;
+
     @Autowired
     private ModelMapper modelMapper;
 
@@ -77,12 +82,9 @@ public class FollowUpService {
         return convertToDto(saved);
     }
 
-    @Transactional(readOnly = true)
     public FollowUpDto getFollowUpById(Long id) {
-        FollowUp followUp = followUpRepository.findById(id)
+        return shardTemplate.findFirst(() -> followUpRepository.findById(id).map(this::convertToDto))
                 .orElseThrow(() -> new ResourceNotFoundException("Follow-up not found"));
-
-        return convertToDto(followUp);
     }
 
     @Transactional
@@ -141,47 +143,39 @@ public class FollowUpService {
                 .collect(Collectors.toList());
     }
 
-    @Transactional(readOnly = true)
     public List<FollowUpDto> getFollowUpsByPatient(String patientId) {
         Patient patient = patientRepository.findByPatientId(patientId)
                 .orElseThrow(() -> new ResourceNotFoundException("Patient not found"));
 
-        List<FollowUp> followUps = followUpRepository.findByPatientIdOrderByScheduledDateDesc(patient.getId());
-
-        return followUps.stream()
+        return shardTemplate.gather(() -> followUpRepository.findByPatientIdOrderByScheduledDateDesc(patient.getId())
+                .stream()
                 .map(this::convertToDto)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()), FollowUpDto::getId, Comparator.comparing(FollowUpDto::getScheduledDate).reversed());
     }
 
-    @Transactional(readOnly = true)
     public List<FollowUpDto> getUpcomingFollowUpsByPatient(String patientId) {
         Patient patient = patientRepository.findByPatientId(patientId)
                 .orElseThrow(() -> new ResourceNotFoundException("Patient not found"));
 
-        List<FollowUp> followUps = followUpRepository.findByPatientIdOrderByScheduledDateDesc(patient.getId());
-
         LocalDate now = LocalDate.now();
 
-        return followUps.stream()
+        return shardTemplate.gather(() -> followUpRepository.findByPatientIdOrderByScheduledDateDesc(patient.getId())
+                .stream()
                 .filter(f -> f.getScheduledDate().isAfter(now) && f.getStatus() == FollowUpStatus.SCHEDULED)
                 .map(this::convertToDto)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()), FollowUpDto::getId, Comparator.comparing(FollowUpDto::getScheduledDate).reversed());
     }
 
-    @Transactional(readOnly = true)
     public List<FollowUpDto> getTodaysFollowUps() {
         LocalDate startOfDay = LocalDate.now();// .withHour(0).withMinute(0).withSecond(0);
         // LocalDateTime endOfDay =
         // LocalDateTime.now().withHour(23).withMinute(59).withSecond(59);
 
-        List<FollowUp> followUps = followUpRepository.findByStatusOrderByScheduledDateAsc(FollowUpStatus.SCHEDULED)
+        return shardTemplate.gather(() -> followUpRepository.findByStatusOrderByScheduledDateAsc(FollowUpStatus.SCHEDULED)
                 .stream()
                 .filter(f -> f.getScheduledDate().isEqual(startOfDay))
-                .collect(Collectors.toList());
-
-        return followUps.stream()
                 .map(this::convertToDto)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
     }
 
     @Scheduled(cron = "0 0 9 * * *") // Run daily at 9 AM
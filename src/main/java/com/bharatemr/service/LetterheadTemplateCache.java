@@ -0,0 +1,238 @@
+package com.bharatemr.service;
+
+import com.bharatemr.cache.CacheInvalidationRegistry;
+import com.bharatemr.cache.EntityChange;
+import com.bharatemr.cache.InvalidationListener;
+import com.bharatemr.model.Doctor;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.element.Div;
+import com.itextpdf.layout.element.Image;
+import com.itextpdf.layout.element.Paragraph;
+import com.itextpdf.layout.layout.LayoutArea;
+import com.itextpdf.layout.layout.LayoutContext;
+import com.itextpdf.layout.properties.TextAlignment;
+import com.itextpdf.layout.renderer.IRenderer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Each doctor's prescription header and footer, laid out once and kept as parsed one-page PDFs
+ * sized to their content. A prescription copies them in as form XObjects, so only the patient and
+ * prescription body go through iText layout per render. Entries are dropped on doctor changes from
+ * the invalidation bus, and rebuilt anyway if the printed fields no longer match.
+ */
+@Component
+@Slf4j
+public class LetterheadTemplateCache {
+
+    // A4 minus the 30pt side margins of the prescription page
+    static final float CONTENT_WIDTH = PageSize.A4.getWidth() - 60;
+
+    private static final float MAX_HEIGHT = 400;
+
+    @Autowired
+    private CacheInvalidationRegistry cacheInvalidationRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.pdf.letterhead-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.pdf.letterhead-cache.max-size:1000}")
+    private int maxSize;
+
+    private Map<Long, Letterhead> templates;
+
+    private Counter hits;
+
+    private Counter misses;
+
+    @PostConstruct
+    public void init() {
+        templates = Collections.synchronizedMap(new LinkedHashMap<Long, Letterhead>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Letterhead> eldest) {
+                return size() > maxSize;
+            }
+        });
+        hits = Counter.builder("pdf.letterhead.cache").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("pdf.letterhead.cache").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("pdf.letterhead.cache.size", templates, Map::size)
+                .description("Doctors with a pre-rendered letterhead")
+                .register(meterRegistry);
+
+        cacheInvalidationRegistry.subscribe(EntityChange.DOCTOR, new InvalidationListener() {
+            @Override
+            public void invalidate(Collection<EntityChange> changes) {
+                changes.forEach(change -> templates.remove(Long.valueOf(change.getId())));
+            }
+
+            @Override
+            public void invalidateAll() {
+                templates.clear();
+            }
+        });
+    }
+
+    public void addHeader(Document document, Doctor doctor) {
+        add(document, doctor, this::buildHeader, letterhead -> letterhead.header);
+    }
+
+    public void addFooter(Document document, Doctor doctor) {
+        add(document, doctor, this::buildFooter, letterhead -> letterhead.footer);
+    }
+
+    private void add(Document document, Doctor doctor, Function<Doctor, Div> layout, Function<Letterhead, PdfDocument> part) {
+        if (!enabled || doctor.getId() == null) {
+            document.add(layout.apply(doctor));
+            return;
+        }
+
+        PdfDocument template = part.apply(letterhead(doctor));
+        PdfFormXObject stamp;
+        // Copying reads the template lazily, which a PdfDocument does not allow from two threads
+        synchronized (template) {
+            try {
+                stamp = template.getFirstPage().copyAsFormXObject(document.getPdfDocument());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        document.add(new Image(stamp));
+    }
+
+    private Letterhead letterhead(Doctor doctor) {
+        String fields = String.join("|", String.valueOf(doctor.getClinicName()), String.valueOf(doctor.getFullName()),
+                String.valueOf(doctor.getQualification()), String.valueOf(doctor.getSpecialization()),
+                String.valueOf(doctor.getClinicAddress()), String.valueOf(doctor.getMedicalRegistrationNumber()));
+        Letterhead cached = templates.get(doctor.getId());
+        if (cached != null && cached.fields.equals(fields)) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        Letterhead built = new Letterhead(fields, render(buildHeader(doctor), buildHeader(doctor)),
+                render(buildFooter(doctor), buildFooter(doctor)));
+        templates.put(doctor.getId(), built);
+        log.debug("Letterhead template built for doctor {}", doctor.getDoctorId());
+        return built;
+    }
+
+    // Laid out once to measure, then again on a page exactly that tall (separate element trees)
+    private PdfDocument render(Div measured, Div content) {
+        float height;
+        try (Document measure = new Document(new PdfDocument(new PdfWriter(new ByteArrayOutputStream())))) {
+            IRenderer renderer = measured.createRendererSubTree().setParent(measure.getRenderer());
+            height = renderer.layout(new LayoutContext(new LayoutArea(1, new Rectangle(CONTENT_WIDTH, MAX_HEIGHT))))
+                    .getOccupiedArea().getBBox().getHeight();
+            measure.getPdfDocument().addNewPage();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Document document = new Document(new PdfDocument(new PdfWriter(out)), new PageSize(CONTENT_WIDTH, height + 1))) {
+            document.setMargins(0, 0, 0, 0);
+            document.add(content);
+        }
+        try {
+            // Kept open for reading; it only holds the bytes, nothing to release on eviction
+            return new PdfDocument(new PdfReader(new ByteArrayInputStream(out.toByteArray())));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Div buildHeader(Doctor doctor) {
+        Div header = new Div();
+
+        // Doctor's header
+        header.add(new Paragraph(doctor.getClinicName())
+                .setFontSize(16) // Reduced from 20
+                .setBold()
+                .setTextAlignment(TextAlignment.CENTER)
+                .setMarginBottom(0));
+
+        header.add(new Paragraph("Dr. " + doctor.getFullName())
+                .setFontSize(12) // Reduced from 16
+                .setTextAlignment(TextAlignment.CENTER)
+                .setMarginBottom(0));
+
+        header.add(new Paragraph(doctor.getQualification() + " - " + doctor.getSpecialization())
+                .setFontSize(10) // Reduced from 12
+                .setTextAlignment(TextAlignment.CENTER)
+                .setMarginBottom(0));
+
+        header.add(new Paragraph(doctor.getClinicAddress())
+                .setFontSize(9) // Reduced from 10
+                .setTextAlignment(TextAlignment.CENTER)
+                .setMarginBottom(5));
+
+        // Separator line
+        header.add(new Paragraph("-".repeat(110))
+                .setFontSize(8)
+                .setTextAlignment(TextAlignment.CENTER)
+                .setMarginBottom(5));
+        return header;
+    }
+
+    private Div buildFooter(Doctor doctor) {
+        Div footer = new Div();
+        footer.add(new Paragraph("\n"));
+        footer.add(new Paragraph("-".repeat(110)).setFontSize(8).setMarginBottom(5));
+
+        footer.add(new Paragraph("Dr. " + doctor.getFullName())
+                .setTextAlignment(TextAlignment.RIGHT)
+                .setBold()
+                .setFontSize(10)
+                .setMarginBottom(0));
+
+        footer.add(new Paragraph("Reg. No: " + doctor.getMedicalRegistrationNumber())
+                .setTextAlignment(TextAlignment.RIGHT)
+                .setFontSize(9)
+                .setMarginBottom(10));
+
+        footer.add(new Paragraph("Note: This is a digitally generated prescription.")
+                .setFontSize(7)
+                .setItalic()
+                .setTextAlignment(TextAlignment.CENTER));
+        return footer;
+    }
+
+    private static class Letterhead {
+
+        final String fields;
+
+        final PdfDocument header;
+
+        final PdfDocument footer;
+
+        Letterhead(String fields, PdfDocument header, PdfDocument footer) {
+            this.fields = fields;
+            this.header = header;
+            this.footer = footer;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.bharatemr.service;
+
+import com.bharatemr.dto.MedicineSuggestionDto;
+import com.bharatemr.repository.MedicineRepository;
+import com.bharatemr.repository.MedicineRepository.MedicineUsage;
+import com.bharatemr.sharding.ShardTemplate;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Typeahead for medicine names. Every name ever prescribed is held in sorted in-memory maps, so a
+ * prefix lookup is a range scan with no database round trip: the doctor's own medicines first, by how
+ * often that doctor prescribed them, then everyone else's, by overall use. Spellings that differ only
+ * in case or spacing count as one name. Medicines are added as prescriptions commit on this node;
+ * those prescribed through other nodes show up with the nightly rebuild.
+ */
+@Service
+@Slf4j
+public class MedicineAutocompleteService {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // Lowest count first, then alphabetically last, so the heap drops the weakest match
+    private static final Comparator<Ranked> WEAKEST_FIRST = Comparator.comparingLong((Ranked r) -> r.count)
+            .thenComparing(r -> r.key, Comparator.reverseOrder());
+
+    @Autowired
+    private MedicineRepository medicineRepository;
+
+    @Autowired
+    private ShardTemplate shardTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.medicine-autocomplete.min-prefix:2}")
+    private int minPrefix;
+
+    @Value("${app.medicine-autocomplete.max-results:10}")
+    private int maxResults;
+
+    private volatile Index index = new Index();
+
+    // Set while a rebuild runs; new medicines go into both, so none are lost when the indexes are swapped
+    private volatile Index building;
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("medicine.autocomplete.names", this, service -> service.index.names.size())
+                .register(meterRegistry);
+    }
+
+    // In the background: until the first build finishes, lookups just return nothing
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        taskExecutor.execute(this::rebuild);
+    }
+
+    @Scheduled(cron = "0 45 3 * * *") // Run daily at 3:45 AM
+    public synchronized void rebuild() {
+        long started = System.nanoTime();
+        Index next = new Index();
+        building = next;
+        try {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setReadOnly(true);
+            shardTemplate.forEachShard(() -> transaction.executeWithoutResult(status -> {
+                try (Stream<MedicineUsage> usage = medicineRepository.streamUsageByDoctor()) {
+                    usage.forEach(row -> next.add(row.getDoctorId(), row.getName(), row.getUses()));
+                }
+            }));
+            index = next;
+        } catch (RuntimeException e) {
+            log.error("Medicine index rebuild failed, keeping the previous index", e);
+            return;
+        } finally {
+            building = null;
+        }
+        log.info("Medicine index: {} names from {} doctors in {} ms", next.names.size(), next.byDoctor.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    public List<MedicineSuggestionDto> suggest(String doctorId, String query, int limit) {
+        String prefix = normalize(query);
+        if (prefix.length() < minPrefix) {
+            return new ArrayList<>();
+        }
+        int max = Math.max(1, Math.min(limit, maxResults));
+        String end = prefix + Character.MAX_VALUE;
+        Index current = index;
+
+        List<MedicineSuggestionDto> suggestions = new ArrayList<>(max);
+        Set<String> seen = new HashSet<>();
+        NavigableMap<String, LongAdder> own = doctorId != null ? current.byDoctor.get(doctorId) : null;
+        if (own != null) {
+            for (Ranked ranked : top(own.subMap(prefix, end), LongAdder::sum, max)) {
+                Name name = current.names.get(ranked.key);
+                suggestions.add(new MedicineSuggestionDto(name.display, ranked.count, name.uses.sum()));
+                seen.add(ranked.key);
+            }
+        }
+        if (suggestions.size() < max) {
+            // Asks for enough extra to cover names the doctor's own list already returned
+            for (Ranked ranked : top(current.names.subMap(prefix, end), name -> name.uses.sum(), max + seen.size())) {
+                if (suggestions.size() < max && seen.add(ranked.key)) {
+                    Name name = current.names.get(ranked.key);
+                    long doctorUses = own != null && own.containsKey(ranked.key) ? own.get(ranked.key).sum() : 0;
+                    suggestions.add(new MedicineSuggestionDto(name.display, doctorUses, ranked.count));
+                }
+            }
+        }
+        return suggestions;
+    }
+
+    // Call inside the transaction that saves the medicines; the index is only touched once it commits
+    public void recordAfterCommit(String doctorId, Collection<String> medicineNames) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record(doctorId, medicineNames);
+                }
+            });
+        } else {
+            record(doctorId, medicineNames);
+        }
+    }
+
+    public void record(String doctorId, Collection<String> medicineNames) {
+        Index current = index;
+        Index next = building;
+        for (String name : medicineNames) {
+            current.add(doctorId, name, 1);
+            if (next != null && next != current) {
+                next.add(doctorId, name, 1);
+            }
+        }
+    }
+
+    static String normalize(String name) {
+        return tidy(name).toLowerCase(Locale.ROOT);
+    }
+
+    private static String tidy(String name) {
+        return name == null ? "" : WHITESPACE.matcher(name.trim()).replaceAll(" ");
+    }
+
+    // One pass over the range with a bounded heap, so a short, common prefix costs no more than a sort of k
+    private static <V> List<Ranked> top(Map<String, V> range, ToLongFunction<V> uses, int k) {
+        PriorityQueue<Ranked> heap = new PriorityQueue<>(k + 1, WEAKEST_FIRST);
+        for (Map.Entry<String, V> entry : range.entrySet()) {
+            long count = uses.applyAsLong(entry.getValue());
+            if (heap.size() < k || count > heap.peek().count) {
+                heap.offer(new Ranked(entry.getKey(), count));
+                if (heap.size() > k) {
+                    heap.poll();
+                }
+            }
+        }
+        List<Ranked> top = new ArrayList<>(heap);
+        top.sort(WEAKEST_FIRST.reversed());
+        return top;
+    }
+
+    private static final class Index {
+
+        // Normalized name -> display spelling and overall use
+        final ConcurrentSkipListMap<String, Name> names = new ConcurrentSkipListMap<>();
+
+        // Doctor id -> normalized name -> that doctor's use; keys are shared with names
+        final Map<String, ConcurrentSkipListMap<String, LongAdder>> byDoctor = new ConcurrentHashMap<>();
+
+        void add(String doctorId, String spelling, long uses) {
+            String normalized = normalize(spelling);
+            if (normalized.isEmpty()) {
+                return;
+            }
+            Name name = names.computeIfAbsent(normalized, key -> new Name(key, tidy(spelling)));
+            name.add(spelling, uses);
+            if (doctorId != null) {
+                byDoctor.computeIfAbsent(doctorId, id -> new ConcurrentSkipListMap<>())
+                        .computeIfAbsent(name.key, key -> new LongAdder())
+                        .add(uses);
+            }
+        }
+    }
+
+    private static final class Name {
+
+        final String key;
+
+        final LongAdder uses = new LongAdder();
+
+        // The spelling shown is the one seen with the most uses in a single row of the rebuild
+        volatile String display;
+
+        private long displayUses;
+
+        Name(String key, String display) {
+            this.key = key;
+            this.display = display;
+        }
+
+        void add(String spelling, long count) {
+            uses.add(count);
+            synchronized (this) {
+                if (count > displayUses) {
+                    displayUses = count;
+                    display = tidy(spelling);
+                }
+            }
+        }
+    }
+
+    private static final class Ranked {
+
+        final String key;
+
+        final long count;
+
+        Ranked(String key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+    }
+}
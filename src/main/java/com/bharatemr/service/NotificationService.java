@@ -3,11 +3,15 @@ package com.bharatemr.service;
 import com.twilio.Twilio;
 import com.twilio.rest.api.v2010.account.Message;
 import com.twilio.type.PhoneNumber;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.locks.ReentrantLock;
+
 @Service
 @Slf4j
 public class NotificationService {
@@ -27,14 +31,19 @@ public class NotificationService {
     @Value("${app.whatsapp.api-url}")
     private String whatsappApiUrl;
     
-    private boolean twilioInitialized = false;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private volatile boolean twilioInitialized = false;
+    
+    // A lock rather than synchronized so a virtual thread waiting here does not pin its carrier thread
+    private final ReentrantLock twilioInitLock = new ReentrantLock();
     
     @Async
     public void sendSms(String toNumber, String message) {
         try {
             if (!twilioInitialized && !twilioAccountSid.equals("your_account_sid")) {
-                Twilio.init(twilioAccountSid, twilioAuthToken);
-                twilioInitialized = true;
+                initTwilio();
             }
             
             if (twilioInitialized) {
@@ -45,12 +54,27 @@ public class NotificationService {
                 ).create();
                 
                 log.info("SMS sent successfully to: {}", toNumber);
+                recordOutcome("sms", "sent");
             } else {
                 // Mock SMS sending for development
                 log.warn("Twilio not configured. Mock SMS sent to {}: {}", toNumber, message);
+                recordOutcome("sms", "mocked");
             }
         } catch (Exception e) {
             log.error("Failed to send SMS to {}: {}", toNumber, e.getMessage());
+            recordOutcome("sms", "failed");
+        }
+    }
+    
+    private void initTwilio() {
+        twilioInitLock.lock();
+        try {
+            if (!twilioInitialized) {
+                Twilio.init(twilioAccountSid, twilioAuthToken);
+                twilioInitialized = true;
+            }
+        } finally {
+            twilioInitLock.unlock();
         }
     }
     
@@ -61,27 +85,39 @@ public class NotificationService {
                 // Implement WhatsApp Business API integration here
                 // This depends on your WhatsApp Business API provider
                 log.info("WhatsApp message sent to: {}", toNumber);
+                recordOutcome("whatsapp", "sent");
             } else {
                 // Mock WhatsApp sending for development
                 log.warn("WhatsApp not configured. Mock message sent to {}: {}", toNumber, message);
+                recordOutcome("whatsapp", "mocked");
             }
         } catch (Exception e) {
             log.error("Failed to send WhatsApp message to {}: {}", toNumber, e.getMessage());
+            recordOutcome("whatsapp", "failed");
         }
     }
     
+    private void recordOutcome(String channel, String outcome) {
+        meterRegistry.counter("notifications.sent", "channel", channel, "outcome", outcome).increment();
+    }
+    
+    // prescriptionLink is a signed link to the prescription PDF, or null when there is none
     @Async
     public void sendVisitNotification(String patientMobile, String patientName, 
                                      String doctorName, String visitSummary, 
-                                     String appDownloadLink, String patientId) {
+                                     String appDownloadLink, String patientId,
+                                     String prescriptionLink) {
         String message = String.format(
             "Dear %s,\n\n" +
             "Your consultation with Dr. %s has been recorded.\n\n" +
             "Summary: %s\n\n" +
+            "%s" +
             "Your Patient ID: %s\n\n" +
             "Download Bharat EMR app: %s\n\n" +
             "Thank you!",
-            patientName, doctorName, visitSummary, patientId, appDownloadLink
+            patientName, doctorName, visitSummary,
+            prescriptionLink != null ? "Your prescription: " + prescriptionLink + "\n\n" : "",
+            patientId, appDownloadLink
         );
         
         sendWhatsAppMessage(patientMobile, message);
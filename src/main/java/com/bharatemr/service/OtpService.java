@@ -4,6 +4,7 @@ import com.bharatemr.enums.OtpPurpose;
 import com.bharatemr.exception.InvalidOtpException;
 import com.bharatemr.model.OtpVerification;
 import com.bharatemr.repository.OtpRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -25,6 +26,9 @@ public class OtpService {
     @Autowired
     private NotificationService notificationService;
     
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
     @Value("${app.otp.expiration}")
     private Long otpExpiration;
     
@@ -55,6 +59,7 @@ public class OtpService {
         );
         
         notificationService.sendSms(mobileNumber, message);
+        meterRegistry.counter("otp.sent", "purpose", purpose.name()).increment();
         
         log.info("OTP generated and sent to: {} for purpose: {}", mobileNumber, purpose);
         return otp; // For testing purposes, in production don't return this
@@ -67,19 +72,28 @@ public class OtpService {
                 otp, 
                 purpose, 
                 LocalDateTime.now()
-        ).orElseThrow(() -> new InvalidOtpException("Invalid or expired OTP"));
+        ).orElseThrow(() -> {
+            recordVerification(purpose, "invalid");
+            return new InvalidOtpException("Invalid or expired OTP");
+        });
         
         if (otpVerification.getIsVerified()) {
+            recordVerification(purpose, "reused");
             throw new InvalidOtpException("OTP already used");
         }
         
         otpVerification.setIsVerified(true);
         otpRepository.save(otpVerification);
+        recordVerification(purpose, "success");
         
         log.info("OTP verified successfully for: {}", mobileNumber);
         return true;
     }
     
+    private void recordVerification(OtpPurpose purpose, String outcome) {
+        meterRegistry.counter("otp.verifications", "purpose", purpose.name(), "outcome", outcome).increment();
+    }
+    
     private String generateOtp() {
     	//return "123456";
         Random random = new Random();
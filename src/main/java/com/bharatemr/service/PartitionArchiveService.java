@@ -0,0 +1,267 @@
+package com.bharatemr.service;
+
+import com.bharatemr.dto.VisitDto;
+import com.bharatemr.exception.ArchiveIntegrityException;
+import com.bharatemr.model.PartitionArchive;
+import com.bharatemr.model.Patient;
+import com.bharatemr.repository.PartitionArchiveRepository;
+import com.bharatemr.sharding.ShardContext;
+import com.bharatemr.storage.BlobStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves monthly partitions of visits and follow_ups to gzipped JSON-lines blobs, one row per line,
+ * with a SHA-256 of the compressed blob kept in partition_archives and next to the blob. Visit lines
+ * are VisitDto-shaped with their prescription and attachments inlined, so archived history can be
+ * served without putting rows back into the database. The prescription PDFs and attachment files
+ * they point at are recorded with the archive and kept.
+ */
+@Service
+@Slf4j
+public class PartitionArchiveService {
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("(visits|follow_ups)_\\d{4}_\\d{2}");
+
+    private static final String VISITS_EXPORT_SQL =
+            "SELECT json_build_object('id', v.id, 'patientId', p.patient_id, 'patientName', p.full_name, " +
+            "'doctorId', v.doctor_id, 'doctorName', d.full_name, 'visitDate', v.visit_date, " +
+            "'chiefComplaint', v.chief_complaint, 'pastIllness', v.past_illness, " +
+            "'presentIllness', v.present_illness, 'medicalHistory', v.medical_history, " +
+            "'surgicalHistory', v.surgical_history, 'clinicalNotes', v.clinical_notes, " +
+            "'createdAt', v.created_at, 'prescriptionPdfUrl', pr.pdf_url, " +
+            "'medicines', (SELECT json_agg(json_build_object('id', m.id, 'medicineName', mn.term, " +
+            "'dosage', md.term, 'frequency', mf.term, 'duration', mu.term, " +
+            "'instructions', m.instructions) ORDER BY m.id) " +
+            "FROM prescription_medicines m JOIN catalog_terms mn ON mn.id = m.medicine_name_id " +
+            "JOIN catalog_terms md ON md.id = m.dosage_id JOIN catalog_terms mf ON mf.id = m.frequency_id " +
+            "JOIN catalog_terms mu ON mu.id = m.duration_id WHERE m.prescription_id = pr.id), " +
+            "'tests', (SELECT json_agg(json_build_object('id', t.id, 'testName', tn.term, " +
+            "'testType', t.test_type, 'instructions', t.instructions) ORDER BY t.id) " +
+            "FROM prescription_tests t JOIN catalog_terms tn ON tn.id = t.test_name_id " +
+            "WHERE t.prescription_id = pr.id), " +
+            "'attachments', (SELECT json_agg(json_build_object('id', a.id, 'visitId', a.visit_id, " +
+            "'fileName', a.file_name, 'contentType', a.content_type, 'size', a.size_bytes, " +
+            "'sha256', a.sha256, 'createdAt', a.created_at) ORDER BY a.id) " +
+            "FROM visit_attachments a WHERE a.visit_id = v.id))::text " +
+            "FROM %s v JOIN patients p ON p.id = v.patient_id JOIN doctors d ON d.id = v.doctor_id " +
+            "LEFT JOIN prescriptions pr ON pr.visit_id = v.id ORDER BY v.patient_id, v.visit_date DESC";
+
+    private static final String FOLLOW_UPS_EXPORT_SQL = "SELECT row_to_json(f)::text FROM %s f ORDER BY f.id";
+
+    // Files that archived visit lines point at, so PDF cleanup leaves them alone
+    private static final String ARCHIVED_BLOBS_SQL =
+            "INSERT INTO partition_archive_blobs (archive_id, blob_key) " +
+            "SELECT ?, pr.pdf_url FROM prescriptions pr WHERE pr.pdf_url IS NOT NULL " +
+            "AND pr.visit_id IN (SELECT id FROM %1$s) " +
+            "UNION SELECT ?, a.storage_key FROM visit_attachments a WHERE a.visit_id IN (SELECT id FROM %1$s)";
+
+    static final String ARCHIVE_PREFIX = "archive/";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PartitionArchiveRepository partitionArchiveRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Value("${app.archive.detach-lock-timeout:5s}")
+    private Duration detachLockTimeout;
+
+    /**
+     * Archives one monthly partition in a single transaction. The partition is locked against writes,
+     * exported to the blob store and read back from it; only once the stored blob and its checksum are
+     * confirmed is it recorded, with the prescriptions and attachment rows of its visits deleted, and
+     * then detached and dropped. If any step fails the partition stays as it was, and the next run
+     * overwrites the blob.
+     * <p>
+     * Detaching takes an ACCESS EXCLUSIVE lock on the parent table until commit, which stops every read
+     * and write of it, so it comes last and waits at most {@code app.archive.detach-lock-timeout} for
+     * the lock; a timeout rolls the whole archive back for the next run.
+     */
+    @Transactional
+    public PartitionArchive archive(String table, String partition, YearMonth month, boolean attached) throws IOException {
+        checkName(partition);
+        jdbcTemplate.execute("LOCK TABLE " + partition + " IN SHARE MODE");
+        ExportedPartition exported = export(table, partition);
+
+        PartitionArchive archive = partitionArchiveRepository.save(PartitionArchive.builder()
+                .tableName(table)
+                .partitionName(partition)
+                .rangeStart(month.atDay(1))
+                .rangeEnd(month.plusMonths(1).atDay(1))
+                .filePath(exported.getKey())
+                .sha256(exported.getSha256())
+                .rowCount(exported.getRows())
+                .build());
+
+        if ("visits".equals(table)) {
+            jdbcTemplate.update("INSERT INTO partition_archive_patients (archive_id, patient_id) " +
+                    "SELECT DISTINCT ?, patient_id FROM " + partition, archive.getId());
+            jdbcTemplate.update(String.format(ARCHIVED_BLOBS_SQL, partition), archive.getId(), archive.getId());
+            jdbcTemplate.update("DELETE FROM visit_attachments WHERE visit_id IN (SELECT id FROM " + partition + ")");
+            jdbcTemplate.update("DELETE FROM prescriptions WHERE visit_id IN (SELECT id FROM " + partition + ")");
+        }
+        if (attached) {
+            jdbcTemplate.execute("SET LOCAL lock_timeout = '" + detachLockTimeout.toMillis() + "ms'");
+            jdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION " + partition);
+        }
+        jdbcTemplate.execute("DROP TABLE " + partition);
+
+        log.info("Archived partition {} ({} rows) to {}", partition, exported.getRows(), exported.getKey());
+        return archive;
+    }
+
+    private ExportedPartition export(String table, String partition) throws IOException {
+        // Every shard has its own visits_YYYY_MM, so sharded archives get a prefix per shard
+        String key = ARCHIVE_PREFIX + (ShardContext.get() == null ? "" : ShardContext.get() + "/")
+                + table + "/" + partition + ".jsonl.gz";
+        String sql = String.format("visits".equals(table) ? VISITS_EXPORT_SQL : FOLLOW_UPS_EXPORT_SQL, partition);
+        MessageDigest digest = sha256();
+        long[] rows = {0};
+        blobStore.put(key, "application/gzip", out -> {
+            GZIPOutputStream gzip = new GZIPOutputStream(new DigestOutputStream(out, digest), 65536);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8));
+            JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+            streaming.setFetchSize(1000);
+            streaming.query(sql, rs -> {
+                try {
+                    writer.write(rs.getString(1));
+                    writer.write('\n');
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+            gzip.finish();
+        });
+
+        String sha256 = hex(digest.digest());
+        verify(key, sha256, rows[0]);
+        String checksumKey = key + ".sha256";
+        blobStore.put(checksumKey, "text/plain", out -> out.write(
+                (sha256 + "  " + partition + ".jsonl.gz\n").getBytes(StandardCharsets.US_ASCII)));
+        if (!blobStore.exists(checksumKey)) {
+            throw new ArchiveIntegrityException("Checksum of archive " + key + " was not stored");
+        }
+
+        log.info("Exported {} rows of {} to {}", rows[0], partition, key);
+        return new ExportedPartition(key, sha256, rows[0]);
+    }
+
+    @Transactional(readOnly = true)
+    public List<VisitDto> getArchivedVisits(Patient patient) {
+        List<VisitDto> visits = new ArrayList<>();
+        for (PartitionArchive archive : partitionArchiveRepository.findVisitArchivesForPatient(patient.getId())) {
+            MessageDigest digest = sha256();
+            try (BufferedReader reader = open(archive.getFilePath(), digest)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.contains(patient.getPatientId())) {
+                        continue;
+                    }
+                    VisitDto visit = objectMapper.readValue(line, VisitDto.class);
+                    if (patient.getPatientId().equals(visit.getPatientId())) {
+                        visit.setPatientName(patient.getFullName());
+                        visits.add(visit);
+                    }
+                }
+            } catch (IOException e) {
+                throw new ArchiveIntegrityException("Cannot read archive " + archive.getPartitionName() + ": " + e.getMessage());
+            }
+            if (!hex(digest.digest()).equals(archive.getSha256())) {
+                throw new ArchiveIntegrityException("Checksum mismatch for archive " + archive.getPartitionName());
+            }
+        }
+        return visits;
+    }
+
+    // Reads the archive back from the store, so a blob that was lost or cut short is caught before the drop
+    private void verify(String key, String sha256, long expectedRows) throws IOException {
+        if (!blobStore.exists(key)) {
+            throw new ArchiveIntegrityException("Archive " + key + " was not stored");
+        }
+        MessageDigest digest = sha256();
+        long rows = 0;
+        try (BufferedReader reader = open(key, digest)) {
+            while (reader.readLine() != null) {
+                rows++;
+            }
+        }
+        if (rows != expectedRows || !hex(digest.digest()).equals(sha256)) {
+            throw new ArchiveIntegrityException("Archive " + key + " does not match what was written");
+        }
+    }
+
+    // Drains the blob after reading so the digest always covers every compressed byte
+    private BufferedReader open(String key, MessageDigest digest) throws IOException {
+        InputStream raw = new DigestInputStream(blobStore.open(key), digest);
+        return new BufferedReader(new InputStreamReader(new GZIPInputStream(raw, 65536), StandardCharsets.UTF_8)) {
+            @Override
+            public void close() throws IOException {
+                byte[] rest = new byte[8192];
+                while (raw.read(rest) != -1) {
+                    // GZIPInputStream can stop before trailing bytes; count them too
+                }
+                super.close();
+            }
+        };
+    }
+
+    private void checkName(String partition) {
+        if (!PARTITION_NAME.matcher(partition).matches()) {
+            throw new IllegalArgumentException("Not a monthly partition: " + partition);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class ExportedPartition {
+        private final String key;
+        private final String sha256;
+        private final long rows;
+    }
+}
@@ -0,0 +1,97 @@
+package com.bharatemr.service;
+
+import com.bharatemr.sharding.ShardTemplate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the monthly partitions of visits and follow_ups (Flyway V4) ahead of the calendar and moves
+ * partitions older than the retention window to cold storage through {@link PartitionArchiveService}.
+ * PostgreSQL only, so it is switched off for the H2 dev profile.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "app.partitioning.enabled", havingValue = "true")
+public class PartitionMaintenanceService {
+
+    private static final DateTimeFormatter PARTITION_MONTH = DateTimeFormatter.ofPattern("uuuu_MM");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PartitionArchiveService partitionArchiveService;
+
+    @Autowired
+    private ShardTemplate shardTemplate;
+
+    @Value("${app.partitioning.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${app.partitioning.follow-up-months-ahead:24}")
+    private int followUpMonthsAhead;
+
+    @Value("${app.archive.retention-months:24}")
+    private int retentionMonths;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "0 30 2 * * *") // Run daily at 2:30 AM
+    public void createUpcomingPartitions() {
+        shardTemplate.forEachShard(() -> {
+            createPartitions("visits", "visit_date", monthsAhead);
+            createPartitions("follow_ups", "scheduled_date", followUpMonthsAhead);
+        });
+    }
+
+    @Scheduled(cron = "0 0 3 1 * *") // Run monthly, 3 AM on the 1st
+    public void archiveExpiredPartitions() {
+        shardTemplate.forEachShard(this::archiveExpiredPartitionsOfShard);
+    }
+
+    private void archiveExpiredPartitionsOfShard() {
+        YearMonth cutoff = YearMonth.now().minusMonths(retentionMonths);
+        for (String table : List.of("visits", "follow_ups")) {
+            // Partitions already detached, by hand or by an earlier run, are picked up here too
+            List<Map<String, Object>> partitions = jdbcTemplate.queryForList(
+                    "SELECT relname, relispartition FROM pg_class WHERE relkind = 'r' " +
+                    "AND relnamespace = current_schema()::regnamespace AND relname ~ ? ORDER BY relname",
+                    "^" + table + "_[0-9]{4}_[0-9]{2}$");
+
+            for (Map<String, Object> partition : partitions) {
+                String name = (String) partition.get("relname");
+                YearMonth month = YearMonth.parse(name.substring(table.length() + 1), PARTITION_MONTH);
+                if (!month.isBefore(cutoff)) {
+                    continue;
+                }
+                try {
+                    partitionArchiveService.archive(table, name, month,
+                            Boolean.TRUE.equals(partition.get("relispartition")));
+                } catch (Exception e) {
+                    log.error("Failed to archive partition {}: {}", name, e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private void createPartitions(String table, String keyColumn, int ahead) {
+        // Starts from the oldest row the default partition caught (bulk-loaded history), else this month
+        Integer created = jdbcTemplate.queryForObject(
+                "SELECT create_monthly_partitions(?, ?, COALESCE((SELECT min(" + keyColumn + ") FROM " + table +
+                "_default)::date, CURRENT_DATE), ?)", Integer.class, table, keyColumn, ahead);
+        if (created != null && created > 0) {
+            log.info("Created {} monthly partitions for {}", created, table);
+        }
+    }
+}
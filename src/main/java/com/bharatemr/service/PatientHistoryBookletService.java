@@ -0,0 +1,260 @@
+package com.bharatemr.service;
+
+import com.bharatemr.dto.MedicineDto;
+import com.bharatemr.dto.TestDto;
+import com.bharatemr.dto.VisitDto;
+import com.bharatemr.exception.ResourceNotFoundException;
+import com.bharatemr.model.Patient;
+import com.bharatemr.repository.PatientRepository;
+import com.bharatemr.repository.VisitRepository;
+import com.bharatemr.sharding.ShardTemplate;
+import com.itextpdf.kernel.colors.ColorConstants;
+import com.itextpdf.kernel.events.PdfDocumentEvent;
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.layout.Canvas;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.borders.Border;
+import com.itextpdf.layout.element.AreaBreak;
+import com.itextpdf.layout.element.Cell;
+import com.itextpdf.layout.element.Div;
+import com.itextpdf.layout.element.Paragraph;
+import com.itextpdf.layout.element.Table;
+import com.itextpdf.layout.properties.TextAlignment;
+import com.itextpdf.layout.properties.UnitValue;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A patient's whole history as one PDF: a cover summary, then every visit with its prescription,
+ * newest first. Visits are read a chunk at a time and the document is written with immediate
+ * flushing, so finished pages go straight to the response and memory does not grow with the history.
+ */
+@Service
+@Slf4j
+public class PatientHistoryBookletService {
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("dd MMM yyyy");
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("dd MMM yyyy, hh:mm a");
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private VisitRepository visitRepository;
+
+    @Autowired
+    private VisitService visitService;
+
+    @Autowired
+    private PartitionArchiveService partitionArchiveService;
+
+    @Autowired
+    private ShardTemplate shardTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.pdf.booklet.chunk-size:50}")
+    private int chunkSize;
+
+    // Everything the cover needs, read before the response is committed so a bad patientId is a normal 404
+    public Booklet prepare(String patientId, boolean includeArchived) {
+        Patient patient = patientRepository.findByPatientId(patientId)
+                .orElseThrow(() -> new ResourceNotFoundException("Patient not found"));
+
+        Booklet booklet = new Booklet(patient);
+        booklet.visitCount = shardTemplate.sum(() -> visitRepository.countByPatientId(patient.getId()));
+        booklet.firstVisit = shardTemplate.gather(() -> nonNull(visitRepository.findFirstVisitDate(patient.getId())))
+                .stream().min(Comparator.naturalOrder()).orElse(null);
+        booklet.lastVisit = shardTemplate.gather(() -> nonNull(visitRepository.findLastVisitDate(patient.getId())))
+                .stream().max(Comparator.naturalOrder()).orElse(null);
+        booklet.doctors.addAll(shardTemplate.gather(() -> visitRepository.findDoctorNamesByPatientId(patient.getId())));
+
+        // Archived months all predate the live visits; the patient's share of them is small enough to hold
+        if (includeArchived) {
+            booklet.archived = shardTemplate.gather(() -> partitionArchiveService.getArchivedVisits(patient));
+            booklet.archived.sort(Comparator.comparing(VisitDto::getVisitDate).reversed());
+            booklet.visitCount += booklet.archived.size();
+            if (!booklet.archived.isEmpty()) {
+                booklet.firstVisit = booklet.archived.get(booklet.archived.size() - 1).getVisitDate();
+                if (booklet.lastVisit == null) {
+                    booklet.lastVisit = booklet.archived.get(0).getVisitDate();
+                }
+            }
+            booklet.archived.stream().map(VisitDto::getDoctorName).filter(Objects::nonNull).forEach(booklet.doctors::add);
+        }
+        return booklet;
+    }
+
+    public void write(Booklet booklet, OutputStream out) {
+        long started = System.nanoTime();
+        AtomicInteger written = new AtomicInteger();
+        PdfDocument pdf = new PdfDocument(new PdfWriter(out));
+        pdf.addEventHandler(PdfDocumentEvent.END_PAGE, event -> addPageFooter(booklet.patient,
+                ((PdfDocumentEvent) event).getPage(), pdf));
+
+        // immediateFlush: each page is written out and released as soon as layout moves past it
+        try (Document document = new Document(pdf, PageSize.A4, true)) {
+            document.setMargins(30, 30, 40, 30);
+            addCover(document, booklet);
+
+            visitService.forEachVisitChunkByPatient(booklet.patient, chunkSize, chunk -> {
+                chunk.forEach(visit -> addVisit(document, visit));
+                written.addAndGet(chunk.size());
+            });
+            booklet.archived.forEach(visit -> addVisit(document, visit));
+            written.addAndGet(booklet.archived.size());
+        }
+
+        meterRegistry.timer("pdf.booklet").record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        log.info("History booklet for patient {}: {} visits", booklet.patient.getPatientId(), written.get());
+    }
+
+    private void addCover(Document document, Booklet booklet) {
+        Patient patient = booklet.patient;
+        document.add(new Paragraph("Medical History")
+                .setFontSize(20)
+                .setBold()
+                .setTextAlignment(TextAlignment.CENTER)
+                .setMarginTop(40));
+        document.add(new Paragraph(patient.getFullName())
+                .setFontSize(14)
+                .setTextAlignment(TextAlignment.CENTER)
+                .setMarginBottom(20));
+
+        Table table = new Table(UnitValue.createPercentArray(new float[] { 1, 2 }));
+        table.setWidth(UnitValue.createPercentValue(100));
+        addRow(table, "Patient ID", patient.getPatientId());
+        addRow(table, "Age / Gender", patient.getAge() + " / " + patient.getGender());
+        addRow(table, "Mobile", patient.getMobileNumber());
+        addRow(table, "Visits", String.valueOf(booklet.visitCount));
+        if (booklet.firstVisit != null) {
+            addRow(table, "Period", booklet.firstVisit.format(DATE) + " - " + booklet.lastVisit.format(DATE));
+        }
+        addRow(table, "Doctors consulted", booklet.doctors.isEmpty() ? "-" : String.join(", ", booklet.doctors));
+        addRow(table, "Generated on", LocalDate.now().format(DATE));
+        document.add(table);
+
+        document.add(new Paragraph("Visits are listed newest first.")
+                .setFontSize(8)
+                .setItalic()
+                .setMarginTop(10));
+        document.add(new AreaBreak());
+    }
+
+    private void addVisit(Document document, VisitDto visit) {
+        Div section = new Div().setMarginTop(12).setKeepTogether(true);
+        section.add(new Paragraph(visit.getVisitDate().format(DATE_TIME) + "  -  Dr. " + visit.getDoctorName())
+                .setBold()
+                .setFontSize(11)
+                .setBackgroundColor(ColorConstants.LIGHT_GRAY)
+                .setPadding(3)
+                .setMarginBottom(4));
+
+        addField(section, "Chief Complaint", visit.getChiefComplaint());
+        addField(section, "Present Illness", visit.getPresentIllness());
+        addField(section, "Past Illness", visit.getPastIllness());
+        addField(section, "Medical History", visit.getMedicalHistory());
+        addField(section, "Surgical History", visit.getSurgicalHistory());
+        addField(section, "Clinical Notes", visit.getClinicalNotes());
+
+        if (visit.getMedicines() != null && !visit.getMedicines().isEmpty()) {
+            section.add(new Paragraph("Prescription:").setBold().setFontSize(10).setMarginBottom(2));
+            Table medicines = new Table(UnitValue.createPercentArray(new float[] { 3, 2, 2, 2, 3 }));
+            medicines.setWidth(UnitValue.createPercentValue(100));
+            for (String header : new String[] { "Medicine", "Dosage", "Freq", "Dur", "Instructions" }) {
+                medicines.addHeaderCell(new Cell()
+                        .add(new Paragraph(header).setBold().setFontSize(8))
+                        .setBackgroundColor(ColorConstants.LIGHT_GRAY)
+                        .setPadding(2));
+            }
+            for (MedicineDto medicine : visit.getMedicines()) {
+                medicines.addCell(cell(medicine.getMedicineName()));
+                medicines.addCell(cell(medicine.getDosage()));
+                medicines.addCell(cell(medicine.getFrequency()));
+                medicines.addCell(cell(medicine.getDuration()));
+                medicines.addCell(cell(medicine.getInstructions() != null ? medicine.getInstructions() : "-"));
+            }
+            section.add(medicines);
+        }
+
+        if (visit.getTests() != null && !visit.getTests().isEmpty()) {
+            section.add(new Paragraph("Recommended Tests:").setBold().setFontSize(10).setMarginBottom(0));
+            for (TestDto test : visit.getTests()) {
+                String instructions = test.getInstructions() != null && !test.getInstructions().isEmpty()
+                        ? " (Inst: " + test.getInstructions() + ")" : "";
+                section.add(new Paragraph("• " + test.getTestName() + instructions).setFontSize(9).setMarginBottom(0));
+            }
+        }
+        document.add(section);
+    }
+
+    private void addField(Div section, String label, String value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        section.add(new Paragraph(label + ":").setBold().setFontSize(9).setMarginBottom(0));
+        section.add(new Paragraph(value).setFontSize(9).setMarginBottom(3));
+    }
+
+    private void addRow(Table table, String label, String value) {
+        table.addCell(new Cell().add(new Paragraph(label).setBold().setFontSize(10)).setBorder(Border.NO_BORDER).setPadding(3));
+        table.addCell(new Cell().add(new Paragraph(value).setFontSize(10)).setBorder(Border.NO_BORDER).setPadding(3));
+    }
+
+    private Cell cell(String content) {
+        return new Cell().add(new Paragraph(content).setFontSize(8)).setBorder(Border.NO_BORDER).setPadding(2);
+    }
+
+    private void addPageFooter(Patient patient, PdfPage page, PdfDocument pdf) {
+        Rectangle size = page.getPageSize();
+        try (Canvas canvas = new Canvas(new PdfCanvas(page), size)) {
+            canvas.showTextAligned(new Paragraph(patient.getFullName() + " (" + patient.getPatientId() + ")  -  page "
+                    + pdf.getPageNumber(page)).setFontSize(7), size.getWidth() / 2, 20, TextAlignment.CENTER);
+        }
+    }
+
+    private static List<LocalDateTime> nonNull(LocalDateTime value) {
+        return value == null ? new ArrayList<>() : List.of(value);
+    }
+
+    public static class Booklet {
+
+        private final Patient patient;
+
+        private long visitCount;
+
+        private LocalDateTime firstVisit;
+
+        private LocalDateTime lastVisit;
+
+        private final Collection<String> doctors = new TreeSet<>();
+
+        private List<VisitDto> archived = new ArrayList<>();
+
+        Booklet(Patient patient) {
+            this.patient = patient;
+        }
+    }
+}
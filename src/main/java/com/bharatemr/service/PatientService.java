@@ -11,6 +11,7 @@ import com.bharatemr.model.Visit;
 import com.bharatemr.repository.PatientRepository;
 import com.bharatemr.repository.VisitRepository;
 import com.bharatemr.security.JwtUtil;
+import com.bharatemr.sharding.ShardTemplate;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,11 +21,15 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.persistence.criteria.Predicate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -40,6 +45,12 @@ public class PatientService {
     @Autowired
     private VisitRepository visitRepository;
 
+    @Autowired
+    private ShardTemplate shardTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @Autowired
     private OtpService otpService;
 
@@ -49,6 +60,9 @@ public class PatientService {
     @Autowired
     private ModelMapper modelMapper;
 
+    @Autowired
+    private PrescriptionService prescriptionService;
+
     @Transactional
     public AuthResponseDto loginPatient(String mobileNumber, String otp) {
         // Verify OTP
@@ -103,56 +117,74 @@ public class PatientService {
         return dto;
     }
 
-    @Transactional(readOnly = true)
     public Map<String, Object> getPatientDashboard(String patientId) {
-        Patient patient = patientRepository.findByPatientId(patientId)
-                .orElseThrow(() -> new ResourceNotFoundException("Patient not found"));
-
-        List<Visit> visits = visitRepository.findByPatientIdOrderByVisitDateDesc(patient.getId());
-
+        // The profile in its own short transaction; the scatter-gather below must not run inside one
         Map<String, Object> dashboard = new HashMap<>();
-        dashboard.put("patientInfo", modelMapper.map(patient, PatientDto.class));
-        dashboard.put("totalVisits", visits.size());
-        dashboard.put("lastVisitDate", visits.isEmpty() ? null : visits.get(0).getVisitDate());
-        dashboard.put("onboardedByDoctor", patient.getOnboardedByDoctor().getFullName());
-        dashboard.put("recentVisits", visits.stream()
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        Patient patient = transaction.execute(status -> {
+            Patient found = patientRepository.findByPatientId(patientId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Patient not found"));
+            dashboard.put("patientInfo", modelMapper.map(found, PatientDto.class));
+            dashboard.put("onboardedByDoctor", found.getOnboardedByDoctor().getFullName());
+            return found;
+        });
+
+        // Each shard reports its visit count and its five latest visits; the newest five overall are kept
+        List<Map<String, Object>> perShard = shardTemplate.gather(() -> {
+            List<Visit> visits = visitRepository.findByPatientIdOrderByVisitDateDesc(patient.getId());
+            Map<String, Object> shardVisits = new HashMap<>();
+            shardVisits.put("count", visits.size());
+            shardVisits.put("recent", visits.stream()
+                    .limit(5)
+                    .map(visit -> {
+                        Map<String, Object> visitInfo = new HashMap<>();
+                        visitInfo.put("id", visit.getId());
+                        visitInfo.put("date", visit.getVisitDate());
+                        visitInfo.put("doctorName", visit.getDoctor().getFullName());
+                        visitInfo.put("chiefComplaint", visit.getChiefComplaint());
+                        return visitInfo;
+                    })
+                    .collect(Collectors.toList()));
+            return List.of(shardVisits);
+        });
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> recentVisits = perShard.stream()
+                .flatMap(shardVisits -> ((List<Map<String, Object>>) shardVisits.get("recent")).stream())
+                .sorted(Comparator.comparing((Map<String, Object> visitInfo) -> (LocalDateTime) visitInfo.get("date")).reversed())
                 .limit(5)
-                .map(visit -> {
-                    Map<String, Object> visitInfo = new HashMap<>();
-                    visitInfo.put("id", visit.getId());
-                    visitInfo.put("date", visit.getVisitDate());
-                    visitInfo.put("doctorName", visit.getDoctor().getFullName());
-                    visitInfo.put("chiefComplaint", visit.getChiefComplaint());
-                    return visitInfo;
-                })
-                .collect(Collectors.toList()));
+                .collect(Collectors.toList());
+
+        dashboard.put("totalVisits", perShard.stream().mapToInt(shardVisits -> (Integer) shardVisits.get("count")).sum());
+        dashboard.put("lastVisitDate", recentVisits.isEmpty() ? null : recentVisits.get(0).get("date"));
+        dashboard.put("recentVisits", recentVisits);
 
         log.info("Dashboard data retrieved for patient: {}", patientId);
 
         return dashboard;
     }
 
-    @Transactional(readOnly = true)
     public List<VisitDto> getPatientVisits(String patientId) {
         Patient patient = patientRepository.findByPatientId(patientId)
                 .orElseThrow(() -> new ResourceNotFoundException("Patient not found"));
 
-        List<Visit> visits = visitRepository.findByPatientIdOrderByVisitDateDesc(patient.getId());
-
-        return visits.stream()
+        return shardTemplate.gather(() -> visitRepository.findByPatientIdOrderByVisitDateDesc(patient.getId())
+                .stream()
                 .map(visit -> {
                     VisitDto dto = modelMapper.map(visit, VisitDto.class);
                     dto.setPatientName(patient.getFullName());
                     dto.setDoctorName(visit.getDoctor().getFullName());
                     return dto;
                 })
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()), VisitDto::getId, Comparator.comparing(VisitDto::getVisitDate).reversed());
     }
 
     @Transactional
     public PatientDto updatePatientProfile(String patientId, PatientDto dto) {
         Patient patient = patientRepository.findByPatientId(patientId)
                 .orElseThrow(() -> new ResourceNotFoundException("Patient not found"));
+        List<Object> printed = Arrays.asList(PdfGeneratorService.patientDetails(patient));
 
         // Update allowed fields
         if (dto.getEmail() != null)
@@ -163,6 +195,9 @@ public class PatientService {
             patient.setPreferredTheme(dto.getPreferredTheme());
 
         Patient updated = patientRepository.save(patient);
+        if (!printed.equals(Arrays.asList(PdfGeneratorService.patientDetails(updated)))) {
+            prescriptionService.markPdfStaleForPatient(updated.getId());
+        }
 
         log.info("Patient profile updated: {}", patientId);
 
@@ -1,6 +1,8 @@
 package com.bharatemr.service;
 
+import com.bharatemr.exception.PdfRenderUnavailableException;
 import com.bharatemr.model.*;
+import com.bharatemr.storage.BlobStore;
 import com.itextpdf.kernel.colors.ColorConstants;
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.PdfWriter;
@@ -9,92 +11,192 @@ import com.itextpdf.layout.borders.Border;
 import com.itextpdf.layout.element.Cell;
 import com.itextpdf.layout.element.Paragraph;
 import com.itextpdf.layout.element.Table;
-import com.itextpdf.layout.properties.TextAlignment;
 import com.itextpdf.layout.properties.UnitValue;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 @Slf4j
 public class PdfGeneratorService {
 
-    @Value("${app.file-upload.prescription-dir:./prescriptions}")
-    private String prescriptionDir;
+    private static final int TEMPLATE_VERSION = 1;
+
+    public static final String PRESCRIPTION_PREFIX = "prescriptions/";
+
+    @Value("${app.pdf.render.timeout:20s}")
+    private Duration renderTimeout;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private LetterheadTemplateCache letterheadTemplateCache;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    @Qualifier("pdfRenderExecutor")
+    private ThreadPoolTaskExecutor pdfRenderExecutor;
+
+    /**
+     * Renders on the PDF executor. Fails with {@link PdfRenderUnavailableException} when the executor's
+     * queue is full or the render has not finished within app.pdf.render.timeout (queue wait included).
+     * Lazy associations of the visit and prescription must already be loaded.
+     */
+    public CompletableFuture<String> generatePrescriptionPdfAsync(Visit visit, Prescription prescription, String filePath) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = pdfRenderExecutor.submit(() -> {
+                try {
+                    result.complete(generatePrescriptionPdf(visit, prescription, filePath));
+                } catch (IOException e) {
+                    result.completeExceptionally(new UncheckedIOException(e));
+                } catch (RuntimeException | Error e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            meterRegistry.counter("pdf.render.rejected").increment();
+            throw new PdfRenderUnavailableException("Too many prescriptions are being printed, please retry shortly");
+        }
+
+        return result.orTimeout(renderTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .handle((path, ex) -> {
+                    if (ex == null) {
+                        return path;
+                    }
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    if (cause instanceof TimeoutException) {
+                        // A render still waiting in the queue is dropped; one already running finishes unused
+                        task.cancel(false);
+                        meterRegistry.counter("pdf.render.timeouts").increment();
+                        throw new PdfRenderUnavailableException("Prescription PDF took too long to render, please retry");
+                    }
+                    throw cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+                });
+    }
 
-    public String generatePrescriptionPdf(Visit visit, Prescription prescription) throws IOException {
-        // Ensure directory exists
-        File directory = new File(prescriptionDir);
-        if (!directory.exists()) {
-            directory.mkdirs();
+    public String generatePrescriptionPdf(Visit visit, Prescription prescription, String filePath) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            renderPrescriptionPdf(visit, prescription, filePath);
+            outcome = "success";
+            return filePath;
+        } finally {
+            sample.stop(Timer.builder("pdf.render")
+                    .description("Prescription PDF render time")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
         }
+    }
+
+    /**
+     * SHA-256 over everything the template prints, so an unchanged prescription maps to the file
+     * it was already rendered to. Bump TEMPLATE_VERSION whenever the layout changes.
+     */
+    public String fingerprint(Visit visit, Prescription prescription) {
+        Doctor doctor = visit.getDoctor();
+        Patient patient = visit.getPatient();
+        StringBuilder input = new StringBuilder("v").append(TEMPLATE_VERSION);
+        append(input, doctor.getClinicName(), doctor.getFullName(), doctor.getQualification(),
+                doctor.getSpecialization(), doctor.getClinicAddress(), doctor.getMedicalRegistrationNumber());
+        append(input, patientDetails(patient));
+        append(input, visit.getId(), visit.getVisitDate().toLocalDate(), visit.getChiefComplaint(),
+                visit.getClinicalNotes());
+        for (Medicine medicine : prescription.getMedicines()) {
+            append(input, "M", medicine.getMedicineName(), medicine.getDosage(), medicine.getFrequency(),
+                    medicine.getDuration(), medicine.getInstructions());
+        }
+        for (Test test : prescription.getTests()) {
+            append(input, "T", test.getTestName(), test.getInstructions());
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(input.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-        String fileName = "prescription_" + visit.getId() + "_" + System.currentTimeMillis() + ".pdf";
-        String filePath = prescriptionDir + File.separator + fileName;
+    // The patient fields printed on every prescription of the patient
+    public static Object[] patientDetails(Patient patient) {
+        return new Object[] { patient.getFullName(), patient.getPatientId(), patient.getAge(), patient.getGender(),
+                patient.getMobileNumber() };
+    }
 
-        PdfWriter writer = new PdfWriter(new FileOutputStream(filePath));
-        PdfDocument pdfDoc = new PdfDocument(writer);
-        Document document = new Document(pdfDoc);
-        document.setMargins(20, 30, 20, 30); // Reduced margins
+    public String prescriptionFilePath(Visit visit, String fingerprint) {
+        return PRESCRIPTION_PREFIX + "prescription_" + visit.getId() + "_" + fingerprint.substring(0, 16) + ".pdf";
+    }
 
-        // Header
-        addHeader(document, visit.getDoctor());
+    public boolean exists(String filePath) {
+        try {
+            return blobStore.exists(filePath);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        // Patient Information
-        addPatientInfo(document, visit);
+    private static void append(StringBuilder input, Object... values) {
+        for (Object value : values) {
+            // Unit separator, so ("ab", "c") and ("a", "bc") differ
+            input.append('\u001f').append(value == null ? "" : value);
+        }
+        input.append('\u001e');
+    }
 
-        // Prescription Details
-        addPrescriptionDetails(document, prescription);
+    // The blob store commits the file only once the document is closed, so a reader never sees a half-written PDF
+    private void renderPrescriptionPdf(Visit visit, Prescription prescription, String filePath) throws IOException {
+        blobStore.put(filePath, "application/pdf", out -> {
+            PdfWriter writer = new PdfWriter(out);
+            PdfDocument pdfDoc = new PdfDocument(writer);
+            Document document = new Document(pdfDoc);
+            document.setMargins(20, 30, 20, 30); // Reduced margins
 
-        // Footer
-        addFooter(document, visit.getDoctor());
+            // Header
+            letterheadTemplateCache.addHeader(document, visit.getDoctor());
 
-        document.close();
+            // Patient Information
+            addPatientInfo(document, visit);
 
-        log.info("Prescription PDF generated: {}", filePath);
+            // Prescription Details
+            addPrescriptionDetails(document, prescription);
 
-        return filePath;
-    }
+            // Footer
+            letterheadTemplateCache.addFooter(document, visit.getDoctor());
+
+            document.close();
+        });
 
-    private void addHeader(Document document, Doctor doctor) {
-        // Doctor's header
-        Paragraph clinicName = new Paragraph(doctor.getClinicName())
-                .setFontSize(16) // Reduced from 20
-                .setBold()
-                .setTextAlignment(TextAlignment.CENTER)
-                .setMarginBottom(0);
-        document.add(clinicName);
-
-        Paragraph doctorName = new Paragraph("Dr. " + doctor.getFullName())
-                .setFontSize(12) // Reduced from 16
-                .setTextAlignment(TextAlignment.CENTER)
-                .setMarginBottom(0);
-        document.add(doctorName);
-
-        Paragraph qualification = new Paragraph(doctor.getQualification() + " - " + doctor.getSpecialization())
-                .setFontSize(10) // Reduced from 12
-                .setTextAlignment(TextAlignment.CENTER)
-                .setMarginBottom(0);
-        document.add(qualification);
-
-        Paragraph address = new Paragraph(doctor.getClinicAddress())
-                .setFontSize(9) // Reduced from 10
-                .setTextAlignment(TextAlignment.CENTER)
-                .setMarginBottom(5);
-        document.add(address);
-
-        // Separator line
-        document.add(new Paragraph("-".repeat(110))
-                .setFontSize(8)
-                .setTextAlignment(TextAlignment.CENTER)
-                .setMarginBottom(5));
+        log.info("Prescription PDF generated: {}", filePath);
     }
 
     private void addPatientInfo(Document document, Visit visit) {
@@ -170,29 +272,6 @@ public class PdfGeneratorService {
         }
     }
 
-    private void addFooter(Document document, Doctor doctor) {
-        document.add(new Paragraph("\n"));
-        document.add(new Paragraph("-".repeat(110)).setFontSize(8).setMarginBottom(5));
-
-        Paragraph signature = new Paragraph("Dr. " + doctor.getFullName())
-                .setTextAlignment(TextAlignment.RIGHT)
-                .setBold()
-                .setFontSize(10)
-                .setMarginBottom(0);
-        document.add(signature);
-
-        Paragraph regNo = new Paragraph("Reg. No: " + doctor.getMedicalRegistrationNumber())
-                .setTextAlignment(TextAlignment.RIGHT)
-                .setFontSize(9)
-                .setMarginBottom(10);
-        document.add(regNo);
-
-        document.add(new Paragraph("Note: This is a digitally generated prescription.")
-                .setFontSize(7)
-                .setItalic()
-                .setTextAlignment(TextAlignment.CENTER));
-    }
-
     private Cell createCell(String content, float fontSize) {
         return new Cell()
                 .add(new Paragraph(content).setFontSize(fontSize))
@@ -207,7 +286,7 @@ public class PdfGeneratorService {
                 .setPadding(3);
     }
 
-    public byte[] readPdfFile(String filePath) throws IOException {
-        return Files.readAllBytes(Paths.get(filePath));
+    public InputStream openPdf(String filePath) throws IOException {
+        return blobStore.open(filePath);
     }
 }
\ No newline at end of file
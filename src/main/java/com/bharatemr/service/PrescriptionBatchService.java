@@ -0,0 +1,418 @@
+package com.bharatemr.service;
+
+import com.bharatemr.dto.PrescriptionBatchDto;
+import com.bharatemr.dto.PrescriptionBatchDto.Item;
+import com.bharatemr.exception.BatchNotReadyException;
+import com.bharatemr.exception.BatchTooLargeException;
+import com.bharatemr.exception.PdfRenderUnavailableException;
+import com.bharatemr.exception.ResourceNotFoundException;
+import com.bharatemr.model.Doctor;
+import com.bharatemr.model.Visit;
+import com.bharatemr.repository.DoctorRepository;
+import com.bharatemr.repository.PrescriptionRepository;
+import com.bharatemr.repository.VisitRepository;
+import com.bharatemr.sharding.ShardContext;
+import com.bharatemr.storage.BlobStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.utils.PdfMerger;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Renders every prescription of a doctor's date range in the background, a few at a time on the
+ * shared PDF pool so interactive downloads keep their share of it. A prescription that fails is
+ * recorded and the rest carry on. The finished batch is streamed as one merged PDF or a ZIP,
+ * one stored prescription at a time. Each job is a blob, saved after every prescription, so any node
+ * can report on it or serve its download. The node running a job re-saves it every minute; a job left
+ * unfinished and untouched for {@code orphan-after} lost its node and is picked up by another, which
+ * renders only what is still missing.
+ */
+@Service
+@Slf4j
+public class PrescriptionBatchService {
+
+    static final String BATCH_PREFIX = "batches/";
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private VisitRepository visitRepository;
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    @Autowired
+    private PrescriptionService prescriptionService;
+
+    @Autowired
+    private PdfGeneratorService pdfGeneratorService;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("pdfBatchExecutor")
+    private ThreadPoolTaskExecutor pdfBatchExecutor;
+
+    @Value("${app.pdf.batch.parallelism:2}")
+    private int parallelism;
+
+    @Value("${app.pdf.batch.max-visits:500}")
+    private int maxVisits;
+
+    @Value("${app.pdf.batch.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.pdf.batch.retry-delay:5s}")
+    private Duration retryDelay;
+
+    @Value("${app.pdf.batch.retention:1h}")
+    private Duration retention;
+
+    @Value("${app.pdf.batch.orphan-after:5m}")
+    private Duration orphanAfter;
+
+    // Jobs this node is rendering; every other job is read from its blob
+    private final Map<String, PrescriptionBatchDto> running = new ConcurrentHashMap<>();
+
+    public Map<String, Object> start(String doctorId, LocalDateTime startDate, LocalDateTime endDate) {
+        Doctor doctor = doctorRepository.findByDoctorId(doctorId)
+                .orElseThrow(() -> new ResourceNotFoundException("Doctor not found"));
+
+        List<Visit> visits = visitRepository.findVisitsByDoctorAndDateRange(doctor.getId(), startDate, endDate);
+        if (visits.size() > maxVisits) {
+            throw new BatchTooLargeException(visits.size() + " visits in range, at most " + maxVisits
+                    + " per batch; narrow the date range");
+        }
+        Set<Long> prescribed = visits.isEmpty() ? Set.of() : new HashSet<>(prescriptionRepository
+                .findVisitIdsByVisitIdIn(visits.stream().map(Visit::getId).collect(Collectors.toList())));
+        List<Item> items = visits.stream()
+                .filter(visit -> prescribed.contains(visit.getId()))
+                .sorted(Comparator.comparing(Visit::getVisitDate).thenComparing(Visit::getId))
+                .map(visit -> new Item(visit.getId()))
+                .collect(Collectors.toList());
+
+        PrescriptionBatchDto job = PrescriptionBatchDto.builder()
+                .jobId(UUID.randomUUID().toString())
+                .doctorId(doctorId)
+                .shard(ShardContext.get())
+                .items(items)
+                .startedAt(LocalDateTime.now())
+                .build();
+        try {
+            save(job);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!submit(job)) {
+            delete(job.getJobId());
+            throw new PdfRenderUnavailableException("Too many prescription batches running, try again shortly");
+        }
+        meterRegistry.counter("pdf.batch.jobs").increment();
+        log.info("Prescription batch {} started for doctor {}: {} prescriptions", job.getJobId(), doctorId, items.size());
+        return status(job);
+    }
+
+    public Map<String, Object> getStatus(String jobId) {
+        return status(job(jobId));
+    }
+
+    public void writeMergedPdf(List<String> files, OutputStream out) throws IOException {
+        try (PdfDocument merged = new PdfDocument(new PdfWriter(out))) {
+            PdfMerger merger = new PdfMerger(merged, false, false);
+            for (String file : files) {
+                try (PdfDocument source = new PdfDocument(new PdfReader(pdfGeneratorService.openPdf(file)))) {
+                    merger.merge(source, 1, source.getNumberOfPages());
+                    // Written out now, so only the page tree stays in memory
+                    merged.flushCopiedObjects(source);
+                }
+            }
+        }
+    }
+
+    public void writeZip(List<String> files, OutputStream out) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (String file : files) {
+                zip.putNextEntry(new ZipEntry(file.substring(file.lastIndexOf('/') + 1)));
+                try (InputStream pdf = pdfGeneratorService.openPdf(file)) {
+                    pdf.transferTo(zip);
+                }
+                zip.closeEntry();
+            }
+        }
+    }
+
+    // Called before the response is committed, so an unfinished or unknown job still gets a JSON error
+    public List<String> finishedFiles(String jobId) {
+        PrescriptionBatchDto job = job(jobId);
+        if (job.getFinishedAt() == null) {
+            throw new BatchNotReadyException("Batch " + jobId + " is still rendering ("
+                    + (rendered(job) + failed(job)) + " of " + job.getItems().size() + " done)");
+        }
+        List<String> files = job.getItems().stream()
+                .map(Item::getPdfUrl)
+                .filter(pdfUrl -> pdfUrl != null && pdfGeneratorService.exists(pdfUrl))
+                .collect(Collectors.toList());
+        if (files.isEmpty()) {
+            throw new ResourceNotFoundException("No prescriptions were rendered in batch " + jobId);
+        }
+        return files;
+    }
+
+    @Scheduled(fixedDelay = 60000) // Every minute
+    public void resumeOrphanedJobs() {
+        running.values().forEach(this::checkpoint);
+
+        Instant untouchedSince = Instant.now().minus(orphanAfter);
+        Instant expiredBefore = Instant.now().minus(retention);
+        List<BlobStore.BlobInfo> stale = new ArrayList<>();
+        try {
+            blobStore.list(BATCH_PREFIX, blob -> {
+                if (blob.getKey().endsWith(".json") && blob.getLastModified().isBefore(untouchedSince)) {
+                    stale.add(blob);
+                }
+            });
+        } catch (IOException e) {
+            log.error("Could not list prescription batches", e);
+            return;
+        }
+
+        for (BlobStore.BlobInfo blob : stale) {
+            String jobId = jobId(blob.getKey());
+            if (running.containsKey(jobId)) {
+                continue;
+            }
+            PrescriptionBatchDto job;
+            try {
+                job = load(jobId);
+            } catch (NoSuchFileException e) {
+                continue;
+            } catch (IOException e) {
+                log.warn("Could not read prescription batch {}: {}", jobId, e.getMessage());
+                continue;
+            }
+            if (job.getFinishedAt() != null) {
+                if (blob.getLastModified().isBefore(expiredBefore)) {
+                    delete(jobId);
+                }
+            } else if (submit(job)) {
+                meterRegistry.counter("pdf.batch.jobs.resumed").increment();
+                log.info("Resuming orphaned prescription batch {}: {} of {} done", jobId,
+                        rendered(job) + failed(job), job.getItems().size());
+            }
+        }
+    }
+
+    private boolean submit(PrescriptionBatchDto job) {
+        running.put(job.getJobId(), job);
+        try {
+            pdfBatchExecutor.execute(() -> run(job));
+            return true;
+        } catch (TaskRejectedException e) {
+            running.remove(job.getJobId());
+            return false;
+        }
+    }
+
+    // Runs on a batch thread; the window keeps at most `parallelism` renders of this job in flight
+    private void run(PrescriptionBatchDto job) {
+        Semaphore window = new Semaphore(parallelism);
+        try {
+            for (Item item : job.getItems()) {
+                // Already settled before the job was resumed on this node
+                if (item.getPdfUrl() != null || item.getError() != null) {
+                    continue;
+                }
+                window.acquire();
+                render(job, item, window);
+            }
+            window.acquire(parallelism);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Prescription batch {} interrupted", job.getJobId());
+            running.remove(job.getJobId());
+            return;
+        }
+        synchronized (job) {
+            job.setFinishedAt(LocalDateTime.now());
+        }
+        checkpoint(job);
+        running.remove(job.getJobId());
+        log.info("Prescription batch {} finished: {} rendered, {} failed", job.getJobId(), rendered(job), failed(job));
+    }
+
+    private void render(PrescriptionBatchDto job, Item item, Semaphore window) {
+        synchronized (job) {
+            item.setAttempts(item.getAttempts() + 1);
+        }
+        CompletableFuture<String> pdf;
+        String previous = ShardContext.get();
+        ShardContext.set(job.getShard());
+        try {
+            pdf = prescriptionService.generatePrescriptionPdf(item.getVisitId());
+        } catch (RuntimeException e) {
+            pdf = CompletableFuture.failedFuture(e);
+        } finally {
+            ShardContext.set(previous);
+        }
+
+        pdf.whenComplete((path, ex) -> {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (cause instanceof PdfRenderUnavailableException && item.getAttempts() < maxAttempts) {
+                // The pool is busy with interactive renders; keep the slot and try again later
+                CompletableFuture.delayedExecutor(retryDelay.toMillis(), TimeUnit.MILLISECONDS)
+                        .execute(() -> render(job, item, window));
+                return;
+            }
+            synchronized (job) {
+                if (cause == null) {
+                    item.setPdfUrl(path);
+                } else {
+                    item.setError(cause.getMessage());
+                }
+            }
+            if (cause == null) {
+                meterRegistry.counter("pdf.batch.items", "result", "rendered").increment();
+            } else {
+                meterRegistry.counter("pdf.batch.items", "result", "failed").increment();
+                log.warn("Prescription batch {}: visit {} failed after {} attempt(s): {}",
+                        job.getJobId(), item.getVisitId(), item.getAttempts(), cause.getMessage());
+            }
+            checkpoint(job);
+            window.release();
+        });
+    }
+
+    private PrescriptionBatchDto job(String jobId) {
+        PrescriptionBatchDto job = running.get(jobId);
+        if (job != null) {
+            return job;
+        }
+        try {
+            UUID.fromString(jobId);
+            return load(jobId);
+        } catch (IllegalArgumentException | NoSuchFileException e) {
+            throw new ResourceNotFoundException("Prescription batch not found: " + jobId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // A failed save is retried by the next item or the minute's checkpoint
+    private void checkpoint(PrescriptionBatchDto job) {
+        try {
+            save(job);
+        } catch (IOException e) {
+            log.warn("Could not save prescription batch {}: {}", job.getJobId(), e.getMessage());
+        }
+    }
+
+    // Under the job's lock, so a render finishing meanwhile cannot change it halfway through the write
+    private void save(PrescriptionBatchDto job) throws IOException {
+        synchronized (job) {
+            blobStore.put(batchKey(job.getJobId()), "application/json", out -> objectMapper.writeValue(out, job));
+        }
+    }
+
+    private PrescriptionBatchDto load(String jobId) throws IOException {
+        try (InputStream in = blobStore.open(batchKey(jobId))) {
+            return objectMapper.readValue(in, PrescriptionBatchDto.class);
+        }
+    }
+
+    private void delete(String jobId) {
+        try {
+            blobStore.delete(batchKey(jobId));
+        } catch (IOException e) {
+            log.warn("Could not delete prescription batch {}: {}", jobId, e.getMessage());
+        }
+    }
+
+    private Map<String, Object> status(PrescriptionBatchDto job) {
+        synchronized (job) {
+            List<Map<String, Object>> failures = new ArrayList<>();
+            for (Item item : job.getItems()) {
+                if (item.getError() != null) {
+                    Map<String, Object> failure = new LinkedHashMap<>();
+                    failure.put("visitId", item.getVisitId());
+                    failure.put("error", item.getError());
+                    failures.add(failure);
+                }
+            }
+
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("jobId", job.getJobId());
+            status.put("doctorId", job.getDoctorId());
+            status.put("state", job.getFinishedAt() == null ? "RUNNING" : "FINISHED");
+            status.put("total", job.getItems().size());
+            status.put("rendered", rendered(job));
+            status.put("failed", failed(job));
+            status.put("failures", failures);
+            status.put("startedAt", job.getStartedAt());
+            status.put("finishedAt", job.getFinishedAt());
+            return status;
+        }
+    }
+
+    private static long rendered(PrescriptionBatchDto job) {
+        synchronized (job) {
+            return job.getItems().stream().filter(item -> item.getPdfUrl() != null).count();
+        }
+    }
+
+    private static long failed(PrescriptionBatchDto job) {
+        synchronized (job) {
+            return job.getItems().stream().filter(item -> item.getError() != null).count();
+        }
+    }
+
+    private static String batchKey(String jobId) {
+        return BATCH_PREFIX + jobId + ".json";
+    }
+
+    private static String jobId(String key) {
+        return key.substring(BATCH_PREFIX.length(), key.length() - ".json".length());
+    }
+}
@@ -0,0 +1,79 @@
+package com.bharatemr.service;
+
+import com.bharatemr.repository.PartitionArchiveRepository;
+import com.bharatemr.repository.PrescriptionRepository;
+import com.bharatemr.sharding.ShardTemplate;
+import com.bharatemr.storage.BlobStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Deletes prescription PDFs no prescription points at any more: earlier renders of a visit that
+ * has since changed, and files left over from the flat directory layout. Recent files are left alone,
+ * since a render may have finished without its path being stored yet, and so are the PDFs of visits
+ * moved to a partition archive, whose prescriptions are gone.
+ */
+@Service
+@Slf4j
+public class PrescriptionPdfCleanupService {
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    @Autowired
+    private PartitionArchiveRepository partitionArchiveRepository;
+
+    @Autowired
+    private ShardTemplate shardTemplate;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Value("${app.pdf.gc.min-age:1h}")
+    private Duration minAge;
+
+    @Scheduled(cron = "0 15 4 * * *") // Run daily at 4:15 AM
+    public void deleteOrphanedPdfs() {
+        Set<String> referenced = shardTemplate.gather(prescriptionRepository::findAllPdfUrls).stream()
+                .map(PrescriptionPdfCleanupService::fileName)
+                .collect(Collectors.toSet());
+        shardTemplate.gather(partitionArchiveRepository::findAllArchivedBlobKeys).stream()
+                .map(PrescriptionPdfCleanupService::fileName)
+                .forEach(referenced::add);
+        Instant cutoff = Instant.now().minus(minAge);
+
+        List<String> orphaned = new ArrayList<>();
+        int deleted = 0;
+        try {
+            blobStore.list(PdfGeneratorService.PRESCRIPTION_PREFIX + "prescription_", blob -> {
+                if (!referenced.contains(fileName(blob.getKey())) && blob.getLastModified().isBefore(cutoff)) {
+                    orphaned.add(blob.getKey());
+                }
+            });
+            for (String key : orphaned) {
+                blobStore.delete(key);
+                deleted++;
+            }
+        } catch (IOException e) {
+            log.error("Prescription PDF cleanup stopped after {} files", deleted, e);
+            return;
+        }
+        log.info("Deleted {} orphaned prescription PDFs ({} referenced)", deleted, referenced.size());
+    }
+
+    // Older rows hold ./prescriptions/... file paths rather than keys; the file name identifies both
+    private static String fileName(String pdfUrl) {
+        return pdfUrl.substring(Math.max(pdfUrl.lastIndexOf('/'), pdfUrl.lastIndexOf('\\')) + 1);
+    }
+}
@@ -9,15 +9,32 @@ import com.bharatemr.model.Test;
 import com.bharatemr.model.Visit;
 import com.bharatemr.repository.PrescriptionRepository;
 import com.bharatemr.repository.VisitRepository;
+import com.bharatemr.sharding.ShardContext;
+import com.bharatemr.sharding.ShardTemplate;
+import com.bharatemr.storage.BlobUrlSigner;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -31,11 +48,31 @@ public class PrescriptionService {
     private VisitRepository visitRepository;
 
     @Autowired
+    @Lazy
     private PdfGeneratorService pdfGeneratorService;
 
     @Autowired
     private ModelMapper modelMapper;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ShardTemplate shardTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private BlobUrlSigner blobUrlSigner;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    @Autowired
+    private MedicineAutocompleteService medicineAutocompleteService;
+
     @Transactional
     public Map<String, Object> createPrescription(Long visitId, List<MedicineDto> medicines, List<TestDto> tests) {
         Visit visit = visitRepository.findById(visitId)
@@ -70,6 +107,9 @@ public class PrescriptionService {
         }
 
         prescriptionRepository.save(savedPrescription);
+        medicineAutocompleteService.recordAfterCommit(visit.getDoctor().getDoctorId(), savedPrescription.getMedicines().stream()
+                .map(Medicine::getMedicineName)
+                .collect(Collectors.toList()));
 
         log.info("Prescription created for visit: {}", visitId);
 
@@ -97,49 +137,161 @@ public class PrescriptionService {
                 .map(t -> modelMapper.map(t, TestDto.class))
                 .collect(Collectors.toList()));
         response.put("pdfUrl", prescription.getPdfUrl());
+        // Only while the stored file still matches the prescription
+        if (prescription.getPdfUrl() != null && prescription.getPdfHash() != null) {
+            response.put("signedPdfUrl", blobUrlSigner.sign(prescription.getPdfUrl()));
+        }
         response.put("createdAt", prescription.getCreatedAt());
 
         return response;
     }
 
-    @Transactional
-    public String generatePrescriptionPdf(Long visitId) {
-        Visit visit = visitRepository.findById(visitId)
-                .orElseThrow(() -> new ResourceNotFoundException("Visit not found"));
+    /**
+     * Loads everything the PDF needs in a short read-only transaction and renders on the PDF
+     * executor, so neither a request thread nor a connection is held while iText lays out the page.
+     * Files are named by {@link PdfGeneratorService#fingerprint}; if that file exists it is reused as is.
+     */
+    public CompletableFuture<String> generatePrescriptionPdf(Long visitId) {
+        Prescription prescription = readOnly().execute(status -> loadForRendering(visitId));
+        Visit visit = prescription.getVisit();
+        String fingerprint = pdfGeneratorService.fingerprint(visit, prescription);
+        String pdfUrl = pdfGeneratorService.prescriptionFilePath(visit, fingerprint);
 
-        Prescription prescription = prescriptionRepository.findByVisitId(visitId)
-                .orElseThrow(() -> new ResourceNotFoundException("Prescription not found"));
+        if (pdfGeneratorService.exists(pdfUrl)) {
+            if (!fingerprint.equals(prescription.getPdfHash()) || !pdfUrl.equals(prescription.getPdfUrl())) {
+                prescriptionRepository.updatePdf(prescription.getId(), pdfUrl, fingerprint);
+            }
+            meterRegistry.counter("pdf.render.reused").increment();
+            log.debug("Prescription PDF for visit {} unchanged, reusing {}", visitId, pdfUrl);
+            return CompletableFuture.completedFuture(pdfUrl);
+        }
 
-        try {
-            String pdfUrl = pdfGeneratorService.generatePrescriptionPdf(visit, prescription);
-            prescription.setPdfUrl(pdfUrl);
-            prescriptionRepository.save(prescription);
+        String shard = ShardContext.get();
+        return pdfGeneratorService.generatePrescriptionPdfAsync(visit, prescription, pdfUrl)
+                .thenApply(path -> {
+                    // Usually completes on a PDF thread, which has no shard of its own
+                    String previous = ShardContext.get();
+                    ShardContext.set(shard);
+                    try {
+                        prescriptionRepository.updatePdf(prescription.getId(), path, fingerprint);
+                    } finally {
+                        ShardContext.set(previous);
+                    }
+                    log.info("Prescription PDF generated for visit: {}", visitId);
+                    return path;
+                });
+    }
 
-            log.info("Prescription PDF generated for visit: {}", visitId);
-            return pdfUrl;
-        } catch (Exception e) {
-            log.error("Failed to generate prescription PDF for visit: {}", visitId, e);
-            throw new RuntimeException("Failed to generate PDF: " + e.getMessage());
+    public String signedPdfUrl(String pdfUrl) {
+        return blobUrlSigner.sign(pdfUrl);
+    }
+
+    /**
+     * Renders the visit's prescription once the current transaction has committed and completes with a
+     * signed link to it. The render is started from the async pool: code run in afterCommit would
+     * otherwise join the transaction that just finished.
+     */
+    public CompletableFuture<String> signedPdfUrlAfterCommit(Long visitId) {
+        CompletableFuture<String> link = new CompletableFuture<>();
+        String shard = ShardContext.get();
+        Runnable render = () -> taskExecutor.execute(() -> {
+            ShardContext.set(shard);
+            try {
+                generatePrescriptionPdf(visitId).thenApply(blobUrlSigner::sign).whenComplete((url, ex) -> {
+                    if (ex == null) {
+                        link.complete(url);
+                    } else {
+                        link.completeExceptionally(ex);
+                    }
+                });
+            } catch (RuntimeException e) {
+                link.completeExceptionally(e);
+            } finally {
+                ShardContext.clear();
+            }
+        });
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    render.run();
+                }
+            });
+        } else {
+            render.run();
         }
+        return link;
     }
 
-    @Transactional
-    public byte[] downloadPrescriptionPdf(Long visitId) {
-        Prescription prescription = prescriptionRepository.findByVisitId(visitId)
-                .orElseThrow(() -> new ResourceNotFoundException("Prescription not found"));
+    // The caller streams the returned file and must close it
+    public CompletableFuture<InputStream> downloadPrescriptionPdf(Long visitId) {
+        Prescription stored = readOnly().execute(status -> prescriptionRepository.findByVisitId(visitId)
+                .orElseThrow(() -> new ResourceNotFoundException("Prescription not found")));
 
-        if (prescription.getPdfUrl() == null) {
-            log.info("PDF not found for visit {}, generating it now...", visitId);
-            generatePrescriptionPdf(visitId);
-            // Refresh the prescription object
-            prescription = prescriptionRepository.findByVisitId(visitId).get();
+        CompletableFuture<String> file;
+        if (stored.getPdfUrl() != null && stored.getPdfHash() != null && pdfGeneratorService.exists(stored.getPdfUrl())) {
+            file = CompletableFuture.completedFuture(stored.getPdfUrl());
+        } else {
+            log.info("PDF for visit {} is missing or stale, generating it now...", visitId);
+            file = generatePrescriptionPdf(visitId);
         }
 
-        try {
-            return pdfGeneratorService.readPdfFile(prescription.getPdfUrl());
-        } catch (Exception e) {
-            log.error("Failed to read prescription PDF", e);
-            throw new RuntimeException("Failed to download PDF: " + e.getMessage());
+        return file.thenApply(path -> {
+            try {
+                return pdfGeneratorService.openPdf(path);
+            } catch (IOException e) {
+                log.error("Failed to read prescription PDF", e);
+                throw new RuntimeException("Failed to download PDF: " + e.getMessage());
+            }
+        });
+    }
+
+    // The letterhead is on every PDF of the doctor; runs once the profile change has committed, on every shard
+    public void markPdfStaleForDoctor(Long doctorId) {
+        markPdfStaleAfterCommit("doctor", doctorId, prescriptionRepository::markPdfStaleForDoctor);
+    }
+
+    // The patient's details are on every PDF of the patient, whichever doctor wrote it
+    public void markPdfStaleForPatient(Long patientId) {
+        markPdfStaleAfterCommit("patient", patientId, prescriptionRepository::markPdfStaleForPatient);
+    }
+
+    private void markPdfStaleAfterCommit(String owner, Long id, Function<Long, Integer> markStale) {
+        Runnable mark = () -> shardTemplate.forEachShard(() -> {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            Integer marked = transaction.execute(status -> markStale.apply(id));
+            log.info("Marked {} prescription PDFs of {} {} stale", marked, owner, id);
+        });
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    mark.run();
+                }
+            });
+        } else {
+            mark.run();
         }
     }
-}
\ No newline at end of file
+
+    private Prescription loadForRendering(Long visitId) {
+        Prescription prescription = prescriptionRepository.findByVisitId(visitId)
+                .orElseThrow(() -> new ResourceNotFoundException("Prescription not found"));
+        Visit visit = prescription.getVisit();
+        Hibernate.initialize(visit);
+        Hibernate.initialize(visit.getDoctor());
+        Hibernate.initialize(visit.getPatient());
+        Hibernate.initialize(prescription.getMedicines());
+        Hibernate.initialize(prescription.getTests());
+        return prescription;
+    }
+
+    private TransactionTemplate readOnly() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        return transaction;
+    }
+}
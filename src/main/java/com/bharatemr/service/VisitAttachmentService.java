@@ -0,0 +1,425 @@
+package com.bharatemr.service;
+
+import com.bharatemr.dto.AttachmentDto;
+import com.bharatemr.dto.UploadSessionDto;
+import com.bharatemr.exception.InvalidUploadException;
+import com.bharatemr.exception.ResourceNotFoundException;
+import com.bharatemr.model.VisitAttachment;
+import com.bharatemr.repository.VisitAttachmentRepository;
+import com.bharatemr.repository.VisitRepository;
+import com.bharatemr.storage.BlobStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Resumable uploads of lab reports and scans. A client opens a session, PUTs fixed-size chunks in any
+ * order (re-sending only the ones it is missing after a dropped connection), then completes. Each chunk
+ * is streamed from the request into the blob store; completing streams them, in order, into one blob
+ * keyed by the file's SHA-256, so identical files are stored once. Sessions are blobs themselves, which
+ * lets any node continue an upload another node started.
+ */
+@Service
+@Slf4j
+public class VisitAttachmentService {
+
+    static final String CONTENT_PREFIX = "uploads/";
+
+    static final String PARTS_PREFIX = "uploads/parts/";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private VisitRepository visitRepository;
+
+    @Autowired
+    private VisitAttachmentRepository visitAttachmentRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private AttachmentDerivativeService attachmentDerivativeService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.upload.chunk-size:4MB}")
+    private DataSize chunkSize;
+
+    @Value("${app.upload.max-file-size:100MB}")
+    private DataSize maxFileSize;
+
+    @Value("${app.upload.content-types:application/pdf,image/jpeg,image/png}")
+    private Set<String> contentTypes;
+
+    @Value("${app.upload.session-ttl:24h}")
+    private Duration sessionTtl;
+
+    public UploadSessionDto startUpload(Long visitId, UploadSessionDto request) {
+        requireVisit(visitId);
+        if (request.getSize() > maxFileSize.toBytes()) {
+            throw new InvalidUploadException("File is larger than " + maxFileSize.toMegabytes() + "MB");
+        }
+        if (!contentTypes.contains(request.getContentType())) {
+            throw new InvalidUploadException("Unsupported content type " + request.getContentType()
+                    + ", expected one of " + contentTypes);
+        }
+
+        int size = (int) chunkSize.toBytes();
+        UploadSessionDto session = UploadSessionDto.builder()
+                .uploadId(UUID.randomUUID().toString())
+                .visitId(visitId)
+                .fileName(request.getFileName())
+                .contentType(request.getContentType())
+                .size(request.getSize())
+                .sha256(request.getSha256().toLowerCase())
+                .chunkSize(size)
+                .chunkCount((int) ((request.getSize() + size - 1) / size))
+                .createdAt(LocalDateTime.now())
+                .build();
+        put(sessionKey(session.getUploadId()), "application/json", out -> objectMapper.writeValue(out, session));
+        session.setReceivedChunks(List.of());
+
+        meterRegistry.counter("uploads.sessions").increment();
+        log.info("Upload {} started for visit {}: {} ({} bytes, {} chunks)", session.getUploadId(), visitId,
+                session.getFileName(), session.getSize(), session.getChunkCount());
+        return session;
+    }
+
+    public UploadSessionDto getUpload(Long visitId, String uploadId) {
+        UploadSessionDto session = session(visitId, uploadId);
+        session.setReceivedChunks(new ArrayList<>(receivedChunks(uploadId)));
+        return session;
+    }
+
+    /**
+     * Stores one chunk straight from the request body. A chunk of the wrong length, or one that does not
+     * match {@code sha256} when given, is rejected without being stored; re-sending a chunk replaces it.
+     */
+    public void putChunk(Long visitId, String uploadId, int index, String sha256, InputStream body) {
+        UploadSessionDto session = session(visitId, uploadId);
+        if (index < 0 || index >= session.getChunkCount()) {
+            throw new InvalidUploadException("Chunk index must be between 0 and " + (session.getChunkCount() - 1));
+        }
+        long expected = index == session.getChunkCount() - 1
+                ? session.getSize() - (long) index * session.getChunkSize()
+                : session.getChunkSize();
+
+        put(partKey(uploadId, index), "application/octet-stream", out -> {
+            MessageDigest digest = sha256();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long length = 0;
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                length += read;
+                if (length > expected) {
+                    throw new InvalidUploadException("Chunk " + index + " is longer than " + expected + " bytes");
+                }
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+            }
+            if (length != expected) {
+                throw new InvalidUploadException("Chunk " + index + " has " + length + " bytes, expected " + expected);
+            }
+            if (sha256 != null && !hex(digest).equalsIgnoreCase(sha256)) {
+                meterRegistry.counter("uploads.chunks", "result", "checksum_mismatch").increment();
+                throw new InvalidUploadException("Chunk " + index + " does not match its SHA-256, send it again");
+            }
+        });
+        meterRegistry.counter("uploads.chunks", "result", "stored").increment();
+    }
+
+    /**
+     * Assembles the chunks into the content blob, checking the whole file's SHA-256 on the way, and
+     * records the attachment. When that content is already stored, the chunks are still hashed and
+     * checked, then discarded.
+     * Only the final insert runs in a transaction, so no connection is held while the file is copied.
+     */
+    public AttachmentDto completeUpload(Long visitId, String uploadId) {
+        UploadSessionDto session = session(visitId, uploadId);
+        Set<Integer> received = receivedChunks(uploadId);
+        if (received.size() < session.getChunkCount()) {
+            List<Integer> missing = new ArrayList<>();
+            for (int i = 0; i < session.getChunkCount() && missing.size() < 20; i++) {
+                if (!received.contains(i)) {
+                    missing.add(i);
+                }
+            }
+            throw new InvalidUploadException("Upload " + uploadId + " is missing chunks " + missing);
+        }
+
+        String key = CONTENT_PREFIX + session.getSha256();
+        boolean duplicate = exists(key);
+        if (duplicate) {
+            // Knowing a stored file's hash is not enough: the chunks sent must hash to it too
+            try {
+                assemble(session, OutputStream.nullOutputStream());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            put(key, session.getContentType(), out -> assemble(session, out));
+        }
+        meterRegistry.counter("uploads.completed", "duplicate", String.valueOf(duplicate)).increment();
+
+        VisitAttachment attachment = new TransactionTemplate(transactionManager).execute(status ->
+                visitAttachmentRepository.save(VisitAttachment.builder()
+                        .visit(visitRepository.getReferenceById(visitId))
+                        .fileName(session.getFileName())
+                        .contentType(session.getContentType())
+                        .sizeBytes(session.getSize())
+                        .sha256(session.getSha256())
+                        .storageKey(key)
+                        .build()));
+        deleteSession(uploadId);
+        attachmentDerivativeService.deriveLater(session.getSha256(), session.getContentType());
+
+        log.info("Upload {} completed as attachment {} of visit {}{}", uploadId, attachment.getId(), visitId,
+                duplicate ? " (content already stored)" : "");
+        return toDto(attachment);
+    }
+
+    @Transactional(readOnly = true)
+    public List<AttachmentDto> getAttachments(Long visitId) {
+        return visitAttachmentRepository.findByVisitIdOrderByCreatedAtAsc(visitId).stream()
+                .map(this::toDto)
+                .collect(Collectors.toList());
+    }
+
+    @Transactional(readOnly = true)
+    public AttachmentDto getAttachment(Long visitId, Long attachmentId) {
+        return visitAttachmentRepository.findByIdAndVisitId(attachmentId, visitId)
+                .map(this::toDto)
+                .orElseThrow(() -> new ResourceNotFoundException("Attachment not found"));
+    }
+
+    // For visit lists: the attachments of the whole page in one query
+    public Map<Long, List<AttachmentDto>> getAttachmentsByVisitIds(Collection<Long> visitIds) {
+        return visitAttachmentRepository.findByVisitIdInOrderByCreatedAtAsc(visitIds).stream()
+                .map(this::toDto)
+                .collect(Collectors.groupingBy(AttachmentDto::getVisitId));
+    }
+
+    @Transactional(readOnly = true)
+    public String getThumbnailKey(Long visitId, Long attachmentId) {
+        return derivativeKey(visitId, attachmentId, VisitAttachment::getThumbnailKey, "Thumbnail");
+    }
+
+    @Transactional(readOnly = true)
+    public String getPreviewKey(Long visitId, Long attachmentId) {
+        return derivativeKey(visitId, attachmentId, VisitAttachment::getPreviewKey, "Preview");
+    }
+
+    // The caller streams the returned content and must close it
+    public InputStream openAttachment(AttachmentDto attachment) throws IOException {
+        return blobStore.open(CONTENT_PREFIX + attachment.getSha256());
+    }
+
+    public InputStream openDerivative(String key) throws IOException {
+        return blobStore.open(key);
+    }
+
+    @Scheduled(fixedDelay = 3600000) // Every hour
+    public void deleteAbandonedUploads() {
+        Instant cutoff = Instant.now().minus(sessionTtl);
+        Map<String, Instant> lastActivity = new HashMap<>();
+        try {
+            blobStore.list(PARTS_PREFIX, blob -> {
+                String uploadId = uploadId(blob.getKey());
+                lastActivity.merge(uploadId, blob.getLastModified(), (a, b) -> a.isAfter(b) ? a : b);
+            });
+        } catch (IOException e) {
+            log.error("Could not list upload sessions", e);
+            return;
+        }
+
+        int deleted = 0;
+        for (Map.Entry<String, Instant> upload : lastActivity.entrySet()) {
+            if (upload.getValue().isBefore(cutoff)) {
+                deleteSession(upload.getKey());
+                deleted++;
+            }
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} abandoned uploads", deleted);
+        }
+    }
+
+    private void assemble(UploadSessionDto session, OutputStream out) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (int i = 0; i < session.getChunkCount(); i++) {
+            try (InputStream in = blobStore.open(partKey(session.getUploadId(), i))) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+        }
+        if (!hex(digest).equals(session.getSha256())) {
+            meterRegistry.counter("uploads.checksum.mismatch").increment();
+            throw new InvalidUploadException("Assembled file does not match its SHA-256; re-send the chunks and complete again");
+        }
+    }
+
+    private UploadSessionDto session(Long visitId, String uploadId) {
+        try {
+            UUID.fromString(uploadId);
+        } catch (IllegalArgumentException e) {
+            throw new ResourceNotFoundException("Upload not found");
+        }
+        UploadSessionDto session;
+        try (InputStream in = blobStore.open(sessionKey(uploadId))) {
+            session = objectMapper.readValue(in, UploadSessionDto.class);
+        } catch (NoSuchFileException e) {
+            throw new ResourceNotFoundException("Upload not found");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!session.getVisitId().equals(visitId)) {
+            throw new ResourceNotFoundException("Upload not found");
+        }
+        return session;
+    }
+
+    private Set<Integer> receivedChunks(String uploadId) {
+        Set<Integer> received = new TreeSet<>();
+        try {
+            blobStore.list(PARTS_PREFIX + uploadId + ".", blob -> {
+                String key = blob.getKey();
+                if (key.endsWith(".part")) {
+                    received.add(Integer.parseInt(key.substring(key.indexOf('.') + 1, key.length() - ".part".length())));
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return received;
+    }
+
+    private void deleteSession(String uploadId) {
+        try {
+            List<String> keys = new ArrayList<>();
+            blobStore.list(PARTS_PREFIX + uploadId + ".", blob -> keys.add(blob.getKey()));
+            for (String key : keys) {
+                blobStore.delete(key);
+            }
+        } catch (IOException e) {
+            log.warn("Could not delete upload {}: {}", uploadId, e.getMessage());
+        }
+    }
+
+    private String derivativeKey(Long visitId, Long attachmentId, Function<VisitAttachment, String> key, String name) {
+        VisitAttachment attachment = visitAttachmentRepository.findByIdAndVisitId(attachmentId, visitId)
+                .orElseThrow(() -> new ResourceNotFoundException("Attachment not found"));
+        if (key.apply(attachment) == null) {
+            throw new ResourceNotFoundException(name + " not available for this attachment");
+        }
+        return key.apply(attachment);
+    }
+
+    private void requireVisit(Long visitId) {
+        if (!visitRepository.existsById(visitId)) {
+            throw new ResourceNotFoundException("Visit not found");
+        }
+    }
+
+    private boolean exists(String key) {
+        try {
+            return blobStore.exists(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void put(String key, String contentType, BlobStore.BlobWriter writer) {
+        try {
+            blobStore.put(key, contentType, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private AttachmentDto toDto(VisitAttachment attachment) {
+        Long visitId = attachment.getVisit().getId();
+        String path = "/api/visits/" + visitId + "/attachments/" + attachment.getId();
+        return AttachmentDto.builder()
+                .id(attachment.getId())
+                .visitId(visitId)
+                .fileName(attachment.getFileName())
+                .contentType(attachment.getContentType())
+                .size(attachment.getSizeBytes())
+                .sha256(attachment.getSha256())
+                .createdAt(attachment.getCreatedAt())
+                .thumbnailUrl(attachment.getThumbnailKey() != null ? path + "/thumbnail" : null)
+                .previewUrl(attachment.getPreviewKey() != null ? path + "/preview" : null)
+                .build();
+    }
+
+    // Session and chunks share the upload id as their name prefix, so one listing finds them all
+    private static String sessionKey(String uploadId) {
+        return PARTS_PREFIX + uploadId + ".json";
+    }
+
+    private static String partKey(String uploadId, int index) {
+        return PARTS_PREFIX + uploadId + "." + index + ".part";
+    }
+
+    private static String uploadId(String key) {
+        String name = key.substring(PARTS_PREFIX.length());
+        return name.substring(0, name.indexOf('.'));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(MessageDigest digest) {
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
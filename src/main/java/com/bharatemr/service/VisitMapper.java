@@ -0,0 +1,57 @@
+package com.bharatemr.service;
+
+import com.bharatemr.dto.AttachmentDto;
+import com.bharatemr.dto.MedicineDto;
+import com.bharatemr.dto.TestDto;
+import com.bharatemr.dto.VisitDto;
+import com.bharatemr.model.Prescription;
+import com.bharatemr.model.Visit;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Turns a visit and what was loaded for it into a {@link VisitDto}. It does no lookups of its own, so
+ * {@link VisitService} can load prescriptions and attachments once per page.
+ */
+@Component
+public class VisitMapper {
+
+    @Autowired
+    private ModelMapper modelMapper;
+
+    /**
+     * @param prescription the visit's prescription, or null
+     * @param attachments attachments by visit id; may hold other visits of the same page
+     */
+    public VisitDto toDto(Visit visit, Prescription prescription, Map<Long, List<AttachmentDto>> attachments) {
+        VisitDto dto = modelMapper.map(visit, VisitDto.class);
+        dto.setPatientName(visit.getPatient().getFullName());
+        dto.setDoctorName(visit.getDoctor().getFullName());
+        dto.setPatientId(visit.getPatient().getPatientId());
+        dto.setDoctorId(visit.getDoctor().getId());
+        if (prescription != null) {
+            applyPrescription(dto, prescription);
+        }
+        // Only the small derivatives' links travel with the visit; the files themselves are fetched on demand
+        List<AttachmentDto> forVisit = attachments.get(visit.getId());
+        if (forVisit != null) {
+            dto.setAttachments(forVisit);
+        }
+        return dto;
+    }
+
+    private void applyPrescription(VisitDto dto, Prescription prescription) {
+        dto.setMedicines(prescription.getMedicines().stream()
+                .map(m -> modelMapper.map(m, MedicineDto.class))
+                .collect(Collectors.toList()));
+        dto.setTests(prescription.getTests().stream()
+                .map(t -> modelMapper.map(t, TestDto.class))
+                .collect(Collectors.toList()));
+        dto.setPrescriptionPdfUrl(prescription.getPdfUrl());
+    }
+}
@@ -1,5 +1,6 @@
 package com.bharatemr.service;
 
+import com.bharatemr.dto.AttachmentDto;
 import com.bharatemr.dto.FollowUpDto;
 import com.bharatemr.dto.MedicineDto;
 import com.bharatemr.dto.TestDto;
@@ -7,6 +8,7 @@ import com.bharatemr.dto.VisitDto;
 import com.bharatemr.exception.ResourceNotFoundException;
 import com.bharatemr.model.*;
 import com.bharatemr.repository.*;
+import com.bharatemr.sharding.ShardTemplate;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,9 +27,11 @@ import javax.persistence.criteria.Predicate;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -52,9 +56,27 @@ public class VisitService {
     @Autowired
     private NotificationService notificationService;
 
+    @Autowired
+    private PartitionArchiveService partitionArchiveService;
+
+    @Autowired
+    private ShardTemplate shardTemplate;
+
     @Autowired
     private ModelMapper modelMapper;
 
+    @Autowired
+    private VisitMapper visitMapper;
+
+    @Autowired
+    private PrescriptionService prescriptionService;
+
+    @Autowired
+    private VisitAttachmentService visitAttachmentService;
+
+    @Autowired
+    private MedicineAutocompleteService medicineAutocompleteService;
+
     @Value("${app.mobile-app.download-link:https://bharatemr.com/download}")
     private String appDownloadLink;
 
@@ -84,8 +106,9 @@ public class VisitService {
         Visit savedVisit = visitRepository.save(visit);
 
         // Create prescription if medicines or tests provided
-        if ((visitDto.getMedicines() != null && !visitDto.getMedicines().isEmpty()) ||
-                (visitDto.getTests() != null && !visitDto.getTests().isEmpty())) {
+        boolean hasPrescription = (visitDto.getMedicines() != null && !visitDto.getMedicines().isEmpty()) ||
+                (visitDto.getTests() != null && !visitDto.getTests().isEmpty());
+        if (hasPrescription) {
 
             Prescription prescription = Prescription.builder()
                     .visit(savedVisit)
@@ -114,6 +137,9 @@ public class VisitService {
             }
 
             prescriptionRepository.save(savedPrescription);
+            medicineAutocompleteService.recordAfterCommit(doctor.getDoctorId(), savedPrescription.getMedicines().stream()
+                    .map(Medicine::getMedicineName)
+                    .collect(Collectors.toList()));
         }
 
         // Create follow-up if scheduled
@@ -129,15 +155,26 @@ public class VisitService {
             followUpRepository.save(followUp);
         }
 
-        // Send notification to patient
+        // Send notification to patient; with a prescription, once its PDF is rendered and can be linked
         String summary = visitDto.getChiefComplaint();
-        notificationService.sendVisitNotification(
-                patient.getMobileNumber(),
-                patient.getFullName(),
-                doctor.getFullName(),
-                summary,
-                appDownloadLink,
-                patient.getPatientId());
+        if (hasPrescription) {
+            prescriptionService.signedPdfUrlAfterCommit(savedVisit.getId()).whenComplete((link, ex) -> {
+                if (ex != null) {
+                    log.warn("Visit {} notification sent without a prescription link: {}", savedVisit.getId(), ex.getMessage());
+                }
+                notificationService.sendVisitNotification(patient.getMobileNumber(), patient.getFullName(),
+                        doctor.getFullName(), summary, appDownloadLink, patient.getPatientId(), link);
+            });
+        } else {
+            notificationService.sendVisitNotification(
+                    patient.getMobileNumber(),
+                    patient.getFullName(),
+                    doctor.getFullName(),
+                    summary,
+                    appDownloadLink,
+                    patient.getPatientId(),
+                    null);
+        }
 
         log.info("Visit created: ID={} for patient: {} by doctor: {}",
                 savedVisit.getId(), patient.getPatientId(), doctorId);
@@ -145,12 +182,9 @@ public class VisitService {
         return convertToDto(savedVisit);
     }
 
-    @Transactional(readOnly = true)
     public VisitDto getVisitById(Long visitId) {
-        Visit visit = visitRepository.findById(visitId)
+        return shardTemplate.findFirst(() -> visitRepository.findById(visitId).map(this::convertToDto))
                 .orElseThrow(() -> new ResourceNotFoundException("Visit not found"));
-
-        return convertToDto(visit);
     }
 
     @Transactional(readOnly = true)
@@ -160,21 +194,53 @@ public class VisitService {
 
         List<Visit> visits = visitRepository.findByDoctorIdOrderByVisitDateDesc(doctor.getId());
 
-        return visits.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return convertToDtos(visits);
     }
 
-    @Transactional(readOnly = true)
-    public List<VisitDto> getVisitsByPatient(String patientId) {
+    // Not @Transactional: ShardTemplate gives each shard its own, and refuses to run inside one
+    public List<VisitDto> getVisitsByPatient(String patientId, boolean includeArchived) {
         Patient patient = patientRepository.findByPatientId(patientId)
                 .orElseThrow(() -> new ResourceNotFoundException("Patient not found"));
 
-        List<Visit> visits = visitRepository.findByPatientIdOrderByVisitDateDesc(patient.getId());
+        // A patient may see doctors on different shards; each shard archives its own partitions
+        return shardTemplate.gather(() -> {
+            List<VisitDto> dtos = convertToDtos(visitRepository.findByPatientIdOrderByVisitDateDesc(patient.getId()));
+            // Archived months are all older than anything still in the visits table
+            if (includeArchived) {
+                dtos.addAll(partitionArchiveService.getArchivedVisits(patient));
+            }
+            return dtos;
+        }, VisitDto::getId, Comparator.comparing(VisitDto::getVisitDate).reversed());
+    }
 
-        return visits.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+    /**
+     * A patient's live visits, newest first, handed over {@code chunkSize} at a time. Each chunk is
+     * read from every shard in its own short transaction, so nothing is held open between chunks.
+     */
+    public void forEachVisitChunkByPatient(Patient patient, int chunkSize, Consumer<List<VisitDto>> consumer) {
+        Comparator<VisitDto> newestFirst = Comparator.comparing(VisitDto::getVisitDate)
+                .thenComparing(VisitDto::getId).reversed();
+
+        VisitDto last = null;
+        while (true) {
+            VisitDto after = last;
+            Pageable page = PageRequest.of(0, chunkSize);
+            List<VisitDto> chunk = shardTemplate.gather(() -> convertToDtos(after == null
+                    ? visitRepository.findByPatientIdOrderByVisitDateDescIdDesc(patient.getId(), page)
+                    : visitRepository.findPatientVisitsBefore(patient.getId(), after.getVisitDate(), after.getId(), page)),
+                    VisitDto::getId, newestFirst);
+            // Every shard returned its own newest chunkSize; only the overall newest are safe to hand over
+            if (chunk.size() > chunkSize) {
+                chunk = chunk.subList(0, chunkSize);
+            }
+            if (!chunk.isEmpty()) {
+                consumer.accept(chunk);
+            }
+            if (chunk.size() < chunkSize) {
+                return;
+            }
+            last = chunk.get(chunk.size() - 1);
+        }
     }
 
     @Transactional
@@ -203,6 +269,8 @@ public class VisitService {
         }
 
         Visit updated = visitRepository.save(visit);
+        // The next download re-checks the PDF's fingerprint
+        prescriptionRepository.markPdfStale(visitId);
 
         log.info("Visit updated: ID={}", visitId);
 
@@ -219,9 +287,7 @@ public class VisitService {
         List<Visit> visits = visitRepository.findVisitsByDoctorAndDateRange(
                 doctor.getId(), startDate, endDate);
 
-        return visits.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        return convertToDtos(visits);
     }
 
     @Transactional(readOnly = true)
@@ -260,9 +326,7 @@ public class VisitService {
 
         Page<Visit> visitPage = visitRepository.findAll(spec, pageable);
 
-        List<VisitDto> dtos = visitPage.getContent().stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        List<VisitDto> dtos = convertToDtos(visitPage.getContent());
 
         Map<String, Object> echoedFilters = new HashMap<>();
         echoedFilters.put("search", search);
@@ -283,23 +347,28 @@ public class VisitService {
     }
 
     private VisitDto convertToDto(Visit visit) {
-        VisitDto dto = modelMapper.map(visit, VisitDto.class);
-        dto.setPatientName(visit.getPatient().getFullName());
-        dto.setDoctorName(visit.getDoctor().getFullName());
-        dto.setPatientId(visit.getPatient().getPatientId());
-        dto.setDoctorId(visit.getDoctor().getId());
-
-        // Add prescription data if exists
-        prescriptionRepository.findByVisitId(visit.getId()).ifPresent(prescription -> {
-            dto.setMedicines(prescription.getMedicines().stream()
-                    .map(m -> modelMapper.map(m, MedicineDto.class))
-                    .collect(Collectors.toList()));
-            dto.setTests(prescription.getTests().stream()
-                    .map(t -> modelMapper.map(t, TestDto.class))
-                    .collect(Collectors.toList()));
-            dto.setPrescriptionPdfUrl(prescription.getPdfUrl());
-        });
+        Prescription prescription = prescriptionRepository.findByVisitId(visit.getId()).orElse(null);
+        return visitMapper.toDto(visit, prescription,
+                visitAttachmentService.getAttachmentsByVisitIds(List.of(visit.getId())));
+    }
+
+    // Loads prescriptions for the whole list up front instead of one lookup per visit
+    private List<VisitDto> convertToDtos(List<Visit> visits) {
+        if (visits.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<Long> visitIds = visits.stream().map(Visit::getId).collect(Collectors.toList());
+        Map<Long, Prescription> prescriptions = prescriptionRepository.findWithMedicinesByVisitIdIn(visitIds)
+                .stream()
+                .collect(Collectors.toMap(p -> p.getVisit().getId(), p -> p));
+        if (!prescriptions.isEmpty()) {
+            prescriptionRepository.findWithTestsByVisitIdIn(prescriptions.keySet());
+        }
+        Map<Long, List<AttachmentDto>> attachments = visitAttachmentService.getAttachmentsByVisitIds(visitIds);
 
-        return dto;
+        return visits.stream()
+                .map(visit -> visitMapper.toDto(visit, prescriptions.get(visit.getId()), attachments))
+                .collect(Collectors.toList());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,21 @@
+package com.bharatemr.sharding;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Routes a handler's clinical reads and writes to the shard owning one doctor. The doctor is taken from
+ * the named path variable or request parameter if given and present, else from the authenticated doctor.
+ * Handlers without it (or without a doctor to resolve) run on the primary, or scatter through
+ * {@link ShardTemplate}.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DoctorShard {
+
+    String value() default "";
+}
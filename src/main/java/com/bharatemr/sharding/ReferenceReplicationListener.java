@@ -0,0 +1,67 @@
+package com.bharatemr.sharding;
+
+import com.bharatemr.model.Doctor;
+import com.bharatemr.model.Patient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostUpdate;
+
+/**
+ * Entity listener on {@link Doctor} and {@link Patient}; a no-op unless sharding is enabled. Replication
+ * waits for the commit so shards never see a row the primary rolled back.
+ */
+public class ReferenceReplicationListener {
+
+    @Autowired
+    private ObjectProvider<ReferenceReplicator> referenceReplicator;
+
+    @Autowired
+    private ObjectProvider<ShardDirectory> shardDirectory;
+
+    @PostPersist
+    public void created(Object entity) {
+        ShardDirectory directory = shardDirectory.getIfAvailable();
+        if (directory != null && entity instanceof Doctor) {
+            Long doctorId = ((Doctor) entity).getId();
+            afterCommit(() -> directory.assign(doctorId));
+        }
+        replicate(entity);
+    }
+
+    @PostUpdate
+    public void updated(Object entity) {
+        replicate(entity);
+    }
+
+    private void replicate(Object entity) {
+        ReferenceReplicator replicator = referenceReplicator.getIfAvailable();
+        if (replicator == null) {
+            return;
+        }
+        String source = ShardContext.get();
+        if (entity instanceof Doctor) {
+            Long id = ((Doctor) entity).getId();
+            afterCommit(() -> replicator.replicate("doctors", id, source));
+        } else if (entity instanceof Patient) {
+            Long id = ((Patient) entity).getId();
+            afterCommit(() -> replicator.replicate("patients", id, source));
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
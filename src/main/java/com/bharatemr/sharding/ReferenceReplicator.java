@@ -0,0 +1,135 @@
+package com.bharatemr.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps a copy of doctors, patients and catalog terms on every shard so clinical rows keep their foreign
+ * keys and joins. Rows are written on the primary and pushed out after commit by
+ * {@link ReferenceReplicationListener} (catalog terms by {@code CatalogDictionary}, at once);
+ * {@link #catchUp()} repairs anything missed while an instance or shard was down.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+public class ReferenceReplicator {
+
+    // Patients reference the doctor that onboarded them, so doctors go first
+    static final List<String> TABLES = List.of("doctors", "patients");
+
+    // Prescription line columns holding catalog_terms ids
+    private static final List<String[]> CATALOG_COLUMNS = List.of(
+            new String[] { "prescription_medicines", "medicine_name_id" },
+            new String[] { "prescription_medicines", "dosage_id" },
+            new String[] { "prescription_medicines", "frequency_id" },
+            new String[] { "prescription_medicines", "duration_id" },
+            new String[] { "prescription_tests", "test_name_id" });
+
+    @Autowired
+    private ShardDataSources shardDataSources;
+
+    @Autowired
+    private ShardingProperties shardingProperties;
+
+    public void replicate(String table, Long id, String source) {
+        String from = source == null ? shardDataSources.getPrimary() : source;
+        for (String shard : shardDataSources.names()) {
+            if (shard.equals(from)) {
+                continue;
+            }
+            try {
+                ShardRowCopier.copy(shardDataSources.jdbc(from), shardDataSources.jdbc(shard), table, "id",
+                        shardingProperties.getCopyBatchSize(), "id = ?", id);
+            } catch (Exception e) {
+                log.error("Failed to replicate {} {} to shard {}: {}", table, id, shard, e.getMessage());
+            }
+        }
+    }
+
+    public void catchUp() {
+        String primary = shardDataSources.getPrimary();
+        for (String shard : shardDataSources.names()) {
+            if (shard.equals(primary)) {
+                continue;
+            }
+            for (String table : TABLES) {
+                Timestamp since = shardDataSources.jdbc(shard).queryForObject(
+                        "SELECT COALESCE(max(COALESCE(updated_at, created_at)), TIMESTAMP '1970-01-01') FROM " + table,
+                        Timestamp.class);
+                ShardRowCopier.Copied copied = ShardRowCopier.copy(shardDataSources.jdbc(primary),
+                        shardDataSources.jdbc(shard), table, "id", shardingProperties.getCopyBatchSize(),
+                        "COALESCE(updated_at, created_at) >= ?", since);
+                if (copied.rows > 0) {
+                    log.info("Replicated {} {} rows to shard {}", copied.rows, table, shard);
+                }
+            }
+            catchUpCatalog(shard);
+        }
+    }
+
+    /**
+     * Brings the shard's catalog to the primary's. A shard that had prescriptions when V9 ran numbered
+     * its backfilled terms itself; the first catch-up adds its terms to the primary and rewrites its
+     * lines to the primary's ids, in one transaction. After that this only copies terms it missed.
+     */
+    private void catchUpCatalog(String shard) {
+        JdbcTemplate primary = shardDataSources.jdbc(shardDataSources.getPrimary());
+        JdbcTemplate target = shardDataSources.jdbc(shard);
+
+        Map<List<String>, Integer> shardIds = catalog(target);
+        primary.batchUpdate("INSERT INTO catalog_terms (kind, term) VALUES (?, ?) ON CONFLICT DO NOTHING",
+                shardIds.keySet().stream().map(List::toArray).collect(Collectors.toList()));
+        Map<List<String>, Integer> primaryIds = catalog(primary);
+
+        List<Object[]> remap = new ArrayList<>();
+        shardIds.forEach((term, id) -> {
+            Integer primaryId = primaryIds.get(term);
+            if (!id.equals(primaryId)) {
+                remap.add(new Object[] { id, primaryId });
+            }
+        });
+        if (remap.isEmpty() && shardIds.size() == primaryIds.size()) {
+            return;
+        }
+
+        TransactionTemplate transaction = new TransactionTemplate(
+                new DataSourceTransactionManager(shardDataSources.getDataSources().get(shard)));
+        transaction.executeWithoutResult(status -> {
+            if (!remap.isEmpty()) {
+                target.execute("SET CONSTRAINTS ALL DEFERRED");
+                target.execute("CREATE TEMPORARY TABLE catalog_remap " +
+                        "(old_id INTEGER PRIMARY KEY, new_id INTEGER NOT NULL) ON COMMIT DROP");
+                target.batchUpdate("INSERT INTO catalog_remap (old_id, new_id) VALUES (?, ?)", remap);
+                for (String[] column : CATALOG_COLUMNS) {
+                    target.update("UPDATE " + column[0] + " c SET " + column[1] + " = r.new_id FROM catalog_remap r " +
+                            "WHERE c." + column[1] + " = r.old_id");
+                }
+                target.update("DELETE FROM catalog_terms");
+            }
+            ShardRowCopier.copy(primary, target, "catalog_terms", "id", shardingProperties.getCopyBatchSize(), "TRUE");
+        });
+        if (!remap.isEmpty()) {
+            log.info("Remapped {} catalog terms on shard {} to the primary's ids", remap.size(), shard);
+        }
+    }
+
+    private static Map<List<String>, Integer> catalog(JdbcTemplate jdbc) {
+        Map<List<String>, Integer> ids = new HashMap<>();
+        jdbc.query("SELECT id, kind, term FROM catalog_terms", (RowCallbackHandler) rs ->
+                ids.put(List.of(rs.getString(2), rs.getString(3)), rs.getInt(1)));
+        return ids;
+    }
+}
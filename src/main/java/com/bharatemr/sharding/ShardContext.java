@@ -0,0 +1,25 @@
+package com.bharatemr.sharding;
+
+/**
+ * Shard the current thread's clinical queries go to. Set per request by {@link ShardRoutingInterceptor}
+ * and per task by {@link ShardTemplate}; unset means the primary.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static String get() {
+        return CURRENT.get();
+    }
+
+    public static void set(String shard) {
+        CURRENT.set(shard);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+}
@@ -0,0 +1,72 @@
+package com.bharatemr.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The physical databases behind {@link ShardRoutingDataSource}, primary first. Used directly by the
+ * directory, replication and shard moves, which must not depend on the current {@link ShardContext}.
+ */
+public class ShardDataSources implements DisposableBean {
+
+    private final String primary;
+
+    private final Map<String, DataSource> dataSources;
+
+    private final Map<String, Integer> indexes;
+
+    private final Map<String, JdbcTemplate> jdbcTemplates = new LinkedHashMap<>();
+
+    public ShardDataSources(String primary, Map<String, DataSource> dataSources, Map<String, Integer> indexes) {
+        this.primary = primary;
+        this.dataSources = Collections.unmodifiableMap(new LinkedHashMap<>(dataSources));
+        this.indexes = Collections.unmodifiableMap(new LinkedHashMap<>(indexes));
+        this.dataSources.forEach((name, dataSource) -> jdbcTemplates.put(name, new JdbcTemplate(dataSource)));
+    }
+
+    public String getPrimary() {
+        return primary;
+    }
+
+    public List<String> names() {
+        return new ArrayList<>(dataSources.keySet());
+    }
+
+    public boolean contains(String shard) {
+        return dataSources.containsKey(shard);
+    }
+
+    public Map<String, DataSource> getDataSources() {
+        return dataSources;
+    }
+
+    public int index(String shard) {
+        return indexes.get(shard);
+    }
+
+    public JdbcTemplate jdbc(String shard) {
+        JdbcTemplate jdbcTemplate = jdbcTemplates.get(shard);
+        if (jdbcTemplate == null) {
+            throw new IllegalArgumentException("Unknown shard: " + shard);
+        }
+        return jdbcTemplate;
+    }
+
+    // The primary pool belongs to the Spring context; the extra shard pools are ours to close
+    @Override
+    public void destroy() {
+        dataSources.forEach((name, dataSource) -> {
+            if (!name.equals(primary) && dataSource instanceof HikariDataSource) {
+                ((HikariDataSource) dataSource).close();
+            }
+        });
+    }
+}
@@ -0,0 +1,162 @@
+package com.bharatemr.sharding;
+
+import com.bharatemr.cache.CacheInvalidationRegistry;
+import com.bharatemr.cache.EntityChange;
+import com.bharatemr.cache.InvalidationBus;
+import com.bharatemr.cache.InvalidationListener;
+import com.bharatemr.exception.ShardUnavailableException;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which shard owns each doctor, from the shard_directory table on the primary (Flyway V5). Doctors with
+ * no entry predate sharding and live on the primary. Lookups are cached briefly per instance; changes
+ * are broadcast over the {@link InvalidationBus}, and a shard move still waits out
+ * {@link ShardingProperties#getDirectoryCacheTtl()} after freezing a doctor in case a node missed one.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+public class ShardDirectory {
+
+    @Autowired
+    private ShardDataSources shardDataSources;
+
+    @Autowired
+    private ShardingProperties shardingProperties;
+
+    @Autowired
+    private CacheInvalidationRegistry cacheInvalidationRegistry;
+
+    @Autowired
+    private InvalidationBus invalidationBus;
+
+    private final Map<String, Cached> cache = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void subscribe() {
+        cacheInvalidationRegistry.subscribe(EntityChange.SHARD_DIRECTORY, new InvalidationListener() {
+            @Override
+            public void invalidate(Collection<EntityChange> changes) {
+                changes.forEach(change -> cache.remove(change.getId()));
+            }
+
+            @Override
+            public void invalidateAll() {
+                cache.clear();
+            }
+        });
+    }
+
+    // Null when the doctor does not exist
+    public Entry lookup(String doctorId) {
+        Cached cached = cache.get(doctorId);
+        long now = System.currentTimeMillis();
+        if (cached != null && now - cached.loadedAt < shardingProperties.getDirectoryCacheTtl().toMillis()) {
+            return cached.entry;
+        }
+        Entry entry = load(doctorId);
+        if (entry != null) {
+            cache.put(doctorId, new Cached(entry, now));
+        }
+        return entry;
+    }
+
+    // Uncached, for shard moves
+    public Entry load(String doctorId) {
+        List<Entry> entries = primary().query(
+                "SELECT d.id, d.doctor_id, s.shard, s.frozen FROM doctors d " +
+                "LEFT JOIN shard_directory s ON s.doctor_id = d.id WHERE d.doctor_id = ?",
+                (rs, row) -> new Entry(rs.getLong("id"), rs.getString("doctor_id"),
+                        rs.getString("shard") == null ? shardDataSources.getPrimary() : rs.getString("shard"),
+                        rs.getBoolean("frozen")),
+                doctorId);
+        if (entries.isEmpty()) {
+            return null;
+        }
+        Entry entry = entries.get(0);
+        if (!shardDataSources.contains(entry.getShard())) {
+            throw new ShardUnavailableException("Shard " + entry.getShard() + " is not configured");
+        }
+        return entry;
+    }
+
+    // New doctors are spread over all shards by id; existing entries are left alone
+    public void assign(Long doctorId) {
+        List<String> shards = shardDataSources.names();
+        String shard = shards.get(Math.floorMod(Long.hashCode(doctorId * 0x9E3779B97F4A7C15L), shards.size()));
+        primary().update("INSERT INTO shard_directory (doctor_id, shard) VALUES (?, ?) ON CONFLICT (doctor_id) DO NOTHING",
+                doctorId, shard);
+        log.info("Doctor {} assigned to shard {}", doctorId, shard);
+    }
+
+    public void setFrozen(Entry entry, boolean frozen) {
+        primary().update("INSERT INTO shard_directory (doctor_id, shard, frozen) VALUES (?, ?, ?) " +
+                "ON CONFLICT (doctor_id) DO UPDATE SET frozen = EXCLUDED.frozen, updated_at = CURRENT_TIMESTAMP",
+                entry.getId(), entry.getShard(), frozen);
+        invalidationBus.publish(EntityChange.SHARD_DIRECTORY, entry.getDoctorId(), System.currentTimeMillis());
+    }
+
+    public void moveTo(Entry entry, String shard) {
+        primary().update("INSERT INTO shard_directory (doctor_id, shard, frozen) VALUES (?, ?, false) " +
+                "ON CONFLICT (doctor_id) DO UPDATE SET shard = EXCLUDED.shard, frozen = false, updated_at = CURRENT_TIMESTAMP",
+                entry.getId(), shard);
+        invalidationBus.publish(EntityChange.SHARD_DIRECTORY, entry.getDoctorId(), System.currentTimeMillis());
+    }
+
+    public Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        for (String shard : shardDataSources.names()) {
+            summary.put(shard, Map.of("index", shardDataSources.index(shard), "doctors", 0L, "frozen", 0L));
+        }
+        primary().query("SELECT COALESCE(s.shard, ?) AS shard, count(*) AS doctors, " +
+                "count(*) FILTER (WHERE s.frozen) AS frozen FROM doctors d " +
+                "LEFT JOIN shard_directory s ON s.doctor_id = d.id GROUP BY 1",
+                rs -> {
+                    String shard = rs.getString("shard");
+                    summary.put(shard, Map.of("index", shardDataSources.contains(shard) ? shardDataSources.index(shard) : -1,
+                            "doctors", rs.getLong("doctors"), "frozen", rs.getLong("frozen")));
+                },
+                shardDataSources.getPrimary());
+        return summary;
+    }
+
+    private JdbcTemplate primary() {
+        return shardDataSources.jdbc(shardDataSources.getPrimary());
+    }
+
+    @Value
+    public static class Entry {
+
+        Long id;
+
+        String doctorId;
+
+        String shard;
+
+        boolean frozen;
+    }
+
+    private static class Cached {
+
+        final Entry entry;
+
+        final long loadedAt;
+
+        Cached(Entry entry, long loadedAt) {
+            this.entry = entry;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
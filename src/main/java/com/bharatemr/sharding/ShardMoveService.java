@@ -0,0 +1,214 @@
+package com.bharatemr.sharding;
+
+import com.bharatemr.exception.ResourceNotFoundException;
+import com.bharatemr.exception.ShardUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Moves one doctor's clinical records to another shard while the clinic keeps working:
+ * <ol>
+ *   <li>bulk copy to the target while reads and writes continue on the source;</li>
+ *   <li>freeze the doctor (writes get 503) and wait out every instance's directory cache;</li>
+ *   <li>copy what changed during the bulk copy, drop target rows deleted meanwhile, compare counts;</li>
+ *   <li>point the directory at the target, unfreeze, then delete the rows from the source.</li>
+ * </ol>
+ * A failure before the switch removes the partial copy from the target and unfreezes the doctor.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+public class ShardMoveService {
+
+    // Parents before children; deletes walk the list backwards
+    private static final List<ClinicalTable> TABLES = List.of(
+            new ClinicalTable("visits", "id, visit_date", "doctor_id = ?", Delta.UPDATED),
+            new ClinicalTable("follow_ups", "id, scheduled_date", "doctor_id = ?", Delta.UPDATED),
+            new ClinicalTable("prescriptions", "id",
+                    "visit_id IN (SELECT id FROM visits WHERE doctor_id = ?)", Delta.ALL),
+            new ClinicalTable("prescription_medicines", "id",
+                    "prescription_id IN (SELECT p.id FROM prescriptions p JOIN visits v ON v.id = p.visit_id " +
+                    "WHERE v.doctor_id = ?)", Delta.NEW),
+            new ClinicalTable("prescription_tests", "id",
+                    "prescription_id IN (SELECT p.id FROM prescriptions p JOIN visits v ON v.id = p.visit_id " +
+                    "WHERE v.doctor_id = ?)", Delta.NEW),
+            new ClinicalTable("visit_attachments", "id",
+                    "visit_id IN (SELECT id FROM visits WHERE doctor_id = ?)", Delta.ALL));
+
+    @Autowired
+    private ShardDataSources shardDataSources;
+
+    @Autowired
+    private ShardDirectory shardDirectory;
+
+    @Autowired
+    private ShardingProperties shardingProperties;
+
+    private final Map<Long, String> movesInProgress = new ConcurrentHashMap<>();
+
+    public Map<String, Object> move(String doctorId, String targetShard) {
+        if (!shardDataSources.contains(targetShard)) {
+            throw new ResourceNotFoundException("Unknown shard: " + targetShard);
+        }
+        if (shardingProperties.getMoveFreezeWait().compareTo(shardingProperties.getDirectoryCacheTtl()) <= 0) {
+            throw new IllegalStateException("app.sharding.move-freeze-wait must exceed directory-cache-ttl");
+        }
+        ShardDirectory.Entry entry = shardDirectory.load(doctorId);
+        if (entry == null) {
+            throw new ResourceNotFoundException("Doctor not found");
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("doctorId", doctorId);
+        result.put("from", entry.getShard());
+        result.put("to", targetShard);
+        if (entry.getShard().equals(targetShard)) {
+            result.put("moved", false);
+            return result;
+        }
+        if (entry.isFrozen() || movesInProgress.putIfAbsent(entry.getId(), targetShard) != null) {
+            throw new ShardUnavailableException("A move of doctor " + doctorId + " is already in progress");
+        }
+
+        JdbcTemplate source = shardDataSources.jdbc(entry.getShard());
+        JdbcTemplate target = shardDataSources.jdbc(targetShard);
+        long started = System.currentTimeMillis();
+        boolean switched = false;
+        try {
+            // 1. Bulk copy; the cutoff is taken early so rows touched during the copy count as changed.
+            // All tables are read from one snapshot, or a visit created mid-copy could bring its
+            // prescription's medicines to the target without the prescription itself.
+            LocalDateTime changedSince = LocalDateTime.now().minus(shardingProperties.getMoveFreezeWait());
+            Map<String, Long> maxIds = new HashMap<>();
+            Map<String, Long> bulk = new LinkedHashMap<>();
+            snapshotOf(entry.getShard()).executeWithoutResult(status -> {
+                for (ClinicalTable table : TABLES) {
+                    ShardRowCopier.Copied copied = copy(source, target, table, table.where, entry.getId());
+                    maxIds.put(table.name, copied.maxId);
+                    bulk.put(table.name, copied.rows);
+                }
+            });
+            log.info("Shard move {} {} -> {}: bulk copied {}", doctorId, entry.getShard(), targetShard, bulk);
+
+            // 2. Freeze, and let cached "not frozen" directory entries expire everywhere
+            shardDirectory.setFrozen(entry, true);
+            Thread.sleep(shardingProperties.getMoveFreezeWait().toMillis());
+
+            // 3. Delta copy, prune deletions, verify
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (ClinicalTable table : TABLES) {
+                switch (table.delta) {
+                    case UPDATED:
+                        copy(source, target, table, "(" + table.where + ") AND (updated_at >= ? OR id > ?)",
+                                entry.getId(), changedSince, maxIds.get(table.name));
+                        break;
+                    case NEW:
+                        copy(source, target, table, "(" + table.where + ") AND id > ?",
+                                entry.getId(), maxIds.get(table.name));
+                        break;
+                    default:
+                        copy(source, target, table, table.where, entry.getId());
+                }
+            }
+            for (ClinicalTable table : reversed()) {
+                ShardRowCopier.prune(source, target, table.name, table.where, entry.getId());
+            }
+            for (ClinicalTable table : TABLES) {
+                long expected = ShardRowCopier.count(source, table.name, table.where, entry.getId());
+                long actual = ShardRowCopier.count(target, table.name, table.where, entry.getId());
+                if (expected != actual) {
+                    throw new IllegalStateException(table.name + ": " + expected + " rows on " + entry.getShard()
+                            + " but " + actual + " on " + targetShard);
+                }
+                counts.put(table.name, actual);
+            }
+
+            // 4. Switch, then clean up the source
+            shardDirectory.moveTo(entry, targetShard);
+            switched = true;
+            for (ClinicalTable table : reversed()) {
+                ShardRowCopier.delete(source, table.name, table.where, entry.getId());
+            }
+
+            long durationMillis = System.currentTimeMillis() - started;
+            log.info("Shard move {} {} -> {} done in {} ms: {}", doctorId, entry.getShard(), targetShard, durationMillis, counts);
+            result.put("moved", true);
+            result.put("rows", counts);
+            result.put("durationMillis", durationMillis);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Shard move interrupted", e);
+        } catch (RuntimeException e) {
+            if (!switched) {
+                log.error("Shard move {} {} -> {} failed, rolling back: {}", doctorId, entry.getShard(), targetShard, e.getMessage());
+                for (ClinicalTable table : reversed()) {
+                    ShardRowCopier.delete(target, table.name, table.where, entry.getId());
+                }
+                shardDirectory.setFrozen(entry, false);
+            } else {
+                log.error("Shard move {} switched to {} but source cleanup failed: {}", doctorId, targetShard, e.getMessage());
+            }
+            throw e;
+        } finally {
+            movesInProgress.remove(entry.getId());
+        }
+    }
+
+    private ShardRowCopier.Copied copy(JdbcTemplate source, JdbcTemplate target, ClinicalTable table,
+                                       String where, Object... args) {
+        return ShardRowCopier.copy(source, target, table.name, table.conflictKey,
+                shardingProperties.getCopyBatchSize(), where, args);
+    }
+
+    // Binds one REPEATABLE READ connection to the shard's DataSource, which its JdbcTemplate then uses
+    private TransactionTemplate snapshotOf(String shard) {
+        TransactionTemplate transaction = new TransactionTemplate(
+                new DataSourceTransactionManager(shardDataSources.getDataSources().get(shard)));
+        transaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        transaction.setReadOnly(true);
+        return transaction;
+    }
+
+    private static List<ClinicalTable> reversed() {
+        List<ClinicalTable> reversed = new ArrayList<>(TABLES);
+        Collections.reverse(reversed);
+        return reversed;
+    }
+
+    // How rows changed during the bulk copy are found: updated_at, new ids only, or everything again
+    private enum Delta { UPDATED, NEW, ALL }
+
+    private static class ClinicalTable {
+
+        final String name;
+
+        final String conflictKey;
+
+        final String where;
+
+        final Delta delta;
+
+        ClinicalTable(String name, String conflictKey, String where, Delta delta) {
+            this.name = name;
+            this.conflictKey = conflictKey;
+            this.where = where;
+            this.delta = delta;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.bharatemr.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Hands out connections from the shard named by {@link ShardContext}; the default target is the primary.
+ * The key is read when a transaction (or auto-commit statement) first needs a connection, so the shard
+ * must be chosen before the transaction starts.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.get();
+    }
+}
@@ -0,0 +1,82 @@
+package com.bharatemr.sharding;
+
+import com.bharatemr.exception.ShardUnavailableException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+/**
+ * Points {@link ShardContext} at the owning doctor's shard for handlers marked {@link DoctorShard}.
+ * Writes for a doctor whose data is being moved are refused with a 503 until the move finishes.
+ */
+@Component
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+public class ShardRoutingInterceptor implements AsyncHandlerInterceptor {
+
+    @Autowired
+    private ShardDirectory shardDirectory;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        DoctorShard doctorShard = ((HandlerMethod) handler).getMethodAnnotation(DoctorShard.class);
+        if (doctorShard == null) {
+            return true;
+        }
+
+        String doctorId = resolveDoctorId(request, doctorShard);
+        ShardDirectory.Entry entry = doctorId == null ? null : shardDirectory.lookup(doctorId);
+        if (entry == null) {
+            return true;
+        }
+        if (entry.isFrozen() && !HttpMethod.GET.matches(request.getMethod())) {
+            throw new ShardUnavailableException("Records of doctor " + doctorId + " are being moved, retry shortly");
+        }
+        ShardContext.set(entry.getShard());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ShardContext.clear();
+    }
+
+    // Async handlers (PDF downloads) leave the request thread early; preHandle runs again on redispatch
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        ShardContext.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private String resolveDoctorId(HttpServletRequest request, DoctorShard doctorShard) {
+        if (!doctorShard.value().isEmpty()) {
+            Map<String, String> variables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+            String value = variables == null ? null : variables.get(doctorShard.value());
+            if (value == null) {
+                value = request.getParameter(doctorShard.value());
+            }
+            if (value != null && !value.isEmpty()) {
+                return value;
+            }
+        }
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getAuthorities().stream()
+                .anyMatch(authority -> "ROLE_DOCTOR".equals(authority.getAuthority()))) {
+            return authentication.getName();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,93 @@
+package com.bharatemr.sharding;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Copies rows between two shard databases as idempotent upserts, in id order and fixed-size batches so
+ * a doctor's whole history never sits in memory at once. Tables and filters are fixed strings from the
+ * callers, never request input.
+ */
+final class ShardRowCopier {
+
+    private ShardRowCopier() {
+    }
+
+    static Copied copy(JdbcTemplate from, JdbcTemplate to, String table, String conflictKey, int batchSize,
+                       String where, Object... args) {
+        String select = "SELECT * FROM " + table + " WHERE (" + where + ") AND id > ? ORDER BY id LIMIT " + batchSize;
+        long copied = 0;
+        long lastId = 0;
+        while (true) {
+            List<Map<String, Object>> rows = from.queryForList(select, append(args, lastId));
+            if (rows.isEmpty()) {
+                break;
+            }
+            List<String> columns = new ArrayList<>(rows.get(0).keySet());
+            to.batchUpdate(upsertSql(table, conflictKey, columns), rows.stream()
+                    .map(row -> columns.stream().map(row::get).toArray())
+                    .collect(Collectors.toList()));
+            copied += rows.size();
+            lastId = ((Number) rows.get(rows.size() - 1).get("id")).longValue();
+            if (rows.size() < batchSize) {
+                break;
+            }
+        }
+        return new Copied(copied, lastId);
+    }
+
+    // Removes rows the target has but the source no longer does (deleted while the copy was running)
+    static int prune(JdbcTemplate from, JdbcTemplate to, String table, String where, Object... args) {
+        List<Long> ids = from.queryForList("SELECT id FROM " + table + " WHERE " + where, Long.class, args);
+        return to.update(connection -> {
+            var statement = connection.prepareStatement(
+                    "DELETE FROM " + table + " WHERE (" + where + ") AND NOT (id = ANY (?))");
+            for (int i = 0; i < args.length; i++) {
+                statement.setObject(i + 1, args[i]);
+            }
+            statement.setArray(args.length + 1, connection.createArrayOf("bigint", ids.toArray()));
+            return statement;
+        });
+    }
+
+    static long count(JdbcTemplate jdbc, String table, String where, Object... args) {
+        Long count = jdbc.queryForObject("SELECT count(*) FROM " + table + " WHERE " + where, Long.class, args);
+        return count == null ? 0 : count;
+    }
+
+    static int delete(JdbcTemplate jdbc, String table, String where, Object... args) {
+        return jdbc.update("DELETE FROM " + table + " WHERE " + where, args);
+    }
+
+    private static String upsertSql(String table, String conflictKey, List<String> columns) {
+        String updates = columns.stream()
+                .map(column -> column + " = EXCLUDED." + column)
+                .collect(Collectors.joining(", "));
+        return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                + columns.stream().map(column -> "?").collect(Collectors.joining(", "))
+                + ") ON CONFLICT (" + conflictKey + ") DO UPDATE SET " + updates;
+    }
+
+    private static Object[] append(Object[] args, Object last) {
+        Object[] all = new Object[args.length + 1];
+        System.arraycopy(args, 0, all, 0, args.length);
+        all[args.length] = last;
+        return all;
+    }
+
+    static class Copied {
+
+        final long rows;
+
+        final long maxId;
+
+        Copied(long rows, long maxId) {
+            this.rows = rows;
+            this.maxId = maxId;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.bharatemr.sharding;
+
+import com.bharatemr.config.ShardingConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationInitializer;
+import org.springframework.boot.autoconfigure.flyway.FlywayProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Brings every shard to the primary's schema, interleaves the clinical id sequences so ids stay unique
+ * across shards (and rows can move between them), then catches up the replicated doctors, patients and
+ * catalog terms.
+ * Runs after the primary's own Flyway migration.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "app.sharding.enabled", havingValue = "true")
+public class ShardSchemaInitializer implements InitializingBean {
+
+    private static final List<String> CLINICAL_SEQUENCES = List.of(
+            "visits_id_seq", "prescriptions_id_seq", "prescription_medicines_id_seq",
+            "prescription_tests_id_seq", "follow_ups_id_seq", "visit_attachments_id_seq");
+
+    @Autowired
+    private ShardDataSources shardDataSources;
+
+    @Autowired
+    private ReferenceReplicator referenceReplicator;
+
+    @Autowired
+    private ObjectProvider<FlywayMigrationInitializer> primaryMigration;
+
+    @Autowired
+    private ObjectProvider<FlywayProperties> flywayProperties;
+
+    @Override
+    public void afterPropertiesSet() {
+        primaryMigration.getIfAvailable();
+
+        FlywayProperties flyway = flywayProperties.getIfAvailable();
+        for (String shard : shardDataSources.names()) {
+            if (flyway != null && flyway.isEnabled() && !shard.equals(shardDataSources.getPrimary())) {
+                Flyway.configure()
+                        .dataSource(shardDataSources.getDataSources().get(shard))
+                        .locations(flyway.getLocations().toArray(new String[0]))
+                        .baselineOnMigrate(flyway.isBaselineOnMigrate())
+                        .load()
+                        .migrate();
+            }
+            interleaveSequences(shard);
+        }
+        referenceReplicator.catchUp();
+    }
+
+    // Shard n hands out ids with id % 64 == n; a no-op once a sequence already steps by 64
+    private void interleaveSequences(String shard) {
+        JdbcTemplate jdbc = shardDataSources.jdbc(shard);
+        int index = shardDataSources.index(shard);
+        for (String sequence : CLINICAL_SEQUENCES) {
+            Long increment = jdbc.queryForObject(
+                    "SELECT increment_by FROM pg_sequences WHERE schemaname = current_schema() AND sequencename = ?",
+                    Long.class, sequence);
+            if (increment != null && increment == ShardingConfig.MAX_SHARDS) {
+                continue;
+            }
+            String table = sequence.substring(0, sequence.length() - "_id_seq".length());
+            Long current = jdbc.queryForObject("SELECT GREATEST((SELECT COALESCE(max(id), 0) FROM " + table + "), " +
+                    "(SELECT last_value FROM " + sequence + "))", Long.class);
+            long next = (current / ShardingConfig.MAX_SHARDS + 1) * ShardingConfig.MAX_SHARDS + index;
+            jdbc.execute("ALTER SEQUENCE " + sequence + " INCREMENT BY " + ShardingConfig.MAX_SHARDS);
+            jdbc.queryForObject("SELECT setval(?::regclass, ?, false)", Long.class, sequence, next);
+            log.info("Sequence {} on shard {} now steps by {} from {}", sequence, shard, ShardingConfig.MAX_SHARDS, next);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.bharatemr.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Runs clinical reads that are not tied to one doctor (admin aggregates, a patient's history across
+ * doctors) on every shard in parallel and combines the results. Each shard gets its own read-only
+ * transaction on a pool thread, so the work must return DTOs or values, not lazy entities.
+ * When sharding is off, or the request is already routed to one shard, the work simply runs inline,
+ * in the caller's transaction or a read-only one of its own.
+ * <p>
+ * Callers must not hold a transaction of their own: it would keep a primary connection while the
+ * primary's pool thread waits for another, and enough concurrent callers exhaust the pool between them.
+ * Look up what the work needs (the patient, say) first, in its own short transaction.
+ */
+@Component
+@Slf4j
+public class ShardTemplate {
+
+    @Autowired
+    private ObjectProvider<ShardDataSources> shardDataSources;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.sharding.scatter-threads:8}")
+    private int scatterThreads;
+
+    private volatile ExecutorService executor;
+
+    public long sum(Supplier<Long> work) {
+        return onEachShard(work).stream().mapToLong(Long::longValue).sum();
+    }
+
+    public <T> List<T> gather(Supplier<? extends Collection<T>> work) {
+        return onEachShard(work).stream().flatMap(Collection::stream).collect(Collectors.toList());
+    }
+
+    // A row seen on two shards (mid-move) is kept once; merged results are re-sorted
+    public <T> List<T> gather(Supplier<? extends Collection<T>> work, Function<T, ?> id, Comparator<? super T> order) {
+        List<? extends Collection<T>> results = onEachShard(work);
+        if (results.size() == 1) {
+            return new ArrayList<>(results.get(0));
+        }
+        Map<Object, T> distinct = new LinkedHashMap<>();
+        results.forEach(result -> result.forEach(item -> distinct.putIfAbsent(id.apply(item), item)));
+        List<T> merged = new ArrayList<>(distinct.values());
+        merged.sort(order);
+        return merged;
+    }
+
+    public <T> Optional<T> findFirst(Supplier<Optional<T>> work) {
+        return onEachShard(work).stream().filter(Optional::isPresent).map(Optional::get).findFirst();
+    }
+
+    // Sequentially, outside any transaction; for maintenance that has to happen on every database
+    public void forEachShard(Runnable work) {
+        ShardDataSources shards = shardDataSources.getIfAvailable();
+        if (shards == null) {
+            work.run();
+            return;
+        }
+        for (String shard : shards.names()) {
+            ShardContext.set(shard);
+            try {
+                work.run();
+            } finally {
+                ShardContext.clear();
+            }
+        }
+    }
+
+    private <T> List<T> onEachShard(Supplier<T> work) {
+        ShardDataSources shards = shardDataSources.getIfAvailable();
+        if (shards == null || ShardContext.get() != null) {
+            // Joins the caller's transaction if there is one
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setReadOnly(true);
+            return Collections.singletonList(transaction.execute(status -> work.get()));
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Scatter-gather called inside a transaction; "
+                    + "it would hold a primary connection while each shard takes another");
+        }
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transaction.setReadOnly(true);
+        List<CompletableFuture<T>> futures = shards.names().stream()
+                .map(shard -> CompletableFuture.supplyAsync(() -> {
+                    ShardContext.set(shard);
+                    try {
+                        return transaction.execute(status -> work.get());
+                    } finally {
+                        ShardContext.clear();
+                    }
+                }, executor()))
+                .collect(Collectors.toList());
+
+        try {
+            return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private ExecutorService executor() {
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    AtomicInteger threads = new AtomicInteger();
+                    executor = Executors.newFixedThreadPool(scatterThreads, runnable -> {
+                        Thread thread = new Thread(runnable, "shard-scatter-" + threads.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return executor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
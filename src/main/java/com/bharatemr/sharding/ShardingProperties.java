@@ -0,0 +1,42 @@
+package com.bharatemr.sharding;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "app.sharding")
+public class ShardingProperties {
+
+    private boolean enabled;
+
+    /** Name of the spring.datasource database; it keeps the global tables and is shard index 0. */
+    private String primary = "shard0";
+
+    /** Additional shards by name; indexes 1-63 and unique, since ids are interleaved modulo 64. */
+    private Map<String, Shard> shards = new LinkedHashMap<>();
+
+    private Duration directoryCacheTtl = Duration.ofSeconds(5);
+
+    /** How long a move keeps a doctor frozen before the final copy; must exceed the directory cache TTL. */
+    private Duration moveFreezeWait = Duration.ofSeconds(10);
+
+    private int copyBatchSize = 1000;
+
+    @Data
+    public static class Shard {
+
+        private int index;
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        private int maximumPoolSize = 10;
+    }
+}
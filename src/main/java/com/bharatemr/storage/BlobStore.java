@@ -0,0 +1,60 @@
+package com.bharatemr.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.function.Consumer;
+
+/**
+ * Where generated and uploaded files live. Keys are relative, '/'-separated paths such as
+ * {@code prescriptions/prescription_12_ab34.pdf}. Writes are all-or-nothing: a reader sees
+ * the previous content or the new one, never a partial file.
+ */
+public interface BlobStore {
+
+    /** Streams content into {@code key}; if the writer throws, nothing is stored. */
+    void put(String key, String contentType, BlobWriter writer) throws IOException;
+
+    /** @throws java.nio.file.NoSuchFileException when there is no such blob */
+    InputStream open(String key) throws IOException;
+
+    boolean exists(String key) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    /** Every blob whose key starts with {@code prefix}, in no particular order. */
+    void list(String prefix, Consumer<BlobInfo> consumer) throws IOException;
+
+    @FunctionalInterface
+    interface BlobWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    final class BlobInfo {
+
+        private final String key;
+
+        private final long size;
+
+        private final Instant lastModified;
+
+        public BlobInfo(String key, long size, Instant lastModified) {
+            this.key = key;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public Instant getLastModified() {
+            return lastModified;
+        }
+    }
+}
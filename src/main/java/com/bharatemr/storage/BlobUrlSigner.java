@@ -0,0 +1,90 @@
+package com.bharatemr.storage;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Mints and checks links of the form {@code <base-url>/signed/<key>?expires=<epoch seconds>&sig=<mac>},
+ * where the mac is an HMAC-SHA256 over the key and the expiry. Anyone holding the link can fetch that
+ * one blob until it expires; checking it needs nothing but the secret. The key is its own, or
+ * {@link #deriveKey derived} from another secret, never a key that signs anything else.
+ */
+public class BlobUrlSigner {
+
+    public static final String PATH = "/signed/";
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec secret;
+
+    private final Duration ttl;
+
+    private final String baseUrl;
+
+    private final Clock clock;
+
+    public BlobUrlSigner(byte[] key, Duration ttl, String baseUrl, Clock clock) {
+        this.secret = new SecretKeySpec(key, ALGORITHM);
+        this.ttl = ttl;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.clock = clock;
+    }
+
+    /**
+     * HMAC-SHA256 of {@code purpose} under {@code secret}: a key that reveals nothing about the secret,
+     * so a MAC made with it can never be replayed as one made with the secret (a JWT signature, say).
+     */
+    public static byte[] deriveKey(String secret, String purpose) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            return mac.doFinal(purpose.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public String sign(String key) {
+        long expires = clock.instant().plus(ttl).getEpochSecond();
+        return baseUrl + PATH + key + "?expires=" + expires + "&sig=" + mac(key, expires);
+    }
+
+    public Verdict verify(String key, String expires, String signature) {
+        if (expires == null || signature == null) {
+            return Verdict.INVALID;
+        }
+        long expiry;
+        try {
+            expiry = Long.parseLong(expires);
+        } catch (NumberFormatException e) {
+            return Verdict.INVALID;
+        }
+        // Signature first, so a forged link is never told whether its expiry would have passed
+        if (!MessageDigest.isEqual(mac(key, expiry).getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII))) {
+            return Verdict.INVALID;
+        }
+        return clock.instant().getEpochSecond() > expiry ? Verdict.EXPIRED : Verdict.VALID;
+    }
+
+    private String mac(String key, long expires) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(secret);
+            byte[] digest = mac.doFinal((key + "\n" + expires).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public enum Verdict {
+        VALID, EXPIRED, INVALID
+    }
+}
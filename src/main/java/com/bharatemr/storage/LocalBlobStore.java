@@ -0,0 +1,114 @@
+package com.bharatemr.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Files under a root directory. Each one sits two directory levels below its key's directory, named
+ * after a hash of the key (prescriptions/3f/a2/prescription_12_ab34.pdf), so no single directory
+ * collects every file. Content is written to a temp file beside the target and moved into place.
+ */
+public class LocalBlobStore implements BlobStore {
+
+    private final Path root;
+
+    public LocalBlobStore(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public void put(String key, String contentType, BlobWriter writer) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName() + ".", ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                writer.writeTo(out);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(resolve(key));
+    }
+
+    // Also removes a copy left at the flat path of the layout before sharding
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+        Files.deleteIfExists(root.resolve(key).normalize());
+    }
+
+    /**
+     * The prefix's directory part has to be a key directory. Files of the old flat layout are listed
+     * too, so they can be cleaned up; temp files of writes in progress are not.
+     */
+    @Override
+    public void list(String prefix, Consumer<BlobInfo> consumer) throws IOException {
+        String directory = prefix.substring(0, prefix.lastIndexOf('/') + 1);
+        Path base = root.resolve(directory).normalize();
+        if (!base.startsWith(root) || !Files.isDirectory(base)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(base, 3)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                int depth = base.relativize(file).getNameCount();
+                String key = directory + file.getFileName();
+                if ((depth != 1 && (depth != 3 || key.endsWith(".tmp"))) || !key.startsWith(prefix)) {
+                    continue;
+                }
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (attributes.isRegularFile()) {
+                    consumer.accept(new BlobInfo(key, attributes.size(), attributes.lastModifiedTime().toInstant()));
+                }
+            }
+        }
+    }
+
+    private Path resolve(String key) {
+        int slash = key.lastIndexOf('/');
+        String hash = sha256(key);
+        Path path = root.resolve(key.substring(0, slash + 1))
+                .resolve(hash.substring(0, 2))
+                .resolve(hash.substring(2, 4))
+                .resolve(key.substring(slash + 1))
+                .normalize();
+        if (slash == key.length() - 1 || !path.startsWith(root)) {
+            throw new IllegalArgumentException("Invalid blob key: " + key);
+        }
+        return path;
+    }
+
+    private static String sha256(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 2; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.bharatemr.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An S3 bucket, or any S3-compatible service (MinIO, R2, Tigris). Content is streamed up in
+ * {@code partSize} chunks as a multipart upload, so only one part is ever held in memory; content
+ * that fits in one part is sent as a plain PUT. A failed write aborts the upload, leaving nothing.
+ */
+@Slf4j
+public class S3BlobStore implements BlobStore {
+
+    private final S3Client s3;
+
+    private final String bucket;
+
+    private final int partSize;
+
+    public S3BlobStore(S3Client s3, String bucket, int partSize) {
+        this.s3 = s3;
+        this.bucket = bucket;
+        this.partSize = partSize;
+    }
+
+    @Override
+    public void put(String key, String contentType, BlobWriter writer) throws IOException {
+        MultipartOutputStream out = new MultipartOutputStream(key, contentType);
+        try {
+            writer.writeTo(out);
+            out.complete();
+        } catch (IOException | RuntimeException e) {
+            out.abort();
+            if (e instanceof SdkException) {
+                throw new IOException("Upload of " + key + " failed: " + e.getMessage(), e);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        try {
+            return s3.getObject(request -> request.bucket(bucket).key(key));
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(key);
+        } catch (SdkException e) {
+            throw new IOException("Download of " + key + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        try {
+            s3.headObject(request -> request.bucket(bucket).key(key));
+            return true;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return false;
+            }
+            throw new IOException("Lookup of " + key + " failed: " + e.getMessage(), e);
+        } catch (SdkException e) {
+            throw new IOException("Lookup of " + key + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            s3.deleteObject(request -> request.bucket(bucket).key(key));
+        } catch (SdkException e) {
+            throw new IOException("Delete of " + key + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void list(String prefix, Consumer<BlobInfo> consumer) throws IOException {
+        try {
+            for (S3Object object : s3.listObjectsV2Paginator(request -> request.bucket(bucket).prefix(prefix)).contents()) {
+                consumer.accept(new BlobInfo(object.key(), object.size(), object.lastModified()));
+            }
+        } catch (SdkException e) {
+            throw new IOException("Listing " + prefix + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    public void close() {
+        s3.close();
+    }
+
+    /** Buffers one part; the multipart upload is only started once content outgrows it. */
+    private class MultipartOutputStream extends OutputStream {
+
+        private final String key;
+
+        private final String contentType;
+
+        private final byte[] buffer = new byte[partSize];
+
+        private final List<CompletedPart> parts = new ArrayList<>();
+
+        private int count;
+
+        private String uploadId;
+
+        MultipartOutputStream(String key, String contentType) {
+            this.key = key;
+            this.contentType = contentType;
+        }
+
+        @Override
+        public void write(int b) {
+            if (count == buffer.length) {
+                uploadPart();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            while (length > 0) {
+                if (count == buffer.length) {
+                    uploadPart();
+                }
+                int chunk = Math.min(length, buffer.length - count);
+                System.arraycopy(bytes, offset, buffer, count, chunk);
+                count += chunk;
+                offset += chunk;
+                length -= chunk;
+            }
+        }
+
+        void complete() {
+            if (uploadId == null) {
+                s3.putObject(request -> request.bucket(bucket).key(key).contentType(contentType), body());
+            } else {
+                if (count > 0) {
+                    uploadPart();
+                }
+                s3.completeMultipartUpload(request -> request.bucket(bucket).key(key).uploadId(uploadId)
+                        .multipartUpload(upload -> upload.parts(parts)));
+            }
+        }
+
+        // Closing is left to put(), which completes or aborts; writers may close the stream freely
+        @Override
+        public void close() {
+        }
+
+        void abort() {
+            if (uploadId != null) {
+                try {
+                    s3.abortMultipartUpload(request -> request.bucket(bucket).key(key).uploadId(uploadId));
+                } catch (SdkException e) {
+                    log.warn("Could not abort multipart upload {} of {}: {}", uploadId, key, e.getMessage());
+                }
+            }
+        }
+
+        private void uploadPart() {
+            if (uploadId == null) {
+                uploadId = s3.createMultipartUpload(request -> request.bucket(bucket).key(key).contentType(contentType))
+                        .uploadId();
+            }
+            int partNumber = parts.size() + 1;
+            String eTag = s3.uploadPart(request -> request.bucket(bucket).key(key).uploadId(uploadId)
+                    .partNumber(partNumber).contentLength((long) count), body()).eTag();
+            parts.add(CompletedPart.builder().partNumber(partNumber).eTag(eTag).build());
+            count = 0;
+        }
+
+        // ByteArrayInputStream supports mark/reset, which the SDK needs to retry a part
+        private RequestBody body() {
+            return RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, count), count);
+        }
+    }
+}
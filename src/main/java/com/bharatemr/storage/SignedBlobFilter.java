@@ -0,0 +1,81 @@
+package com.bharatemr.storage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+
+/**
+ * Answers {@code /signed/**} links from {@link BlobUrlSigner} on its own: the signature is checked and the
+ * blob streamed from the store without going on to Spring Security, the controllers or the database. A
+ * patient opening the link from a WhatsApp message therefore costs no JWT parse and no connection.
+ */
+@Slf4j
+public class SignedBlobFilter extends OncePerRequestFilter {
+
+    private final BlobUrlSigner signer;
+
+    private final BlobStore blobStore;
+
+    private final MeterRegistry meterRegistry;
+
+    public SignedBlobFilter(BlobUrlSigner signer, BlobStore blobStore, MeterRegistry meterRegistry) {
+        this.signer = signer;
+        this.blobStore = blobStore;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + BlobUrlSigner.PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException {
+        boolean head = "HEAD".equals(request.getMethod());
+        if (!head && !"GET".equals(request.getMethod())) {
+            response.setStatus(HttpStatus.METHOD_NOT_ALLOWED.value());
+            return;
+        }
+
+        String key = request.getRequestURI().substring(request.getContextPath().length() + BlobUrlSigner.PATH.length());
+        BlobUrlSigner.Verdict verdict = signer.verify(key, request.getParameter("expires"), request.getParameter("sig"));
+        if (verdict != BlobUrlSigner.Verdict.VALID) {
+            // 410 tells the patient to ask for a fresh link rather than that the link was wrong
+            finish(response, verdict == BlobUrlSigner.Verdict.EXPIRED ? HttpStatus.GONE : HttpStatus.FORBIDDEN,
+                    verdict.name().toLowerCase());
+            return;
+        }
+
+        String fileName = key.substring(key.lastIndexOf('/') + 1);
+        try (InputStream in = blobStore.open(key)) {
+            response.setContentType(MediaTypeFactory.getMediaType(fileName)
+                    .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.inline().filename(fileName).build().toString());
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=3600");
+            if (!head) {
+                in.transferTo(response.getOutputStream());
+            }
+            meterRegistry.counter("storage.signed.downloads", "result", "ok").increment();
+        } catch (NoSuchFileException | IllegalArgumentException e) {
+            finish(response, HttpStatus.NOT_FOUND, "missing");
+        }
+    }
+
+    private void finish(HttpServletResponse response, HttpStatus status, String result) {
+        response.setStatus(status.value());
+        meterRegistry.counter("storage.signed.downloads", "result", result).increment();
+    }
+}
@@ -0,0 +1,61 @@
+package com.bharatemr.storage;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "app.storage")
+public class StorageProperties {
+
+    /** local or s3 */
+    private String type = "local";
+
+    private Local local = new Local();
+
+    private S3 s3 = new S3();
+
+    private SignedUrl signedUrl = new SignedUrl();
+
+    @Data
+    public static class Local {
+
+        private String root = ".";
+    }
+
+    @Data
+    public static class S3 {
+
+        private String bucket;
+
+        /** Only for S3-compatible services (MinIO, R2, Tigris); empty means AWS itself. */
+        private String endpoint;
+
+        private String region = "us-east-1";
+
+        /** Empty means the default AWS credential chain. */
+        private String accessKey;
+
+        private String secretKey;
+
+        /** MinIO and most self-hosted services need path-style URLs. */
+        private boolean pathStyleAccess;
+
+        /** Multipart chunk size; S3 requires at least 5MB for every part but the last. */
+        private DataSize partSize = DataSize.ofMegabytes(8);
+    }
+
+    @Data
+    public static class SignedUrl {
+
+        /** HMAC key for signed links; defaults to the JWT secret. */
+        private String secret;
+
+        private Duration ttl = Duration.ofDays(7);
+
+        /** Public address the links point at, as seen from a patient's phone. */
+        private String baseUrl = "http://localhost:8080";
+    }
+}
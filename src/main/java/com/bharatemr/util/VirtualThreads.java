@@ -0,0 +1,49 @@
+package com.bharatemr.util;
+
+import org.springframework.core.task.TaskExecutor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to JDK 21 virtual threads from code compiled for Java 11. Everything goes through
+ * reflection so the same jar still runs on older JDKs, where {@link #isSupported()} is false.
+ */
+public class VirtualThreads {
+
+    public static boolean isSupported() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    public static ThreadFactory factory(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> ofVirtual = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            builder = ofVirtual.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads are not available on Java " + Runtime.version(), e);
+        }
+    }
+
+    /**
+     * One virtual thread per task, at most {@code limit} of them running the task at once. Submitting
+     * never blocks: a task over the limit parks its own virtual thread on a {@link Semaphore} until a
+     * permit frees up. (Spring's {@code setConcurrencyLimit} would instead make the submitter wait in a
+     * {@code synchronized} block, pinning its carrier thread.)
+     */
+    public static TaskExecutor boundedExecutor(String namePrefix, int limit) {
+        ThreadFactory threads = factory(namePrefix);
+        Semaphore permits = new Semaphore(limit);
+        return task -> threads.newThread(() -> {
+            permits.acquireUninterruptibly();
+            try {
+                task.run();
+            } finally {
+                permits.release();
+            }
+        }).start();
+    }
+}
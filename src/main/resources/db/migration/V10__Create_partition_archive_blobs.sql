@@ -0,0 +1,7 @@
+-- Prescription PDFs and attachment files that archived visit lines still point at. Their rows are
+-- dropped with the partition, so without this the PDF cleanup would see them as orphaned.
+CREATE TABLE partition_archive_blobs (
+    archive_id BIGINT NOT NULL REFERENCES partition_archives(id) ON DELETE CASCADE,
+    blob_key VARCHAR(500) NOT NULL,
+    PRIMARY KEY (archive_id, blob_key)
+);
@@ -0,0 +1,11 @@
+-- Columns the entities map but V1 never created (ddl-auto: validate fails without them)
+
+ALTER TABLE doctors ADD COLUMN IF NOT EXISTS preferred_theme VARCHAR(255) DEFAULT 'modern';
+
+ALTER TABLE patients ADD COLUMN IF NOT EXISTS preferred_theme VARCHAR(255) DEFAULT 'modern';
+ALTER TABLE patients ADD COLUMN IF NOT EXISTS date_of_birth DATE;
+UPDATE patients SET date_of_birth = (CURRENT_DATE - age * INTERVAL '1 year')::date WHERE date_of_birth IS NULL;
+ALTER TABLE patients ALTER COLUMN date_of_birth SET NOT NULL;
+
+-- FollowUp.scheduledDate is a LocalDate
+ALTER TABLE follow_ups ALTER COLUMN scheduled_date TYPE DATE USING scheduled_date::date;
@@ -0,0 +1,28 @@
+-- Composite and partial indexes matching the repository query shapes.
+-- Built CONCURRENTLY so existing clinics keep writing while they build; Flyway runs this
+-- script outside a transaction because every statement is concurrent.
+
+-- VisitRepository: per-doctor lists and date-range counts, per-patient history (newest first)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_visits_doctor_date ON visits(doctor_id, visit_date);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_visits_patient_date ON visits(patient_id, visit_date DESC);
+
+-- FollowUpRepository: countByDoctorIdAndStatus, findByStatusOrderByScheduledDateAsc, today's count
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_followups_doctor_status ON follow_ups(doctor_id, status);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_followups_status_date ON follow_ups(status, scheduled_date);
+
+-- OtpRepository.findValidOtp only ever looks at unverified codes
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_otp_active ON otp_verifications(mobile_number, purpose, expiry_time)
+    WHERE is_verified = false;
+
+-- PatientRepository active-by-doctor lookups and counts
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_patients_active_doctor ON patients(onboarded_by_doctor_id)
+    WHERE is_active;
+
+-- Patient registry default sort and the dashboard's new-patient count
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_patients_created_at ON patients(created_at);
+
+-- Single-column indexes now covered by a composite index's leading column
+DROP INDEX CONCURRENTLY IF EXISTS idx_visits_doctor;
+DROP INDEX CONCURRENTLY IF EXISTS idx_visits_patient;
+DROP INDEX CONCURRENTLY IF EXISTS idx_followups_doctor;
+DROP INDEX CONCURRENTLY IF EXISTS idx_followups_status;
@@ -0,0 +1,134 @@
+-- Monthly range partitioning of visits (by visit_date) and follow_ups (by scheduled_date).
+-- Unique constraints on a partitioned table must include the partition key, so the primary keys
+-- become (id, <date>) and foreign keys can no longer point at visits(id); prescriptions and
+-- follow-ups are only ever created together with their visit, so the application owns that link.
+
+-- Creates <parent>_YYYY_MM partitions from from_month until months_ahead months past the current
+-- month. Rows the default partition already holds for a new month are moved into it first.
+CREATE OR REPLACE FUNCTION create_monthly_partitions(parent TEXT, key_column TEXT, from_month DATE, months_ahead INT)
+RETURNS INT AS $$
+DECLARE
+    month_start DATE := date_trunc('month', from_month)::date;
+    last_month DATE := (date_trunc('month', CURRENT_DATE) + make_interval(months => months_ahead))::date;
+    next_month DATE;
+    partition_name TEXT;
+    created INT := 0;
+BEGIN
+    WHILE month_start <= last_month LOOP
+        next_month := (month_start + INTERVAL '1 month')::date;
+        partition_name := parent || '_' || to_char(month_start, 'YYYY_MM');
+        IF to_regclass(partition_name) IS NULL THEN
+            EXECUTE format('CREATE TABLE %I (LIKE %I INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', partition_name, parent);
+            IF to_regclass(parent || '_default') IS NOT NULL THEN
+                EXECUTE format('WITH moved AS (DELETE FROM %I WHERE %I >= %L AND %I < %L RETURNING *) '
+                               'INSERT INTO %I SELECT * FROM moved',
+                               parent || '_default', key_column, month_start, key_column, next_month, partition_name);
+            END IF;
+            EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                           parent, partition_name, month_start, next_month);
+            created := created + 1;
+        END IF;
+        month_start := next_month;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Visits; old indexes go with the old table, so the new ones are built once the rows are in
+ALTER SEQUENCE visits_id_seq OWNED BY NONE;
+ALTER TABLE visits RENAME TO visits_unpartitioned;
+ALTER TABLE visits_unpartitioned RENAME CONSTRAINT visits_pkey TO visits_unpartitioned_pkey;
+ALTER TABLE prescriptions DROP CONSTRAINT IF EXISTS prescriptions_visit_id_fkey;
+ALTER TABLE follow_ups DROP CONSTRAINT IF EXISTS follow_ups_visit_id_fkey;
+
+CREATE TABLE visits (
+    id BIGINT NOT NULL DEFAULT nextval('visits_id_seq'),
+    patient_id BIGINT NOT NULL,
+    doctor_id BIGINT NOT NULL,
+    visit_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    chief_complaint TEXT NOT NULL,
+    past_illness TEXT,
+    present_illness TEXT,
+    medical_history TEXT,
+    surgical_history TEXT,
+    clinical_notes TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, visit_date),
+    FOREIGN KEY (patient_id) REFERENCES patients(id) ON DELETE CASCADE,
+    FOREIGN KEY (doctor_id) REFERENCES doctors(id) ON DELETE CASCADE
+) PARTITION BY RANGE (visit_date);
+
+CREATE TABLE visits_default PARTITION OF visits DEFAULT;
+
+SELECT create_monthly_partitions('visits', 'visit_date',
+    COALESCE((SELECT min(visit_date) FROM visits_unpartitioned), CURRENT_DATE)::date, 3);
+
+INSERT INTO visits (id, patient_id, doctor_id, visit_date, chief_complaint, past_illness, present_illness,
+                    medical_history, surgical_history, clinical_notes, created_at, updated_at)
+SELECT id, patient_id, doctor_id, visit_date, chief_complaint, past_illness, present_illness,
+       medical_history, surgical_history, clinical_notes, created_at, updated_at
+FROM visits_unpartitioned;
+
+DROP TABLE visits_unpartitioned;
+CREATE INDEX idx_visits_doctor_date ON visits(doctor_id, visit_date);
+CREATE INDEX idx_visits_patient_date ON visits(patient_id, visit_date DESC);
+CREATE INDEX idx_visits_date ON visits(visit_date);
+ALTER SEQUENCE visits_id_seq OWNED BY visits.id;
+
+-- Follow-ups; scheduled up to two years out, anything further lands in the default partition
+ALTER SEQUENCE follow_ups_id_seq OWNED BY NONE;
+ALTER TABLE follow_ups RENAME TO follow_ups_unpartitioned;
+ALTER TABLE follow_ups_unpartitioned RENAME CONSTRAINT follow_ups_pkey TO follow_ups_unpartitioned_pkey;
+
+CREATE TABLE follow_ups (
+    id BIGINT NOT NULL DEFAULT nextval('follow_ups_id_seq'),
+    visit_id BIGINT NOT NULL,
+    patient_id BIGINT NOT NULL,
+    doctor_id BIGINT NOT NULL,
+    scheduled_date DATE NOT NULL,
+    status VARCHAR(50) DEFAULT 'SCHEDULED',
+    notes TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, scheduled_date),
+    FOREIGN KEY (patient_id) REFERENCES patients(id) ON DELETE CASCADE,
+    FOREIGN KEY (doctor_id) REFERENCES doctors(id) ON DELETE CASCADE,
+    CHECK (status IN ('SCHEDULED', 'COMPLETED', 'CANCELLED', 'RESCHEDULED'))
+) PARTITION BY RANGE (scheduled_date);
+
+CREATE TABLE follow_ups_default PARTITION OF follow_ups DEFAULT;
+
+SELECT create_monthly_partitions('follow_ups', 'scheduled_date',
+    COALESCE((SELECT min(scheduled_date) FROM follow_ups_unpartitioned), CURRENT_DATE), 24);
+
+INSERT INTO follow_ups (id, visit_id, patient_id, doctor_id, scheduled_date, status, notes, created_at, updated_at)
+SELECT id, visit_id, patient_id, doctor_id, scheduled_date, status, notes, created_at, updated_at
+FROM follow_ups_unpartitioned;
+
+DROP TABLE follow_ups_unpartitioned;
+CREATE INDEX idx_followups_patient ON follow_ups(patient_id);
+CREATE INDEX idx_followups_doctor_status ON follow_ups(doctor_id, status);
+CREATE INDEX idx_followups_status_date ON follow_ups(status, scheduled_date);
+ALTER SEQUENCE follow_ups_id_seq OWNED BY follow_ups.id;
+
+-- Catalog of partitions moved to cold storage, and which patients each visits archive covers
+CREATE TABLE partition_archives (
+    id BIGSERIAL PRIMARY KEY,
+    table_name VARCHAR(100) NOT NULL,
+    partition_name VARCHAR(100) UNIQUE NOT NULL,
+    range_start DATE NOT NULL,
+    range_end DATE NOT NULL,
+    file_path VARCHAR(500) NOT NULL,
+    sha256 VARCHAR(64) NOT NULL,
+    row_count BIGINT NOT NULL,
+    archived_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE partition_archive_patients (
+    archive_id BIGINT NOT NULL REFERENCES partition_archives(id) ON DELETE CASCADE,
+    patient_id BIGINT NOT NULL,
+    PRIMARY KEY (archive_id, patient_id)
+);
+
+CREATE INDEX idx_archive_patients_patient ON partition_archive_patients(patient_id);
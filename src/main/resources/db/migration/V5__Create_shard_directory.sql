@@ -0,0 +1,10 @@
+-- Which shard holds each doctor's visits, prescriptions and follow-ups (app.sharding).
+-- Only the primary's copy is used; doctors without a row live on the primary.
+CREATE TABLE shard_directory (
+    doctor_id BIGINT PRIMARY KEY REFERENCES doctors(id) ON DELETE CASCADE,
+    shard VARCHAR(50) NOT NULL,
+    frozen BOOLEAN NOT NULL DEFAULT false,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_shard_directory_shard ON shard_directory(shard);
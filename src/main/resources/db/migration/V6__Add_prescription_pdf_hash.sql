@@ -0,0 +1,3 @@
+-- Fingerprint of the inputs the stored PDF was rendered from (see PdfGeneratorService.fingerprint).
+-- NULL means the PDF is stale or was rendered before fingerprints existed; it is checked again on next use.
+ALTER TABLE prescriptions ADD COLUMN pdf_hash VARCHAR(64);
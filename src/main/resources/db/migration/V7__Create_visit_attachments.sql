@@ -0,0 +1,15 @@
+-- Lab reports and scans attached to a visit. The file itself lives in the blob store under storage_key,
+-- which is derived from sha256, so identical uploads share one stored copy.
+-- No foreign key to visits: it is partitioned (V4), and its primary key includes visit_date.
+CREATE TABLE visit_attachments (
+    id BIGSERIAL PRIMARY KEY,
+    visit_id BIGINT NOT NULL,
+    file_name VARCHAR(255) NOT NULL,
+    content_type VARCHAR(100) NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    sha256 VARCHAR(64) NOT NULL,
+    storage_key VARCHAR(500) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_visit_attachments_visit ON visit_attachments(visit_id);
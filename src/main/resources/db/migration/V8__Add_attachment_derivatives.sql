@@ -0,0 +1,10 @@
+-- Thumbnail and preview blobs derived from an attachment's content in the background.
+-- derived_at is set once derivation has run, even when nothing could be derived (for example a PDF
+-- without an embedded scan has a preview but no thumbnail); NULL rows are picked up by the retry sweep.
+ALTER TABLE visit_attachments ADD COLUMN thumbnail_key VARCHAR(500);
+ALTER TABLE visit_attachments ADD COLUMN preview_key VARCHAR(500);
+ALTER TABLE visit_attachments ADD COLUMN derived_at TIMESTAMP;
+
+CREATE INDEX idx_visit_attachments_pending ON visit_attachments(created_at) WHERE derived_at IS NULL;
+-- updateDerivatives sets the derivatives of every attachment sharing the content
+CREATE INDEX idx_visit_attachments_sha256 ON visit_attachments(sha256);
@@ -0,0 +1,63 @@
+-- Medicine names, dosages, frequencies, durations and test names repeat across millions of prescription
+-- lines; each distinct string is stored once here and the lines keep a 4-byte id instead.
+-- Ids are handed out by the primary and the table is copied to every shard (see ReferenceReplicator),
+-- so lines can move between shards unchanged. Rows are never updated or deleted.
+CREATE TABLE catalog_terms (
+    id SERIAL PRIMARY KEY,
+    kind VARCHAR(20) NOT NULL,
+    term VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT uk_catalog_terms_kind_term UNIQUE (kind, term)
+);
+
+INSERT INTO catalog_terms (kind, term)
+SELECT kind, term FROM (
+    SELECT 'MEDICINE' AS kind, medicine_name AS term FROM prescription_medicines
+    UNION SELECT 'DOSAGE', dosage FROM prescription_medicines
+    UNION SELECT 'FREQUENCY', frequency FROM prescription_medicines
+    UNION SELECT 'DURATION', duration FROM prescription_medicines
+    UNION SELECT 'TEST', test_name FROM prescription_tests
+) terms
+ORDER BY kind, term;
+
+ALTER TABLE prescription_medicines
+    ADD COLUMN medicine_name_id INTEGER,
+    ADD COLUMN dosage_id INTEGER,
+    ADD COLUMN frequency_id INTEGER,
+    ADD COLUMN duration_id INTEGER;
+
+UPDATE prescription_medicines m
+SET medicine_name_id = n.id, dosage_id = d.id, frequency_id = f.id, duration_id = u.id
+FROM catalog_terms n, catalog_terms d, catalog_terms f, catalog_terms u
+WHERE n.kind = 'MEDICINE' AND n.term = m.medicine_name
+  AND d.kind = 'DOSAGE' AND d.term = m.dosage
+  AND f.kind = 'FREQUENCY' AND f.term = m.frequency
+  AND u.kind = 'DURATION' AND u.term = m.duration;
+
+ALTER TABLE prescription_tests ADD COLUMN test_name_id INTEGER;
+
+UPDATE prescription_tests t
+SET test_name_id = n.id
+FROM catalog_terms n
+WHERE n.kind = 'TEST' AND n.term = t.test_name;
+
+-- Deferrable so a shard whose backfill numbered the terms differently can be remapped to the
+-- primary's ids in one transaction (ReferenceReplicator.catchUp)
+ALTER TABLE prescription_medicines
+    ALTER COLUMN medicine_name_id SET NOT NULL,
+    ALTER COLUMN dosage_id SET NOT NULL,
+    ALTER COLUMN frequency_id SET NOT NULL,
+    ALTER COLUMN duration_id SET NOT NULL,
+    ADD CONSTRAINT fk_medicines_name FOREIGN KEY (medicine_name_id) REFERENCES catalog_terms(id) DEFERRABLE,
+    ADD CONSTRAINT fk_medicines_dosage FOREIGN KEY (dosage_id) REFERENCES catalog_terms(id) DEFERRABLE,
+    ADD CONSTRAINT fk_medicines_frequency FOREIGN KEY (frequency_id) REFERENCES catalog_terms(id) DEFERRABLE,
+    ADD CONSTRAINT fk_medicines_duration FOREIGN KEY (duration_id) REFERENCES catalog_terms(id) DEFERRABLE,
+    DROP COLUMN medicine_name,
+    DROP COLUMN dosage,
+    DROP COLUMN frequency,
+    DROP COLUMN duration;
+
+ALTER TABLE prescription_tests
+    ALTER COLUMN test_name_id SET NOT NULL,
+    ADD CONSTRAINT fk_tests_name FOREIGN KEY (test_name_id) REFERENCES catalog_terms(id) DEFERRABLE,
+    DROP COLUMN test_name;
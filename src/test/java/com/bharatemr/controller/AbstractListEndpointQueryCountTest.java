@@ -0,0 +1,173 @@
+package com.bharatemr.controller;
+
+import com.bharatemr.metrics.ExpectedQueries;
+import com.bharatemr.support.ClinicDataSeeder;
+import com.bharatemr.support.QueryCounting;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.method.HandlerMethod;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Calls every list endpoint against a seeded database, then again after every dimension of the data
+ * (doctors, patients per doctor, visits per patient) has doubled. An endpoint that loads related rows
+ * one at a time issues more statements the second time. Page sizes stay above the larger data set, so
+ * Spring Data's count query is skipped in both rounds alike. Each handler also declares a budget with
+ * {@link ExpectedQueries}, which holds per database: with sharding, a scattered list may issue it on
+ * every shard. Subclasses pick the database.
+ */
+@SpringBootTest(properties = {
+        "app.single-flight.enabled=false",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureMockMvc
+@Import({ QueryCounting.class, ClinicDataSeeder.class })
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+abstract class AbstractListEndpointQueryCountTest {
+
+    private static final String DOCTOR_ID = "DRSEED000";
+
+    private static final String PATIENT_ID = "PTSEED00000000";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ClinicDataSeeder seeder;
+
+    private final Map<String, Measured> before = new LinkedHashMap<>();
+
+    private final Map<String, Measured> after = new LinkedHashMap<>();
+
+    static List<String> endpoints() {
+        LocalDate today = LocalDate.now();
+        return List.of(
+                "ADMIN /api/admin/dashboard",
+                "ADMIN /api/admin/doctors",
+                "ADMIN /api/admin/patients",
+                "ADMIN /api/admin/statistics/monthly",
+                "DOCTOR /api/doctor/stats",
+                "DOCTOR /api/doctor/patients",
+                "DOCTOR /api/doctor/patients/recent",
+                "DOCTOR /api/doctor/followups",
+                "DOCTOR /api/doctor/visits",
+                "DOCTOR /api/follow-ups/doctor/" + DOCTOR_ID,
+                "DOCTOR /api/follow-ups/patient/" + PATIENT_ID,
+                "DOCTOR /api/follow-ups/today",
+                "PATIENT /api/patient/dashboard",
+                "PATIENT /api/patient/visits",
+                "PATIENT /api/patient/followups/upcoming",
+                "DOCTOR /api/patients?page=1&size=50",
+                "DOCTOR /api/patients?page=1&size=50&doctorId=" + DOCTOR_ID + "&search=seed",
+                "DOCTOR /api/patients/doctors",
+                "DOCTOR /api/visits?page=1&size=100",
+                "DOCTOR /api/visits?page=1&size=100&doctorId=" + DOCTOR_ID + "&search=fever",
+                "DOCTOR /api/visits/doctor/" + DOCTOR_ID,
+                "DOCTOR /api/visits/patient/" + PATIENT_ID,
+                "DOCTOR /api/visits/patient/" + PATIENT_ID + "?includeArchived=true",
+                "DOCTOR /api/visits/doctor/" + DOCTOR_ID + "/date-range?startDate=" + today.minusYears(1)
+                        + "T00:00:00&endDate=" + today + "T23:59:59",
+                "DOCTOR /api/medicines/suggestions?q=pa");
+    }
+
+    @BeforeAll
+    void measureBeforeAndAfterDoubling() throws Exception {
+        seeder.grow(2, 3, 2);
+        measureAll(before);
+        seeder.grow(4, 6, 4);
+        measureAll(after);
+    }
+
+    @ParameterizedTest
+    @MethodSource("endpoints")
+    void queryCountDoesNotGrowWithRows(String endpoint) {
+        assertThat(before.get(endpoint).status).as(endpoint).isEqualTo(200);
+        assertThat(after.get(endpoint).status).as(endpoint).isEqualTo(200);
+        assertThat(after.get(endpoint).queries)
+                .as("%s: %d statements with N rows", endpoint, before.get(endpoint).queries)
+                .isEqualTo(before.get(endpoint).queries);
+    }
+
+    @ParameterizedTest
+    @MethodSource("endpoints")
+    void queryCountStaysWithinTheHandlersBudget(String endpoint) {
+        for (Measured measured : List.of(before.get(endpoint), after.get(endpoint))) {
+            assertThat(measured.budget).as("%s has no @ExpectedQueries", endpoint).isNotNull();
+            assertThat(measured.queriesOnOneDatabase)
+                    .as("%s: statements on one database", endpoint)
+                    .isLessThanOrEqualTo(measured.budget.longValue());
+        }
+    }
+
+    private void measureAll(Map<String, Measured> results) throws Exception {
+        for (String endpoint : endpoints()) {
+            // The first call can warm lazy lookups (letterheads, catalog terms) that later calls skip
+            call(endpoint);
+            QueryCounting.reset();
+            MvcResult result = perform(endpoint);
+            results.put(endpoint, new Measured(result.getResponse().getStatus(), QueryCounting.count(),
+                    QueryCounting.countOnBusiestDataSource(), budget(result.getHandler())));
+        }
+    }
+
+    int call(String endpoint) throws Exception {
+        return perform(endpoint).getResponse().getStatus();
+    }
+
+    private MvcResult perform(String endpoint) throws Exception {
+        String[] parts = endpoint.split(" ", 2);
+        return mockMvc.perform(get(parts[1]).header("Authorization", "Bearer " + token(parts[0]))).andReturn();
+    }
+
+    private static Integer budget(Object handler) {
+        if (!(handler instanceof HandlerMethod)) {
+            return null;
+        }
+        ExpectedQueries expected = ((HandlerMethod) handler).getMethodAnnotation(ExpectedQueries.class);
+        return expected == null ? null : expected.value();
+    }
+
+    private String token(String role) {
+        switch (role) {
+            case "ADMIN":
+                return seeder.adminToken();
+            case "PATIENT":
+                return seeder.patientToken();
+            default:
+                return seeder.doctorToken();
+        }
+    }
+
+    private static class Measured {
+
+        final int status;
+
+        final long queries;
+
+        final long queriesOnOneDatabase;
+
+        final Integer budget;
+
+        Measured(int status, long queries, long queriesOnOneDatabase, Integer budget) {
+            this.status = status;
+            this.queries = queries;
+            this.queriesOnOneDatabase = queriesOnOneDatabase;
+            this.budget = budget;
+        }
+    }
+}
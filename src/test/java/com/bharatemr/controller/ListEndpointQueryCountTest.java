@@ -0,0 +1,8 @@
+package com.bharatemr.controller;
+
+import org.springframework.test.context.ActiveProfiles;
+
+/** On the dev profile's H2 (PostgreSQL mode), so it runs with the unit tests. */
+@ActiveProfiles("dev")
+class ListEndpointQueryCountTest extends AbstractListEndpointQueryCountTest {
+}
@@ -0,0 +1,38 @@
+package com.bharatemr.controller;
+
+import com.bharatemr.support.EmbeddedPostgresDatabases;
+import com.bharatemr.support.QueryCounting;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * With two shards on PostgreSQL, where admin and patient lists scatter to both shards on
+ * {@code ShardTemplate}'s threads and their statements have to be counted too. Budgets hold per shard.
+ */
+class ShardedListEndpointQueryCountIT extends AbstractListEndpointQueryCountTest {
+
+    @DynamicPropertySource
+    static void shards(DynamicPropertyRegistry registry) {
+        EmbeddedPostgresDatabases.register(registry, "list-shard0");
+        registry.add("app.sharding.enabled", () -> "true");
+        registry.add("app.sharding.primary", () -> "shard0");
+        registry.add("app.sharding.shards.shard1.index", () -> "1");
+        registry.add("app.sharding.shards.shard1.url", () -> EmbeddedPostgresDatabases.url("list-shard1"));
+        registry.add("app.sharding.shards.shard1.username", () -> "postgres");
+        registry.add("app.sharding.shards.shard1.password", () -> "");
+        // Otherwise a doctor's directory entry can expire between the warm-up call and the counted one
+        registry.add("app.sharding.directory-cache-ttl", () -> "1h");
+    }
+
+    @Test
+    void countsStatementsRunOnScatterThreads() throws Exception {
+        QueryCounting.reset();
+        assertThat(call("ADMIN /api/admin/statistics/monthly")).isEqualTo(200);
+
+        assertThat(QueryCounting.count("shard0")).isPositive();
+        assertThat(QueryCounting.count("shard1")).isPositive();
+    }
+}
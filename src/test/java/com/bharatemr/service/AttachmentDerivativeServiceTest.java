@@ -0,0 +1,139 @@
+package com.bharatemr.service;
+
+import com.bharatemr.repository.VisitAttachmentRepository;
+import com.bharatemr.sharding.ShardTemplate;
+import com.bharatemr.storage.LocalBlobStore;
+import com.itextpdf.io.image.ImageDataFactory;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.layout.Document;
+import com.itextpdf.layout.element.Image;
+import com.itextpdf.layout.element.Paragraph;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class AttachmentDerivativeServiceTest {
+
+    @Mock
+    private VisitAttachmentRepository visitAttachmentRepository;
+
+    @Mock
+    private ShardTemplate shardTemplate;
+
+    @Mock
+    private ThreadPoolTaskExecutor derivationExecutor;
+
+    @InjectMocks
+    private AttachmentDerivativeService service;
+
+    private LocalBlobStore blobStore;
+
+    @BeforeEach
+    void setUp(@TempDir Path root) {
+        blobStore = new LocalBlobStore(root);
+        ReflectionTestUtils.setField(service, "blobStore", blobStore);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "thumbnailSize", 256);
+        ReflectionTestUtils.setField(service, "previewSize", 1280);
+        ReflectionTestUtils.setField(service, "jpegQuality", 0.8f);
+        ReflectionTestUtils.setField(service, "maxDecodedPixels", 16_000_000L);
+
+        doAnswer(call -> {
+            call.<Runnable>getArgument(0).run();
+            return null;
+        }).when(derivationExecutor).execute(any(Runnable.class));
+    }
+
+    @Test
+    void scannedPdfGetsJpegThumbnailAndPreview() throws IOException {
+        byte[] pdf = pdf(jpeg(4000, 3000), "Ultrasound abdomen");
+        blobStore.put("uploads/scan", "application/pdf", out -> out.write(pdf));
+
+        service.deriveLater("scan", "application/pdf");
+
+        verify(visitAttachmentRepository).updateDerivatives(eq("scan"), eq("uploads/scan.thumb.jpg"),
+                eq("uploads/scan.preview.jpg"), any());
+        BufferedImage preview = readJpeg("uploads/scan.preview.jpg");
+        assertThat(preview.getWidth()).isEqualTo(1280);
+        assertThat(preview.getHeight()).isEqualTo(960);
+        assertThat(readJpeg("uploads/scan.thumb.jpg").getWidth()).isEqualTo(256);
+    }
+
+    @Test
+    void textOnlyPdfGetsNeither() throws IOException {
+        byte[] pdf = pdf(null, "Hb 13.2 g/dL");
+        blobStore.put("uploads/report", "application/pdf", out -> out.write(pdf));
+
+        service.deriveLater("report", "application/pdf");
+
+        verify(visitAttachmentRepository).updateDerivatives(eq("report"), isNull(), isNull(), any());
+        assertThat(blobStore.exists("uploads/report.preview.jpg")).isFalse();
+    }
+
+    @Test
+    void photoGetsJpegThumbnailAndPreview() throws IOException {
+        byte[] photo = jpeg(3000, 4000);
+        blobStore.put("uploads/photo", "image/jpeg", out -> out.write(photo));
+
+        service.deriveLater("photo", "image/jpeg");
+
+        verify(visitAttachmentRepository).updateDerivatives(eq("photo"), eq("uploads/photo.thumb.jpg"),
+                eq("uploads/photo.preview.jpg"), any());
+        assertThat(readJpeg("uploads/photo.preview.jpg").getHeight()).isEqualTo(1280);
+    }
+
+    private BufferedImage readJpeg(String key) throws IOException {
+        try (InputStream in = blobStore.open(key)) {
+            return ImageIO.read(in);
+        }
+    }
+
+    private static byte[] jpeg(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.LIGHT_GRAY);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.DARK_GRAY);
+        graphics.fillOval(width / 4, height / 4, width / 2, height / 2);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        return out.toByteArray();
+    }
+
+    private static byte[] pdf(byte[] scan, String text) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Document document = new Document(new PdfDocument(new PdfWriter(out)))) {
+            document.add(new Paragraph(text));
+            if (scan != null) {
+                document.add(new Image(ImageDataFactory.create(scan)).setAutoScale(true));
+            }
+        }
+        return out.toByteArray();
+    }
+}
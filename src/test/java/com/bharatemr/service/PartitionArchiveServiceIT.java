@@ -0,0 +1,235 @@
+package com.bharatemr.service;
+
+import com.bharatemr.dto.VisitDto;
+import com.bharatemr.exception.ArchiveIntegrityException;
+import com.bharatemr.model.Doctor;
+import com.bharatemr.model.Medicine;
+import com.bharatemr.model.PartitionArchive;
+import com.bharatemr.model.Patient;
+import com.bharatemr.model.Prescription;
+import com.bharatemr.model.Visit;
+import com.bharatemr.model.VisitAttachment;
+import com.bharatemr.repository.DoctorRepository;
+import com.bharatemr.repository.PartitionArchiveRepository;
+import com.bharatemr.repository.PatientRepository;
+import com.bharatemr.repository.PrescriptionRepository;
+import com.bharatemr.repository.VisitAttachmentRepository;
+import com.bharatemr.repository.VisitRepository;
+import com.bharatemr.storage.BlobStore;
+import com.bharatemr.support.EmbeddedPostgresDatabases;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.reset;
+
+@SpringBootTest(properties = {"app.pdf.gc.min-age=0s", "app.archive.detach-lock-timeout=500ms"})
+class PartitionArchiveServiceIT {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    @DynamicPropertySource
+    static void postgres(DynamicPropertyRegistry registry) throws IOException {
+        EmbeddedPostgresDatabases.register(registry, "archive");
+        String storageRoot = Files.createTempDirectory("archive-it").toString();
+        registry.add("app.storage.local.root", () -> storageRoot);
+    }
+
+    @Autowired
+    private PartitionArchiveService partitionArchiveService;
+
+    @Autowired
+    private PartitionMaintenanceService partitionMaintenanceService;
+
+    @Autowired
+    private PrescriptionPdfCleanupService prescriptionPdfCleanupService;
+
+    @Autowired
+    private VisitService visitService;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private VisitRepository visitRepository;
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    @Autowired
+    private VisitAttachmentRepository visitAttachmentRepository;
+
+    @Autowired
+    private PartitionArchiveRepository partitionArchiveRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @SpyBean
+    private BlobStore blobStore;
+
+    private Doctor doctor;
+
+    private Patient patient;
+
+    @BeforeEach
+    void setUp() {
+        reset(blobStore);
+        int n = SEQUENCE.incrementAndGet();
+        doctor = doctorRepository.save(Doctor.builder()
+                .doctorId(String.format("DRARCH%03d", n))
+                .fullName("Archive Doctor " + n)
+                .mobileNumber(String.format("+91910000%04d", n))
+                .specialization("General Physician")
+                .qualification("MBBS")
+                .yearsOfExperience(10)
+                .clinicName("Archive Clinic")
+                .clinicAddress("1 MG Road, Pune, MH - 411001")
+                .medicalRegistrationNumber("MH-ARCH-" + n)
+                .build());
+        patient = patientRepository.save(Patient.builder()
+                .patientId(String.format("PTARCH%05d", n))
+                .fullName("Archive Patient " + n)
+                .gender("FEMALE")
+                .dateOfBirth(LocalDate.now().minusYears(40))
+                .age(40)
+                .mobileNumber(String.format("+91810000%04d", n))
+                .onboardedByDoctor(doctor)
+                .build());
+    }
+
+    @Test
+    void archivesPartitionAndKeepsWhatArchivedVisitsPointAt() throws IOException {
+        YearMonth month = YearMonth.now().minusMonths(30);
+        Visit archived = visit(month.atDay(10).atTime(10, 0), "prescriptions/prescription_archived.pdf");
+        attach(archived, "ab".repeat(32));
+        Visit live = visit(LocalDateTime.now().minusDays(3), "prescriptions/prescription_live.pdf");
+        putPdf("prescriptions/prescription_orphan.pdf");
+        String partition = partition(month);
+        partitionMaintenanceService.createUpcomingPartitions();
+
+        PartitionArchive archive = partitionArchiveService.archive("visits", partition, month, true);
+
+        String key = "archive/visits/" + partition + ".jsonl.gz";
+        assertThat(archive.getFilePath()).isEqualTo(key);
+        assertThat(blobStore.exists(key)).isTrue();
+        assertThat(blobStore.exists(key + ".sha256")).isTrue();
+        assertThat(jdbcTemplate.queryForObject("SELECT to_regclass(?)::text", String.class, partition)).isNull();
+        assertThat(prescriptionRepository.findByVisitId(archived.getId())).isEmpty();
+        assertThat(visitAttachmentRepository.findByVisitIdOrderByCreatedAtAsc(archived.getId())).isEmpty();
+        assertThat(prescriptionRepository.findByVisitId(live.getId())).isPresent();
+
+        prescriptionPdfCleanupService.deleteOrphanedPdfs();
+        assertThat(blobStore.exists("prescriptions/prescription_archived.pdf")).isTrue();
+        assertThat(blobStore.exists("prescriptions/prescription_live.pdf")).isTrue();
+        assertThat(blobStore.exists("prescriptions/prescription_orphan.pdf")).isFalse();
+
+        List<VisitDto> history = visitService.getVisitsByPatient(patient.getPatientId(), true);
+        assertThat(history).extracting(VisitDto::getId).containsExactly(live.getId(), archived.getId());
+        VisitDto fromArchive = history.get(1);
+        assertThat(fromArchive.getPrescriptionPdfUrl()).isEqualTo("prescriptions/prescription_archived.pdf");
+        assertThat(fromArchive.getMedicines()).extracting("medicineName").containsExactly("Paracetamol 650");
+        assertThat(fromArchive.getAttachments()).extracting("sha256").containsExactly("ab".repeat(32));
+    }
+
+    @Test
+    void keepsPartitionWhenStoredArchiveCannotBeConfirmed() throws IOException {
+        YearMonth month = YearMonth.now().minusMonths(31);
+        Visit visit = visit(month.atDay(5).atTime(9, 30), null);
+        String partition = partition(month);
+        partitionMaintenanceService.createUpcomingPartitions();
+        doReturn(false).when(blobStore).exists(endsWith(partition + ".jsonl.gz"));
+
+        assertThatThrownBy(() -> partitionArchiveService.archive("visits", partition, month, true))
+                .isInstanceOf(ArchiveIntegrityException.class);
+
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT relispartition FROM pg_class WHERE oid = ?::regclass", Boolean.class, partition)).isTrue();
+        assertThat(visitRepository.findById(visit.getId())).isPresent();
+        assertThat(prescriptionRepository.findByVisitId(visit.getId())).isPresent();
+        assertThat(partitionArchiveRepository.existsByPartitionName(partition)).isFalse();
+    }
+
+    @Test
+    void rollsBackWhenTheParentTableStaysLocked() throws Exception {
+        YearMonth month = YearMonth.now().minusMonths(32);
+        Visit visit = visit(month.atDay(7).atTime(11, 0), null);
+        String partition = partition(month);
+        partitionMaintenanceService.createUpcomingPartitions();
+
+        // An open transaction that has read visits keeps its ACCESS SHARE lock until it ends
+        try (Connection reader = jdbcTemplate.getDataSource().getConnection()) {
+            reader.setAutoCommit(false);
+            reader.createStatement().executeQuery("SELECT count(*) FROM visits").close();
+
+            assertThatThrownBy(() -> partitionArchiveService.archive("visits", partition, month, true))
+                    .isInstanceOf(CannotAcquireLockException.class);
+            reader.rollback();
+        }
+
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT relispartition FROM pg_class WHERE oid = ?::regclass", Boolean.class, partition)).isTrue();
+        assertThat(prescriptionRepository.findByVisitId(visit.getId())).isPresent();
+        assertThat(partitionArchiveRepository.existsByPartitionName(partition)).isFalse();
+    }
+
+    private Visit visit(LocalDateTime date, String pdfUrl) throws IOException {
+        Visit visit = visitRepository.save(Visit.builder()
+                .patient(patient)
+                .doctor(doctor)
+                .visitDate(date)
+                .chiefComplaint("Fever and body ache since 2 days")
+                .build());
+        Prescription prescription = Prescription.builder().visit(visit).pdfUrl(pdfUrl).build();
+        prescription.addMedicine(Medicine.builder()
+                .medicineName("Paracetamol 650").dosage("1 tablet").frequency("1-1-1").duration("3 days").build());
+        prescriptionRepository.save(prescription);
+        if (pdfUrl != null) {
+            putPdf(pdfUrl);
+        }
+        return visit;
+    }
+
+    private void attach(Visit visit, String sha256) {
+        visitAttachmentRepository.save(VisitAttachment.builder()
+                .visit(visit)
+                .fileName("cbc.pdf")
+                .contentType("application/pdf")
+                .sizeBytes(1024L)
+                .sha256(sha256)
+                .storageKey(VisitAttachmentService.CONTENT_PREFIX + sha256)
+                .build());
+    }
+
+    private void putPdf(String key) throws IOException {
+        blobStore.put(key, "application/pdf", out -> out.write("%PDF-1.7".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static String partition(YearMonth month) {
+        return "visits_" + month.format(DateTimeFormatter.ofPattern("uuuu_MM"));
+    }
+}
@@ -0,0 +1,208 @@
+package com.bharatemr.service;
+
+import com.bharatemr.dto.PrescriptionBatchDto;
+import com.bharatemr.dto.PrescriptionBatchDto.Item;
+import com.bharatemr.exception.ResourceNotFoundException;
+import com.bharatemr.model.Doctor;
+import com.bharatemr.model.Visit;
+import com.bharatemr.repository.DoctorRepository;
+import com.bharatemr.repository.PrescriptionRepository;
+import com.bharatemr.repository.VisitRepository;
+import com.bharatemr.storage.LocalBlobStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/** Two service instances sharing one blob store stand in for two nodes. */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PrescriptionBatchServiceTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2026, 3, 2, 0, 0);
+
+    @Mock
+    private DoctorRepository doctorRepository;
+
+    @Mock
+    private VisitRepository visitRepository;
+
+    @Mock
+    private PrescriptionRepository prescriptionRepository;
+
+    @Mock
+    private PrescriptionService prescriptionService;
+
+    @Mock
+    private PdfGeneratorService pdfGeneratorService;
+
+    private LocalBlobStore blobStore;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @BeforeEach
+    void setUp(@TempDir Path root) {
+        blobStore = new LocalBlobStore(root);
+        List<Visit> visits = List.of(visit(11L, 9), visit(12L, 10), visit(13L, 11));
+        when(doctorRepository.findByDoctorId("DR1")).thenReturn(Optional.of(Doctor.builder().id(1L).build()));
+        when(visitRepository.findVisitsByDoctorAndDateRange(eq(1L), any(), any())).thenReturn(visits);
+        when(prescriptionRepository.findVisitIdsByVisitIdIn(any())).thenReturn(List.of(11L, 12L, 13L));
+        when(prescriptionService.generatePrescriptionPdf(anyLong())).thenAnswer(call ->
+                CompletableFuture.completedFuture(pdfUrl(call.getArgument(0))));
+        when(pdfGeneratorService.exists(anyString())).thenReturn(true);
+    }
+
+    @Test
+    void progressAndDownloadAreServedByAnotherNode() {
+        Node started = new Node(Duration.ofMinutes(5));
+        Node other = new Node(Duration.ofMinutes(5));
+
+        String jobId = (String) started.service.start("DR1", DAY, DAY.plusDays(1)).get("jobId");
+        started.awaitJobs();
+
+        Map<String, Object> status = other.service.getStatus(jobId);
+        assertThat(status.get("state")).isEqualTo("FINISHED");
+        assertThat(status.get("rendered")).isEqualTo(3L);
+        assertThat(other.service.finishedFiles(jobId)).containsExactly(pdfUrl(11L), pdfUrl(12L), pdfUrl(13L));
+    }
+
+    @Test
+    void unknownJobsAreNotFound() {
+        Node node = new Node(Duration.ofMinutes(5));
+
+        assertThatThrownBy(() -> node.service.getStatus(UUID.randomUUID().toString()))
+                .isInstanceOf(ResourceNotFoundException.class);
+        assertThatThrownBy(() -> node.service.getStatus("../uploads/parts/x"))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void anOrphanedJobIsResumedWithOnlyItsMissingPrescriptions() throws IOException {
+        String jobId = orphan();
+        Node other = new Node(Duration.ZERO);
+
+        other.service.resumeOrphanedJobs();
+        other.awaitJobs();
+
+        assertThat(other.service.getStatus(jobId).get("state")).isEqualTo("FINISHED");
+        assertThat(other.service.finishedFiles(jobId)).containsExactly(pdfUrl(11L), pdfUrl(12L), pdfUrl(13L));
+        verify(prescriptionService, never()).generatePrescriptionPdf(11L);
+        verify(prescriptionService).generatePrescriptionPdf(12L);
+        verify(prescriptionService).generatePrescriptionPdf(13L);
+        assertThat(other.meterRegistry.counter("pdf.batch.jobs.resumed").count()).isEqualTo(1);
+    }
+
+    @Test
+    void aJobSavedRecentlyIsLeftToItsNode() throws IOException {
+        String jobId = orphan();
+        Node other = new Node(Duration.ofMinutes(5));
+
+        other.service.resumeOrphanedJobs();
+        other.awaitJobs();
+
+        assertThat(other.service.getStatus(jobId).get("state")).isEqualTo("RUNNING");
+        verify(prescriptionService, never()).generatePrescriptionPdf(anyLong());
+    }
+
+    @Test
+    void finishedJobsAreDeletedAfterTheRetention() {
+        Node node = new Node(Duration.ZERO);
+        String jobId = (String) node.service.start("DR1", DAY, DAY.plusDays(1)).get("jobId");
+        node.awaitJobs();
+
+        new Node(Duration.ZERO).service.resumeOrphanedJobs();
+
+        assertThat(blobStore.exists(PrescriptionBatchService.BATCH_PREFIX + jobId + ".json")).isFalse();
+    }
+
+    // A job whose node stopped after rendering the first of its three prescriptions
+    private String orphan() throws IOException {
+        Item done = new Item(11L);
+        done.setAttempts(1);
+        done.setPdfUrl(pdfUrl(11L));
+        PrescriptionBatchDto job = PrescriptionBatchDto.builder()
+                .jobId(UUID.randomUUID().toString())
+                .doctorId("DR1")
+                .items(List.of(done, new Item(12L), new Item(13L)))
+                .startedAt(DAY)
+                .build();
+        blobStore.put(PrescriptionBatchService.BATCH_PREFIX + job.getJobId() + ".json", "application/json",
+                out -> objectMapper.writeValue(out, job));
+        return job.getJobId();
+    }
+
+    private static Visit visit(Long id, int hour) {
+        return Visit.builder().id(id).visitDate(DAY.withHour(hour)).build();
+    }
+
+    private static String pdfUrl(Long visitId) {
+        return "prescriptions/prescription_" + visitId + ".pdf";
+    }
+
+    private class Node {
+
+        final PrescriptionBatchService service = new PrescriptionBatchService();
+
+        final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+        Node(Duration orphanAfter) {
+            executor.setCorePoolSize(2);
+            executor.setMaxPoolSize(2);
+            executor.setQueueCapacity(0);
+            executor.setWaitForTasksToCompleteOnShutdown(true);
+            executor.setAwaitTerminationSeconds(10);
+            executor.initialize();
+
+            ReflectionTestUtils.setField(service, "doctorRepository", doctorRepository);
+            ReflectionTestUtils.setField(service, "visitRepository", visitRepository);
+            ReflectionTestUtils.setField(service, "prescriptionRepository", prescriptionRepository);
+            ReflectionTestUtils.setField(service, "prescriptionService", prescriptionService);
+            ReflectionTestUtils.setField(service, "pdfGeneratorService", pdfGeneratorService);
+            ReflectionTestUtils.setField(service, "blobStore", blobStore);
+            ReflectionTestUtils.setField(service, "objectMapper", objectMapper);
+            ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+            ReflectionTestUtils.setField(service, "pdfBatchExecutor", executor);
+            ReflectionTestUtils.setField(service, "parallelism", 2);
+            ReflectionTestUtils.setField(service, "maxVisits", 500);
+            ReflectionTestUtils.setField(service, "maxAttempts", 3);
+            ReflectionTestUtils.setField(service, "retryDelay", Duration.ofMillis(10));
+            ReflectionTestUtils.setField(service, "retention", Duration.ZERO);
+            ReflectionTestUtils.setField(service, "orphanAfter", orphanAfter);
+        }
+
+        // Renders complete at once here, so a job is done when its batch thread is
+        void awaitJobs() {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.bharatemr.service;
+
+import com.bharatemr.dto.AttachmentDto;
+import com.bharatemr.dto.UploadSessionDto;
+import com.bharatemr.exception.InvalidUploadException;
+import com.bharatemr.model.Visit;
+import com.bharatemr.model.VisitAttachment;
+import com.bharatemr.repository.VisitAttachmentRepository;
+import com.bharatemr.repository.VisitRepository;
+import com.bharatemr.storage.LocalBlobStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class VisitAttachmentServiceTest {
+
+    private static final long VISIT_ID = 191L;
+
+    // Two chunks of 8 bytes each
+    private static final byte[] REPORT = "CBC: Hb 13.2 ok.".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] OTHER = "CBC: Hb 07.9 low".getBytes(StandardCharsets.US_ASCII);
+
+    @Mock
+    private VisitRepository visitRepository;
+
+    @Mock
+    private VisitAttachmentRepository visitAttachmentRepository;
+
+    @Mock
+    private AttachmentDerivativeService attachmentDerivativeService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private VisitAttachmentService service;
+
+    private LocalBlobStore blobStore;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp(@TempDir Path root) {
+        blobStore = new LocalBlobStore(root);
+        meterRegistry = new SimpleMeterRegistry();
+        ReflectionTestUtils.setField(service, "blobStore", blobStore);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(service, "chunkSize", DataSize.ofBytes(8));
+        ReflectionTestUtils.setField(service, "maxFileSize", DataSize.ofMegabytes(1));
+        ReflectionTestUtils.setField(service, "contentTypes", Set.of("application/pdf"));
+
+        when(visitRepository.existsById(VISIT_ID)).thenReturn(true);
+        when(visitRepository.getReferenceById(VISIT_ID)).thenReturn(Visit.builder().id(VISIT_ID).build());
+        when(visitAttachmentRepository.save(any(VisitAttachment.class))).thenAnswer(call -> call.getArgument(0));
+    }
+
+    @Test
+    void wrongChunksWithTheHashOfStoredContentAreRejected() throws IOException {
+        storeContent(REPORT);
+        UploadSessionDto session = upload(sha256(REPORT), OTHER);
+
+        assertThatThrownBy(() -> service.completeUpload(VISIT_ID, session.getUploadId()))
+                .isInstanceOf(InvalidUploadException.class);
+
+        verify(visitAttachmentRepository, never()).save(any());
+        assertThat(read("uploads/" + sha256(REPORT))).isEqualTo(REPORT);
+        assertThat(meterRegistry.counter("uploads.checksum.mismatch").count()).isEqualTo(1);
+    }
+
+    @Test
+    void matchingChunksReuseStoredContent() throws IOException {
+        storeContent(REPORT);
+        UploadSessionDto session = upload(sha256(REPORT), REPORT);
+
+        AttachmentDto attachment = service.completeUpload(VISIT_ID, session.getUploadId());
+
+        assertThat(attachment.getSha256()).isEqualTo(sha256(REPORT));
+        assertThat(meterRegistry.counter("uploads.completed", "duplicate", "true").count()).isEqualTo(1);
+    }
+
+    @Test
+    void wrongChunksForNewContentAreRejectedAndNotStored() throws IOException {
+        UploadSessionDto session = upload(sha256(REPORT), OTHER);
+
+        assertThatThrownBy(() -> service.completeUpload(VISIT_ID, session.getUploadId()))
+                .isInstanceOf(InvalidUploadException.class);
+
+        verify(visitAttachmentRepository, never()).save(any());
+        assertThat(blobStore.exists("uploads/" + sha256(REPORT))).isFalse();
+    }
+
+    private UploadSessionDto upload(String claimedSha256, byte[] sent) {
+        UploadSessionDto session = service.startUpload(VISIT_ID, UploadSessionDto.builder()
+                .fileName("cbc.pdf")
+                .contentType("application/pdf")
+                .size((long) sent.length)
+                .sha256(claimedSha256)
+                .build());
+        for (int i = 0; i < session.getChunkCount(); i++) {
+            int from = i * session.getChunkSize();
+            int to = Math.min(sent.length, from + session.getChunkSize());
+            byte[] chunk = new byte[to - from];
+            System.arraycopy(sent, from, chunk, 0, chunk.length);
+            service.putChunk(VISIT_ID, session.getUploadId(), i, null, new ByteArrayInputStream(chunk));
+        }
+        return session;
+    }
+
+    private void storeContent(byte[] content) throws IOException {
+        blobStore.put("uploads/" + sha256(content), "application/pdf", out -> out.write(content));
+    }
+
+    private byte[] read(String key) throws IOException {
+        try (InputStream in = blobStore.open(key)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.bharatemr.sharding;
+
+import com.bharatemr.model.Doctor;
+import com.bharatemr.support.ClinicDataSeeder;
+import com.bharatemr.support.EmbeddedPostgresDatabases;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+/**
+ * Moves a doctor between two PostgreSQL shards while the doctor keeps creating and editing visits
+ * through the API, then checks that the target holds exactly the doctor's rows: every seeded id, every
+ * visit whose create was accepted, and every accepted edit. Writes refused with a 503 during the freeze
+ * are the only ones allowed to be missing.
+ */
+@SpringBootTest(properties = {
+        "app.sharding.directory-cache-ttl=200ms",
+        "app.sharding.move-freeze-wait=1s",
+        "app.sharding.copy-batch-size=25",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureMockMvc
+@Import(ClinicDataSeeder.class)
+class ShardMoveServiceIT {
+
+    // The doctor's rows in each clinical table, as ShardMoveService selects them
+    private static final Map<String, String> DOCTOR_ROWS = new LinkedHashMap<>();
+
+    static {
+        DOCTOR_ROWS.put("visits", "doctor_id = ?");
+        DOCTOR_ROWS.put("follow_ups", "doctor_id = ?");
+        DOCTOR_ROWS.put("prescriptions", "visit_id IN (SELECT id FROM visits WHERE doctor_id = ?)");
+        DOCTOR_ROWS.put("prescription_medicines", "prescription_id IN (SELECT p.id FROM prescriptions p "
+                + "JOIN visits v ON v.id = p.visit_id WHERE v.doctor_id = ?)");
+        DOCTOR_ROWS.put("prescription_tests", "prescription_id IN (SELECT p.id FROM prescriptions p "
+                + "JOIN visits v ON v.id = p.visit_id WHERE v.doctor_id = ?)");
+    }
+
+    @DynamicPropertySource
+    static void shards(DynamicPropertyRegistry registry) {
+        EmbeddedPostgresDatabases.register(registry, "move-shard0");
+        registry.add("app.sharding.enabled", () -> "true");
+        registry.add("app.sharding.primary", () -> "shard0");
+        registry.add("app.sharding.shards.shard1.index", () -> "1");
+        registry.add("app.sharding.shards.shard1.url", () -> EmbeddedPostgresDatabases.url("move-shard1"));
+        registry.add("app.sharding.shards.shard1.username", () -> "postgres");
+        registry.add("app.sharding.shards.shard1.password", () -> "");
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ClinicDataSeeder seeder;
+
+    @Autowired
+    private ShardMoveService shardMoveService;
+
+    @Autowired
+    private ShardDirectory shardDirectory;
+
+    @Autowired
+    private ShardDataSources shardDataSources;
+
+    @Test
+    void movesDoctorWhileVisitsAreCreatedAndEdited() throws Exception {
+        seeder.grow(2, 20, 6);
+        Doctor doctor = seeder.firstDoctor();
+        String token = seeder.doctorToken();
+        String from = shardDirectory.load(doctor.getDoctorId()).getShard();
+        String to = from.equals("shard0") ? "shard1" : "shard0";
+
+        Map<String, Set<Long>> seeded = rows(from, doctor.getId());
+        String bystanderShard = shardDirectory.load(seeder.doctor(1).getDoctorId()).getShard();
+        Map<String, Set<Long>> bystander = rows(bystanderShard, seeder.doctor(1).getId());
+        assertThat(bystander.get("visits")).hasSize(120);
+        List<Long> patientIds = seeder.patientIds(0);
+        List<Long> editable = new ArrayList<>(seeded.get("visits"));
+        assertThat(seeded.get("visits")).hasSize(120);
+        assertThat(rows(to, doctor.getId()).get("visits")).isEmpty();
+
+        Set<Long> created = ConcurrentHashMap.newKeySet();
+        Map<Long, String> edited = new ConcurrentHashMap<>();
+        AtomicInteger refused = new AtomicInteger();
+        AtomicInteger acceptedDuringMove = new AtomicInteger();
+        AtomicBoolean moving = new AtomicBoolean();
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<Throwable> writerFailure = new AtomicReference<>();
+        CountDownLatch warmedUp = new CountDownLatch(3);
+
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; !stop.get(); i++) {
+                    boolean during = moving.get();
+                    MockHttpServletResponse response;
+                    if (i % 2 == 0) {
+                        response = createVisit(token, patientIds.get(i % patientIds.size()), i);
+                        if (response.getStatus() == 201) {
+                            created.add(objectMapper.readTree(response.getContentAsString()).at("/data/id").asLong());
+                        }
+                    } else {
+                        long visitId = editable.get(i % editable.size());
+                        String complaint = "Edited during move " + i;
+                        response = editVisit(token, visitId, complaint);
+                        if (response.getStatus() == 200) {
+                            edited.put(visitId, complaint);
+                        }
+                    }
+                    if (response.getStatus() == 503) {
+                        refused.incrementAndGet();
+                    } else {
+                        assertThat(response.getStatus()).as(response.getContentAsString()).isIn(200, 201);
+                        if (during && moving.get()) {
+                            acceptedDuringMove.incrementAndGet();
+                        }
+                        warmedUp.countDown();
+                    }
+                }
+            } catch (Throwable e) {
+                writerFailure.set(e);
+            }
+        }, "visit-writer");
+        writer.start();
+        assertThat(warmedUp.await(30, TimeUnit.SECONDS)).isTrue();
+
+        moving.set(true);
+        Map<String, Object> result = shardMoveService.move(doctor.getDoctorId(), to);
+        moving.set(false);
+        // Some writes after the switch, which go straight to the target
+        Thread.sleep(500);
+        stop.set(true);
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        assertThat(writerFailure.get()).isNull();
+
+        assertThat(result).containsEntry("moved", true);
+        assertThat(acceptedDuringMove.get()).as("writes accepted while the move ran").isPositive();
+        assertThat(refused.get()).as("writes refused during the freeze").isPositive();
+        ShardDirectory.Entry entry = shardDirectory.load(doctor.getDoctorId());
+        assertThat(entry.getShard()).isEqualTo(to);
+        assertThat(entry.isFrozen()).isFalse();
+
+        Map<String, Set<Long>> moved = rows(to, doctor.getId());
+        Set<Long> expectedVisits = new HashSet<>(seeded.get("visits"));
+        expectedVisits.addAll(created);
+        assertThat(moved.get("visits")).isEqualTo(expectedVisits);
+        for (String table : DOCTOR_ROWS.keySet()) {
+            assertThat(moved.get(table)).as(table).containsAll(seeded.get(table));
+            assertThat(rows(from, doctor.getId()).get(table)).as("left on " + from + ": " + table).isEmpty();
+        }
+        // Each created visit brings one prescription, two medicines, a test and a follow-up
+        int visitsCreated = created.size();
+        assertThat(moved.get("prescriptions")).hasSize(seeded.get("prescriptions").size() + visitsCreated);
+        assertThat(moved.get("prescription_medicines"))
+                .hasSize(seeded.get("prescription_medicines").size() + 2 * visitsCreated);
+        assertThat(moved.get("prescription_tests")).hasSize(seeded.get("prescription_tests").size() + visitsCreated);
+        assertThat(moved.get("follow_ups")).hasSize(seeded.get("follow_ups").size() + visitsCreated);
+        edited.forEach((visitId, complaint) -> assertThat(shardDataSources.jdbc(to).queryForObject(
+                "SELECT chief_complaint FROM visits WHERE id = ?", String.class, visitId)).isEqualTo(complaint));
+
+        // The other doctor's rows are untouched
+        assertThat(rows(bystanderShard, seeder.doctor(1).getId())).isEqualTo(bystander);
+
+        // And the API now reads the doctor's visits from the target
+        JsonNode visits = objectMapper.readTree(mockMvc.perform(get("/api/visits/doctor/" + doctor.getDoctorId())
+                .header("Authorization", "Bearer " + token)).andReturn().getResponse().getContentAsString());
+        Set<Long> listed = new HashSet<>();
+        visits.get("data").forEach(visit -> listed.add(visit.get("id").asLong()));
+        assertThat(listed).isEqualTo(expectedVisits);
+    }
+
+    private MockHttpServletResponse createVisit(String token, Long patientId, int n) throws Exception {
+        Map<String, Object> visit = new LinkedHashMap<>();
+        visit.put("patientId", String.valueOf(patientId));
+        visit.put("chiefComplaint", "Cough since " + (n % 7 + 1) + " days");
+        visit.put("medicines", List.of(
+                Map.of("medicineName", "Azithromycin 500", "dosage", "1 tablet", "frequency", "1-0-0", "duration", "3 days"),
+                Map.of("medicineName", "Paracetamol 650", "dosage", "1 tablet", "frequency", "1-1-1", "duration", "3 days")));
+        visit.put("tests", List.of(Map.of("testName", "Chest X-Ray")));
+        visit.put("followUp", Map.of("scheduledDate", LocalDate.now().plusDays(7).toString()));
+        return mockMvc.perform(post("/api/visits")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(visit)))
+                .andReturn().getResponse();
+    }
+
+    private MockHttpServletResponse editVisit(String token, Long visitId, String complaint) throws Exception {
+        return mockMvc.perform(put("/api/visits/" + visitId)
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("patientId", "0", "chiefComplaint", complaint))))
+                .andReturn().getResponse();
+    }
+
+    private Map<String, Set<Long>> rows(String shard, Long doctorId) {
+        Map<String, Set<Long>> rows = new LinkedHashMap<>();
+        DOCTOR_ROWS.forEach((table, where) -> rows.put(table, new HashSet<>(shardDataSources.jdbc(shard)
+                .queryForList("SELECT id FROM " + table + " WHERE " + where, Long.class, doctorId))));
+        return rows;
+    }
+}
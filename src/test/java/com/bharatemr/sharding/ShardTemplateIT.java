@@ -0,0 +1,105 @@
+package com.bharatemr.sharding;
+
+import com.bharatemr.repository.VisitRepository;
+import com.bharatemr.support.ClinicDataSeeder;
+import com.bharatemr.support.EmbeddedPostgresDatabases;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * A patient's history is gathered from both shards. With a two-connection primary pool, a request that
+ * kept its own transaction open during the gather would hold one connection while its shard0 task
+ * waited for another, and a handful of concurrent requests would starve each other until the pool's
+ * connection timeout.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.hikari.maximum-pool-size=2",
+        "spring.datasource.hikari.connection-timeout=2000",
+        "app.single-flight.enabled=false",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureMockMvc
+@Import(ClinicDataSeeder.class)
+class ShardTemplateIT {
+
+    @DynamicPropertySource
+    static void shards(DynamicPropertyRegistry registry) {
+        EmbeddedPostgresDatabases.register(registry, "scatter-shard0");
+        registry.add("app.sharding.enabled", () -> "true");
+        registry.add("app.sharding.primary", () -> "shard0");
+        registry.add("app.sharding.shards.shard1.index", () -> "1");
+        registry.add("app.sharding.shards.shard1.url", () -> EmbeddedPostgresDatabases.url("scatter-shard1"));
+        registry.add("app.sharding.shards.shard1.username", () -> "postgres");
+        registry.add("app.sharding.shards.shard1.password", () -> "");
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ClinicDataSeeder seeder;
+
+    @Autowired
+    private ShardTemplate shardTemplate;
+
+    @Autowired
+    private VisitRepository visitRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void concurrentPatientHistoryRequestsShareASmallPrimaryPool() throws Exception {
+        seeder.grow(2, 3, 4);
+        String patientId = seeder.firstPatient().getPatientId();
+        List<String[]> calls = List.of(
+                new String[] {seeder.doctorToken(), "/api/visits/patient/" + patientId},
+                new String[] {seeder.doctorToken(), "/api/follow-ups/patient/" + patientId},
+                new String[] {seeder.patientToken(), "/api/patient/dashboard"},
+                new String[] {seeder.patientToken(), "/api/patient/visits"},
+                new String[] {seeder.patientToken(), "/api/patient/followups/upcoming"});
+
+        ExecutorService clients = Executors.newFixedThreadPool(12);
+        try {
+            List<Future<Integer>> statuses = new ArrayList<>();
+            for (int i = 0; i < 60; i++) {
+                String[] call = calls.get(i % calls.size());
+                statuses.add(clients.submit(() -> mockMvc.perform(get(call[1])
+                        .header("Authorization", "Bearer " + call[0])).andReturn().getResponse().getStatus()));
+            }
+            for (Future<Integer> status : statuses) {
+                assertThat(status.get()).isEqualTo(200);
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    void refusesToScatterInsideATransaction() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+
+        assertThatThrownBy(() -> transaction.executeWithoutResult(status -> shardTemplate.sum(visitRepository::count)))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(shardTemplate.sum(visitRepository::count)).isNotNegative();
+    }
+}
@@ -0,0 +1,131 @@
+package com.bharatemr.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlobUrlSignerTest {
+
+    private static final byte[] KEY = "signing-key-for-tests".getBytes(StandardCharsets.UTF_8);
+
+    private static final Instant NOW = Instant.parse("2026-03-02T10:00:00Z");
+
+    private static final String BLOB = "prescriptions/ab/cd/prescription_12_ab34.pdf";
+
+    private final BlobUrlSigner signer = signer(KEY, NOW);
+
+    @Test
+    void signedLinkPointsAtTheBlobAndVerifies() {
+        UriComponents link = link(signer.sign(BLOB));
+
+        assertThat(link.getPath()).isEqualTo("/signed/" + BLOB);
+        assertThat(link.getQueryParams().getFirst("expires"))
+                .isEqualTo(String.valueOf(NOW.plus(Duration.ofDays(7)).getEpochSecond()));
+        assertThat(verify(signer, BLOB, link)).isEqualTo(BlobUrlSigner.Verdict.VALID);
+    }
+
+    @Test
+    void signatureDoesNotCoverAnotherKey() {
+        UriComponents link = link(signer.sign(BLOB));
+
+        assertThat(verify(signer, "prescriptions/ab/cd/prescription_13_ab34.pdf", link))
+                .isEqualTo(BlobUrlSigner.Verdict.INVALID);
+        assertThat(verify(signer, BLOB + "x", link)).isEqualTo(BlobUrlSigner.Verdict.INVALID);
+    }
+
+    @Test
+    void extendedExpiryIsInvalid() {
+        UriComponents link = link(signer.sign(BLOB));
+        long expires = Long.parseLong(link.getQueryParams().getFirst("expires"));
+
+        assertThat(signer.verify(BLOB, String.valueOf(expires + 86400), link.getQueryParams().getFirst("sig")))
+                .isEqualTo(BlobUrlSigner.Verdict.INVALID);
+    }
+
+    @Test
+    void alteredSignatureIsInvalid() {
+        UriComponents link = link(signer.sign(BLOB));
+        String sig = link.getQueryParams().getFirst("sig");
+        String altered = (sig.charAt(0) == 'A' ? 'B' : 'A') + sig.substring(1);
+
+        assertThat(signer.verify(BLOB, link.getQueryParams().getFirst("expires"), altered))
+                .isEqualTo(BlobUrlSigner.Verdict.INVALID);
+        assertThat(signer.verify(BLOB, link.getQueryParams().getFirst("expires"), sig.substring(1)))
+                .isEqualTo(BlobUrlSigner.Verdict.INVALID);
+    }
+
+    @Test
+    void linkFromAnotherKeyIsInvalid() {
+        BlobUrlSigner other = signer("another-signing-key".getBytes(StandardCharsets.UTF_8), NOW);
+
+        assertThat(verify(signer, BLOB, link(other.sign(BLOB)))).isEqualTo(BlobUrlSigner.Verdict.INVALID);
+    }
+
+    @Test
+    void linkExpiresAfterItsTtl() {
+        UriComponents link = link(signer.sign(BLOB));
+
+        assertThat(verify(signer(KEY, NOW.plus(Duration.ofDays(7))), BLOB, link))
+                .isEqualTo(BlobUrlSigner.Verdict.VALID);
+        assertThat(verify(signer(KEY, NOW.plus(Duration.ofDays(7)).plusSeconds(1)), BLOB, link))
+                .isEqualTo(BlobUrlSigner.Verdict.EXPIRED);
+    }
+
+    @Test
+    void forgedLinkPastItsExpiryIsInvalidNotExpired() {
+        UriComponents link = link(signer("another-signing-key".getBytes(StandardCharsets.UTF_8), NOW).sign(BLOB));
+
+        assertThat(verify(signer(KEY, NOW.plus(Duration.ofDays(30))), BLOB, link))
+                .isEqualTo(BlobUrlSigner.Verdict.INVALID);
+    }
+
+    @Test
+    void missingOrNonNumericParametersAreInvalid() {
+        UriComponents link = link(signer.sign(BLOB));
+        String expires = link.getQueryParams().getFirst("expires");
+        String sig = link.getQueryParams().getFirst("sig");
+
+        assertThat(signer.verify(BLOB, null, sig)).isEqualTo(BlobUrlSigner.Verdict.INVALID);
+        assertThat(signer.verify(BLOB, expires, null)).isEqualTo(BlobUrlSigner.Verdict.INVALID);
+        assertThat(signer.verify(BLOB, null, null)).isEqualTo(BlobUrlSigner.Verdict.INVALID);
+        assertThat(signer.verify(BLOB, "", sig)).isEqualTo(BlobUrlSigner.Verdict.INVALID);
+        assertThat(signer.verify(BLOB, "tomorrow", sig)).isEqualTo(BlobUrlSigner.Verdict.INVALID);
+        assertThat(signer.verify(BLOB, expires + ".0", sig)).isEqualTo(BlobUrlSigner.Verdict.INVALID);
+        assertThat(signer.verify(BLOB, "99999999999999999999", sig)).isEqualTo(BlobUrlSigner.Verdict.INVALID);
+    }
+
+    @Test
+    void derivedKeyIsNeitherTheSecretNorAnotherPurposesKey() {
+        String secret = "JwtSecretThatAlsoSignsTokens";
+        byte[] derived = BlobUrlSigner.deriveKey(secret, "bharatemr/signed-blob-url/v1");
+
+        assertThat(derived).hasSize(32);
+        assertThat(derived).isEqualTo(BlobUrlSigner.deriveKey(secret, "bharatemr/signed-blob-url/v1"));
+        assertThat(derived).isNotEqualTo(secret.getBytes(StandardCharsets.UTF_8));
+        assertThat(derived).isNotEqualTo(BlobUrlSigner.deriveKey(secret, "bharatemr/signed-blob-url/v2"));
+        assertThat(derived).isNotEqualTo(BlobUrlSigner.deriveKey(secret + "!", "bharatemr/signed-blob-url/v1"));
+
+        UriComponents link = link(signer(secret.getBytes(StandardCharsets.UTF_8), NOW).sign(BLOB));
+        assertThat(verify(signer(derived, NOW), BLOB, link)).isEqualTo(BlobUrlSigner.Verdict.INVALID);
+    }
+
+    private static BlobUrlSigner signer(byte[] key, Instant now) {
+        return new BlobUrlSigner(key, Duration.ofDays(7), "https://emr.example/", Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private static UriComponents link(String url) {
+        return UriComponentsBuilder.fromUriString(url).build();
+    }
+
+    private static BlobUrlSigner.Verdict verify(BlobUrlSigner signer, String key, UriComponents link) {
+        return signer.verify(key, link.getQueryParams().getFirst("expires"), link.getQueryParams().getFirst("sig"));
+    }
+}
@@ -0,0 +1,162 @@
+package com.bharatemr.storage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SignedBlobFilterTest {
+
+    private static final byte[] KEY = "signing-key-for-tests".getBytes(StandardCharsets.UTF_8);
+
+    private static final Instant NOW = Instant.parse("2026-03-02T10:00:00Z");
+
+    private static final String BLOB = "prescriptions/prescription_12_ab34.pdf";
+
+    private static final byte[] PDF = "%PDF-1.7 prescription".getBytes(StandardCharsets.US_ASCII);
+
+    private final BlobUrlSigner signer = signer(NOW);
+
+    private LocalBlobStore blobStore;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp(@TempDir Path root) throws IOException {
+        blobStore = new LocalBlobStore(root);
+        blobStore.put(BLOB, "application/pdf", out -> out.write(PDF));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void validLinkStreamsTheBlobWithoutGoingFurther() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletResponse response = filter(signer, get(signer.sign(BLOB)), chain);
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentType()).isEqualTo("application/pdf");
+        assertThat(response.getHeader("Content-Disposition")).isEqualTo("inline; filename=\"prescription_12_ab34.pdf\"");
+        assertThat(response.getContentAsByteArray()).isEqualTo(PDF);
+        assertThat(chain.getRequest()).isNull();
+        assertThat(meterRegistry.counter("storage.signed.downloads", "result", "ok").count()).isEqualTo(1);
+    }
+
+    @Test
+    void headAnswersWithoutABody() throws Exception {
+        MockHttpServletRequest request = get(signer.sign(BLOB));
+        request.setMethod("HEAD");
+
+        MockHttpServletResponse response = filter(signer, request, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void signatureForAnotherBlobIsForbidden() throws Exception {
+        blobStore.put("prescriptions/prescription_13_cd56.pdf", "application/pdf", out -> out.write(PDF));
+        MockHttpServletRequest request = get(signer.sign(BLOB));
+        request.setRequestURI("/signed/prescriptions/prescription_13_cd56.pdf");
+
+        MockHttpServletResponse response = filter(signer, request, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(403);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+        assertThat(meterRegistry.counter("storage.signed.downloads", "result", "invalid").count()).isEqualTo(1);
+    }
+
+    @Test
+    void expiredLinkIsGone() throws Exception {
+        String url = signer.sign(BLOB);
+
+        MockHttpServletResponse response = filter(signer(NOW.plus(Duration.ofDays(8))), get(url), new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(410);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+        assertThat(meterRegistry.counter("storage.signed.downloads", "result", "expired").count()).isEqualTo(1);
+    }
+
+    @Test
+    void missingOrNonNumericParametersAreForbidden() throws Exception {
+        UriComponents link = UriComponentsBuilder.fromUriString(signer.sign(BLOB)).build();
+        String expires = link.getQueryParams().getFirst("expires");
+        String sig = link.getQueryParams().getFirst("sig");
+
+        assertThat(filter(signer, request(null, sig), new MockFilterChain()).getStatus()).isEqualTo(403);
+        assertThat(filter(signer, request(expires, null), new MockFilterChain()).getStatus()).isEqualTo(403);
+        assertThat(filter(signer, request(null, null), new MockFilterChain()).getStatus()).isEqualTo(403);
+        assertThat(filter(signer, request("soon", sig), new MockFilterChain()).getStatus()).isEqualTo(403);
+    }
+
+    @Test
+    void validLinkToAMissingBlobIsNotFound() throws Exception {
+        String missing = "prescriptions/prescription_99_ffff.pdf";
+
+        MockHttpServletResponse response = filter(signer, get(signer.sign(missing)), new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(404);
+    }
+
+    @Test
+    void onlyGetAndHeadAreAllowed() throws Exception {
+        MockHttpServletRequest request = get(signer.sign(BLOB));
+        request.setMethod("POST");
+
+        assertThat(filter(signer, request, new MockFilterChain()).getStatus()).isEqualTo(405);
+    }
+
+    @Test
+    void otherPathsGoOnToTheChain() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/prescriptions/prescription_12_ab34.pdf");
+
+        filter(signer, request, chain);
+
+        assertThat(chain.getRequest()).isSameAs(request);
+    }
+
+    private MockHttpServletResponse filter(BlobUrlSigner verifier, MockHttpServletRequest request, MockFilterChain chain)
+            throws ServletException, IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        new SignedBlobFilter(verifier, blobStore, meterRegistry).doFilter(request, response, chain);
+        return response;
+    }
+
+    private static MockHttpServletRequest get(String url) {
+        UriComponents link = UriComponentsBuilder.fromUriString(url).build();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", link.getPath());
+        link.getQueryParams().forEach((name, values) -> request.addParameter(name, values.get(0)));
+        return request;
+    }
+
+    private static MockHttpServletRequest request(String expires, String sig) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/signed/" + BLOB);
+        if (expires != null) {
+            request.addParameter("expires", expires);
+        }
+        if (sig != null) {
+            request.addParameter("sig", sig);
+        }
+        return request;
+    }
+
+    private static BlobUrlSigner signer(Instant now) {
+        return new BlobUrlSigner(KEY, Duration.ofDays(7), "https://emr.example", Clock.fixed(now, ZoneOffset.UTC));
+    }
+}
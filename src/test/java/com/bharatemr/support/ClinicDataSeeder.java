@@ -0,0 +1,191 @@
+package com.bharatemr.support;
+
+import com.bharatemr.enums.FollowUpStatus;
+import com.bharatemr.model.Doctor;
+import com.bharatemr.model.FollowUp;
+import com.bharatemr.model.Medicine;
+import com.bharatemr.model.Patient;
+import com.bharatemr.model.Prescription;
+import com.bharatemr.model.Test;
+import com.bharatemr.model.Visit;
+import com.bharatemr.repository.DoctorRepository;
+import com.bharatemr.repository.FollowUpRepository;
+import com.bharatemr.repository.PatientRepository;
+import com.bharatemr.repository.PrescriptionRepository;
+import com.bharatemr.repository.VisitRepository;
+import com.bharatemr.security.JwtUtil;
+import com.bharatemr.sharding.ShardContext;
+import com.bharatemr.sharding.ShardDirectory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Seeds doctors, each with patients and visits (prescription, medicines, a test and every other visit a
+ * follow-up), and can grow the same data set later so a test can compare N rows with 2N. With sharding
+ * on, each doctor's visits are written to the shard the directory assigned it. Add with
+ * {@code @Import(ClinicDataSeeder.class)}.
+ */
+public class ClinicDataSeeder {
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private VisitRepository visitRepository;
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    @Autowired
+    private FollowUpRepository followUpRepository;
+
+    @Autowired
+    private ObjectProvider<ShardDirectory> shardDirectory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    private final List<Doctor> doctors = new ArrayList<>();
+
+    // Per doctor, in seeding order
+    private final List<List<Patient>> patients = new ArrayList<>();
+
+    // Visits seeded so far, by patientId
+    private final Map<String, Integer> visits = new HashMap<>();
+
+    /** Tops the data set up to the given counts; what was seeded before is kept. */
+    public void grow(int doctorCount, int patientsPerDoctor, int visitsPerPatient) {
+        while (doctors.size() < doctorCount) {
+            Doctor doctor = seedDoctor(doctors.size());
+            doctors.add(doctor);
+            patients.add(new ArrayList<>());
+        }
+        for (int d = 0; d < doctors.size(); d++) {
+            Doctor doctor = doctors.get(d);
+            List<Patient> own = patients.get(d);
+            while (own.size() < patientsPerDoctor) {
+                own.add(seedPatient(doctor, d, own.size()));
+            }
+            onShardOf(doctor, () -> own.forEach(patient -> {
+                int seeded = visits.getOrDefault(patient.getPatientId(), 0);
+                for (int v = seeded; v < visitsPerPatient; v++) {
+                    seedVisit(doctor, patient, v);
+                }
+                visits.put(patient.getPatientId(), Math.max(seeded, visitsPerPatient));
+            }));
+        }
+    }
+
+    public Doctor firstDoctor() {
+        return doctors.get(0);
+    }
+
+    public Doctor doctor(int index) {
+        return doctors.get(index);
+    }
+
+    public List<Long> patientIds(int doctorIndex) {
+        return patients.get(doctorIndex).stream().map(Patient::getId).collect(Collectors.toList());
+    }
+
+    public Patient firstPatient() {
+        return patients.get(0).get(0);
+    }
+
+    public String doctorToken() {
+        return jwtUtil.generateToken(firstDoctor().getMobileNumber(), "DOCTOR", firstDoctor().getDoctorId());
+    }
+
+    public String patientToken() {
+        return jwtUtil.generateToken(firstPatient().getMobileNumber(), "PATIENT", firstPatient().getPatientId());
+    }
+
+    public String adminToken() {
+        return jwtUtil.generateToken("seed-admin", "ADMIN", "ADMIN");
+    }
+
+    // Explicit ids: the generated ones use a 4-digit random suffix and collide at volume
+    private Doctor seedDoctor(int d) {
+        return doctorRepository.save(Doctor.builder()
+                .doctorId(String.format("DRSEED%03d", d))
+                .fullName("Seed Doctor " + (d + 1))
+                .mobileNumber(String.format("+91900000%04d", d))
+                .specialization("General Physician")
+                .qualification("MBBS")
+                .yearsOfExperience(5 + d)
+                .clinicName("Seed Clinic " + (d + 1))
+                .clinicAddress("1 MG Road, Pune, MH - 411001")
+                .medicalRegistrationNumber("MH-SEED-" + d)
+                .build());
+    }
+
+    private Patient seedPatient(Doctor doctor, int d, int p) {
+        int age = 20 + (p * 7) % 60;
+        return patientRepository.save(Patient.builder()
+                .patientId(String.format("PTSEED%03d%05d", d, p))
+                .fullName("Seed Patient " + (d + 1) + "-" + (p + 1))
+                .gender(p % 2 == 0 ? "MALE" : "FEMALE")
+                .dateOfBirth(LocalDate.now().minusYears(age))
+                .age(age)
+                .mobileNumber(String.format("+9180%02d%06d", d, p))
+                .onboardedByDoctor(doctor)
+                .build());
+    }
+
+    private void seedVisit(Doctor doctor, Patient patient, int index) {
+        Visit visit = visitRepository.save(Visit.builder()
+                .patient(patient)
+                .doctor(doctor)
+                .visitDate(LocalDateTime.now().minusDays(index * 14L))
+                .chiefComplaint("Fever and body ache since 2 days")
+                .clinicalNotes("Temp 101F, throat congested")
+                .build());
+
+        Prescription prescription = Prescription.builder().visit(visit).build();
+        prescription.addMedicine(Medicine.builder()
+                .medicineName("Paracetamol 650").dosage("1 tablet").frequency("1-1-1").duration("3 days").build());
+        prescription.addMedicine(Medicine.builder()
+                .medicineName("Cetirizine 10").dosage("1 tablet").frequency("0-0-1").duration("5 days").build());
+        prescription.addTest(Test.builder().testName("Complete Blood Count").build());
+        prescriptionRepository.save(prescription);
+
+        if (index % 2 == 0) {
+            followUpRepository.save(FollowUp.builder()
+                    .visit(visit)
+                    .patient(patient)
+                    .doctor(doctor)
+                    .scheduledDate(LocalDate.now().plusDays(index))
+                    .status(FollowUpStatus.SCHEDULED)
+                    .build());
+        }
+    }
+
+    // One transaction per doctor, opened after ShardContext is set so it connects to that doctor's shard
+    private void onShardOf(Doctor doctor, Runnable work) {
+        ShardDirectory directory = shardDirectory.getIfAvailable();
+        if (directory != null) {
+            ShardContext.set(directory.load(doctor.getDoctorId()).getShard());
+        }
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> work.run());
+        } finally {
+            ShardContext.clear();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.bharatemr.support;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.test.context.DynamicPropertyRegistry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PostgreSQL servers for the *IT tests, started on first use and stopped when the JVM exits. Each name
+ * is a separate server, so tests that need an empty database or two databases (shards) ask for their
+ * own. PostgreSQL refuses to run as root, so these tests need an ordinary user.
+ */
+public final class EmbeddedPostgresDatabases {
+
+    private static final Map<String, EmbeddedPostgres> SERVERS = new ConcurrentHashMap<>();
+
+    private EmbeddedPostgresDatabases() {
+    }
+
+    public static String url(String name) {
+        return SERVERS.computeIfAbsent(name, EmbeddedPostgresDatabases::start).getJdbcUrl("postgres", "postgres");
+    }
+
+    /** Points spring.datasource at the named server. */
+    public static void register(DynamicPropertyRegistry registry, String name) {
+        registry.add("spring.datasource.url", () -> url(name));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "");
+    }
+
+    private static EmbeddedPostgres start(String name) {
+        try {
+            EmbeddedPostgres server = EmbeddedPostgres.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.close();
+                } catch (IOException ignored) {
+                    // The JVM is exiting; the data directory is a temp directory
+                }
+            }, "stop-postgres-" + name));
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start PostgreSQL " + name, e);
+        }
+    }
+}
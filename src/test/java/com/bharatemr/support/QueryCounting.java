@@ -0,0 +1,97 @@
+package com.bharatemr.support;
+
+import com.bharatemr.sharding.ShardDataSources;
+import com.bharatemr.sharding.ShardRoutingDataSource;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts every statement sent to the database, whichever thread sends it: the request thread,
+ * {@code ShardTemplate}'s scatter threads or anything else a request hands work to. Only the
+ * scheduler's threads are left out, so a background job cannot land in a request's count.
+ * Without sharding the one DataSource is wrapped; with sharding each shard's pool is, and the
+ * routing DataSource built on top of them counts through them.
+ */
+@TestConfiguration
+public class QueryCounting {
+
+    // By DataSource: "dataSource", or the shard name
+    private static final Map<String, AtomicLong> STATEMENTS = new ConcurrentHashMap<>();
+
+    public static void reset() {
+        STATEMENTS.clear();
+    }
+
+    public static long count() {
+        return STATEMENTS.values().stream().mapToLong(AtomicLong::get).sum();
+    }
+
+    // The most statements any one DataSource saw: a scattered request runs its queries on every shard
+    public static long countOnBusiestDataSource() {
+        return STATEMENTS.values().stream().mapToLong(AtomicLong::get).max().orElse(0);
+    }
+
+    public static long count(String dataSource) {
+        AtomicLong statements = STATEMENTS.get(dataSource);
+        return statements == null ? 0 : statements.get();
+    }
+
+    @Bean
+    public static BeanPostProcessor queryCountingDataSources() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof ShardDataSources) {
+                    ShardDataSources shards = (ShardDataSources) bean;
+                    Map<String, DataSource> counted = new LinkedHashMap<>();
+                    Map<String, Integer> indexes = new LinkedHashMap<>();
+                    shards.getDataSources().forEach((name, dataSource) -> {
+                        counted.put(name, counting(name, dataSource));
+                        indexes.put(name, shards.index(name));
+                    });
+                    return new ShardDataSources(shards.getPrimary(), counted, indexes) {
+                        @Override
+                        public void destroy() {
+                            shards.destroy();
+                        }
+                    };
+                }
+                if ("dataSource".equals(beanName) && bean instanceof DataSource) {
+                    return counting(beanName, (DataSource) bean);
+                }
+                return bean;
+            }
+        };
+    }
+
+    // With sharding on, "dataSource" is the routing one and its targets are already counted
+    private static DataSource counting(String name, DataSource dataSource) {
+        if (dataSource instanceof ShardRoutingDataSource) {
+            return dataSource;
+        }
+        return ProxyDataSourceBuilder.create(dataSource).name(name).listener(new QueryExecutionListener() {
+            @Override
+            public void beforeQuery(ExecutionInfo execution, List<QueryInfo> queries) {
+            }
+
+            @Override
+            public void afterQuery(ExecutionInfo execution, List<QueryInfo> queries) {
+                if (!Thread.currentThread().getName().startsWith("scheduling-")) {
+                    STATEMENTS.computeIfAbsent(name, key -> new AtomicLong()).incrementAndGet();
+                }
+            }
+        }).build();
+    }
+}